@@ -0,0 +1,156 @@
+package com.jasontoradler.tictactoe.analytics;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameRecord;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.SymmetricHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts outcomes for the opening positions of every game in a share of the
+ * input files. Workers take whole files from a shared list until none are
+ * left, so a few large files and many small ones both keep every thread
+ * busy. Each worker owns its board, hash, and map; nothing is shared while
+ * they run, and nothing is allocated per game.
+ * <p/>
+ * Files are memory mapped a chunk at a time. A chunk ends partway through a
+ * record whenever a record straddles the chunk size, so the next chunk is
+ * mapped from the start of the first record not yet read.
+ */
+public class AnalysisWorker implements Callable<PositionStatsMap> {
+
+    // Large enough that mapping costs nothing next to decoding, small enough
+    // to leave room for one chunk per thread on a 32-bit JVM.
+    private static final long CHUNK_SIZE = 1 << 28;
+
+    private final List<Path> mFiles;
+    private final AtomicInteger mNextFile;
+    private final Board mBoard;
+    private final SymmetricHash mHash;
+    private final int mMaxPly;
+    private final PositionStatsMap mStats = new PositionStatsMap();
+    private long mGames;
+    private long mSkippedGames;
+    private long mBytes;
+
+    /**
+     * @param files    every input file
+     * @param nextFile index of the next file no worker has taken, shared by
+     *                 all workers
+     * @param template board whose dimensions are analyzed; records for other
+     *                 boards are skipped
+     * @param maxPly   number of moves into each game to count positions for
+     */
+    public AnalysisWorker(List<Path> files, AtomicInteger nextFile, Board template,
+                          int maxPly) {
+        mFiles = files;
+        mNextFile = nextFile;
+        mBoard = new Board(template.getNumRows(), template.getNumCols(),
+                template.getWinLength());
+        mHash = new SymmetricHash(template.getNumRows(), template.getNumCols());
+        mMaxPly = maxPly;
+    }
+
+    @Override
+    public PositionStatsMap call() throws IOException {
+        for (int index = mNextFile.getAndIncrement(); index < mFiles.size();
+             index = mNextFile.getAndIncrement()) {
+            analyzeFile(mFiles.get(index));
+        }
+        return mStats;
+    }
+
+    /**
+     * @return games counted
+     */
+    public long getGames() {
+        return mGames;
+    }
+
+    /**
+     * @return games skipped because they were unfinished or for another board
+     */
+    public long getSkippedGames() {
+        return mSkippedGames;
+    }
+
+    /**
+     * @return bytes of input read
+     */
+    public long getBytes() {
+        return mBytes;
+    }
+
+    private void analyzeFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long base = 0;
+            MappedByteBuffer chunk = map(channel, base, size);
+            if (chunk.remaining() < GameRecord.FILE_HEADER_SIZE
+                    || chunk.getInt() != GameRecord.MAGIC) {
+                throw new IOException(path + " is not a game record file");
+            }
+            if (chunk.getInt() != GameRecord.VERSION) {
+                throw new IOException(path + " has an unsupported game record version");
+            }
+            while (true) {
+                if (chunk.remaining() < GameRecord.MAX_RECORD_SIZE && base + chunk.limit() < size) {
+                    base += chunk.position();
+                    chunk = map(channel, base, size);
+                }
+                if (!chunk.hasRemaining()) {
+                    break;
+                }
+                try {
+                    analyzeRecord(chunk);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ": bad record at offset "
+                            + (base + chunk.position()), e);
+                }
+            }
+            mBytes += size;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long base, long size)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(CHUNK_SIZE, size - base));
+    }
+
+    private void analyzeRecord(ByteBuffer buffer) {
+        final Board board = mBoard;
+        final int position = buffer.position();
+        if ((buffer.get(position) & 0x3f) + 1 != board.getNumRows()
+                || (buffer.get(position + 1) & 0xff) + 1 != board.getNumCols()
+                || (buffer.get(position + 2) & 0xff) != board.getWinLength()) {
+            GameRecord.skip(buffer);
+            ++mSkippedGames;
+            return;
+        }
+        final GameState outcome = GameRecord.decode(buffer, board);
+        final int outcomeIndex = PositionStatsMap.outcomeIndex(outcome);
+        if (outcomeIndex < 0) {
+            ++mSkippedGames;
+            return;
+        }
+        ++mGames;
+
+        final SymmetricHash hash = mHash;
+        hash.reset();
+        mStats.add(hash.getCanonicalKey(), outcomeIndex, 1);
+        final int plies = Math.min(mMaxPly, board.getMoveCount());
+        for (int ply = 0; ply < plies; ++ply) {
+            hash.toggle(ply & 1, board.getMove(ply));
+            mStats.add(hash.getCanonicalKey(), outcomeIndex, 1);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.jasontoradler.tictactoe.analytics;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.OpeningBook;
+import com.jasontoradler.tictactoe.engine.SymmetricHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Command line tool which reads game record files, counts how every opening
+ * position turned out, prints first move statistics, and optionally writes
+ * the counts as an {@link OpeningBook}. Files are shared out across one
+ * {@link AnalysisWorker} per thread and the workers' maps are merged at the
+ * end.
+ * <p/>
+ * Usage: Analyzer [--rows N] [--cols N] [--win N] [--max-ply N]
+ * [--min-visits N] [--threads N] [--book FILE] RECORD_FILE...
+ */
+public class Analyzer {
+
+    private static final int BOOK_BUFFER_SIZE = 64 * 1024;
+
+    private int mNumRows = Board.DEFAULT_SIZE;
+    private int mNumCols = Board.DEFAULT_SIZE;
+    private int mWinLength = Board.DEFAULT_SIZE;
+    private int mMaxPly = 8;
+    private int mMinVisits = 100;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private Path mBookPath;
+    private final List<Path> mFiles = new ArrayList<>();
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException, ExecutionException {
+        final Analyzer analyzer = new Analyzer();
+        try {
+            analyzer.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Analyzer [--rows N] [--cols N] [--win N] [--max-ply N]"
+                    + " [--min-visits N] [--threads N] [--book FILE] RECORD_FILE...");
+            System.exit(1);
+        }
+        analyzer.run();
+    }
+
+    void parseArgs(String[] args) {
+        for (int ii = 0; ii < args.length; ++ii) {
+            final String option = args[ii];
+            if (!option.startsWith("--")) {
+                mFiles.add(Paths.get(option));
+                continue;
+            }
+            if (ii + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            final String value = args[++ii];
+            switch (option) {
+                case "--rows":
+                    mNumRows = Integer.parseInt(value);
+                    break;
+                case "--cols":
+                    mNumCols = Integer.parseInt(value);
+                    break;
+                case "--win":
+                    mWinLength = Integer.parseInt(value);
+                    break;
+                case "--max-ply":
+                    mMaxPly = Integer.parseInt(value);
+                    break;
+                case "--min-visits":
+                    mMinVisits = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    mThreads = Integer.parseInt(value);
+                    break;
+                case "--book":
+                    mBookPath = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (mFiles.isEmpty()) {
+            throw new IllegalArgumentException("no record files given");
+        }
+        if (mThreads < 1 || mMaxPly < 0) {
+            throw new IllegalArgumentException("threads and max ply must be positive");
+        }
+    }
+
+    public void run() throws IOException, InterruptedException, ExecutionException {
+        final Board template = new Board(mNumRows, mNumCols, mWinLength);
+        final int threads = Math.min(mThreads, mFiles.size());
+        final AtomicInteger nextFile = new AtomicInteger();
+        final List<AnalysisWorker> workers = new ArrayList<>(threads);
+        for (int ii = 0; ii < threads; ++ii) {
+            workers.add(new AnalysisWorker(mFiles, nextFile, template, mMaxPly));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final PositionStatsMap total = new PositionStatsMap();
+        final long start = System.nanoTime();
+        try {
+            for (Future<PositionStatsMap> result : pool.invokeAll(workers)) {
+                total.merge(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        long games = 0;
+        long skipped = 0;
+        long bytes = 0;
+        for (AnalysisWorker worker : workers) {
+            games += worker.getGames();
+            skipped += worker.getSkippedGames();
+            bytes += worker.getBytes();
+        }
+        System.out.printf(Locale.US, "%d files, %d games (%d skipped), %.1f MB in %.3f s"
+                        + " (%.0f games/s, %.1f MB/s)%n",
+                mFiles.size(), games, skipped, bytes / 1e6, seconds, games / seconds,
+                bytes / 1e6 / seconds);
+        System.out.printf(Locale.US, "%d distinct positions in the first %d moves%n",
+                total.size(), mMaxPly);
+        printFirstMoves(total, template);
+
+        if (mBookPath != null) {
+            final int entries = writeBook(total, template);
+            System.out.printf(Locale.US, "wrote %d positions seen in at least %d games to %s%n",
+                    entries, mMinVisits, mBookPath);
+        }
+    }
+
+    /**
+     * Print how games went after each distinct first move.
+     */
+    private void printFirstMoves(PositionStatsMap stats, Board board) {
+        final SymmetricHash hash = new SymmetricHash(board.getNumRows(), board.getNumCols());
+        final long[] seen = new long[board.getNumCells()];
+        int numSeen = 0;
+        System.out.println("first move   games        player 1 wins  player 2 wins  ties");
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            final long key = hash.getCanonicalKeyAfter(Board.PLAYER1, cell);
+            boolean isDuplicate = false;
+            for (int ii = 0; ii < numSeen; ++ii) {
+                isDuplicate |= seen[ii] == key;
+            }
+            final long visits = stats.getVisits(key);
+            if (isDuplicate || visits == 0) {
+                continue;
+            }
+            seen[numSeen++] = key;
+            System.out.printf(Locale.US, "(%2d, %2d)     %-12d %6.2f%%        %6.2f%%        %6.2f%%%n",
+                    cell % board.getNumCols(), cell / board.getNumCols(), visits,
+                    100.0 * stats.getCount(key, PositionStatsMap.PLAYER1_WINS) / visits,
+                    100.0 * stats.getCount(key, PositionStatsMap.PLAYER2_WINS) / visits,
+                    100.0 * stats.getCount(key, PositionStatsMap.TIES) / visits);
+        }
+    }
+
+    /**
+     * Write every position seen in at least mMinVisits games as an opening
+     * book.
+     *
+     * @return number of positions written
+     */
+    private int writeBook(PositionStatsMap stats, Board board) throws IOException {
+        final long[] keys = stats.getSortedKeys();
+        int entries = 0;
+        for (long key : keys) {
+            if (stats.getVisits(key) >= mMinVisits) {
+                ++entries;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(mBookPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BOOK_BUFFER_SIZE);
+            buffer.putInt(OpeningBook.MAGIC);
+            buffer.put((byte) OpeningBook.VERSION);
+            buffer.put((byte) board.getNumRows());
+            buffer.put((byte) board.getNumCols());
+            buffer.put((byte) board.getWinLength());
+            buffer.putInt(entries);
+            for (long key : keys) {
+                final long visits = stats.getVisits(key);
+                if (visits < mMinVisits) {
+                    continue;
+                }
+                if (buffer.remaining() < OpeningBook.ENTRY_SIZE) {
+                    flush(buffer, channel);
+                }
+                // The book stores int counts; scale very common positions
+                // down so their total still fits and their ratios survive.
+                final long scale = visits / Integer.MAX_VALUE + 1;
+                buffer.putLong(key);
+                buffer.putInt((int) (stats.getCount(key, PositionStatsMap.PLAYER1_WINS) / scale));
+                buffer.putInt((int) (stats.getCount(key, PositionStatsMap.PLAYER2_WINS) / scale));
+                buffer.putInt((int) (stats.getCount(key, PositionStatsMap.TIES) / scale));
+            }
+            flush(buffer, channel);
+        }
+        return entries;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,205 @@
+package com.jasontoradler.tictactoe.analytics;
+
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import java.util.Arrays;
+
+/**
+ * Outcome counts per position, keyed by canonical position key. An open
+ * addressing hash table over parallel primitive arrays, so counting a
+ * position costs a probe or two and never allocates; the arrays only grow
+ * when the table passes half full.
+ * <p/>
+ * Key 0 marks an empty slot, so the position with key 0 is counted
+ * separately. Not thread safe; each thread fills its own map and the maps
+ * are merged at the end.
+ */
+public class PositionStatsMap {
+
+    public static final int PLAYER1_WINS = 0;
+    public static final int PLAYER2_WINS = 1;
+    public static final int TIES = 2;
+    private static final int NUM_OUTCOMES = 3;
+
+    private long[] mKeys;
+    // NUM_OUTCOMES counts per slot, next to each other.
+    private long[] mCounts;
+    private int mShift;
+    private int mSize;
+    private boolean mHasZeroKey;
+    private final long[] mZeroCounts = new long[NUM_OUTCOMES];
+
+    public PositionStatsMap() {
+        this(1 << 16);
+    }
+
+    /**
+     * @param capacity initial number of slots, rounded up to a power of two
+     */
+    public PositionStatsMap(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mCounts = new long[capacity * NUM_OUTCOMES];
+        mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * @return the {@link #PLAYER1_WINS}, {@link #PLAYER2_WINS}, or
+     * {@link #TIES} index for a finished game's outcome, or -1 if the game
+     * was not finished
+     */
+    public static int outcomeIndex(GameState outcome) {
+        switch (outcome) {
+            case PLAYER1_WINS:
+                return PLAYER1_WINS;
+            case PLAYER2_WINS:
+                return PLAYER2_WINS;
+            case TIE_GAME:
+                return TIES;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return number of distinct positions
+     */
+    public int size() {
+        return mSize + (mHasZeroKey ? 1 : 0);
+    }
+
+    /**
+     * Add count games with the given outcome index to key's position.
+     */
+    public void add(long key, int outcome, long count) {
+        if (key == 0) {
+            mHasZeroKey = true;
+            mZeroCounts[outcome] += count;
+            return;
+        }
+        // Find the slot first; inserting may replace mCounts.
+        final int index = slot(key) * NUM_OUTCOMES + outcome;
+        mCounts[index] += count;
+    }
+
+    /**
+     * @return games through key's position with the given outcome index
+     */
+    public long getCount(long key, int outcome) {
+        if (key == 0) {
+            return mZeroCounts[outcome];
+        }
+        final int mask = mKeys.length - 1;
+        for (int slot = hash(key); mKeys[slot] != 0; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                return mCounts[slot * NUM_OUTCOMES + outcome];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return total games through key's position
+     */
+    public long getVisits(long key) {
+        return getCount(key, PLAYER1_WINS) + getCount(key, PLAYER2_WINS) + getCount(key, TIES);
+    }
+
+    /**
+     * Add every count in other to this map.
+     */
+    public void merge(PositionStatsMap other) {
+        // Keys come out of other in hash order. Poured into a smaller table
+        // they would pile up in long runs, so grow to other's size first.
+        while (mKeys.length < other.mKeys.length) {
+            grow();
+        }
+        for (int slot = 0; slot < other.mKeys.length; ++slot) {
+            final long key = other.mKeys[slot];
+            if (key != 0) {
+                final int target = slot(key) * NUM_OUTCOMES;
+                for (int outcome = 0; outcome < NUM_OUTCOMES; ++outcome) {
+                    mCounts[target + outcome] += other.mCounts[slot * NUM_OUTCOMES + outcome];
+                }
+            }
+        }
+        if (other.mHasZeroKey) {
+            mHasZeroKey = true;
+            for (int outcome = 0; outcome < NUM_OUTCOMES; ++outcome) {
+                mZeroCounts[outcome] += other.mZeroCounts[outcome];
+            }
+        }
+    }
+
+    /**
+     * @return every key in the map, in ascending order
+     */
+    public long[] getSortedKeys() {
+        final long[] keys = new long[size()];
+        int count = 0;
+        for (long key : mKeys) {
+            if (key != 0) {
+                keys[count++] = key;
+            }
+        }
+        if (mHasZeroKey) {
+            keys[count] = 0;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private int hash(long key) {
+        // Canonical keys are the minimum of several hashes, so their high
+        // bits are skewed; multiply to spread every bit into the index.
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> mShift);
+    }
+
+    /**
+     * @return the slot holding key, inserting it if it is missing
+     */
+    private int slot(long key) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key);
+        while (mKeys[slot] != 0) {
+            if (mKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (2 * (mSize + 1) > mKeys.length) {
+            grow();
+            mask = mKeys.length - 1;
+            slot = hash(key);
+            while (mKeys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        mKeys[slot] = key;
+        ++mSize;
+        return slot;
+    }
+
+    private void grow() {
+        final long[] oldKeys = mKeys;
+        final long[] oldCounts = mCounts;
+        allocate(oldKeys.length * 2);
+        final int mask = mKeys.length - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; ++oldSlot) {
+            final long key = oldKeys[oldSlot];
+            if (key == 0) {
+                continue;
+            }
+            int slot = hash(key);
+            while (mKeys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mKeys[slot] = key;
+            System.arraycopy(oldCounts, oldSlot * NUM_OUTCOMES, mCounts, slot * NUM_OUTCOMES,
+                    NUM_OUTCOMES);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.jasontoradler.tictactoe.analytics;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameRecordWriter;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.OpeningBook;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnalyzerTest {
+
+    // Player 1 takes the top row.
+    private static final int[] CORNER_WIN = {0, 3, 1, 4, 2};
+    // The same game turned half way round.
+    private static final int[] TURNED_CORNER_WIN = {8, 5, 7, 4, 6};
+    // Player 1 opens in another corner and player 2 wins on a diagonal.
+    private static final int[] CORNER_LOSS = {2, 4, 3, 0, 5, 8};
+    private static final int[] CENTER_TIE = {4, 0, 2, 6, 3, 5, 1, 7, 8};
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void bookCountsEveryRotationOfAPositionTogether() throws Exception {
+        final OpeningBook book = analyze(8, 1, 2);
+
+        assertEquals(4, book.getVisits(new Board()));
+        // Three games opened in a corner, whichever corner it was.
+        for (int corner : new int[]{0, 2, 6, 8}) {
+            assertEquals("corner " + corner, 3, book.getVisits(position(corner)));
+        }
+        assertEquals(1, book.getVisits(position(4)));
+        assertEquals(0, book.getVisits(position(1)));
+        // The first two games reach the same positions all the way through.
+        assertEquals(2, book.getVisits(position(0, 3)));
+        assertEquals(2, book.getVisits(position(6, 7)));
+        assertEquals(2, book.getVisits(position(0, 3, 1, 4)));
+        assertEquals(1, book.getVisits(position(2, 4)));
+        // Positions are counted up to the last ply analyzed.
+        assertEquals(1, book.getVisits(position(Arrays.copyOf(CENTER_TIE, 8))));
+        assertEquals(0, book.getVisits(position(CENTER_TIE)));
+    }
+
+    @Test
+    public void bookMovesScoreBestForThePlayerToMove() throws Exception {
+        final OpeningBook book = analyze(8, 1, 1);
+
+        // A corner won two of three games for player 1; the center only tied.
+        final int first = book.getBookMove(new Board(), 1);
+        assertEquals(3, book.getVisits(position(first)));
+        // Player 2 only won the game which answered a corner with the center.
+        assertEquals(4, book.getBookMove(position(0), 1));
+        assertEquals(4, book.getBookMove(position(8), 1));
+        // Nothing was seen often enough.
+        assertEquals(-1, book.getBookMove(new Board(), 5));
+        assertEquals(-1, book.getBookMove(position(1), 1));
+    }
+
+    @Test
+    public void rarePositionsAndLatePliesAreLeftOut() throws Exception {
+        final OpeningBook book = analyze(2, 2, 2);
+
+        // The empty board, the corner opening, and the corner openings
+        // answered on the edge.
+        assertEquals(3, book.getEntryCount());
+        assertEquals(3, book.getVisits(position(0)));
+        assertEquals(0, book.getVisits(position(4)));
+        assertEquals(0, book.getVisits(position(2, 4)));
+        assertEquals(0, book.getVisits(position(0, 3, 1)));
+    }
+
+    /**
+     * Record the four test games, spread over files, along with games the
+     * analysis skips, then build a book from them.
+     */
+    private OpeningBook analyze(int maxPly, int minVisits, int threads)
+            throws IOException, InterruptedException, ExecutionException {
+        final File first = mFolder.newFile();
+        final File second = mFolder.newFile();
+        final Board unfinished = position(0, 1);
+        final Board otherSize = new Board(4, 4, 3);
+        otherSize.play(0);
+        writeRecords(first, position(CORNER_WIN), otherSize, position(CORNER_LOSS));
+        writeRecords(second, unfinished, position(TURNED_CORNER_WIN), position(CENTER_TIE));
+
+        final File bookFile = new File(mFolder.getRoot(), "book.bin");
+        final List<String> args = new ArrayList<>(Arrays.asList("--rows", "3", "--cols", "3",
+                "--win", "3", "--max-ply", Integer.toString(maxPly),
+                "--min-visits", Integer.toString(minVisits), "--threads",
+                Integer.toString(threads), "--book", bookFile.getPath()));
+        args.add(first.getPath());
+        args.add(second.getPath());
+        final Analyzer analyzer = new Analyzer();
+        analyzer.parseArgs(args.toArray(new String[args.size()]));
+        analyzer.run();
+
+        final RandomAccessFile file = new RandomAccessFile(bookFile, "r");
+        try {
+            return OpeningBook.map(file.getChannel(), 0, file.length());
+        } finally {
+            file.close();
+        }
+    }
+
+    private static void writeRecords(File file, Board... games) throws IOException {
+        final GameRecordWriter writer = new GameRecordWriter(FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        try {
+            for (Board game : games) {
+                writer.write(game);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Board position(int... moves) {
+        final Board board = new Board();
+        for (int move : moves) {
+            board.play(move);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jasontoradler.tictactoe.analytics;
+
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PositionStatsMapTest {
+
+    @Test
+    public void countsSurviveGrowingPastTheInitialCapacity() {
+        final PositionStatsMap map = new PositionStatsMap(4);
+        for (int ii = 1; ii <= 1000; ++ii) {
+            map.add(getKey(ii), ii % 3, ii);
+            map.add(getKey(ii), PositionStatsMap.TIES, 1);
+        }
+        assertEquals(1000, map.size());
+        for (int ii = 1; ii <= 1000; ++ii) {
+            assertEquals(ii + 1, map.getVisits(getKey(ii)));
+            assertEquals(ii % 3 == PositionStatsMap.TIES ? ii + 1 : ii,
+                    map.getCount(getKey(ii), ii % 3));
+        }
+        assertEquals(0, map.getVisits(getKey(1001)));
+    }
+
+    @Test
+    public void keyZeroIsCountedLikeAnyOther() {
+        final PositionStatsMap map = new PositionStatsMap();
+        map.add(0, PositionStatsMap.PLAYER2_WINS, 2);
+        map.add(5, PositionStatsMap.PLAYER1_WINS, 1);
+        map.add(Long.MIN_VALUE + 1, PositionStatsMap.TIES, 1);
+        assertEquals(3, map.size());
+        assertEquals(2, map.getCount(0, PositionStatsMap.PLAYER2_WINS));
+        assertEquals(2, map.getVisits(0));
+        assertArrayEquals(new long[]{Long.MIN_VALUE + 1, 0, 5}, map.getSortedKeys());
+    }
+
+    @Test
+    public void mergeAddsEveryCount() {
+        final PositionStatsMap small = new PositionStatsMap(2);
+        final PositionStatsMap large = new PositionStatsMap();
+        for (int ii = 0; ii < 100; ++ii) {
+            small.add(getKey(ii), PositionStatsMap.PLAYER1_WINS, 1);
+            large.add(getKey(ii + 50), PositionStatsMap.TIES, 2);
+        }
+        small.merge(large);
+        assertEquals(150, small.size());
+        assertEquals(1, small.getVisits(getKey(10)));
+        assertEquals(3, small.getVisits(getKey(60)));
+        assertEquals(2, small.getVisits(getKey(120)));
+        // Key 0, counted apart from the table, is kept.
+        assertEquals(1, small.getCount(0, PositionStatsMap.PLAYER1_WINS));
+        assertEquals(0, small.getCount(0, PositionStatsMap.TIES));
+    }
+
+    @Test
+    public void onlyFinishedGamesHaveAnOutcome() {
+        assertEquals(PositionStatsMap.PLAYER1_WINS,
+                PositionStatsMap.outcomeIndex(GameState.PLAYER1_WINS));
+        assertEquals(PositionStatsMap.PLAYER2_WINS,
+                PositionStatsMap.outcomeIndex(GameState.PLAYER2_WINS));
+        assertEquals(PositionStatsMap.TIES, PositionStatsMap.outcomeIndex(GameState.TIE_GAME));
+        assertEquals(-1, PositionStatsMap.outcomeIndex(GameState.IN_PROGRESS));
+    }
+
+    private static long getKey(int index) {
+        return index * 0x9e3779b97f4a7c15L;
+    }
+}
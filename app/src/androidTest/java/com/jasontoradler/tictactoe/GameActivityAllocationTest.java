@@ -0,0 +1,86 @@
+package com.jasontoradler.tictactoe;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.widget.Button;
+
+/**
+ * Checks that once a game has been played, playing another one through
+ * GameActivity allocates nothing on the main thread: the moves themselves,
+ * the message and hint updates they make, and every frame of the turn,
+ * grid and win animations they start.
+ */
+public class GameActivityAllocationTest extends ActivityInstrumentationTestCase2<GameActivity> {
+
+    // Player 1 takes the first five cells of the top row of a 19x19 board
+    // while player 2 plays along the third row.
+    private static final int[] GAME = {0, 38, 1, 39, 2, 40, 3, 41, 4};
+    // Longer than the turn message animation, so every frame of it runs.
+    private static final long MOVE_INTERVAL_MILLIS = 600;
+    // Longer than the three cycles of the win message animation.
+    private static final long WIN_ANIMATION_MILLIS = 1600;
+
+    private int mAllocCount;
+
+    public GameActivityAllocationTest() {
+        super(GameActivity.class);
+    }
+
+    public void testPlayingAGameDoesNotAllocate() {
+        final GameActivity activity = getActivity();
+        getInstrumentation().invokeMenuActionSync(activity, R.id.action_board_19x19, 0);
+        getInstrumentation().waitForIdleSync();
+
+        // Warm up: play the game once, so that images are decoded, strings
+        // are cached and the animators have run, then start a new game.
+        playGame(activity);
+        restart(activity);
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+            }
+        });
+        playGame(activity);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Debug.stopAllocCounting();
+                mAllocCount = Debug.getThreadAllocCount();
+            }
+        });
+        assertEquals("allocations on the main thread while playing a game", 0, mAllocCount);
+    }
+
+    /**
+     * Play {@link #GAME} as two people would, letting the animations each
+     * move starts run to the end.
+     */
+    private void playGame(final GameActivity activity) {
+        for (final int cell : GAME) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    activity.onCellClicked(cell);
+                }
+            });
+            SystemClock.sleep(MOVE_INTERVAL_MILLIS);
+        }
+        SystemClock.sleep(WIN_ANIMATION_MILLIS);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void restart(final GameActivity activity) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.onGameButtonClick((Button) activity.findViewById(R.id.gameButton));
+            }
+        });
+        SystemClock.sleep(MOVE_INTERVAL_MILLIS);
+        getInstrumentation().waitForIdleSync();
+    }
+}
@@ -0,0 +1,54 @@
+package com.jasontoradler.tictactoe;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+
+/**
+ * Checks that placing marks and drawing the grid allocate nothing once the
+ * grid is set up, so a long game does not trigger garbage collection pauses
+ * in the middle of its animations.
+ */
+public class TicTacToeGridAllocationTest extends InstrumentationTestCase {
+
+    private static final int SIZE = 19;
+    private static final int VIEW_SIZE = 760;
+
+    private int mAllocCount;
+
+    public void testPlacingAndDrawingMarksDoesNotAllocate() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final TicTacToeGrid grid =
+                        new TicTacToeGrid(getInstrumentation().getTargetContext());
+                grid.setBoardSize(SIZE, SIZE);
+                final int spec = View.MeasureSpec.makeMeasureSpec(VIEW_SIZE,
+                        View.MeasureSpec.EXACTLY);
+                grid.measure(spec, spec);
+                grid.layout(0, 0, VIEW_SIZE, VIEW_SIZE);
+                final Canvas canvas = new Canvas(
+                        Bitmap.createBitmap(VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888));
+
+                // Warm up: decode both images and run one full draw.
+                grid.setCellImage(0, GameReplayer.getCellImage(0));
+                grid.setCellImage(1, GameReplayer.getCellImage(1));
+                grid.draw(canvas);
+                grid.reset();
+                grid.draw(canvas);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                for (int cell = 0; cell < SIZE * SIZE; ++cell) {
+                    grid.setCellImage(cell, GameReplayer.getCellImage(cell & 1));
+                    grid.draw(canvas);
+                }
+                Debug.stopAllocCounting();
+                mAllocCount = Debug.getThreadAllocCount();
+            }
+        });
+        assertEquals("allocations while playing a full game", 0, mAllocCount);
+    }
+}
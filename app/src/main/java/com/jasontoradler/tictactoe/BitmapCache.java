@@ -0,0 +1,65 @@
+package com.jasontoradler.tictactoe;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+/**
+ * Decoded cell images, shared by every cell and every grid for the life of
+ * the process, so a mark is decoded once rather than per cell or per
+ * activity. Images can be decoded ahead of time on a background thread with
+ * {@link #preload}; a grid which needs one first simply decodes it itself.
+ */
+public final class BitmapCache {
+
+    // Guarded by the class.
+    private static final SparseArray<Bitmap> sBitmaps = new SparseArray<>();
+    private static final SparseIntArray sWidths = new SparseIntArray();
+
+    private BitmapCache() {
+    }
+
+    /**
+     * @return the shared bitmap for an image resource, decoding it on first use
+     */
+    public static synchronized Bitmap get(Resources resources, int resourceId) {
+        Bitmap bitmap = sBitmaps.get(resourceId);
+        if (bitmap == null) {
+            bitmap = BitmapFactory.decodeResource(resources, resourceId);
+            sBitmaps.put(resourceId, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the width an image resource will have once decoded, reading only
+     * its header if it has not been decoded yet
+     */
+    public static synchronized int getWidth(Resources resources, int resourceId) {
+        final Bitmap bitmap = sBitmaps.get(resourceId);
+        if (bitmap != null) {
+            return bitmap.getWidth();
+        }
+        int width = sWidths.get(resourceId, -1);
+        if (width < 0) {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, resourceId, options);
+            width = options.outWidth;
+            sWidths.put(resourceId, width);
+        }
+        return width;
+    }
+
+    /**
+     * Decode each image which is not cached yet. Safe to call from any
+     * thread.
+     */
+    public static void preload(Resources resources, int... resourceIds) {
+        for (int resourceId : resourceIds) {
+            get(resources, resourceId);
+        }
+    }
+}
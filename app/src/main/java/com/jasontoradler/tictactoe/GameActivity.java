@@ -1,33 +1,149 @@
 package com.jasontoradler.tictactoe;
 
+import android.animation.ObjectAnimator;
 import android.animation.ValueAnimator;
 import android.app.Activity;
+import android.content.Intent;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
 import android.os.Bundle;
+import android.os.Process;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.Button;
 import android.widget.TextView;
 
-public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickListener {
+import com.jasontoradler.tictactoe.engine.AlphaBetaSearch;
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.BookStrategy;
+import com.jasontoradler.tictactoe.engine.CachingStrategy;
+import com.jasontoradler.tictactoe.engine.EvaluationCache;
+import com.jasontoradler.tictactoe.engine.GameRecord;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.MctsSearch;
+import com.jasontoradler.tictactoe.engine.NeuralNetwork;
+import com.jasontoradler.tictactoe.engine.OpeningBook;
+import com.jasontoradler.tictactoe.engine.Protocol;
+import com.jasontoradler.tictactoe.engine.RemoteStrategy;
+import com.jasontoradler.tictactoe.engine.Solver;
+import com.jasontoradler.tictactoe.engine.Strategy;
+import com.jasontoradler.tictactoe.engine.Tablebase;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickListener,
+        MoveExecutor.OnMoveSelectedListener, GameReplayer.OnReplayFinishedListener {
 
     private static final String TAG = "GameActivity";
     private static final float WIN_MESSAGE_ROTATION = 5f;
+    // Rotation of the win message at evenly spaced points of its animation.
+    private static final float[] WIN_MESSAGE_KEYFRAMES = {
+            0f, -WIN_MESSAGE_ROTATION, 0f, WIN_MESSAGE_ROTATION, 0f};
+    private static final String TABLEBASE_ASSET = "tablebase_3x3.bin";
+    // Rows, columns, and win length.
+    private static final String OPENING_BOOK_ASSET = "opening_book_%dx%d_%d.bin";
+    // Games a move must have been seen in before it is suggested or played
+    // from the opening book.
+    private static final int MIN_BOOK_VISITS = 50;
+    // Rows, columns, and win length.
+    private static final String NETWORK_ASSET = "network_%dx%d_%d.bin";
+    // Leaves each tree search thread evaluates at once with the network.
+    private static final int NETWORK_BATCH_SIZE = 8;
+    private static final String STATE_GAME = "game";
+    private static final String STATE_COMPUTER_OPPONENT = "computerOpponent";
+    private static final String STATE_SERVER_OPPONENT = "serverOpponent";
+    private static final long REPLAY_MOVE_INTERVAL = 400;
+    // Largest board the solver can search quickly enough to play on; larger
+    // boards are played by Monte Carlo tree search.
+    private static final int MAX_SOLVER_CELLS = 9;
+    // Largest board played by Monte Carlo tree search. Random playouts say
+    // little about five in a row on big boards, so those are played by
+    // alpha-beta search with threat evaluation instead, unless a network
+    // ships for the board to evaluate leaves in place of playouts.
+    private static final int MAX_MCTS_CELLS = 100;
     private TicTacToeGrid mGrid;
-    private CellState mCellState[] = new CellState[9];
+    private Board mBoard = new Board();
     private TextView mMessage;
     private Button mButton;
     private GameState mGameState = GameState.IN_PROGRESS;
-    private int mTurn; // 0 means player 1 or 'O's, 1 means player 2 or 'X's
+    private boolean mIsComputerOpponentEnabled;
+    private boolean mIsServerOpponentEnabled;
+    // Computer player for player 2, or null when two people share the device.
+    private Strategy mOpponent;
+    // Perfect player looked up from the precomputed tablebase, or null if the
+    // asset could not be mapped.
+    private Tablebase mTablebase;
+    // Opening statistics for the current board size, or null if none ship
+    // with the app. Used for hints and the computer's first moves.
+    private OpeningBook mOpeningBook;
+    // Evaluation network for the current board size, or null if none ships
+    // with the app or it is still being loaded. When there is one, every
+    // board too large to solve is played by tree search guided by it.
+    private NeuralNetwork mNetwork;
+    // Incremented by every network load and by onDestroy; a loaded network
+    // is only installed if no newer load has started since.
+    private int mNetworkRequest;
+    // Perfect player which searches; its transposition table is kept for the
+    // life of the activity.
+    private Solver mSolver;
+    // Searches for a fixed time per move on boards too large to solve. It
+    // keeps its tree between moves and owns helper threads, so it must be
+    // shut down when replaced.
+    private MctsSearch mMctsSearch;
+    // Searches for a fixed time per move on the largest boards, on every
+    // core. Like the tree search it owns helper threads.
+    private AlphaBetaSearch mAlphaBetaSearch;
+    // Moves the searches have chosen, kept between runs so that openings
+    // which come up again are not searched again. Shared by every activity;
+    // see SavedEvaluations.
+    private EvaluationCache mEvaluationCache;
+    // Has the match server play player 2, falling back to the local computer
+    // player when the server is unreachable. Holds a socket, so it must be
+    // closed when replaced.
+    private RemoteStrategy mRemoteStrategy;
+    // Runs the computer player off the main thread.
+    private MoveExecutor mMoveExecutor;
+    private GameReplayer mReplayer;
+    private MetricsOverlayView mMetricsOverlay;
+    private final int[] mWinningLine = new int[2];
+    // Message animations are built once and restarted for every move, so a
+    // fast game does not churn through animator and listener objects.
+    private final Interpolator mTurnMessageInterpolator = new OvershootInterpolator(1.5f);
+    private ObjectAnimator mTurnMessageAnimator;
+    private ValueAnimator mWinMessageAnimator;
+    private final ValueAnimator.AnimatorUpdateListener mWinMessageUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    updateWinMessage(animation.getAnimatedFraction());
+                }
+            };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long createTime = System.nanoTime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         mGrid = (TicTacToeGrid) findViewById(R.id.grid);
         mGrid.setOnCellClickListener(this);
+        mGrid.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mGrid.getViewTreeObserver().removeOnPreDrawListener(this);
+                Metrics.STARTUP.recordSince(createTime);
+                return true;
+            }
+        });
 
         mMessage = (TextView) findViewById(R.id.message);
         mMessage.setText(R.string.player1Turn);
@@ -36,8 +152,194 @@ public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickL
         mButton = (Button) findViewById(R.id.gameButton);
         mButton.setVisibility(View.INVISIBLE);
 
-        for (int ii = 0; ii < 9; ++ii) {
-            mCellState[ii] = CellState.EMPTY;
+        mMetricsOverlay = (MetricsOverlayView) findViewById(R.id.metricsOverlay);
+
+        mTurnMessageAnimator = ObjectAnimator.ofFloat(mMessage, View.SCALE_X, 0.5f, 1f);
+        mTurnMessageAnimator.setDuration(500);
+        mTurnMessageAnimator.setInterpolator(mTurnMessageInterpolator);
+        mWinMessageAnimator = ValueAnimator.ofFloat(0f, 1f);
+        mWinMessageAnimator.setDuration(500);
+        mWinMessageAnimator.setInterpolator(null);
+        mWinMessageAnimator.addUpdateListener(mWinMessageUpdateListener);
+        mWinMessageAnimator.setRepeatMode(ValueAnimator.RESTART);
+        mWinMessageAnimator.setRepeatCount(2);
+
+        mMoveExecutor = new MoveExecutor();
+        mEvaluationCache = SavedEvaluations.get(this);
+        mReplayer = new GameReplayer(mGrid);
+
+        // Mapping the table only sets up page mappings, so the computer player
+        // is ready before the first frame without any warm-up search.
+        mTablebase = loadTablebase();
+
+        if (savedInstanceState != null) {
+            restoreGame(savedInstanceState);
+        } else {
+            mOpeningBook = loadOpeningBook();
+            loadNetwork();
+            updateHint();
+        }
+        warmUp();
+    }
+
+    /**
+     * Decode the cell images and page in the computer player's tables on a
+     * thread of their own, so the first frame only has to draw the grid and
+     * neither the first mark nor the first reply waits on storage. It runs at
+     * the lowest priority and off the move executor, so a reply asked for
+     * straight away is never queued behind it.
+     */
+    private void warmUp() {
+        final Resources resources = getResources();
+        final Tablebase tablebase = mTablebase;
+        final OpeningBook openingBook = mOpeningBook;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                final long start = System.nanoTime();
+                BitmapCache.preload(resources, GameReplayer.getCellImage(Board.PLAYER1),
+                        GameReplayer.getCellImage(Board.PLAYER2));
+                if (tablebase != null) {
+                    tablebase.preload();
+                }
+                if (openingBook != null) {
+                    openingBook.preload();
+                }
+                Log.d(TAG, "Warmed up in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }, "WarmUp").start();
+    }
+
+    /**
+     * @return the opening book for the current board size, or null
+     */
+    private OpeningBook loadOpeningBook() {
+        final String asset = String.format(Locale.US, OPENING_BOOK_ASSET,
+                mBoard.getNumRows(), mBoard.getNumCols(), mBoard.getWinLength());
+        try {
+            final AssetFileDescriptor fd = getAssets().openFd(asset);
+            try {
+                return OpeningBook.map(fd.createInputStream().getChannel(),
+                        fd.getStartOffset(), fd.getLength());
+            } finally {
+                fd.close();
+            }
+        } catch (IOException e) {
+            // Most board sizes have no book.
+            Log.d(TAG, "No opening book " + asset);
+            return null;
+        }
+    }
+
+    /**
+     * Load the evaluation network for the current board size on the
+     * background thread, since mapping it copies out every weight, and
+     * install it once it arrives. Until then the computer plays without one.
+     */
+    private void loadNetwork() {
+        mNetwork = null;
+        final int request = ++mNetworkRequest;
+        final AssetManager assets = getAssets();
+        final String asset = String.format(Locale.US, NETWORK_ASSET,
+                mBoard.getNumRows(), mBoard.getNumCols(), mBoard.getWinLength());
+        mMoveExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final NeuralNetwork network = mapNetwork(assets, asset);
+                if (network == null) {
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == mNetworkRequest) {
+                            installNetwork(network);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the network in asset, or null
+     */
+    private static NeuralNetwork mapNetwork(AssetManager assets, String asset) {
+        try {
+            final AssetFileDescriptor fd = assets.openFd(asset);
+            try {
+                return NeuralNetwork.map(fd.createInputStream().getChannel(),
+                        fd.getStartOffset(), fd.getLength());
+            } finally {
+                fd.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.d(TAG, "No network " + asset);
+            return null;
+        }
+    }
+
+    private void installNetwork(NeuralNetwork network) {
+        mNetwork = network;
+        // A search built while the network was loading plays without it, so
+        // rebuild the computer player around the network.
+        if (mMctsSearch != null || mAlphaBetaSearch != null) {
+            shutdownSearches();
+            updateOpponent();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // The whole game fits in a few bytes as a game record.
+        outState.putByteArray(STATE_GAME, GameRecord.toBytes(mBoard));
+        outState.putBoolean(STATE_COMPUTER_OPPONENT, mIsComputerOpponentEnabled);
+        outState.putBoolean(STATE_SERVER_OPPONENT, mIsServerOpponentEnabled);
+    }
+
+    /**
+     * Bring back the game saved by onSaveInstanceState, for example after
+     * the device is rotated.
+     */
+    private void restoreGame(Bundle savedInstanceState) {
+        mIsComputerOpponentEnabled = savedInstanceState.getBoolean(STATE_COMPUTER_OPPONENT);
+        mIsServerOpponentEnabled = savedInstanceState.getBoolean(STATE_SERVER_OPPONENT);
+        final byte[] record = savedInstanceState.getByteArray(STATE_GAME);
+        if (record != null) {
+            try {
+                mBoard = GameRecord.fromBytes(record);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unable to restore game", e);
+            }
+        }
+        mGrid.setBoardSize(mBoard.getNumRows(), mBoard.getNumCols());
+        mOpeningBook = loadOpeningBook();
+        loadNetwork();
+        mReplayer.showPosition(mBoard);
+        if (mBoard.getMoveCount() > 0) {
+            mButton.setVisibility(View.VISIBLE);
+        }
+        updateGameState();
+        displayResult();
+        // Picks the computer player back up, which resumes its turn if the
+        // game was saved while it was thinking.
+        updateOpponent();
+    }
+
+    private Tablebase loadTablebase() {
+        try {
+            final AssetFileDescriptor fd = getAssets().openFd(TABLEBASE_ASSET);
+            try {
+                return Tablebase.map(fd.createInputStream().getChannel(),
+                        fd.getStartOffset(), fd.getLength());
+            } finally {
+                fd.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to map " + TABLEBASE_ASSET, e);
+            return null;
         }
     }
 
@@ -45,6 +347,12 @@ public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickL
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        // The menu is built again after a restart; match the restored game.
+        menu.findItem(R.id.action_computer_opponent).setChecked(mIsComputerOpponentEnabled);
+        menu.findItem(R.id.action_server_opponent).setChecked(mIsServerOpponentEnabled);
+        menu.findItem(getBoardSizeItemId()).setChecked(true);
+        menu.findItem(R.id.action_show_metrics).setChecked(
+                mMetricsOverlay.getVisibility() == View.VISIBLE);
         return true;
     }
 
@@ -56,45 +364,262 @@ public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickL
         int id = item.getItemId();
 
         //noinspection SimplifiableIfStatement
-        if (id == R.id.action_settings) {
+        if (id == R.id.action_computer_opponent) {
+            item.setChecked(!item.isChecked());
+            mIsComputerOpponentEnabled = item.isChecked();
+            updateOpponent();
+            return true;
+        } else if (id == R.id.action_server_opponent) {
+            item.setChecked(!item.isChecked());
+            mIsServerOpponentEnabled = item.isChecked();
+            updateOpponent();
+            return true;
+        } else if (id == R.id.action_board_3x3) {
+            item.setChecked(true);
+            setBoardSize(3, 3, 3);
+            return true;
+        } else if (id == R.id.action_board_9x9) {
+            item.setChecked(true);
+            setBoardSize(9, 9, 4);
+            return true;
+        } else if (id == R.id.action_board_15x15) {
+            item.setChecked(true);
+            setBoardSize(15, 15, 5);
+            return true;
+        } else if (id == R.id.action_board_19x19) {
+            item.setChecked(true);
+            setBoardSize(19, 19, 5);
+            return true;
+        } else if (id == R.id.action_show_metrics) {
+            item.setChecked(!item.isChecked());
+            mMetricsOverlay.setVisibility(item.isChecked() ? View.VISIBLE : View.GONE);
+            return true;
+        } else if (id == R.id.action_replay) {
+            replayGame();
+            return true;
+        } else if (id == R.id.action_spectate) {
+            startActivity(new Intent(this, SpectatorActivity.class));
+            return true;
+        } else if (id == R.id.action_settings) {
             return true;
         }
 
         return super.onOptionsItemSelected(item);
     }
 
+    private int getBoardSizeItemId() {
+        switch (mBoard.getNumRows()) {
+            case 9:
+                return R.id.action_board_9x9;
+            case 15:
+                return R.id.action_board_15x15;
+            case 19:
+                return R.id.action_board_19x19;
+            default:
+                return R.id.action_board_3x3;
+        }
+    }
+
+    /**
+     * Show the current game again from the first move. Input is ignored and
+     * the computer waits until the replay is over.
+     */
+    private void replayGame() {
+        if (mBoard.getMoveCount() == 0 || mReplayer.isReplaying()) {
+            return;
+        }
+        mMoveExecutor.cancel();
+        mGrid.setEnabled(false);
+        mReplayer.start(mBoard, REPLAY_MOVE_INTERVAL, this);
+    }
+
+    @Override
+    public void onReplayFinished() {
+        if (mGameState == GameState.IN_PROGRESS) {
+            mGrid.setEnabled(true);
+            updateHint();
+            playOpponentMove();
+        } else if (mBoard.getWinningLine(mWinningLine)) {
+            mGrid.displayWinner(mWinningLine[0], mWinningLine[1]);
+        }
+    }
+
     @Override
     public void onCellClicked(int position) {
-//        Log.v(TAG, "onCellClicked: " + position);
+        Metrics.DISPATCH.recordSince(mGrid.getClickTime());
+
+        // Wait for the computer to finish its turn.
+        if (mMoveExecutor.isBusy()) {
+            return;
+        }
 
         mButton.setVisibility(View.VISIBLE);
 
-        if (mCellState[position] == CellState.EMPTY) {
-            if (mTurn == 1) {
-                mGrid.setCellImage(position, R.drawable.ex);
-                mCellState[position] = CellState.PLAYER2;
+        if (mBoard.isEmpty(position)) {
+            playMove(position);
+            playOpponentMove();
+        }
+    }
+
+    private void playMove(int position) {
+        mGrid.setCellImage(position, GameReplayer.getCellImage(mBoard.getTurn()));
+        mBoard.play(position);
+
+        updateGameState();
+
+        displayResult();
+
+        updateHint();
+    }
+
+    /**
+     * Suggest the opening book's best move while it is a person's turn.
+     */
+    private void updateHint() {
+        int hint = -1;
+        if (mOpeningBook != null && mGameState == GameState.IN_PROGRESS
+                && (mOpponent == null || mBoard.getTurn() != Board.PLAYER2)) {
+            hint = mOpeningBook.getBookMove(mBoard, MIN_BOOK_VISITS);
+        }
+        mGrid.setHintCell(hint);
+    }
+
+    /**
+     * Let the computer start choosing its move, if there is a computer player
+     * and it is now player 2's turn. The move is played when it arrives in
+     * {@link #onMoveSelected}; until then, clicks on the grid are ignored.
+     */
+    private void playOpponentMove() {
+        if (mOpponent != null && !mReplayer.isReplaying() && mGameState == GameState.IN_PROGRESS
+                && mBoard.getTurn() == Board.PLAYER2) {
+            mMoveExecutor.requestMove(mOpponent, mBoard, this);
+        }
+    }
+
+    @Override
+    public void onMoveSelected(int position) {
+        if (!mReplayer.isReplaying() && mGameState == GameState.IN_PROGRESS && mBoard.isEmpty(position)) {
+            mButton.setVisibility(View.VISIBLE);
+            playMove(position);
+        }
+    }
+
+    private void updateOpponent() {
+        // A pending move may come from a player which is being replaced.
+        mMoveExecutor.cancel();
+        mOpponent = null;
+        closeRemoteStrategy();
+        if (mIsComputerOpponentEnabled || mIsServerOpponentEnabled) {
+            if (mTablebase != null && mTablebase.covers(mBoard)) {
+                mOpponent = mTablebase;
+            } else if (mBoard.getNumCells() <= MAX_SOLVER_CELLS) {
+                if (mSolver == null) {
+                    mSolver = new Solver(mBoard.getNumRows(), mBoard.getNumCols(),
+                            mBoard.getWinLength());
+                }
+                mOpponent = mSolver;
+            } else if (mNetwork != null || mBoard.getNumCells() <= MAX_MCTS_CELLS) {
+                if (mMctsSearch == null) {
+                    mMctsSearch = new MctsSearch(mBoard.getNumRows(), mBoard.getNumCols(),
+                            mBoard.getWinLength(), Runtime.getRuntime().availableProcessors(),
+                            MctsSearch.DEFAULT_TIME_BUDGET_MILLIS, MctsSearch.DEFAULT_MAX_NODES,
+                            mNetwork, NETWORK_BATCH_SIZE);
+                }
+                mOpponent = new CachingStrategy(mEvaluationCache, mMctsSearch);
             } else {
-                mGrid.setCellImage(position, R.drawable.circle);
-                mCellState[position] = CellState.PLAYER1;
+                if (mAlphaBetaSearch == null) {
+                    mAlphaBetaSearch = new AlphaBetaSearch(mBoard.getNumRows(),
+                            mBoard.getNumCols(), mBoard.getWinLength(),
+                            AlphaBetaSearch.DEFAULT_TIME_BUDGET_MILLIS,
+                            Runtime.getRuntime().availableProcessors(),
+                            AlphaBetaSearch.DEFAULT_TABLE_BITS);
+                }
+                mOpponent = new CachingStrategy(mEvaluationCache, mAlphaBetaSearch);
             }
-            mTurn = (++mTurn) % 2;
+            if (mOpeningBook != null && mOpponent != mTablebase) {
+                mOpponent = new BookStrategy(mOpeningBook, mOpponent, MIN_BOOK_VISITS);
+            }
+            if (mIsServerOpponentEnabled) {
+                mRemoteStrategy = new RemoteStrategy(getString(R.string.server_host),
+                        Protocol.DEFAULT_PORT, mOpponent);
+                mOpponent = mRemoteStrategy;
+            }
+        }
+        updateHint();
+        playOpponentMove();
+    }
 
-            updateGameState();
+    /**
+     * Switch to a new board and start a new game on it.
+     *
+     * @param winLength number of marks in a row needed to win
+     */
+    private void setBoardSize(int numRows, int numCols, int winLength) {
+        mBoard = new Board(numRows, numCols, winLength);
+        // The searches' tables and trees only apply to the board they were
+        // built for.
+        mSolver = null;
+        shutdownSearches();
+        mGrid.setBoardSize(numRows, numCols);
+        mOpeningBook = loadOpeningBook();
+        loadNetwork();
+        onGameButtonClick(mButton);
+        updateOpponent();
+    }
+
+    private void closeRemoteStrategy() {
+        if (mRemoteStrategy != null) {
+            mRemoteStrategy.close();
+            mRemoteStrategy = null;
+        }
+    }
 
-            displayResult();
+    private void shutdownSearches() {
+        if (mMctsSearch != null) {
+            mMctsSearch.shutdown();
+            mMctsSearch = null;
         }
+        if (mAlphaBetaSearch != null) {
+            mAlphaBetaSearch.shutdown();
+            mAlphaBetaSearch = null;
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The process may be killed any time from now on.
+        SavedEvaluations.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mReplayer.stop();
+        // A network still loading must not start new searches.
+        ++mNetworkRequest;
+        mMoveExecutor.shutdown();
+        closeRemoteStrategy();
+        shutdownSearches();
+        super.onDestroy();
+    }
+
+    /**
+     * Print the latency histograms, for
+     * {@code adb shell dumpsys activity com.jasontoradler.tictactoe}.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        Metrics.dump(prefix, writer);
     }
 
     private void displayResult() {
         switch (mGameState) {
             case IN_PROGRESS:
-                mMessage.setText(mTurn == 0 ? R.string.player1Turn : R.string.player2Turn);
-                mMessage.setScaleX(0.5f);
-                mMessage.animate()
-                        .setDuration(500)
-                        .setInterpolator(new OvershootInterpolator(1.5f))
-                        .scaleX(1f)
-                        .start();
+                mMessage.setText(mBoard.getTurn() == Board.PLAYER1
+                        ? R.string.player1Turn : R.string.player2Turn);
+                mTurnMessageAnimator.cancel();
+                mTurnMessageAnimator.start();
                 break;
             case PLAYER1_WINS:
                 mMessage.setText(R.string.player1Wins);
@@ -111,110 +636,65 @@ public class GameActivity extends Activity implements TicTacToeGrid.OnCellClickL
     }
 
     private void animateWinMessage() {
-        ValueAnimator animator = ValueAnimator.ofFloat(
-                0f, -WIN_MESSAGE_ROTATION, 0f, WIN_MESSAGE_ROTATION, 0f);
-        animator.setDuration(500);
-        animator.setInterpolator(null);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                final float value = (float) animation.getAnimatedValue();
-
-                // Scale the text both horizontally and vertically from 1 to 1.15.
-                final float scale = (WIN_MESSAGE_ROTATION + 0.15f * Math.abs(value)) /
-                        WIN_MESSAGE_ROTATION;
-                mMessage.setScaleX(scale);
-                mMessage.setScaleY(scale);
-
-                // Rotate the message by the pivot point, which should be in the center.
-                mMessage.setRotation(value);
-
-                // Cycle through the existing color to pure red and back.
-                final int red = (int) (255 * (1f - (Math.abs(value) / WIN_MESSAGE_ROTATION)));
-                final int color = (0xff << 24) + (red << 16);
-//                Log.d(TAG, "color: " + Integer.toHexString(color));
-                mMessage.setTextColor(color);
-            }
-        });
-        animator.setRepeatMode(ValueAnimator.RESTART);
-        animator.setRepeatCount(2);
-        animator.start();
+        mWinMessageAnimator.cancel();
+        mWinMessageAnimator.start();
+    }
+
+    /**
+     * Set the win message's rotation, scale, and color for a point in its
+     * animation.
+     *
+     * @param fraction how far through one cycle of the animation, 0 to 1
+     */
+    private void updateWinMessage(float fraction) {
+        // Interpolate linearly between the keyframes, as the animator would,
+        // but in primitive floats instead of boxed animated values.
+        final int segments = WIN_MESSAGE_KEYFRAMES.length - 1;
+        final float position = fraction * segments;
+        final int segment = Math.min(segments - 1, (int) position);
+        final float from = WIN_MESSAGE_KEYFRAMES[segment];
+        final float value = from + (WIN_MESSAGE_KEYFRAMES[segment + 1] - from)
+                * (position - segment);
+
+        // Scale the text both horizontally and vertically from 1 to 1.15.
+        final float scale = (WIN_MESSAGE_ROTATION + 0.15f * Math.abs(value)) /
+                WIN_MESSAGE_ROTATION;
+        mMessage.setScaleX(scale);
+        mMessage.setScaleY(scale);
+
+        // Rotate the message by the pivot point, which should be in the center.
+        mMessage.setRotation(value);
+
+        // Cycle through the existing color to pure red and back.
+        final int red = (int) (255 * (1f - (Math.abs(value) / WIN_MESSAGE_ROTATION)));
+        final int color = (0xff << 24) + (red << 16);
+        mMessage.setTextColor(color);
     }
 
     private void updateGameState() {
-        CellState matchingCell = CellState.EMPTY;
-        // check rows, then columns, and finally diagonals
-        if (mCellState[0] == mCellState[1] && mCellState[1] == mCellState[2]) {
-            matchingCell = mCellState[0];
-            mGrid.displayWinner(0, 2);
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[3] == mCellState[4] && mCellState[4] == mCellState[5]) {
-            matchingCell = mCellState[3];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[6] == mCellState[7] && mCellState[7] == mCellState[8]) {
-            matchingCell = mCellState[6];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[0] == mCellState[3] && mCellState[3] == mCellState[6]) {
-            matchingCell = mCellState[0];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[1] == mCellState[4] && mCellState[4] == mCellState[7]) {
-            matchingCell = mCellState[1];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[2] == mCellState[5] && mCellState[5] == mCellState[8]) {
-            matchingCell = mCellState[2];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[0] == mCellState[4] && mCellState[4] == mCellState[8]) {
-            matchingCell = mCellState[0];
-        }
-        if (matchingCell == CellState.EMPTY && mCellState[2] == mCellState[4] && mCellState[4] == mCellState[6]) {
-            matchingCell = mCellState[2];
-        }
-        if (matchingCell != CellState.EMPTY) {
-            mGameState = matchingCell == CellState.PLAYER1
-                    ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS;
-        } else {
-            boolean isGridFull = true;
-            for (int ii = 0; ii < 9; ++ii) {
-                if (mCellState[ii] == CellState.EMPTY) {
-                    isGridFull = false;
-                    break;
-                }
-            }
-            if (isGridFull) {
-                mGameState = GameState.TIE_GAME;
-            }
-        }
+        mGameState = mBoard.getGameState();
         if (mGameState != GameState.IN_PROGRESS) {
             mGrid.setEnabled(false);
             mButton.setText(R.string.playAgain);
+            if (mBoard.getWinningLine(mWinningLine)) {
+                mGrid.displayWinner(mWinningLine[0], mWinningLine[1]);
+            }
         }
     }
 
     public void onGameButtonClick(View view) {
         // Restart game by resetting game state, grid, turn, message, and button.
+        // A move the computer is still choosing belongs to the old game.
+        mMoveExecutor.cancel();
+        mReplayer.stop();
         mGameState = GameState.IN_PROGRESS;
         mGrid.reset();
         mGrid.setEnabled(true);
-        for (int ii = 0; ii < mCellState.length; ++ii) {
-            mCellState[ii] = CellState.EMPTY;
-        }
-        mTurn = 0;
+        mBoard.reset();
         mMessage.setText(R.string.player1Turn);
         mMessage.setTextColor(getResources().getColor(android.R.color.primary_text_light));
         mButton.setText(R.string.restart);
         mButton.setVisibility(View.INVISIBLE);
-    }
-
-    private enum CellState {
-        EMPTY,
-        PLAYER1,
-        PLAYER2
-    }
-
-    private enum GameState {
-        IN_PROGRESS,
-        PLAYER1_WINS,
-        PLAYER2_WINS,
-        TIE_GAME,
+        updateHint();
     }
 }
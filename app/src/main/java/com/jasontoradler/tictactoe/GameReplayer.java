@@ -0,0 +1,97 @@
+package com.jasontoradler.tictactoe;
+
+import com.jasontoradler.tictactoe.engine.Board;
+
+/**
+ * Shows a recorded game on a {@link TicTacToeGrid}, either all at once or one
+ * move at a time. Moves are posted to the grid's message queue, so the
+ * replay runs on the main thread and stops by itself if the grid is
+ * detached.
+ */
+public class GameReplayer implements Runnable {
+
+    public interface OnReplayFinishedListener {
+        void onReplayFinished();
+    }
+
+    private final TicTacToeGrid mGrid;
+    private Board mBoard;
+    private long mMoveInterval;
+    private OnReplayFinishedListener mListener;
+    // Index of the next move to show.
+    private int mNextMove;
+
+    public GameReplayer(TicTacToeGrid grid) {
+        mGrid = grid;
+    }
+
+    /**
+     * @return the image the grid shows for player's marks
+     */
+    public static int getCellImage(int player) {
+        // Player 1 plays 'O's and player 2 plays 'X's.
+        return player == Board.PLAYER2 ? R.drawable.ex : R.drawable.circle;
+    }
+
+    /**
+     * Clear the grid and show every move played on board at once.
+     */
+    public void showPosition(Board board) {
+        stop();
+        mGrid.reset();
+        for (int ii = 0; ii < board.getMoveCount(); ++ii) {
+            mGrid.setCellImage(board.getMove(ii), getCellImage(ii & 1));
+        }
+    }
+
+    /**
+     * Clear the grid and then show board's moves in order, one every
+     * moveIntervalMillis. The board must not change until the replay is
+     * finished or stopped.
+     *
+     * @param listener called after the last move is shown; may be null
+     */
+    public void start(Board board, long moveIntervalMillis, OnReplayFinishedListener listener) {
+        stop();
+        mGrid.reset();
+        mBoard = board;
+        mMoveInterval = moveIntervalMillis;
+        mListener = listener;
+        mNextMove = 0;
+        mGrid.postDelayed(this, mMoveInterval);
+    }
+
+    /**
+     * @return true while a replay started by {@link #start} is running
+     */
+    public boolean isReplaying() {
+        return mBoard != null;
+    }
+
+    /**
+     * End a running replay where it is, without calling its listener.
+     */
+    public void stop() {
+        mGrid.removeCallbacks(this);
+        mBoard = null;
+        mListener = null;
+    }
+
+    @Override
+    public void run() {
+        if (mNextMove < mBoard.getMoveCount()) {
+            mGrid.setCellImage(mBoard.getMove(mNextMove), getCellImage(mNextMove & 1));
+            ++mNextMove;
+        }
+        if (mNextMove < mBoard.getMoveCount()) {
+            mGrid.postDelayed(this, mMoveInterval);
+        } else {
+            final OnReplayFinishedListener listener = mListener;
+            mBoard = null;
+            mListener = null;
+            if (listener != null) {
+                listener.onReplayFinished();
+            }
+        }
+    }
+}
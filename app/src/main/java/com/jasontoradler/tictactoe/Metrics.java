@@ -0,0 +1,66 @@
+package com.jasontoradler.tictactoe;
+
+import com.jasontoradler.tictactoe.engine.LatencyHistogram;
+
+import java.io.PrintWriter;
+
+/**
+ * Latency histograms for the app's hot paths. Recording never allocates or
+ * locks, so it stays on in release builds; the numbers are shown by
+ * {@link MetricsOverlayView} and printed by
+ * {@code adb shell dumpsys activity com.jasontoradler.tictactoe}.
+ */
+public final class Metrics {
+
+    /**
+     * From a touch being lifted over a cell to the cell click listener.
+     */
+    public static final LatencyHistogram DISPATCH = new LatencyHistogram("input dispatch");
+
+    /**
+     * From a cell image being set to the first frame which draws it.
+     */
+    public static final LatencyHistogram RENDER = new LatencyHistogram("cell render");
+
+    /**
+     * Time spent in TicTacToeGrid.onDraw.
+     */
+    public static final LatencyHistogram DRAW = new LatencyHistogram("grid draw");
+
+    /**
+     * Time the computer player takes to choose a move.
+     */
+    public static final LatencyHistogram THINK = new LatencyHistogram("computer think");
+
+    /**
+     * From GameActivity.onCreate to the first frame which draws the grid,
+     * once per activity.
+     */
+    public static final LatencyHistogram STARTUP = new LatencyHistogram("startup");
+
+    private static final LatencyHistogram[] ALL = {DISPATCH, RENDER, DRAW, THINK, STARTUP};
+
+    private Metrics() {
+    }
+
+    /**
+     * @return every histogram, in display order; do not modify
+     */
+    public static LatencyHistogram[] getAll() {
+        return ALL;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : ALL) {
+            histogram.reset();
+        }
+    }
+
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Metrics:");
+        for (LatencyHistogram histogram : ALL) {
+            histogram.dump(prefix + "  ", writer);
+        }
+    }
+}
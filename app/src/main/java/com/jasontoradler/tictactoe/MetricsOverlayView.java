@@ -0,0 +1,119 @@
+package com.jasontoradler.tictactoe;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import com.jasontoradler.tictactoe.engine.LatencyHistogram;
+
+/**
+ * Debug overlay listing the count, median, 99th percentile, and maximum of
+ * every {@link Metrics} histogram, refreshed twice a second while visible.
+ * The text is rebuilt in one reused buffer, so the overlay does not add
+ * garbage of its own to the frames it is measuring.
+ */
+public class MetricsOverlayView extends View implements Runnable {
+
+    private static final long REFRESH_INTERVAL = 500;
+    private static final int BACKGROUND_COLOR = 0xa0000000;
+    private static final int TEXT_COLOR = 0xffffffff;
+    private static final float TEXT_SIZE_SP = 12f;
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final StringBuilder mLine = new StringBuilder(64);
+    private float mLineHeight;
+    private float mPadding;
+
+    public MetricsOverlayView(Context context) {
+        super(context);
+        init();
+    }
+
+    public MetricsOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public MetricsOverlayView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        mTextPaint.setColor(TEXT_COLOR);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+        mTextPaint.setTypeface(Typeface.MONOSPACE);
+        final Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        mLineHeight = metrics.descent - metrics.ascent;
+        mPadding = mLineHeight / 2f;
+        setBackgroundColor(BACKGROUND_COLOR);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Wide enough for the longest line, tall enough for every histogram.
+        final float width = mTextPaint.measureText(
+                "computer think  n 0000000  p50 0000.0  p99 0000.0  max 0000.0 ms");
+        final float height = Metrics.getAll().length * mLineHeight;
+        setMeasuredDimension(
+                resolveSize((int) Math.ceil(width + 2 * mPadding), widthMeasureSpec),
+                resolveSize((int) Math.ceil(height + 2 * mPadding), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        removeCallbacks(this);
+        if (isShown()) {
+            post(this);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(this);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void run() {
+        invalidate();
+        if (isShown()) {
+            postDelayed(this, REFRESH_INTERVAL);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float y = mPadding - mTextPaint.ascent();
+        for (LatencyHistogram histogram : Metrics.getAll()) {
+            final StringBuilder line = mLine;
+            line.setLength(0);
+            line.append(histogram.getName());
+            line.append("  n ").append(histogram.getCount());
+            line.append("  p50 ");
+            appendMillis(line, histogram.getPercentileNanos(0.5));
+            line.append("  p99 ");
+            appendMillis(line, histogram.getPercentileNanos(0.99));
+            line.append("  max ");
+            appendMillis(line, histogram.getMaxNanos());
+            line.append(" ms");
+            canvas.drawText(line, 0, line.length(), mPadding, y, mTextPaint);
+            y += mLineHeight;
+        }
+    }
+
+    /**
+     * Append nanos as milliseconds with one decimal place, without the
+     * allocation String.format would cost.
+     */
+    private static void appendMillis(StringBuilder line, long nanos) {
+        final long tenths = nanos / 100000;
+        line.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
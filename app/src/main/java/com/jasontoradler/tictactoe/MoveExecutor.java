@@ -0,0 +1,140 @@
+package com.jasontoradler.tictactoe;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GreedyStrategy;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs computer players on a background thread so that searching never
+ * blocks input or animations. Each request works on its own copy of the
+ * board and its result is delivered on the main thread.
+ * <p/>
+ * Requests run one at a time in the order they were made, so a strategy is
+ * never used by two requests at once. Cancelling interrupts the request in
+ * progress and guarantees its callback will not be called. Otherwise the
+ * callback always comes: if the strategy throws or returns an illegal move,
+ * a greedy move is delivered in its place, so the computer's turn is never
+ * left open for the human to play. All methods must be called from the main
+ * thread.
+ */
+public class MoveExecutor {
+
+    private static final String TAG = "MoveExecutor";
+
+    public interface OnMoveSelectedListener {
+        /**
+         * @param position cell chosen by the strategy
+         */
+        void onMoveSelected(int position);
+    }
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Keep searching from competing with rendering.
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, TAG);
+                }
+            });
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Only used on the background thread.
+    private final Strategy mFallback = new GreedyStrategy(new Random());
+    private Future<?> mPending;
+    // Incremented by every request and cancellation; a result is only
+    // delivered if no newer request or cancellation has happened since.
+    private int mGeneration;
+
+    /**
+     * Ask strategy for a move in board's current position, cancelling any
+     * earlier request. The board may be changed as soon as this returns.
+     */
+    public void requestMove(final Strategy strategy, Board board,
+                            final OnMoveSelectedListener listener) {
+        cancel();
+        final Board position = new Board(board);
+        final int generation = mGeneration;
+        mPending = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                int move = -1;
+                final long start = System.nanoTime();
+                try {
+                    move = strategy.selectMove(position);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Move selection failed", e);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (!position.isEmpty(move)) {
+                    Log.w(TAG, "Playing a greedy move instead of " + move);
+                    move = mFallback.selectMove(position);
+                }
+                Metrics.THINK.recordSince(start);
+                final int result = move;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mPending = null;
+                            listener.onMoveSelected(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Run a task on the background thread, after any request already queued.
+     * Used for work such as warming up the computer players which must not
+     * hold up the main thread. Tasks are not cancelled by {@link #cancel}.
+     */
+    public void execute(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    /**
+     * @return true if a move has been requested and not yet delivered
+     */
+    public boolean isBusy() {
+        return mPending != null;
+    }
+
+    /**
+     * Abandon the current request, if any.
+     */
+    public void cancel() {
+        ++mGeneration;
+        if (mPending != null) {
+            mPending.cancel(true);
+            mPending = null;
+        }
+    }
+
+    /**
+     * Cancel the current request and stop the background thread once the
+     * tasks already passed to {@link #execute} have run.
+     */
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package com.jasontoradler.tictactoe;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.jasontoradler.tictactoe.engine.EvaluationCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The one {@link EvaluationCache} of the process, shared by every activity
+ * so that a rotation does not open a second cache over the same file. The
+ * file is loaded once, and it is only ever read and written on this class's
+ * own background thread, so no activity's main or move thread waits on
+ * storage and no two threads touch the file.
+ */
+public final class SavedEvaluations {
+
+    private static final String TAG = "SavedEvaluations";
+    private static final String FILE_NAME = "evaluations.bin";
+
+    private static final ExecutorService sFileExecutor = Executors.newSingleThreadExecutor();
+    // Guarded by the class.
+    private static EvaluationCache sCache;
+
+    private SavedEvaluations() {
+    }
+
+    /**
+     * @return the shared cache, creating it and starting to load its file on
+     * first use. Until the file is loaded the cache is simply empty.
+     */
+    public static synchronized EvaluationCache get(Context context) {
+        if (sCache == null) {
+            final Context application = context.getApplicationContext();
+            final EvaluationCache cache = new EvaluationCache(application.getResources()
+                    .getInteger(R.integer.evaluation_cache_kilobytes) * 1024);
+            final File file = new File(application.getFilesDir(), FILE_NAME);
+            sFileExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        cache.load(file);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not load evaluations", e);
+                    }
+                }
+            });
+            sCache = cache;
+        }
+        return sCache;
+    }
+
+    /**
+     * Save the evaluations added since the last flush, in the background.
+     * Does nothing if the cache has not been created.
+     */
+    public static synchronized void flush() {
+        final EvaluationCache cache = sCache;
+        if (cache == null) {
+            return;
+        }
+        sFileExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.flush();
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not save evaluations", e);
+                }
+            }
+        });
+    }
+}
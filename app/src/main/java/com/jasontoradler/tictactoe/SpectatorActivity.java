@@ -0,0 +1,101 @@
+package com.jasontoradler.tictactoe;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.os.Process;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.GreedyStrategy;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.Random;
+
+/**
+ * Watch a wall of computer players playing each other. The games are played
+ * on one background thread, a move in every game per round, and each board
+ * is handed to the {@link SpectatorWallView} as it changes.
+ */
+public class SpectatorActivity extends Activity {
+
+    private static final String TAG = "SpectatorActivity";
+    private static final int NUM_GAMES = 144;
+    private static final int NUM_ROWS = 9;
+    private static final int NUM_COLS = 9;
+    private static final int WIN_LENGTH = 4;
+    private static final long ROUND_INTERVAL = 100;
+    // Rounds a finished game stays on the wall before it starts again.
+    private static final int FINISHED_ROUNDS = 20;
+
+    private SpectatorWallView mWall;
+    private Thread mPlayer;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_spectator);
+        mWall = (SpectatorWallView) findViewById(R.id.wall);
+        mWall.setBoards(NUM_GAMES, NUM_ROWS, NUM_COLS);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        final SpectatorWallView wall = mWall;
+        mPlayer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                playGames(wall);
+            }
+        }, TAG);
+        mPlayer.start();
+    }
+
+    @Override
+    protected void onStop() {
+        mPlayer.interrupt();
+        mPlayer = null;
+        super.onStop();
+    }
+
+    /**
+     * Play games on the wall until interrupted.
+     */
+    private static void playGames(SpectatorWallView wall) {
+        final Random random = new Random();
+        final Strategy strategy = new GreedyStrategy(random);
+        final Board[] boards = new Board[NUM_GAMES];
+        final int[] finishedRounds = new int[NUM_GAMES];
+        for (int ii = 0; ii < NUM_GAMES; ++ii) {
+            boards[ii] = new Board(NUM_ROWS, NUM_COLS, WIN_LENGTH);
+            // Stagger the games so they do not all end together.
+            final int openingMoves = random.nextInt(NUM_ROWS * NUM_COLS / 4);
+            for (int move = 0; move < openingMoves
+                    && boards[ii].getGameState() == GameState.IN_PROGRESS; ++move) {
+                boards[ii].play(strategy.selectMove(boards[ii]));
+            }
+            wall.update(ii, boards[ii]);
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            for (int ii = 0; ii < NUM_GAMES; ++ii) {
+                final Board board = boards[ii];
+                if (board.getGameState() != GameState.IN_PROGRESS) {
+                    if (++finishedRounds[ii] < FINISHED_ROUNDS) {
+                        continue;
+                    }
+                    finishedRounds[ii] = 0;
+                    board.reset();
+                } else {
+                    board.play(strategy.selectMove(board));
+                }
+                wall.update(ii, board);
+            }
+            try {
+                Thread.sleep(ROUND_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
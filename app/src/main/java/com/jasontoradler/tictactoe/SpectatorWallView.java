@@ -0,0 +1,346 @@
+package com.jasontoradler.tictactoe;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.jasontoradler.tictactoe.engine.Board;
+
+import java.util.Arrays;
+
+/**
+ * Shows many games at once as a wall of small boards, for watching
+ * tournaments and self-play runs.
+ * <p/>
+ * The whole wall is one view which draws one bitmap. {@link #update} copies a
+ * game's bit masks, from any thread, and on the next frame only the boards
+ * whose masks changed are drawn into the bitmap, usually by adding just the
+ * new marks. The grid lines are drawn once into a tile-sized bitmap, which
+ * is copied over a board when its game restarts, so a frame costs a few
+ * marks and a single bitmap however many boards are on the wall.
+ */
+public class SpectatorWallView extends View {
+
+    private static final int BACKGROUND_COLOR = 0xffeceff1;
+    private static final int GRID_COLOR = 0xff90a4ae;
+    private static final int PLAYER1_COLOR = 0xffef6c00;
+    private static final int PLAYER2_COLOR = 0xff1565c0;
+    private static final int WIN_LINE_COLOR = 0xc0d50000;
+    // Space around each board, as a fraction of its tile.
+    private static final float TILE_MARGIN = 0.06f;
+
+    // Games as last passed to update(), and which have changed since they
+    // were last drawn. Guarded by mLock, since update() may be called from
+    // any thread.
+    private final Object mLock = new Object();
+    private long[] mStones = new long[0];
+    private int[] mWinLines = new int[0];
+    private boolean[] mIsChanged = new boolean[0];
+    private boolean mIsRedrawPosted;
+    private final int[] mWinLine = new int[2];
+    // Written under mLock and only by the main thread, so the main thread
+    // reads them without it.
+    private int mNumBoards;
+    private int mNumRows = Board.DEFAULT_SIZE;
+    private int mNumCols = Board.DEFAULT_SIZE;
+    private int mNumWords = 1;
+
+    // The rest is only used on the main thread. Each player's masks for a
+    // board are stored together: 2 * mNumWords longs per board, player 1
+    // first, and the cells at the ends of any winning line, or -1.
+    private long[] mNextStones = new long[0];
+    private int[] mNextWinLines = new int[0];
+    private long[] mDrawnStones = new long[0];
+    private int[] mDrawnWinLines = new int[0];
+    private int[] mChangedBoards = new int[0];
+    // True when every board must be drawn from scratch.
+    private boolean mIsWallStale = true;
+    private Bitmap mWallBitmap;
+    private Canvas mWallCanvas;
+    private Bitmap mGridBitmap;
+    private int mTileCols;
+    private int mTileSize;
+    // Top left corner of the board within its tile.
+    private float mBoardLeft;
+    private float mBoardTop;
+    private float mCellSize;
+    private final Paint mGridPaint = new Paint();
+    private final Paint mPlayer1Paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mPlayer2Paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mWinLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    public SpectatorWallView(Context context) {
+        super(context);
+        init();
+    }
+
+    public SpectatorWallView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public SpectatorWallView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        mGridPaint.setColor(GRID_COLOR);
+        mPlayer1Paint.setColor(PLAYER1_COLOR);
+        mPlayer1Paint.setStyle(Paint.Style.STROKE);
+        mPlayer2Paint.setColor(PLAYER2_COLOR);
+        mPlayer2Paint.setStrokeCap(Paint.Cap.ROUND);
+        mWinLinePaint.setColor(WIN_LINE_COLOR);
+        mWinLinePaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * Show numBoards empty boards, replacing any shown before. Must be called
+     * on the main thread.
+     */
+    public void setBoards(int numBoards, int numRows, int numCols) {
+        final int numWords = (numRows * numCols + Board.WORD_CELLS - 1) / Board.WORD_CELLS;
+        synchronized (mLock) {
+            mNumBoards = numBoards;
+            mNumRows = numRows;
+            mNumCols = numCols;
+            mNumWords = numWords;
+            mStones = new long[numBoards * 2 * numWords];
+            mWinLines = new int[numBoards * 2];
+            Arrays.fill(mWinLines, -1);
+            mIsChanged = new boolean[numBoards];
+        }
+        mNextStones = new long[numBoards * 2 * numWords];
+        mNextWinLines = new int[numBoards * 2];
+        mDrawnStones = new long[numBoards * 2 * numWords];
+        mDrawnWinLines = new int[numBoards * 2];
+        mChangedBoards = new int[numBoards];
+        updateTiles();
+        invalidate();
+    }
+
+    /**
+     * Show the game on board in place of board index. Safe to call from any
+     * thread; the wall is redrawn on the next frame if anything changed.
+     *
+     * @throws IllegalArgumentException if board does not have the dimensions
+     *                                  given to {@link #setBoards}
+     */
+    public void update(int index, Board board) {
+        synchronized (mLock) {
+            if (index < 0 || index >= mNumBoards || board.getNumRows() != mNumRows
+                    || board.getNumCols() != mNumCols) {
+                throw new IllegalArgumentException("no " + board.getNumRows() + "x"
+                        + board.getNumCols() + " board " + index);
+            }
+            boolean isChanged = false;
+            final int base = index * 2 * mNumWords;
+            for (int player = Board.PLAYER1; player <= Board.PLAYER2; ++player) {
+                for (int word = 0; word < mNumWords; ++word) {
+                    final long stones = board.getStones(player, word);
+                    final int slot = base + player * mNumWords + word;
+                    if (mStones[slot] != stones) {
+                        mStones[slot] = stones;
+                        isChanged = true;
+                    }
+                }
+            }
+            if (!board.getWinningLine(mWinLine)) {
+                mWinLine[0] = -1;
+                mWinLine[1] = -1;
+            }
+            if (mWinLines[2 * index] != mWinLine[0] || mWinLines[2 * index + 1] != mWinLine[1]) {
+                mWinLines[2 * index] = mWinLine[0];
+                mWinLines[2 * index + 1] = mWinLine[1];
+                isChanged = true;
+            }
+            if (isChanged) {
+                mIsChanged[index] = true;
+                // One frame picks up every change made before it.
+                if (!mIsRedrawPosted) {
+                    mIsRedrawPosted = true;
+                    postInvalidate();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateTiles();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        releaseBitmaps();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateTiles();
+    }
+
+    /**
+     * Choose the tile size and rebuild the bitmaps for the current size and
+     * boards.
+     */
+    private void updateTiles() {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width <= 0 || height <= 0 || mNumBoards == 0) {
+            releaseBitmaps();
+            return;
+        }
+        // The fewest columns which give the largest square tiles.
+        mTileCols = 1;
+        mTileSize = 0;
+        for (int cols = 1; cols <= mNumBoards; ++cols) {
+            final int rows = (mNumBoards + cols - 1) / cols;
+            final int size = Math.min(width / cols, height / rows);
+            if (size > mTileSize) {
+                mTileSize = size;
+                mTileCols = cols;
+            }
+        }
+        mTileSize = Math.max(1, mTileSize);
+        final float inner = mTileSize * (1f - 2 * TILE_MARGIN);
+        mCellSize = inner / Math.max(mNumRows, mNumCols);
+        mBoardLeft = (mTileSize - mCellSize * mNumCols) / 2f;
+        mBoardTop = (mTileSize - mCellSize * mNumRows) / 2f;
+        mGridPaint.setStrokeWidth(Math.max(1f, mCellSize / 16f));
+        mPlayer1Paint.setStrokeWidth(Math.max(1f, mCellSize / 8f));
+        mPlayer2Paint.setStrokeWidth(Math.max(1f, mCellSize / 8f));
+        mWinLinePaint.setStrokeWidth(Math.max(1.5f, mCellSize / 5f));
+
+        // Both bitmaps are opaque, so 16 bits a pixel lose nothing but
+        // shades of antialiasing and halve the memory to clear and copy.
+        if (mWallBitmap == null || mWallBitmap.getWidth() != width
+                || mWallBitmap.getHeight() != height) {
+            if (mWallBitmap != null) {
+                mWallBitmap.recycle();
+            }
+            mWallBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            mWallCanvas = new Canvas(mWallBitmap);
+        }
+        if (mGridBitmap != null) {
+            mGridBitmap.recycle();
+        }
+        mGridBitmap = Bitmap.createBitmap(mTileSize, mTileSize, Bitmap.Config.RGB_565);
+        final Canvas gridCanvas = new Canvas(mGridBitmap);
+        gridCanvas.drawColor(BACKGROUND_COLOR);
+        TicTacToeGrid.drawGridLines(gridCanvas, mBoardLeft, mBoardTop, mCellSize * mNumCols,
+                mCellSize * mNumRows, mNumRows, mNumCols, mGridPaint);
+        mWallCanvas.drawColor(BACKGROUND_COLOR);
+        mIsWallStale = true;
+    }
+
+    private void releaseBitmaps() {
+        if (mWallBitmap != null) {
+            mWallBitmap.recycle();
+            mWallBitmap = null;
+            mWallCanvas = null;
+        }
+        if (mGridBitmap != null) {
+            mGridBitmap.recycle();
+            mGridBitmap = null;
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mWallBitmap == null) {
+            return;
+        }
+        // Take the changed games quickly, and draw them without the lock so
+        // the games are not held up.
+        final int boardSize = 2 * mNumWords;
+        int numChanged = 0;
+        synchronized (mLock) {
+            mIsRedrawPosted = false;
+            for (int index = 0; index < mNumBoards; ++index) {
+                if (mIsChanged[index] || mIsWallStale) {
+                    mIsChanged[index] = false;
+                    mChangedBoards[numChanged++] = index;
+                    System.arraycopy(mStones, index * boardSize, mNextStones, index * boardSize,
+                            boardSize);
+                    mNextWinLines[2 * index] = mWinLines[2 * index];
+                    mNextWinLines[2 * index + 1] = mWinLines[2 * index + 1];
+                }
+            }
+        }
+        for (int ii = 0; ii < numChanged; ++ii) {
+            drawBoard(mChangedBoards[ii]);
+        }
+        mIsWallStale = false;
+        canvas.drawBitmap(mWallBitmap, 0, 0, null);
+    }
+
+    /**
+     * Bring board index in the wall bitmap up to date with its next state.
+     */
+    private void drawBoard(int index) {
+        final int base = index * 2 * mNumWords;
+        final float left = index % mTileCols * mTileSize;
+        final float top = index / mTileCols * mTileSize;
+        final int drawnStart = mDrawnWinLines[2 * index];
+        final int nextStart = mNextWinLines[2 * index];
+        // Marks are only ever added during a game, so unless the game was
+        // restarted or undone only the new marks need drawing.
+        boolean isRestarted = mIsWallStale
+                || (drawnStart >= 0 && (drawnStart != nextStart
+                || mDrawnWinLines[2 * index + 1] != mNextWinLines[2 * index + 1]));
+        for (int slot = base; slot < base + 2 * mNumWords && !isRestarted; ++slot) {
+            isRestarted = (mDrawnStones[slot] & ~mNextStones[slot]) != 0;
+        }
+        if (isRestarted) {
+            mWallCanvas.drawBitmap(mGridBitmap, left, top, null);
+            Arrays.fill(mDrawnStones, base, base + 2 * mNumWords, 0L);
+        }
+        for (int player = Board.PLAYER1; player <= Board.PLAYER2; ++player) {
+            for (int word = 0; word < mNumWords; ++word) {
+                final int slot = base + player * mNumWords + word;
+                long added = mNextStones[slot] & ~mDrawnStones[slot];
+                while (added != 0) {
+                    final int cell = word * Board.WORD_CELLS + Long.numberOfTrailingZeros(added);
+                    added &= added - 1;
+                    drawMark(left, top, cell, player);
+                }
+                mDrawnStones[slot] = mNextStones[slot];
+            }
+        }
+        if (nextStart >= 0 && (isRestarted || drawnStart != nextStart)) {
+            final int end = mNextWinLines[2 * index + 1];
+            mWallCanvas.drawLine(getCellCenterX(left, nextStart), getCellCenterY(top, nextStart),
+                    getCellCenterX(left, end), getCellCenterY(top, end), mWinLinePaint);
+        }
+        mDrawnWinLines[2 * index] = nextStart;
+        mDrawnWinLines[2 * index + 1] = mNextWinLines[2 * index + 1];
+    }
+
+    private void drawMark(float left, float top, int cell, int player) {
+        final float x = getCellCenterX(left, cell);
+        final float y = getCellCenterY(top, cell);
+        final float radius = mCellSize * 0.3f;
+        // Player 1 plays 'O's and player 2 plays 'X's, as on the game grid.
+        if (player == Board.PLAYER1) {
+            mWallCanvas.drawCircle(x, y, radius, mPlayer1Paint);
+        } else {
+            mWallCanvas.drawLine(x - radius, y - radius, x + radius, y + radius, mPlayer2Paint);
+            mWallCanvas.drawLine(x - radius, y + radius, x + radius, y - radius, mPlayer2Paint);
+        }
+    }
+
+    private float getCellCenterX(float left, int cell) {
+        return left + mBoardLeft + (cell % mNumCols + 0.5f) * mCellSize;
+    }
+
+    private float getCellCenterY(float top, int cell) {
+        return top + mBoardTop + (cell / mNumCols + 0.5f) * mCellSize;
+    }
+}
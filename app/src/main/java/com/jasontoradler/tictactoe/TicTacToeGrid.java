@@ -7,68 +7,139 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
-import android.widget.ImageView;
-import android.widget.RelativeLayout;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Custom tic-tac-toe grid which has ImageViews for each cell and the ability
- * to listen to each view click.
+ * Custom tic-tac-toe grid which draws its lines and every cell image itself
+ * and reports clicks on each cell.
+ * <p/>
+ * The whole board is a single view, so large boards cost one measure and
+ * layout pass. Cell images are decoded once per resource, in the
+ * {@link BitmapCache}, and shared by all cells; constructing the grid only
+ * reads an image's size. Touches are mapped to cells arithmetically, and
+ * animating a cell only invalidates that cell's rectangle.
+ * <p/>
+ * The grid lines are drawn in by an animation when the grid first appears,
+ * unless the animateGridLines attribute is false, in which case the first
+ * frame shows the finished grid.
  */
-public class TicTacToeGrid extends RelativeLayout {
+public class TicTacToeGrid extends View {
 
-    private static final String TAG = "TicTacToeGrid";
     private static final int DEFAULT_NUM_COLS = 3;
     private static final int DEFAULT_NUM_ROWS = 3;
     private static final int DEFAULT_CELL_MARGIN = 32;
     private static final int DEFAULT_COLOR = 0xff000000;
+    private static final int DEFAULT_HINT_COLOR = 0x4000c853;
+    private static final int DEFAULT_WIN_LINE_COLOR = 0xc0d50000;
     private static final float DEFAULT_STROKE_WIDTH = 9f;
     private static final long DEFAULT_GRID_LINE_ANIMATION_DURATION = 500;
     private static final long DEFAULT_GRID_LINE_ANIMATION_START_DELAY = 750;
     private static final long DEFAULT_CELL_IMAGE_ANIMATOR_DURATION = 500;
+    private static final long DEFAULT_WIN_LINE_ANIMATION_DURATION = 400;
+    private static final float LINE_STAGGER = 0.5f;
 
     private OnCellClickListener mOnCellClickListener = null;
     private Paint mPaint;
     private int mNumCols = DEFAULT_NUM_COLS;
     private int mNumRows = DEFAULT_NUM_ROWS;
     private int mCellMargin = DEFAULT_CELL_MARGIN;
-    private List<ImageView> mCells;
+    // Image resource shown in each cell, or 0 for an empty cell.
+    private int[] mCellImages;
+    // Start of each cell's appearance animation, in animation time, or 0 once
+    // the animation is over.
+    private long[] mCellAnimationStart;
+    // When each cell's image was set, in System.nanoTime(), until the frame
+    // which first draws it records the render latency; 0 otherwise.
+    private long[] mCellImageSetTime;
+    private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF mCellRect = new RectF();
+    private final Interpolator mCellImageInterpolator = new OvershootInterpolator(3f);
+    private float mCellWidth;
+    private float mCellHeight;
+    private float mCellInset;
+    // Cell under the finger since the last ACTION_DOWN, or -1.
+    private int mPressedCell = -1;
+    // When the touch behind the last cell click was lifted, in
+    // System.nanoTime().
+    private long mClickTime;
+    // Empty cell to highlight as a suggested move, or -1.
+    private int mHintCell = -1;
+    private final Paint mHintPaint = new Paint();
     private int mColor = DEFAULT_COLOR;
     private int mWidth;
     private int mHeight;
-    private float mVertical1;
-    private float mVertical2;
-    private float mHorizontal1;
-    private float mHorizontal2;
     private float mStrokeWidth = DEFAULT_STROKE_WIDTH;
-    private float mVertLineX1;
-    private float mVertLineX2;
-    private float mHorizLineY1;
-    private float mHorizLineY2;
+    // Largest cell, including margins, which the grid will ask for.
+    private int mPreferredCellSize;
+    // Inner grid lines in drawing order, alternating horizontal and vertical
+    // while both remain. Each line's coordinate is y for horizontal lines and
+    // x for vertical ones.
+    private int mNumLines;
+    private float[] mLineCoords;
+    private boolean[] mLineIsHorizontal;
+    private boolean[] mLineIsReversed;
+    // How far the grid line animation has progressed; line ii is drawn in
+    // while this goes from ii * LINE_STAGGER to ii * LINE_STAGGER + 1.
+    private float mLineProgress;
     private long mGridLineAnimationDuration = DEFAULT_GRID_LINE_ANIMATION_DURATION;
     private long mGridLineAnimationStartDelay = DEFAULT_GRID_LINE_ANIMATION_START_DELAY;
     private long mCellImageAnimatorDuration = DEFAULT_CELL_IMAGE_ANIMATOR_DURATION;
+    // Cells at the ends of the winning line, or -1 when there is no winner.
+    private int mWinStartCell = -1;
+    private int mWinEndCell = -1;
+    // The winning line's end points in pixels and the area it can cover,
+    // computed whenever the cells or the layout change rather than per frame.
+    private float mWinStartX;
+    private float mWinStartY;
+    private float mWinEndX;
+    private float mWinEndY;
+    private final Rect mWinLineBounds = new Rect();
+    // How much of the winning line is drawn, from 0 to 1.
+    private float mWinLineProgress;
+    private final Paint mWinLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private boolean mIsEnabled = true;
     private boolean mIsGridAnimationDone = false;
-    private View.OnClickListener mCellClickListener = new OnClickListener() {
+    // Runs from 0 to 1 while the grid lines are drawn in; see mLineProgress.
+    private final ValueAnimator mGridLineAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private final ValueAnimator.AnimatorUpdateListener mGridLineUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    // The fraction is a primitive float; getAnimatedValue()
+                    // would box one on every frame.
+                    mLineProgress = animation.getAnimatedFraction() * getFullLineProgress();
+                    invalidate();
+                }
+            };
+    private final Animator.AnimatorListener mGridLineEndListener = new AnimatorListenerAdapter() {
         @Override
-        public void onClick(View v) {
-            // Handle each click on a specific ImageView.
-            int position = (int) v.getTag();
-//            Log.v(TAG, "onClick: " + position);
-            if (mOnCellClickListener != null && mIsEnabled) {
-                mOnCellClickListener.onCellClicked(position);
-            }
+        public void onAnimationEnd(Animator animation) {
+            // Make sure our lines are complete at the end of the animation.
+            mLineProgress = getFullLineProgress();
+            invalidate();
         }
     };
 
+    private final ValueAnimator mWinLineAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private final ValueAnimator.AnimatorUpdateListener mWinLineUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    mWinLineProgress = animation.getAnimatedFraction();
+                    invalidate(mWinLineBounds);
+                }
+            };
+
     public TicTacToeGrid(Context context) {
         super(context);
         init(null, 0);
@@ -85,28 +156,115 @@ public class TicTacToeGrid extends RelativeLayout {
     }
 
     /**
-     * Change the ImageView at position to use resourceId.
+     * Change the image drawn in the cell at position to resourceId, growing
+     * and fading it in.
      *
      * @param position
-     * @param resourceId
+     * @param resourceId drawable resource, or R.drawable.empty to clear the cell
      */
     public void setCellImage(int position, int resourceId) {
-        // Find the ImageView corresponding to the position and set it to the
-        // new image resource.
-        final ImageView cell = mCells.get(position);
-        cell.setImageResource(resourceId);
-        // Set initial values of alpha and scale and then animate those
-        // properties to their final values.
-        cell.setAlpha(0.0f);
-        cell.setScaleX(0f);
-        cell.setScaleY(0f);
-        cell.animate()
-                .setDuration(mCellImageAnimatorDuration)
-                .setInterpolator(new OvershootInterpolator(3f))
-                .alpha(1.0f)
-                .scaleX(1f)
-                .scaleY(1f)
-                .start();
+        if (resourceId == R.drawable.empty) {
+            mCellImages[position] = 0;
+            mCellAnimationStart[position] = 0;
+            mCellImageSetTime[position] = 0;
+        } else {
+            // Decode the image now, if nothing has used it yet, rather than in
+            // the middle of drawing.
+            BitmapCache.get(getResources(), resourceId);
+            mCellImages[position] = resourceId;
+            mCellAnimationStart[position] = AnimationUtils.currentAnimationTimeMillis();
+            mCellImageSetTime[position] = System.nanoTime();
+        }
+        invalidateCell(position);
+    }
+
+    /**
+     * @return the value of mLineProgress once every line is drawn
+     */
+    private float getFullLineProgress() {
+        return mNumLines * LINE_STAGGER + 1f;
+    }
+
+    /**
+     * Highlight an empty cell as a suggested move, replacing any earlier
+     * hint. The hint is hidden once the cell is filled.
+     *
+     * @param position cell to highlight, or -1 for no hint
+     */
+    public void setHintCell(int position) {
+        if (position == mHintCell) {
+            return;
+        }
+        if (mHintCell >= 0) {
+            invalidateCell(mHintCell);
+        }
+        mHintCell = position;
+        if (position >= 0) {
+            invalidateCell(position);
+        }
+    }
+
+    private void invalidateCell(int position) {
+        final int x = position % mNumCols;
+        final int y = position / mNumCols;
+        invalidate((int) (x * mCellWidth), (int) (y * mCellHeight),
+                (int) Math.ceil((x + 1) * mCellWidth), (int) Math.ceil((y + 1) * mCellHeight));
+    }
+
+    /**
+     * @return the cell containing the point (x, y), or -1 if it is off the grid
+     */
+    private int getCellAt(float x, float y) {
+        if (mCellWidth <= 0 || mCellHeight <= 0 || x < 0 || y < 0) {
+            return -1;
+        }
+        final int col = (int) (x / mCellWidth);
+        final int row = (int) (y / mCellHeight);
+        if (col >= mNumCols || row >= mNumRows) {
+            return -1;
+        }
+        return col + row * mNumCols;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mIsEnabled) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mPressedCell = getCellAt(event.getX(), event.getY());
+                return mPressedCell >= 0;
+            case MotionEvent.ACTION_UP:
+                // Only count it as a click if the finger is lifted in the same
+                // cell it went down in.
+                final int position = getCellAt(event.getX(), event.getY());
+                final boolean isClick = position >= 0 && position == mPressedCell;
+                mPressedCell = -1;
+                if (isClick) {
+                    performClick();
+                    if (mOnCellClickListener != null) {
+                        // Event times are in uptime and only have millisecond
+                        // resolution.
+                        mClickTime = System.nanoTime() - (SystemClock.uptimeMillis()
+                                - event.getEventTime()) * 1000000L;
+                        mOnCellClickListener.onCellClicked(position);
+                    }
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedCell = -1;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        // Cell clicks are reported through OnCellClickListener; this keeps
+        // accessibility services informed.
+        return super.performClick();
     }
 
     @Override
@@ -124,157 +282,247 @@ public class TicTacToeGrid extends RelativeLayout {
         mOnCellClickListener = listener;
     }
 
+    /**
+     * @return when the touch behind the current or last cell click was
+     * lifted, in {@link System#nanoTime} but only to the millisecond
+     */
+    public long getClickTime() {
+        return mClickTime;
+    }
+
+    /**
+     * Change the number of rows and columns, clearing any cell images.
+     */
+    public void setBoardSize(int numRows, int numCols) {
+        if (numRows == mNumRows && numCols == mNumCols) {
+            reset();
+            return;
+        }
+        mNumRows = numRows;
+        mNumCols = numCols;
+        createCells();
+        mLineProgress = getFullLineProgress();
+        requestLayout();
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Use square cells no bigger than the preferred size, shrinking them
+        // as needed to fit every row and column in the space available.
+        int cellSize = mPreferredCellSize;
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            cellSize = Math.min(cellSize, MeasureSpec.getSize(widthMeasureSpec) / mNumCols);
+        }
+        if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            cellSize = Math.min(cellSize, MeasureSpec.getSize(heightMeasureSpec) / mNumRows);
+        }
+        setMeasuredDimension(resolveSize(cellSize * mNumCols, widthMeasureSpec),
+                resolveSize(cellSize * mNumRows, heightMeasureSpec));
+    }
+
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         mWidth = right - left;
         mHeight = bottom - top;
-        final int CELL_WIDTH = mWidth / 3 - (mCellMargin * 2);
-        final int CELL_HEIGHT = mHeight / 3 - (mCellMargin * 2);
-        for (int ii = 0; ii < getChildCount(); ++ii) {
-            final View view = getChildAt(ii);
-            final LayoutParams params = (LayoutParams) view.getLayoutParams();
-            params.width = CELL_WIDTH;
-            params.height = CELL_HEIGHT;
-            view.setLayoutParams(params);
+        mCellWidth = (float) mWidth / mNumCols;
+        mCellHeight = (float) mHeight / mNumRows;
+        // Keep a margin around each image, smaller on crowded boards. The
+        // image overshoots into it as it appears, so it must stay within the
+        // cell.
+        mCellInset = Math.min(mCellMargin, Math.min(mCellWidth, mCellHeight) / 8f);
+        updateWinLine();
+
+        // Interleave the horizontal and vertical lines so the animation
+        // alternates between them, reversing every other line of each kind.
+        int horizontal = 1;
+        int vertical = 1;
+        for (int ii = 0; ii < mNumLines; ++ii) {
+            final boolean isHorizontal = vertical >= mNumCols
+                    || (horizontal < mNumRows && horizontal <= vertical);
+            mLineIsHorizontal[ii] = isHorizontal;
+            if (isHorizontal) {
+                mLineCoords[ii] = (float) horizontal * mHeight / mNumRows;
+                mLineIsReversed[ii] = horizontal % 2 == 0;
+                ++horizontal;
+            } else {
+                mLineCoords[ii] = (float) vertical * mWidth / mNumCols;
+                mLineIsReversed[ii] = vertical % 2 == 0;
+                ++vertical;
+            }
         }
 
-        mVertLineX1 = mWidth / 3f;
-        mVertLineX2 = 2f * mWidth / 3f;
-        mHorizLineY1 = mHeight / 3f;
-        mHorizLineY2 = 2f * mHeight / 3f;
-
         if (!mIsGridAnimationDone) {
-            Log.d(TAG, "onLayout: animation not done");
-            mHorizontal1 = 0;
-            mHorizontal2 = mWidth;
-            mVertical1 = 0;
-            mVertical2 = mHeight;
+            mLineProgress = 0;
             animateGridLines(true);
         }
-
-        super.onLayout(changed, left, top, right, bottom);
     }
 
     private void init(AttributeSet attrs, int defStyle) {
-        Log.v(TAG, "init");
-
         final TypedArray a = getContext().obtainStyledAttributes(
                 attrs, R.styleable.TicTacToeGrid, defStyle, 0);
 
         mColor = a.getColor(R.styleable.TicTacToeGrid_gridColor, DEFAULT_COLOR);
+        mNumRows = a.getInt(R.styleable.TicTacToeGrid_numRows, DEFAULT_NUM_ROWS);
+        mNumCols = a.getInt(R.styleable.TicTacToeGrid_numCols, DEFAULT_NUM_COLS);
+        // Without the animation there is nothing left to do once laid out.
+        mIsGridAnimationDone = !a.getBoolean(R.styleable.TicTacToeGrid_animateGridLines, true);
 
         a.recycle();
 
         // Allow our onDraw method to be called.
         setWillNotDraw(false);
 
-        mCells = new ArrayList<>();
-
         mPaint = new Paint();
         mPaint.setColor(mColor);
         mPaint.setStrokeWidth(mStrokeWidth);
 
-        for (int y = 0; y < mNumRows; ++y) {
-            for (int x = 0; x < mNumCols; ++x) {
-                ImageView iv = new ImageView(getContext());
-
-                // Create a hopefully unique ID for this view so we can use the
-                // RelativeLayout parameters to lay out the view in the correct
-                // position.
-                iv.setId(1000 + x + y * mNumCols);
-
-                // Set the tag to a zero-based index of the ImageView to aid in
-                // identifying which cell was clicked.
-                iv.setTag(x + y * mNumCols);
-
-                // Register a listener for clicks on each ImageView.
-                iv.setOnClickListener(mCellClickListener);
-
-                // Set the resource to the 'empty' image so that onLayout will
-                // calculate the correct size for our grid.
-                iv.setImageResource(R.drawable.empty);
-
-                final RelativeLayout.LayoutParams params = new LayoutParams(
-                        ViewGroup.LayoutParams.WRAP_CONTENT,
-                        ViewGroup.LayoutParams.WRAP_CONTENT
-                );
-                params.setMargins(mCellMargin, mCellMargin, mCellMargin, mCellMargin);
-                if (x > 0 && y == 0) { // still on first row, past first cell
-                    final int leftId = mCells.get(x - 1).getId();
-                    params.addRule(RIGHT_OF, leftId);
-                } else if (x == 0 && y > 0) { // first column, not first row
-                    final int topId = mCells.get((y - 1) * mNumCols).getId();
-                    params.addRule(BELOW, topId);
-                } else if (x > 0 && y > 0) { // remaining non-edge cases
-                    final int leftId = mCells.get(x - 1).getId();
-                    params.addRule(RIGHT_OF, leftId);
-                    final int topId = mCells.get((y - 1) * mNumCols).getId();
-                    params.addRule(BELOW, topId);
-                }
-                addView(iv, params);
-                mCells.add(iv);
-            }
-        }
+        mHintPaint.setColor(DEFAULT_HINT_COLOR);
+        mHintPaint.setStyle(Paint.Style.FILL);
+
+        mWinLinePaint.setColor(DEFAULT_WIN_LINE_COLOR);
+        mWinLinePaint.setStrokeWidth(mStrokeWidth * 1.5f);
+        mWinLinePaint.setStrokeCap(Paint.Cap.ROUND);
+
+        // Only the image's size is needed now; it is decoded when first drawn,
+        // or earlier by a preload.
+        mPreferredCellSize = BitmapCache.getWidth(getResources(), R.drawable.circle)
+                + 2 * mCellMargin;
+
+        mGridLineAnimator.setInterpolator(null);
+        mGridLineAnimator.setDuration(mGridLineAnimationDuration);
+        mGridLineAnimator.addUpdateListener(mGridLineUpdateListener);
+        mGridLineAnimator.addListener(mGridLineEndListener);
+
+        mWinLineAnimator.setDuration(DEFAULT_WIN_LINE_ANIMATION_DURATION);
+        mWinLineAnimator.addUpdateListener(mWinLineUpdateListener);
+
+        createCells();
+        // Show the finished grid unless onLayout starts the animation.
+        mLineProgress = getFullLineProgress();
     }
 
-    private void animateGridLines(boolean useDelay) {
-        Log.v(TAG, "animateGridLines");
+    private void createCells() {
+        mNumLines = mNumRows - 1 + mNumCols - 1;
+        mLineCoords = new float[mNumLines];
+        mLineIsHorizontal = new boolean[mNumLines];
+        mLineIsReversed = new boolean[mNumLines];
+
+        mCellImages = new int[mNumRows * mNumCols];
+        mCellAnimationStart = new long[mNumRows * mNumCols];
+        mCellImageSetTime = new long[mNumRows * mNumCols];
+        mHintCell = -1;
+        clearWinner();
+    }
 
+    private void animateGridLines(boolean useDelay) {
         mIsGridAnimationDone = true;
 
-        ValueAnimator animator = ValueAnimator.ofFloat(0f, 2.5f);
-        animator.setInterpolator(null);
-        animator.setDuration(mGridLineAnimationDuration);
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                final float value = (float) animation.getAnimatedValue();
-                if (value <= 1.0f) {
-                    mHorizontal1 = value * mWidth;
-                }
-                if (value >= 0.5f && value <= 1.5f) {
-                    mVertical1 = (value - 0.5f) * mHeight;
+        // The animator and its listeners are created once and restarted.
+        mGridLineAnimator.cancel();
+        mGridLineAnimator.setStartDelay(useDelay ? mGridLineAnimationStartDelay : 0);
+        mGridLineAnimator.start();
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        final long drawStart = System.nanoTime();
+
+        // Draw the grid lines between each pair of rows and columns.
+        if (mLineProgress >= getFullLineProgress()) {
+            drawGridLines(canvas, 0, 0, mWidth, mHeight, mNumRows, mNumCols, mPaint);
+        } else if (mWidth > 0 && mHeight > 0) {
+            for (int ii = 0; ii < mNumLines; ++ii) {
+                final float fraction = Math.min(1f, mLineProgress - ii * LINE_STAGGER);
+                if (fraction <= 0f) {
+                    break;
                 }
-                if (value >= 1.0f && value <= 2.0f) {
-                    mHorizontal2 = (2.0f - value) * mWidth;
+                final float coord = mLineCoords[ii];
+                if (mLineIsHorizontal[ii]) {
+                    final float length = fraction * mWidth;
+                    final float start = mLineIsReversed[ii] ? mWidth : 0;
+                    final float end = mLineIsReversed[ii] ? mWidth - length : length;
+                    canvas.drawLine(start, coord, end, coord, mPaint);
+                } else {
+                    final float length = fraction * mHeight;
+                    final float start = mLineIsReversed[ii] ? mHeight : 0;
+                    final float end = mLineIsReversed[ii] ? mHeight - length : length;
+                    canvas.drawLine(coord, start, coord, end, mPaint);
                 }
-                if (value >= 1.5f && value <= 2.5f) {
-                    mVertical2 = (2.5f - value) * mHeight;
+            }
+        }
+
+        if (mHintCell >= 0 && mCellImages[mHintCell] == 0) {
+            final float x = mHintCell % mNumCols * mCellWidth;
+            final float y = mHintCell / mNumCols * mCellHeight;
+            canvas.drawRect(x + mCellInset, y + mCellInset, x + mCellWidth - mCellInset,
+                    y + mCellHeight - mCellInset, mHintPaint);
+        }
+
+        // Draw the image in each occupied cell, scaled and faded by its
+        // appearance animation if that is still running.
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        for (int position = 0; position < mCellImages.length; ++position) {
+            final int resourceId = mCellImages[position];
+            if (resourceId == 0) {
+                continue;
+            }
+            float scale = 1f;
+            final long start = mCellAnimationStart[position];
+            if (start != 0) {
+                final float fraction = (float) (now - start) / mCellImageAnimatorDuration;
+                if (fraction >= 1f) {
+                    mCellAnimationStart[position] = 0;
+                } else {
+                    scale = mCellImageInterpolator.getInterpolation(Math.max(0f, fraction));
+                    invalidateCell(position);
                 }
-                invalidate();
             }
-        });
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                Log.v(TAG, "onAnimationEnd: grid lines");
-
-                // Make sure our lines are complete at the end of the animation.
-                mHorizontal1 = mWidth;
-                mHorizontal2 = 0;
-                mVertical1 = mHeight;
-                mVertical2 = 0;
-                invalidate();
+            final float x = position % mNumCols * mCellWidth;
+            final float y = position / mNumCols * mCellHeight;
+            final float halfWidth = (mCellWidth / 2f - mCellInset) * scale;
+            final float halfHeight = (mCellHeight / 2f - mCellInset) * scale;
+            mCellRect.set(x + mCellWidth / 2f - halfWidth, y + mCellHeight / 2f - halfHeight,
+                    x + mCellWidth / 2f + halfWidth, y + mCellHeight / 2f + halfHeight);
+            mBitmapPaint.setAlpha((int) (255 * Math.min(1f, Math.max(0f, scale))));
+            canvas.drawBitmap(BitmapCache.get(getResources(), resourceId), null, mCellRect,
+                    mBitmapPaint);
+            if (mCellImageSetTime[position] != 0) {
+                Metrics.RENDER.record(drawStart - mCellImageSetTime[position]);
+                mCellImageSetTime[position] = 0;
             }
-        });
-        if (useDelay) {
-            animator.setStartDelay(mGridLineAnimationStartDelay);
         }
-        animator.start();
+
+        // Draw the winning line over the images, growing from its start.
+        if (mWinStartCell >= 0 && mWinLineProgress > 0f) {
+            canvas.drawLine(mWinStartX, mWinStartY,
+                    mWinStartX + (mWinEndX - mWinStartX) * mWinLineProgress,
+                    mWinStartY + (mWinEndY - mWinStartY) * mWinLineProgress, mWinLinePaint);
+        }
+        Metrics.DRAW.recordSince(drawStart);
     }
 
-    @Override
-    protected void onDraw(final Canvas canvas) {
-//        Log.d(TAG, "width/height: " + mWidth + "/" + mHeight);
-//        Log.d(TAG, "horiz1=" + mHorizontal1 + ", horiz2=" + mHorizontal2);
-//        Log.d(TAG, "vert1=" + mVertical1 + ", vert2=" + mVertical2);
-
-        // Draw the grid lines: two vertical and two horizontal.
-        if (mWidth > 0 && mHeight > 0) {
-            canvas.drawLine(mVertLineX1, 0, mVertLineX1, mVertical1, mPaint);
-            canvas.drawLine(mVertLineX2, mHeight, mVertLineX2, mVertical2, mPaint);
-            canvas.drawLine(0, mHorizLineY1, mHorizontal1, mHorizLineY1, mPaint);
-            canvas.drawLine(mWidth, mHorizLineY2, mHorizontal2, mHorizLineY2, mPaint);
+    /**
+     * Draw the finished lines between every pair of rows and columns of a
+     * grid filling the given rectangle, in the same places as the animated
+     * lines end up.
+     */
+    static void drawGridLines(Canvas canvas, float left, float top, float width, float height,
+                              int numRows, int numCols, Paint paint) {
+        for (int row = 1; row < numRows; ++row) {
+            final float y = top + (float) row * height / numRows;
+            canvas.drawLine(left, y, left + width, y, paint);
+        }
+        for (int col = 1; col < numCols; ++col) {
+            final float x = left + (float) col * width / numCols;
+            canvas.drawLine(x, top, x, top + height, paint);
         }
     }
 
@@ -289,21 +537,71 @@ public class TicTacToeGrid extends RelativeLayout {
     }
 
     /**
-     * Display who won by drawing a line through winning row/column/diagonal. Also, animate
-     * cell images in that line.
+     * Display who won by drawing a line through the winning row, column, or
+     * diagonal. The line grows from start to end, redrawing only the area it
+     * covers.
      *
-     * @param start starting position
-     * @param end   ending position
+     * @param start cell at one end of the winning line
+     * @param end   cell at the other end
      */
     public void displayWinner(int start, int end) {
-        // TODO animate values of x & y positions for drawing line through winning row/column/diagonal
-        // TODO need to also modify onDraw to draw the winning line when flag is set
+        mWinLineAnimator.cancel();
+        mWinStartCell = start;
+        mWinEndCell = end;
+        mWinLineProgress = 0f;
+        updateWinLine();
+        mWinLineAnimator.start();
     }
 
-    public void reset() {
-        for (final ImageView iv : mCells) {
-            iv.setImageResource(R.drawable.empty);
+    /**
+     * Hide the winning line.
+     */
+    public void clearWinner() {
+        mWinLineAnimator.cancel();
+        if (mWinStartCell >= 0) {
+            invalidate(mWinLineBounds);
+        }
+        mWinStartCell = -1;
+        mWinEndCell = -1;
+        mWinLineProgress = 0f;
+    }
+
+    /**
+     * Compute the winning line's end points and bounds from its cells and
+     * the current cell size. The line runs between the cell centers and
+     * reaches a little into the end cells' margins.
+     */
+    private void updateWinLine() {
+        if (mWinStartCell < 0) {
+            return;
         }
+        final float startX = (mWinStartCell % mNumCols + 0.5f) * mCellWidth;
+        final float startY = (mWinStartCell / mNumCols + 0.5f) * mCellHeight;
+        final float endX = (mWinEndCell % mNumCols + 0.5f) * mCellWidth;
+        final float endY = (mWinEndCell / mNumCols + 0.5f) * mCellHeight;
+        final float length = (float) Math.hypot(endX - startX, endY - startY);
+        final float extend = length > 0f
+                ? (Math.min(mCellWidth, mCellHeight) / 2f - mCellInset) / length : 0f;
+        mWinStartX = startX - (endX - startX) * extend;
+        mWinStartY = startY - (endY - startY) * extend;
+        mWinEndX = endX + (endX - startX) * extend;
+        mWinEndY = endY + (endY - startY) * extend;
+
+        final float pad = mWinLinePaint.getStrokeWidth();
+        mWinLineBounds.set((int) (Math.min(mWinStartX, mWinEndX) - pad),
+                (int) (Math.min(mWinStartY, mWinEndY) - pad),
+                (int) Math.ceil(Math.max(mWinStartX, mWinEndX) + pad),
+                (int) Math.ceil(Math.max(mWinStartY, mWinEndY) + pad));
+        invalidate(mWinLineBounds);
+    }
+
+    public void reset() {
+        Arrays.fill(mCellImages, 0);
+        Arrays.fill(mCellAnimationStart, 0);
+        Arrays.fill(mCellImageSetTime, 0);
+        mHintCell = -1;
+        clearWinner();
+        invalidate();
 //        animateGridLines(false);
     }
 
@@ -0,0 +1,90 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-board detection, legal move generation, and move application on
+ * boards of increasing size, each half full.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    private static final int NUM_POSITIONS = 256;
+
+    @Param({"3", "9", "15", "19"})
+    public int mSize;
+
+    private Board[] mBoards;
+    private int[] mMoves;
+    private LegacyRules.CellState[][] mCells;
+    private int[] mOut;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        final int winLength = Math.min(mSize, 5);
+        // Small boards fill up quickly without a winner only so far.
+        final int marks = mSize == 3 ? 4 : mSize * mSize / 2;
+        mBoards = Positions.random(mSize, mSize, winLength, marks, NUM_POSITIONS, 7);
+        mMoves = Positions.randomMoves(mBoards, 8);
+        mCells = new LegacyRules.CellState[NUM_POSITIONS][];
+        for (int ii = 0; ii < NUM_POSITIONS; ++ii) {
+            mCells[ii] = LegacyRules.toCells(mBoards[ii]);
+        }
+        mOut = new int[mSize * mSize];
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (NUM_POSITIONS - 1);
+        return mIndex;
+    }
+
+    @Benchmark
+    public boolean legacyIsFull() {
+        return LegacyRules.isFull(mCells[next()]);
+    }
+
+    @Benchmark
+    public boolean bitboardIsFull() {
+        return mBoards[next()].isFull();
+    }
+
+    @Benchmark
+    public int legacyEmptyCells() {
+        return LegacyRules.emptyCells(mCells[next()], mOut);
+    }
+
+    @Benchmark
+    public int bitboardEmptyCells() {
+        return mBoards[next()].getEmptyCells(mOut);
+    }
+
+    @Benchmark
+    public GameState bitboardPlayUndo() {
+        final int ii = next();
+        final Board board = mBoards[ii];
+        final GameState state = board.play(mMoves[ii]);
+        board.undo();
+        return state;
+    }
+}
@@ -0,0 +1,96 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+/**
+ * The rules as GameActivity.updateGameState implemented them before the
+ * engine was extracted: one enum per cell, eight hand-written line
+ * comparisons, and a linear scan for a full board. Kept as the baseline the
+ * bitboard engine is measured against.
+ */
+final class LegacyRules {
+
+    enum CellState {
+        EMPTY,
+        PLAYER1,
+        PLAYER2
+    }
+
+    private LegacyRules() {
+    }
+
+    static CellState[] toCells(Board board) {
+        final CellState[] cells = new CellState[board.getNumCells()];
+        for (int ii = 0; ii < cells.length; ++ii) {
+            switch (board.getCell(ii)) {
+                case Board.PLAYER1:
+                    cells[ii] = CellState.PLAYER1;
+                    break;
+                case Board.PLAYER2:
+                    cells[ii] = CellState.PLAYER2;
+                    break;
+                default:
+                    cells[ii] = CellState.EMPTY;
+                    break;
+            }
+        }
+        return cells;
+    }
+
+    static GameState gameState(CellState[] cells) {
+        CellState matchingCell = CellState.EMPTY;
+        // check rows, then columns, and finally diagonals
+        if (cells[0] == cells[1] && cells[1] == cells[2]) {
+            matchingCell = cells[0];
+        }
+        if (matchingCell == CellState.EMPTY && cells[3] == cells[4] && cells[4] == cells[5]) {
+            matchingCell = cells[3];
+        }
+        if (matchingCell == CellState.EMPTY && cells[6] == cells[7] && cells[7] == cells[8]) {
+            matchingCell = cells[6];
+        }
+        if (matchingCell == CellState.EMPTY && cells[0] == cells[3] && cells[3] == cells[6]) {
+            matchingCell = cells[0];
+        }
+        if (matchingCell == CellState.EMPTY && cells[1] == cells[4] && cells[4] == cells[7]) {
+            matchingCell = cells[1];
+        }
+        if (matchingCell == CellState.EMPTY && cells[2] == cells[5] && cells[5] == cells[8]) {
+            matchingCell = cells[2];
+        }
+        if (matchingCell == CellState.EMPTY && cells[0] == cells[4] && cells[4] == cells[8]) {
+            matchingCell = cells[0];
+        }
+        if (matchingCell == CellState.EMPTY && cells[2] == cells[4] && cells[4] == cells[6]) {
+            matchingCell = cells[2];
+        }
+        if (matchingCell != CellState.EMPTY) {
+            return matchingCell == CellState.PLAYER1
+                    ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS;
+        }
+        return isFull(cells) ? GameState.TIE_GAME : GameState.IN_PROGRESS;
+    }
+
+    static boolean isFull(CellState[] cells) {
+        for (int ii = 0; ii < cells.length; ++ii) {
+            if (cells[ii] == CellState.EMPTY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Legal move generation as a scan over the cell array.
+     */
+    static int emptyCells(CellState[] cells, int[] out) {
+        int count = 0;
+        for (int ii = 0; ii < cells.length; ++ii) {
+            if (cells[ii] == CellState.EMPTY) {
+                out[count++] = ii;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,88 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.NeuralEvaluator;
+import com.jasontoradler.tictactoe.engine.NeuralNetwork;
+import com.jasontoradler.tictactoe.engine.ThreatEvaluator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positions evaluated per second by the network in batches of different
+ * sizes, and by the threat evaluator which alpha-beta search uses, on
+ * 15 x 15 boards a few moves into the game. Every invocation evaluates
+ * {@link #NUM_POSITIONS} positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralEvaluatorBenchmark {
+
+    private static final int NUM_POSITIONS = 16;
+    private static final int SIZE = 15;
+    private static final int WIN_LENGTH = 5;
+
+    @Param({"1", "4", "16"})
+    public int mBatchSize;
+
+    @Param({"64"})
+    public int mNumHidden;
+
+    private Board[][] mBatches;
+    private NeuralEvaluator mEvaluator;
+    private ThreatEvaluator mThreatEvaluator;
+
+    @Setup
+    public void setUp() {
+        final Board[] boards = Positions.random(SIZE, SIZE, WIN_LENGTH, 20, NUM_POSITIONS, 11);
+        mBatches = new Board[NUM_POSITIONS / mBatchSize][];
+        for (int ii = 0; ii < mBatches.length; ++ii) {
+            mBatches[ii] = Arrays.copyOfRange(boards, ii * mBatchSize, (ii + 1) * mBatchSize);
+        }
+        mEvaluator = new NeuralEvaluator(NeuralNetwork.createRandom(SIZE, SIZE, WIN_LENGTH,
+                mNumHidden, new Random(5)), mBatchSize);
+        mThreatEvaluator = new ThreatEvaluator(SIZE, SIZE, WIN_LENGTH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_POSITIONS)
+    public float network() {
+        float sum = 0f;
+        for (Board[] batch : mBatches) {
+            mEvaluator.evaluate(batch, batch.length);
+            sum += mEvaluator.getValue(0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_POSITIONS)
+    public int threats() {
+        int sum = 0;
+        for (Board[] batch : mBatches) {
+            for (Board board : batch) {
+                mThreatEvaluator.setPosition(board);
+                sum += mThreatEvaluator.getScore(board.getTurn());
+            }
+        }
+        return sum;
+    }
+}
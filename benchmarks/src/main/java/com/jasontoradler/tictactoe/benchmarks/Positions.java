@@ -0,0 +1,56 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import java.util.Random;
+
+/**
+ * Reproducible test positions shared by the benchmarks.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * @return count games still in progress after playing numMoves random
+     * moves each
+     */
+    static Board[] random(int numRows, int numCols, int winLength, int numMoves, int count,
+                          long seed) {
+        final Random random = new Random(seed);
+        final Board[] boards = new Board[count];
+        for (int ii = 0; ii < count; ++ii) {
+            final Board board = new Board(numRows, numCols, winLength);
+            while (board.getMoveCount() < numMoves) {
+                final int cell = random.nextInt(board.getNumCells());
+                if (!board.isEmpty(cell)) {
+                    continue;
+                }
+                if (board.play(cell) != GameState.IN_PROGRESS) {
+                    // Start over; every position must still be playable.
+                    board.reset();
+                }
+            }
+            boards[ii] = board;
+        }
+        return boards;
+    }
+
+    /**
+     * @return a random empty cell of each board
+     */
+    static int[] randomMoves(Board[] boards, long seed) {
+        final Random random = new Random(seed);
+        final int[] moves = new int[boards.length];
+        for (int ii = 0; ii < boards.length; ++ii) {
+            int cell;
+            do {
+                cell = random.nextInt(boards[ii].getNumCells());
+            } while (!boards[ii].isEmpty(cell));
+            moves[ii] = cell;
+        }
+        return moves;
+    }
+}
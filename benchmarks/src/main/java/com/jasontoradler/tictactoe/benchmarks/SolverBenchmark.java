@@ -0,0 +1,67 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.Solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perfect-play search from the empty board and from a mid-game position, on
+ * 3x3 and on 4x4 with three in a row. A cold search starts from an empty
+ * transposition table; a warm one reuses the table from earlier calls, which
+ * is how the app plays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"3", "4"})
+    public int mSize;
+
+    @Param({"0", "4"})
+    public int mMarks;
+
+    private Board mBoard;
+    private Solver mColdSolver;
+    private Solver mWarmSolver;
+
+    @Setup
+    public void setUp() {
+        mBoard = Positions.random(mSize, mSize, 3, mMarks, 1, 11)[0];
+        mColdSolver = new Solver(mSize, mSize, 3);
+        mWarmSolver = new Solver(mSize, mSize, 3);
+        mWarmSolver.selectMove(mBoard);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearColdSolver() {
+        mColdSolver.clear();
+    }
+
+    @Benchmark
+    public int coldSelectMove() {
+        return mColdSolver.selectMove(mBoard);
+    }
+
+    @Benchmark
+    public int warmSelectMove() {
+        return mWarmSolver.selectMove(mBoard);
+    }
+}
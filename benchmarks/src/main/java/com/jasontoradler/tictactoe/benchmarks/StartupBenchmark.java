@@ -0,0 +1,73 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.AlphaBetaSearch;
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.MctsSearch;
+import com.jasontoradler.tictactoe.engine.OpeningBook;
+import com.jasontoradler.tictactoe.engine.Tablebase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The engine's share of the app's startup, each part measured once in a
+ * fresh JVM: mapping the shipped tables and making the first lookup, and
+ * building the computer players for the larger boards. Nothing is warmed
+ * up, so the times include class loading and interpreted code, as on a cold
+ * launch. Inflating views, decoding images and the first frame only happen
+ * on a device; the app records its whole launch, up to the first frame
+ * which draws the grid, in its startup metric.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+    // Relative to the benchmarks project, which the forks run in.
+    private static final File ASSETS = new File("../app/src/main/assets");
+
+    @Benchmark
+    public int mapTablebaseAndProbe() throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                new File(ASSETS, "tablebase_3x3.bin").toPath(), StandardOpenOption.READ)) {
+            final Tablebase tablebase = Tablebase.map(channel, 0, channel.size());
+            return tablebase.selectMove(new Board());
+        }
+    }
+
+    @Benchmark
+    public int mapOpeningBookAndLookUp() throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                new File(ASSETS, "opening_book_9x9_4.bin").toPath(), StandardOpenOption.READ)) {
+            final OpeningBook book = OpeningBook.map(channel, 0, channel.size());
+            return book.getBookMove(new Board(9, 9, 4), 50);
+        }
+    }
+
+    @Benchmark
+    public MctsSearch createMctsSearch() {
+        return new MctsSearch(9, 9, 4);
+    }
+
+    @Benchmark
+    public AlphaBetaSearch createAlphaBetaSearch() {
+        return new AlphaBetaSearch(19, 19, 5, AlphaBetaSearch.DEFAULT_TIME_BUDGET_MILLIS,
+                Runtime.getRuntime().availableProcessors(), AlphaBetaSearch.DEFAULT_TABLE_BITS);
+    }
+}
@@ -0,0 +1,94 @@
+package com.jasontoradler.tictactoe.benchmarks;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying one move and deciding whether it ended the game, on a set
+ * of random positions with the given number of marks already placed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WinCheckBenchmark {
+
+    private static final int NUM_POSITIONS = 1024;
+
+    @Param({"2", "4", "6"})
+    public int mMarks;
+
+    private Board[] mBoards;
+    private int[] mMoves;
+    private LegacyRules.CellState[][] mCells;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mBoards = Positions.random(3, 3, 3, mMarks, NUM_POSITIONS, 42);
+        mMoves = Positions.randomMoves(mBoards, 43);
+        mCells = new LegacyRules.CellState[NUM_POSITIONS][];
+        for (int ii = 0; ii < NUM_POSITIONS; ++ii) {
+            mCells[ii] = LegacyRules.toCells(mBoards[ii]);
+        }
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (NUM_POSITIONS - 1);
+        return mIndex;
+    }
+
+    /**
+     * Baseline: set the cell's enum, run the original eight comparisons and
+     * full-board scan, then clear the cell again.
+     */
+    @Benchmark
+    public GameState legacyUpdateGameState() {
+        final int ii = next();
+        final LegacyRules.CellState[] cells = mCells[ii];
+        final int move = mMoves[ii];
+        cells[move] = mMarks % 2 == 0
+                ? LegacyRules.CellState.PLAYER1 : LegacyRules.CellState.PLAYER2;
+        final GameState state = LegacyRules.gameState(cells);
+        cells[move] = LegacyRules.CellState.EMPTY;
+        return state;
+    }
+
+    /**
+     * Board.play checks only the line masks through the new mark.
+     */
+    @Benchmark
+    public GameState bitboardPlayUndo() {
+        final int ii = next();
+        final Board board = mBoards[ii];
+        final GameState state = board.play(mMoves[ii]);
+        board.undo();
+        return state;
+    }
+
+    /**
+     * Win check alone, without updating the move history.
+     */
+    @Benchmark
+    public boolean bitboardIsWinningMove() {
+        final int ii = next();
+        final Board board = mBoards[ii];
+        return board.isWinningMove(board.getTurn(), mMoves[ii]);
+    }
+}
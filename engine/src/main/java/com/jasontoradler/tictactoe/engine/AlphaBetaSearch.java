@@ -0,0 +1,419 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Iterative deepening alpha-beta search for large k-in-a-row boards. The
+ * search goes one ply deeper each iteration until its time budget runs out,
+ * then plays the best move found. An iteration cut short still counts: the
+ * previous iteration's best move is searched first, so any move which beats
+ * it has been fully searched.
+ * <p/>
+ * Only empty cells near existing marks are considered. Moves are tried in
+ * order of: the best move stored for the position in the transposition
+ * table, immediate wins, blocks of immediate losses, the two killer moves
+ * which last caused a cutoff at the same ply, and then by history (how often
+ * a move caused cutoffs anywhere) plus the {@link ThreatEvaluator}'s estimate
+ * of its gain. Leaves are scored by the evaluator, which is updated as moves
+ * are made and taken back rather than recomputed.
+ * <p/>
+ * With more than one thread the search is Lazy SMP: every thread runs the
+ * same iterative deepening search on its own copy of the board, half of the
+ * helpers one ply deeper, and they share only a lock-free
+ * {@link TranspositionTable}. Results one thread stores cut off or reorder
+ * the others' searches, so together they get deeper than one thread alone.
+ * The caller's thread decides the move. Call {@link #shutdown()} to stop the
+ * helper threads when the search is no longer needed.
+ * <p/>
+ * All working storage is allocated up front; a search allocates nothing.
+ */
+public class AlphaBetaSearch implements Strategy {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+    // 2^16 buckets of 32 bytes each.
+    public static final int DEFAULT_TABLE_BITS = 16;
+
+    private static final int CANDIDATE_RADIUS = 2;
+    // Larger than any evaluation; a win n plies away scores WIN - n.
+    private static final int WIN = 1 << 28;
+    private static final int INFINITY = WIN + 1;
+    // Check the clock once per this many nodes.
+    private static final int CLOCK_INTERVAL = 255;
+
+    // Ordering bonuses, well above any history or gain value.
+    private static final int TABLE_ORDER = Integer.MAX_VALUE - 1;
+    private static final int WIN_ORDER = 1 << 30;
+    private static final int BLOCK_ORDER = 1 << 29;
+    private static final int KILLER_ORDER = 1 << 28;
+
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final long mTimeBudgetNanos;
+    private final int mMaxPly;
+    private final TranspositionTable mTable;
+    private final Searcher[] mSearchers;
+    private final ExecutorService mExecutor;
+    private volatile long mDeadline;
+    private volatile boolean mIsStopped;
+    private volatile boolean mIsShutdown;
+
+    public AlphaBetaSearch(int numRows, int numCols, int winLength) {
+        this(numRows, numCols, winLength, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Create a search using one thread and the default table size.
+     *
+     * @param timeBudgetMillis how long each call to selectMove may search
+     */
+    public AlphaBetaSearch(int numRows, int numCols, int winLength, long timeBudgetMillis) {
+        this(numRows, numCols, winLength, timeBudgetMillis, 1, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @param timeBudgetMillis how long each call to selectMove may search
+     * @param numThreads       threads to search with, including the caller's
+     * @param tableBits        log2 of the number of transposition table
+     *                         buckets
+     */
+    public AlphaBetaSearch(int numRows, int numCols, int winLength, long timeBudgetMillis,
+                           int numThreads, int tableBits) {
+        if (numThreads < 1 || timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("invalid search settings");
+        }
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mWinLength = winLength;
+        mTimeBudgetNanos = timeBudgetMillis * 1000000L;
+        mMaxPly = numRows * numCols + 1;
+        mTable = new TranspositionTable(tableBits);
+        mSearchers = new Searcher[numThreads];
+        for (int ii = 0; ii < numThreads; ++ii) {
+            mSearchers[ii] = new Searcher();
+        }
+        mExecutor = SearchThreads.newHelperPool("AlphaBetaSearch", numThreads);
+    }
+
+    /**
+     * Stop the helper threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        mIsShutdown = true;
+        mIsStopped = true;
+        SearchThreads.shutdown(mExecutor);
+    }
+
+    /**
+     * @return depth of the last iteration completed by the most recent search
+     * on the caller's thread
+     */
+    public int getCompletedDepth() {
+        return mSearchers[0].mCompletedDepth;
+    }
+
+    /**
+     * @return nodes visited by the most recent search, over all threads
+     */
+    public long getNodeCount() {
+        long nodes = 0;
+        for (Searcher searcher : mSearchers) {
+            nodes += searcher.mNodes;
+        }
+        return nodes;
+    }
+
+    @Override
+    public int selectMove(final Board board) {
+        final Searcher main = mSearchers[0];
+        if (!board.hasSameDimensions(main.mBoard)) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            throw new IllegalStateException("game is over: " + board.getGameState());
+        }
+        if (mIsShutdown) {
+            throw new IllegalStateException("search is shut down");
+        }
+        mIsStopped = false;
+        mDeadline = System.nanoTime() + mTimeBudgetNanos;
+        mTable.newSearch();
+
+        final CountDownLatch done = new CountDownLatch(mSearchers.length - 1);
+        for (int ii = 1; ii < mSearchers.length; ++ii) {
+            final Searcher helper = mSearchers[ii];
+            // Odd helpers start a ply deeper so the threads spread out over
+            // depths instead of all repeating the same iteration.
+            final int depthOffset = ii & 1;
+            try {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            helper.run(board, depthOffset);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down from another thread; search without this helper.
+                done.countDown();
+            }
+        }
+        // The helpers only read board, and are finished with it before this
+        // returns.
+        final int move = main.run(board, 0);
+        mIsStopped = true;
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return move;
+    }
+
+    /**
+     * Adjust a score for storage in the table, where it must not depend on
+     * how far the position is from the root: wins and losses count their
+     * distance from the position itself.
+     */
+    private int toTableScore(int score, int ply) {
+        if (score >= WIN - mMaxPly) {
+            return score + ply;
+        } else if (score <= -WIN + mMaxPly) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private int fromTableScore(int score, int ply) {
+        if (score >= WIN - mMaxPly) {
+            return score - ply;
+        } else if (score <= -WIN + mMaxPly) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * State owned by one search thread.
+     */
+    private class Searcher {
+        private final Board mBoard = new Board(mNumRows, mNumCols, mWinLength);
+        private final ThreatEvaluator mEvaluator =
+                new ThreatEvaluator(mNumRows, mNumCols, mWinLength);
+        // Moves and their ordering scores at each ply.
+        private final int[][] mMoves = new int[mMaxPly][mNumRows * mNumCols];
+        private final int[][] mOrder = new int[mMaxPly][mNumRows * mNumCols];
+        // Two most recent cutoff moves at each ply.
+        private final int[][] mKillers = new int[mMaxPly][2];
+        // Cutoff counts, weighted by depth, per player and cell.
+        private final int[][] mHistory = new int[2][mNumRows * mNumCols];
+        private long mNodes;
+        private boolean mIsAborted;
+        private int mRootBestMove;
+        private int mCompletedDepth;
+
+        /**
+         * Search board with iterative deepening until out of time, the
+         * result is proven, or another thread stops the search.
+         *
+         * @param depthOffset plies to add to every iteration's depth
+         * @return the best move of the last iteration searched
+         */
+        int run(Board board, int depthOffset) {
+            mBoard.copyFrom(board);
+            mEvaluator.setPosition(mBoard);
+            mNodes = 0;
+            mIsAborted = false;
+            mCompletedDepth = 0;
+            for (int[] killers : mKillers) {
+                killers[0] = -1;
+                killers[1] = -1;
+            }
+            // Age the history so recent cutoffs count for more.
+            for (int[] history : mHistory) {
+                for (int ii = 0; ii < history.length; ++ii) {
+                    history[ii] >>= 2;
+                }
+            }
+
+            mRootBestMove = -1;
+            final int maxDepth = mBoard.getNumCells() - mBoard.getMoveCount();
+            for (int depth = 1 + depthOffset; depth <= maxDepth; ++depth) {
+                final int score = search(depth, -INFINITY, INFINITY, 0);
+                if (mIsAborted) {
+                    break;
+                }
+                mCompletedDepth = depth;
+                if (score >= WIN - mMaxPly || score <= -WIN + mMaxPly) {
+                    // The result is proven; deeper searches cannot change it.
+                    break;
+                }
+            }
+            if (mRootBestMove < 0) {
+                // Out of time before the first move was searched.
+                mRootBestMove = generateMoves(0, -1) > 0 ? mMoves[0][0] : -1;
+            }
+            return mRootBestMove;
+        }
+
+        /**
+         * Negamax alpha-beta search.
+         *
+         * @return the position's value to the player to move
+         */
+        private int search(int depth, int alpha, int beta, int ply) {
+            if ((++mNodes & CLOCK_INTERVAL) == 0
+                    && (mIsStopped || System.nanoTime() > mDeadline)) {
+                mIsAborted = true;
+            }
+            if (mIsAborted) {
+                return 0;
+            }
+            final Board board = mBoard;
+            final int player = board.getTurn();
+            if (depth == 0) {
+                // The player to move completes any open threat.
+                if (mEvaluator.getThreatCount(player) > 0) {
+                    return WIN - ply - 1;
+                }
+                return mEvaluator.getScore(player);
+            }
+
+            final long key = board.getHash();
+            final long entry = mTable.probe(key);
+            int tableMove = -1;
+            if (entry != TranspositionTable.MISSING) {
+                tableMove = TranspositionTable.getMove(entry);
+                // The root always searches, so that it has a move to return.
+                if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                    final int score = fromTableScore(TranspositionTable.getScore(entry), ply);
+                    final int bound = TranspositionTable.getBound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+
+            final int originalAlpha = alpha;
+            final int count = generateMoves(ply, tableMove);
+            final int[] moves = mMoves[ply];
+            final int[] order = mOrder[ply];
+            int best = -INFINITY;
+            int bestMove = -1;
+            for (int ii = 0; ii < count; ++ii) {
+                // Selection sort one move at a time; a cutoff usually comes
+                // early.
+                int pick = ii;
+                for (int jj = ii + 1; jj < count; ++jj) {
+                    if (order[jj] > order[pick]) {
+                        pick = jj;
+                    }
+                }
+                final int move = moves[pick];
+                moves[pick] = moves[ii];
+                moves[ii] = move;
+                final int moveOrder = order[pick];
+                order[pick] = order[ii];
+                order[ii] = moveOrder;
+
+                final int score;
+                final GameState state = board.play(move);
+                mEvaluator.place(player, move);
+                if (state == GameState.TIE_GAME) {
+                    score = 0;
+                } else if (state != GameState.IN_PROGRESS) {
+                    score = WIN - ply - 1;
+                } else {
+                    score = -search(depth - 1, -beta, -alpha, ply + 1);
+                }
+                mEvaluator.remove(player, move);
+                board.undo();
+                if (mIsAborted) {
+                    return best;
+                }
+
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (ply == 0) {
+                        mRootBestMove = move;
+                    }
+                }
+                if (best > alpha) {
+                    alpha = best;
+                }
+                if (alpha >= beta) {
+                    final int[] killers = mKillers[ply];
+                    if (killers[0] != move) {
+                        killers[1] = killers[0];
+                        killers[0] = move;
+                    }
+                    mHistory[player][move] += depth * depth;
+                    break;
+                }
+            }
+
+            final int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            mTable.store(key, bestMove, toTableScore(best, ply), depth, bound);
+            return best;
+        }
+
+        /**
+         * Fill mMoves[ply] with the moves to consider and mOrder[ply] with how
+         * promising each looks. At the root the previous iteration's best
+         * move comes first, and elsewhere the table's move.
+         *
+         * @param tableMove best move stored in the table, or -1
+         * @return number of moves
+         */
+        private int generateMoves(int ply, int tableMove) {
+            final Board board = mBoard;
+            final int[] moves = mMoves[ply];
+            final int[] order = mOrder[ply];
+            int count = board.getCandidateMoves(moves, CANDIDATE_RADIUS);
+            if (count == 0) {
+                count = board.getEmptyCells(moves);
+            }
+            final int player = board.getTurn();
+            final int[] killers = mKillers[ply];
+            final int[] history = mHistory[player];
+            for (int ii = 0; ii < count; ++ii) {
+                final int move = moves[ii];
+                int value;
+                if (ply == 0 && move == mRootBestMove) {
+                    value = Integer.MAX_VALUE;
+                } else if (move == tableMove) {
+                    value = TABLE_ORDER;
+                } else if (board.isWinningMove(player, move)) {
+                    value = WIN_ORDER;
+                } else if (board.isWinningMove(1 - player, move)) {
+                    value = BLOCK_ORDER;
+                } else if (move == killers[0]) {
+                    value = KILLER_ORDER + 1;
+                } else if (move == killers[1]) {
+                    value = KILLER_ORDER;
+                } else {
+                    value = Math.min(history[move] + mEvaluator.getMoveGain(player, move),
+                            KILLER_ORDER - 1);
+                }
+                order[ii] = value;
+            }
+            return count;
+        }
+    }
+}
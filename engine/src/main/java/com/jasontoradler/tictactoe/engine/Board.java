@@ -0,0 +1,506 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.Arrays;
+
+/**
+ * Tic-tac-toe position stored as one bit mask per player. Cell positions use
+ * the same zero-based, row-major numbering as the grid (x + y * numCols), so
+ * bit n of a mask is set when that player owns cell n. Boards of more than 64
+ * cells split each mask across several words, with cell n in bit n % 64 of
+ * word n / 64.
+ * <p/>
+ * A player wins by getting winLength marks in a row, column, or diagonal.
+ * Only lines through the cell just played can have been completed, so a move
+ * only checks those. Boards which fit in one word precompute every such line
+ * as a mask and check each with one AND; larger boards walk the four
+ * directions out from the new mark, which costs O(winLength) per move however
+ * big the board is. Moves are applied and undone in place; nothing is
+ * allocated after construction.
+ * <p/>
+ * The board also keeps a Zobrist hash of its position: the XOR of a fixed
+ * random number for each mark on it. Playing or undoing a move updates it
+ * with a single XOR, so searches can key tables by position for free.
+ */
+public class Board {
+
+    public static final int EMPTY = -1;
+    public static final int PLAYER1 = 0;
+    public static final int PLAYER2 = 1;
+
+    public static final int DEFAULT_SIZE = 3;
+
+    /**
+     * Largest number of rows or columns.
+     */
+    public static final int MAX_SIZE = 32;
+
+    /**
+     * Largest number of cells which fit in a single mask word.
+     */
+    public static final int WORD_CELLS = 64;
+
+    // Row, column, diagonal, and anti-diagonal steps.
+    private static final int[] DIRECTION_X = {1, 0, 1, -1};
+    private static final int[] DIRECTION_Y = {0, 1, 1, 1};
+
+    // Random number for each player and cell, player 1's first. Cells are
+    // numbered for the board's own width, so hashes are only comparable
+    // between boards of the same dimensions.
+    private static final long[] ZOBRIST_KEYS = new long[2 * MAX_SIZE * MAX_SIZE];
+
+    static {
+        final SplitMix64 random = new SplitMix64(0x5a4f425249535431L);
+        for (int ii = 0; ii < ZOBRIST_KEYS.length; ++ii) {
+            ZOBRIST_KEYS[ii] = random.nextLong();
+        }
+    }
+
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final int mNumCells;
+    private final int mNumWords;
+    // Lines through each cell, for single word boards only.
+    private final long[][] mCellLines;
+    // Player 1's words followed by player 2's words.
+    private final long[] mStones;
+    private final int[] mMoves;
+    private int mMoveCount;
+    private long mHash;
+    // Scratch marks for getCandidateMoves: cell n was already collected by the
+    // current call when mCandidateMarks[n] == mCandidateGeneration.
+    private final int[] mCandidateMarks;
+    private int mCandidateGeneration;
+    private GameState mGameState = GameState.IN_PROGRESS;
+
+    /**
+     * Create a classic 3x3, three-in-a-row board.
+     */
+    public Board() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * Create an empty board.
+     *
+     * @param numRows   number of rows
+     * @param numCols   number of columns
+     * @param winLength number of marks in a row needed to win
+     */
+    public Board(int numRows, int numCols, int winLength) {
+        if (numRows < 1 || numCols < 1 || numRows > MAX_SIZE || numCols > MAX_SIZE) {
+            throw new IllegalArgumentException(
+                    "unsupported board size: " + numRows + "x" + numCols);
+        }
+        if (winLength < 1 || (winLength > numRows && winLength > numCols)) {
+            throw new IllegalArgumentException("unsupported win length: " + winLength);
+        }
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mWinLength = winLength;
+        mNumCells = numRows * numCols;
+        mNumWords = (mNumCells + WORD_CELLS - 1) / WORD_CELLS;
+        mCellLines = mNumWords == 1 ? buildCellLines(numRows, numCols, winLength) : null;
+        mStones = new long[2 * mNumWords];
+        mMoves = new int[mNumCells];
+        mCandidateMarks = new int[mNumCells];
+    }
+
+    /**
+     * Create a copy of another board, including its move history.
+     */
+    public Board(Board other) {
+        mNumRows = other.mNumRows;
+        mNumCols = other.mNumCols;
+        mWinLength = other.mWinLength;
+        mNumCells = other.mNumCells;
+        mNumWords = other.mNumWords;
+        // The line masks never change, so they can be shared.
+        mCellLines = other.mCellLines;
+        mStones = new long[2 * mNumWords];
+        mMoves = new int[mNumCells];
+        mCandidateMarks = new int[mNumCells];
+        copyFrom(other);
+    }
+
+    /**
+     * Collect, for every cell, the masks of all winLength lines which pass
+     * through it: rows, columns, and both diagonals.
+     */
+    private static long[][] buildCellLines(int numRows, int numCols, int winLength) {
+        final int numCells = numRows * numCols;
+        final long[][] scratch = new long[numCells][4 * winLength];
+        final int[] counts = new int[numCells];
+        for (int d = 0; d < DIRECTION_X.length; ++d) {
+            final int dx = DIRECTION_X[d];
+            final int dy = DIRECTION_Y[d];
+            for (int y = 0; y < numRows; ++y) {
+                for (int x = 0; x < numCols; ++x) {
+                    final int endX = x + dx * (winLength - 1);
+                    final int endY = y + dy * (winLength - 1);
+                    if (endX < 0 || endX >= numCols || endY >= numRows) {
+                        continue;
+                    }
+                    long line = 0;
+                    for (int ii = 0; ii < winLength; ++ii) {
+                        line |= 1L << (x + dx * ii + (y + dy * ii) * numCols);
+                    }
+                    for (int ii = 0; ii < winLength; ++ii) {
+                        final int cell = x + dx * ii + (y + dy * ii) * numCols;
+                        scratch[cell][counts[cell]++] = line;
+                    }
+                }
+            }
+        }
+        final long[][] cellLines = new long[numCells][];
+        for (int ii = 0; ii < numCells; ++ii) {
+            cellLines[ii] = Arrays.copyOf(scratch[ii], counts[ii]);
+        }
+        return cellLines;
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    public int getNumCells() {
+        return mNumCells;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    /**
+     * @return number of words in each player's mask
+     */
+    public int getNumWords() {
+        return mNumWords;
+    }
+
+    /**
+     * @return {@link #PLAYER1} or {@link #PLAYER2}, whoever moves next
+     */
+    public int getTurn() {
+        return mMoveCount & 1;
+    }
+
+    /**
+     * @return Zobrist hash of the marks on the board
+     */
+    public long getHash() {
+        return mHash;
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * @param index zero-based index into the move history
+     * @return position of the index'th move played
+     */
+    public int getMove(int index) {
+        if (index < 0 || index >= mMoveCount) {
+            throw new IndexOutOfBoundsException("move " + index + " of " + mMoveCount);
+        }
+        return mMoves[index];
+    }
+
+    /**
+     * @return position of the most recent move, or -1 if the board is empty
+     */
+    public int getLastMove() {
+        return mMoveCount == 0 ? -1 : mMoves[mMoveCount - 1];
+    }
+
+    public GameState getGameState() {
+        return mGameState;
+    }
+
+    /**
+     * Mask of the cells owned by player on a board of at most
+     * {@link #WORD_CELLS} cells.
+     *
+     * @param player {@link #PLAYER1} or {@link #PLAYER2}
+     */
+    public long getStones(int player) {
+        if (mNumWords != 1) {
+            throw new IllegalStateException("board does not fit in one word");
+        }
+        return mStones[player];
+    }
+
+    /**
+     * @param player {@link #PLAYER1} or {@link #PLAYER2}
+     * @param word   which 64 cell word of the mask to return
+     * @return part of the mask of cells owned by player
+     */
+    public long getStones(int player, int word) {
+        return mStones[player * mNumWords + word];
+    }
+
+    /**
+     * @return {@link #PLAYER1}, {@link #PLAYER2}, or {@link #EMPTY}
+     */
+    public int getCell(int position) {
+        final int word = position >>> 6;
+        final long bit = 1L << position;
+        if ((mStones[word] & bit) != 0) {
+            return PLAYER1;
+        }
+        return (mStones[mNumWords + word] & bit) != 0 ? PLAYER2 : EMPTY;
+    }
+
+    public boolean isEmpty(int position) {
+        if (position < 0 || position >= mNumCells) {
+            return false;
+        }
+        final int word = position >>> 6;
+        return ((mStones[word] | mStones[mNumWords + word]) & (1L << position)) == 0;
+    }
+
+    public boolean isFull() {
+        return mMoveCount == mNumCells;
+    }
+
+    /**
+     * Fill out with the positions of every empty cell, in ascending order.
+     *
+     * @param out array with room for at least getNumCells() entries
+     * @return number of empty cells written
+     */
+    public int getEmptyCells(int[] out) {
+        int count = 0;
+        for (int word = 0; word < mNumWords; ++word) {
+            long empty = ~(mStones[word] | mStones[mNumWords + word]);
+            if (word == mNumWords - 1 && mNumCells % WORD_CELLS != 0) {
+                empty &= (1L << (mNumCells % WORD_CELLS)) - 1;
+            }
+            while (empty != 0) {
+                out[count++] = word * WORD_CELLS + Long.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fill out with the empty cells within radius rows and columns of any
+     * mark, which on large boards are the only moves worth considering. An
+     * empty board yields just its center cell.
+     *
+     * @param out    array with room for at least getNumCells() entries
+     * @param radius how far from existing marks to look
+     * @return number of cells written
+     */
+    public int getCandidateMoves(int[] out, int radius) {
+        if (mMoveCount == 0) {
+            out[0] = mNumRows / 2 * mNumCols + mNumCols / 2;
+            return 1;
+        }
+        if (++mCandidateGeneration == 0) {
+            // The counter wrapped; forget every old mark.
+            Arrays.fill(mCandidateMarks, 0);
+            mCandidateGeneration = 1;
+        }
+        int count = 0;
+        for (int ii = 0; ii < mMoveCount; ++ii) {
+            final int x = mMoves[ii] % mNumCols;
+            final int y = mMoves[ii] / mNumCols;
+            final int minX = Math.max(0, x - radius);
+            final int maxX = Math.min(mNumCols - 1, x + radius);
+            final int maxY = Math.min(mNumRows - 1, y + radius);
+            for (int ny = Math.max(0, y - radius); ny <= maxY; ++ny) {
+                for (int nx = minX; nx <= maxX; ++nx) {
+                    final int cell = nx + ny * mNumCols;
+                    if (mCandidateMarks[cell] != mCandidateGeneration && isEmpty(cell)) {
+                        mCandidateMarks[cell] = mCandidateGeneration;
+                        out[count++] = cell;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if player placing a mark at the empty cell position would
+     * complete a winning line, whether or not it is player's turn
+     */
+    public boolean isWinningMove(int player, int position) {
+        if (!isEmpty(position)) {
+            throw new IllegalArgumentException("cell is not empty: " + position);
+        }
+        final int word = player * mNumWords + (position >>> 6);
+        final long bit = 1L << position;
+        mStones[word] |= bit;
+        final boolean wins = completesLine(player, position);
+        mStones[word] &= ~bit;
+        return wins;
+    }
+
+    /**
+     * Place the current player's mark at position and update the game state.
+     *
+     * @param position empty cell to play
+     * @return the game state after the move
+     */
+    public GameState play(int position) {
+        if (mGameState != GameState.IN_PROGRESS) {
+            throw new IllegalStateException("game is over: " + mGameState);
+        }
+        if (!isEmpty(position)) {
+            throw new IllegalArgumentException("cell is not empty: " + position);
+        }
+        final int player = mMoveCount & 1;
+        mStones[player * mNumWords + (position >>> 6)] |= 1L << position;
+        mMoves[mMoveCount++] = position;
+        mHash ^= ZOBRIST_KEYS[player * MAX_SIZE * MAX_SIZE + position];
+
+        if (completesLine(player, position)) {
+            mGameState = player == PLAYER1
+                    ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS;
+        } else if (mMoveCount == mNumCells) {
+            mGameState = GameState.TIE_GAME;
+        }
+        return mGameState;
+    }
+
+    /**
+     * @return true if player owns winLength cells in a row through position
+     */
+    private boolean completesLine(int player, int position) {
+        if (mCellLines != null) {
+            final long stones = mStones[player];
+            for (final long line : mCellLines[position]) {
+                if ((stones & line) == line) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        final int x = position % mNumCols;
+        final int y = position / mNumCols;
+        for (int d = 0; d < DIRECTION_X.length; ++d) {
+            final int dx = DIRECTION_X[d];
+            final int dy = DIRECTION_Y[d];
+            final int count = 1 + countRun(player, x, y, dx, dy)
+                    + countRun(player, x, y, -dx, -dy);
+            if (count >= mWinLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the line of marks which won the game. Only the last move can have
+     * completed it, so only the lines through that cell are checked.
+     *
+     * @param out receives the cells at either end of the line, out[0] before
+     *            out[1] in reading order
+     * @return false if the game has not been won
+     */
+    public boolean getWinningLine(int[] out) {
+        if (mGameState != GameState.PLAYER1_WINS && mGameState != GameState.PLAYER2_WINS) {
+            return false;
+        }
+        final int player = (mMoveCount - 1) & 1;
+        final int position = mMoves[mMoveCount - 1];
+        final int x = position % mNumCols;
+        final int y = position / mNumCols;
+        for (int d = 0; d < DIRECTION_X.length; ++d) {
+            final int dx = DIRECTION_X[d];
+            final int dy = DIRECTION_Y[d];
+            final int forward = countRun(player, x, y, dx, dy);
+            final int backward = countRun(player, x, y, -dx, -dy);
+            if (1 + forward + backward >= mWinLength) {
+                out[0] = (x - dx * backward) + (y - dy * backward) * mNumCols;
+                out[1] = (x + dx * forward) + (y + dy * forward) * mNumCols;
+                if (out[0] > out[1]) {
+                    final int swap = out[0];
+                    out[0] = out[1];
+                    out[1] = swap;
+                }
+                return true;
+            }
+        }
+        throw new IllegalStateException("no winning line through last move " + position);
+    }
+
+    /**
+     * Count player's marks in a row starting next to (x, y) and heading in
+     * direction (dx, dy), stopping once a win is certain.
+     */
+    private int countRun(int player, int x, int y, int dx, int dy) {
+        final int base = player * mNumWords;
+        int count = 0;
+        x += dx;
+        y += dy;
+        while (count < mWinLength - 1 && x >= 0 && x < mNumCols && y >= 0 && y < mNumRows) {
+            final int cell = x + y * mNumCols;
+            if ((mStones[base + (cell >>> 6)] & (1L << cell)) == 0) {
+                break;
+            }
+            ++count;
+            x += dx;
+            y += dy;
+        }
+        return count;
+    }
+
+    /**
+     * Take back the most recent move.
+     */
+    public void undo() {
+        if (mMoveCount == 0) {
+            throw new IllegalStateException("no moves to undo");
+        }
+        final int position = mMoves[--mMoveCount];
+        mStones[(mMoveCount & 1) * mNumWords + (position >>> 6)] &= ~(1L << position);
+        mHash ^= ZOBRIST_KEYS[(mMoveCount & 1) * MAX_SIZE * MAX_SIZE + position];
+        // Play stops at the first win or tie, so every earlier position was
+        // still in progress.
+        mGameState = GameState.IN_PROGRESS;
+    }
+
+    /**
+     * Clear the board to start a new game.
+     */
+    public void reset() {
+        Arrays.fill(mStones, 0);
+        mMoveCount = 0;
+        mHash = 0;
+        mGameState = GameState.IN_PROGRESS;
+    }
+
+    /**
+     * @return true if other has the same number of rows, columns, and win
+     * length as this board
+     */
+    public boolean hasSameDimensions(Board other) {
+        return other.mNumRows == mNumRows && other.mNumCols == mNumCols
+                && other.mWinLength == mWinLength;
+    }
+
+    /**
+     * Overwrite this board with the position and history of another board of
+     * the same dimensions.
+     */
+    public void copyFrom(Board other) {
+        if (!hasSameDimensions(other)) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+        System.arraycopy(other.mStones, 0, mStones, 0, mStones.length);
+        System.arraycopy(other.mMoves, 0, mMoves, 0, other.mMoveCount);
+        mMoveCount = other.mMoveCount;
+        mHash = other.mHash;
+        mGameState = other.mGameState;
+    }
+}
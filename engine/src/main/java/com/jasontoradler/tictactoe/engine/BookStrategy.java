@@ -0,0 +1,33 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Plays from an {@link OpeningBook} while the position has well explored
+ * moves, and hands over to another strategy after that.
+ */
+public class BookStrategy implements Strategy {
+
+    private final OpeningBook mBook;
+    private final Strategy mFallback;
+    private final int mMinVisits;
+
+    /**
+     * @param minVisits games a move must have been seen in to be played from
+     *                  the book
+     */
+    public BookStrategy(OpeningBook book, Strategy fallback, int minVisits) {
+        mBook = book;
+        mFallback = fallback;
+        mMinVisits = minVisits;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (mBook.covers(board)) {
+            final int move = mBook.getBookMove(board, mMinVisits);
+            if (move >= 0) {
+                return move;
+            }
+        }
+        return mFallback.selectMove(board);
+    }
+}
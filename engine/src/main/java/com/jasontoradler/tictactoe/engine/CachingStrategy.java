@@ -0,0 +1,50 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Remembers the moves another strategy chooses in an {@link EvaluationCache},
+ * and plays the remembered move when a position comes up again instead of
+ * asking for a new one. Openings repeat from game to game, so with a cache
+ * which is saved between runs most early searches on large boards are never
+ * repeated.
+ * <p/>
+ * Positions are keyed by their {@link Board#getHash hash} and the board's
+ * dimensions, so one cache can serve every board size.
+ */
+public class CachingStrategy implements Strategy {
+
+    private final EvaluationCache mCache;
+    private final Strategy mFallback;
+
+    public CachingStrategy(EvaluationCache cache, Strategy fallback) {
+        mCache = cache;
+        mFallback = fallback;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        final long key = getKey(board);
+        final int cached = mCache.get(key);
+        if (cached != EvaluationCache.MISSING && cached < board.getNumCells()
+                && board.isEmpty(cached)) {
+            return cached;
+        }
+        final int move = mFallback.selectMove(board);
+        // An interrupted search returns whatever it had so far, which is not
+        // worth keeping.
+        if (move >= 0 && !Thread.currentThread().isInterrupted()) {
+            mCache.put(key, move);
+        }
+        return move;
+    }
+
+    /**
+     * @return key for board's position in an {@link EvaluationCache}
+     */
+    public static long getKey(Board board) {
+        final long dimensions = (long) board.getNumRows() << 16 | board.getNumCols() << 8
+                | board.getWinLength();
+        // Spread the few dimension bits over the whole key, so boards of
+        // different sizes use different sets.
+        return board.getHash() ^ SplitMix64.mix(dimensions);
+    }
+}
@@ -0,0 +1,365 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Bounded map from position keys to the moves chosen in those positions,
+ * which can be saved to a file and read back by a later process.
+ * <p/>
+ * Entries are kept in primitive arrays divided into sets of {@link #WAYS}
+ * entries; a key can only live in the set its low bits pick. When a set is
+ * full, a clock hand sweeps over it and evicts the first entry which has not
+ * been read or written since the hand last passed, which approximates least
+ * recently used eviction for the cost of one flag per entry.
+ * <p/>
+ * Every new entry is queued for the file from the moment the cache is
+ * created, and {@link #flush} appends the queue once {@link #load} has opened
+ * the file. Entries that have been replaced or evicted stay in the file until
+ * it grows to {@link #COMPACT_RATIO} times the cache's capacity, or the queue
+ * overflows before a flush, when {@link #flush} rewrites it with only the
+ * live entries. A file cut short by the process dying mid-write loses only
+ * its last entry.
+ * <p/>
+ * {@link #get} and {@link #put} synchronize on the cache, and {@link #load},
+ * {@link #flush} and {@link #close} on a separate file lock. The file methods
+ * only hold the cache's lock to insert a chunk of loaded entries, swap out
+ * the queue, or copy out the live entries, never while reading or writing
+ * the file, so a thread playing with the cache does not wait on storage
+ * while another loads and saves it. A file should only have one cache at a
+ * time, since a compaction replaces the file under any other cache
+ * appending to it.
+ */
+public class EvaluationCache implements Closeable {
+
+    public static final int MAGIC = 0x54544543; // "TTEC"
+    // Bump whenever Board's hash keys change, since keys in older files would
+    // then name different positions.
+    public static final int VERSION = 1;
+
+    /**
+     * Returned by {@link #get} when the key is not in the cache.
+     */
+    public static final int MISSING = -1;
+
+    /**
+     * Entries in each set.
+     */
+    public static final int WAYS = 8;
+
+    /**
+     * Bytes of memory each entry takes: the key, the move, and its flag.
+     */
+    public static final int ENTRY_SIZE = 8 + 2 + 1;
+
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 8 + 2;
+    static final int COMPACT_RATIO = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Entry flags.
+    private static final byte FREE = 0;
+    private static final byte IDLE = 1;
+    private static final byte USED = 2;
+
+    // Guarded by the cache.
+    private final long[] mKeys;
+    private final short[] mMoves;
+    private final byte[] mFlags;
+    // Clock hand of each set, as a way index.
+    private final byte[] mHands;
+    private final int mSetMask;
+    private int mSize;
+    // Records waiting for the next flush.
+    private ByteBuffer mQueue = ByteBuffer.allocate(BUFFER_SIZE);
+    // Set when the queue filled up before a flush, so that the file is
+    // missing entries and must be rewritten.
+    private boolean mIsBehind;
+
+    // Guarded by mFileLock.
+    private final Object mFileLock = new Object();
+    private File mFile;
+    private FileChannel mChannel;
+    // The queue's previous buffer, written while puts fill the other one.
+    private ByteBuffer mSpareQueue = ByteBuffer.allocate(BUFFER_SIZE);
+    // Entries in the file, live or not.
+    private long mRecordCount;
+
+    /**
+     * @param maxBytes memory the cache may use; its capacity is the largest
+     *                 power of two number of sets which fits, and at least
+     *                 one set
+     */
+    public EvaluationCache(int maxBytes) {
+        final int numSets = Integer.highestOneBit(Math.max(1, maxBytes / (ENTRY_SIZE * WAYS)));
+        mKeys = new long[numSets * WAYS];
+        mMoves = new short[numSets * WAYS];
+        mFlags = new byte[numSets * WAYS];
+        mHands = new byte[numSets];
+        mSetMask = numSets - 1;
+    }
+
+    /**
+     * @return the most entries the cache holds
+     */
+    public int getCapacity() {
+        return mKeys.length;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the move stored for key, or {@link #MISSING}
+     */
+    public synchronized int get(long key) {
+        final int index = find(key);
+        if (index < 0) {
+            return MISSING;
+        }
+        mFlags[index] = USED;
+        return mMoves[index];
+    }
+
+    /**
+     * Store move for key, evicting an entry from key's set if it is full,
+     * and queue it for the file.
+     *
+     * @param move from 0 to 32767
+     */
+    public synchronized void put(long key, int move) {
+        if (!insert(key, move)) {
+            return;
+        }
+        if (mQueue.remaining() < RECORD_SIZE) {
+            mIsBehind = true;
+        } else if (!mIsBehind) {
+            mQueue.putLong(key);
+            mQueue.putShort((short) move);
+        }
+    }
+
+    /**
+     * Read the entries saved in file, then save every new entry to it. An
+     * unreadable file is started over.
+     */
+    public void load(File file) throws IOException {
+        synchronized (mFileLock) {
+            if (mChannel != null) {
+                throw new IllegalStateException("already loaded " + mFile);
+            }
+            mFile = file;
+            mRecordCount = 0;
+            boolean isValid = false;
+            if (file.exists()) {
+                final FileInputStream in = new FileInputStream(file);
+                try {
+                    isValid = read(in.getChannel());
+                } finally {
+                    in.close();
+                }
+            }
+            if (!isValid || mRecordCount > (long) COMPACT_RATIO * getCapacity()) {
+                compact();
+            } else {
+                mChannel = new FileOutputStream(file, true).getChannel();
+            }
+        }
+    }
+
+    /**
+     * @return false if channel does not hold a cache file
+     */
+    private boolean read(FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (channel.read(buffer) >= 0 && buffer.hasRemaining()) {
+            // Fill the first buffer so the header is certainly in it.
+        }
+        buffer.flip();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION) {
+            return false;
+        }
+        while (true) {
+            synchronized (this) {
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    insert(buffer.getLong(), buffer.getShort());
+                    ++mRecordCount;
+                }
+            }
+            buffer.compact();
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+            buffer.flip();
+        }
+        // Anything left is a record the last process did not finish.
+        return buffer.position() == 0;
+    }
+
+    /**
+     * Rewrite the file with only the entries in the cache, replacing it
+     * atomically so a crash part way leaves the old file in place.
+     */
+    private void compact() throws IOException {
+        closeChannel();
+        final ByteBuffer entries;
+        synchronized (this) {
+            entries = ByteBuffer.allocate(HEADER_SIZE + mSize * RECORD_SIZE);
+            entries.putInt(MAGIC);
+            entries.putInt(VERSION);
+            for (int ii = 0; ii < mKeys.length; ++ii) {
+                if (mFlags[ii] != FREE) {
+                    entries.putLong(mKeys[ii]);
+                    entries.putShort(mMoves[ii]);
+                }
+            }
+            // Every queued entry is in the copy, or has been replaced since.
+            mQueue.clear();
+            mIsBehind = false;
+        }
+        entries.flip();
+        mRecordCount = (entries.remaining() - HEADER_SIZE) / RECORD_SIZE;
+
+        final File temp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(temp);
+        try {
+            write(out.getChannel(), entries);
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            throw new IOException("could not replace " + mFile);
+        }
+        mChannel = new FileOutputStream(mFile, true).getChannel();
+    }
+
+    /**
+     * Write queued entries to the file, or rewrite it if it has grown too
+     * large or is missing entries. Does nothing if no file is loaded.
+     */
+    public void flush() throws IOException {
+        synchronized (mFileLock) {
+            if (mChannel == null) {
+                return;
+            }
+            final ByteBuffer queue;
+            synchronized (this) {
+                if (mIsBehind) {
+                    queue = null;
+                } else {
+                    queue = mQueue;
+                    mQueue = mSpareQueue;
+                    mSpareQueue = queue;
+                }
+            }
+            if (queue != null) {
+                queue.flip();
+                mRecordCount += queue.remaining() / RECORD_SIZE;
+                try {
+                    write(mChannel, queue);
+                } finally {
+                    queue.clear();
+                }
+            }
+            if (queue == null || mRecordCount > (long) COMPACT_RATIO * getCapacity()) {
+                compact();
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Flush and close the file. The entries stay in memory, and new ones are
+     * queued for the next {@link #load}.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (mFileLock) {
+            try {
+                flush();
+            } finally {
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (mChannel != null) {
+            final FileChannel channel = mChannel;
+            mChannel = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * @return index of key's entry, or -1
+     */
+    private int find(long key) {
+        final int set = ((int) key & mSetMask) * WAYS;
+        for (int index = set; index < set + WAYS; ++index) {
+            if (mKeys[index] == key && mFlags[index] != FREE) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return false if key already had move
+     */
+    private boolean insert(long key, int move) {
+        int index = find(key);
+        if (index >= 0) {
+            mFlags[index] = USED;
+            if (mMoves[index] == move) {
+                return false;
+            }
+        } else {
+            index = evict((int) key & mSetMask);
+            mKeys[index] = key;
+            mFlags[index] = USED;
+        }
+        mMoves[index] = (short) move;
+        return true;
+    }
+
+    /**
+     * Free an entry in set, sweeping the clock hand past used entries.
+     *
+     * @return index of the free entry
+     */
+    private int evict(int set) {
+        final int base = set * WAYS;
+        int hand = mHands[set];
+        while (true) {
+            final int index = base + hand;
+            hand = (hand + 1) % WAYS;
+            switch (mFlags[index]) {
+                case FREE:
+                    ++mSize;
+                    mHands[set] = (byte) hand;
+                    return index;
+                case IDLE:
+                    mHands[set] = (byte) hand;
+                    return index;
+                default:
+                    mFlags[index] = IDLE;
+                    break;
+            }
+        }
+    }
+}
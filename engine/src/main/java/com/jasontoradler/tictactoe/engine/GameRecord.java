@@ -0,0 +1,222 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of one game: its board dimensions, outcome, and
+ * moves. A record is laid out as
+ * <pre>
+ *   byte    outcome << 6 | (rows - 1)
+ *   byte    cols - 1
+ *   byte    win length
+ *   varint  move count
+ *   moves   two per byte, first move in the low nibble, when the board has
+ *           at most 16 cells; otherwise one varint per move
+ * </pre>
+ * where outcome is the {@link GameState} ordinal, so games still in progress
+ * can be recorded too. Varints store seven bits per byte, low bits first,
+ * with the top bit set on every byte but the last. A classic 3x3 game takes
+ * at most 9 bytes and a 19x19 game about two bytes per move.
+ * <p/>
+ * Files of records start with {@link #MAGIC} and {@link #VERSION}; see
+ * {@link GameRecordWriter} and {@link GameRecordReader}.
+ */
+public final class GameRecord {
+
+    /**
+     * "TTTR" in ASCII.
+     */
+    public static final int MAGIC = 0x54545452;
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 8;
+
+    /**
+     * Largest number of cells whose moves are packed as nibbles.
+     */
+    public static final int MAX_NIBBLE_CELLS = 16;
+
+    /**
+     * Largest encoded size of any record.
+     */
+    public static final int MAX_RECORD_SIZE = 3 + 5
+            + Board.MAX_SIZE * Board.MAX_SIZE * varintSize(Board.MAX_SIZE * Board.MAX_SIZE);
+
+    private static final GameState[] OUTCOMES = GameState.values();
+
+    private GameRecord() {
+    }
+
+    /**
+     * @return number of bytes needed to encode value as a varint
+     */
+    public static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            ++size;
+        }
+        return size;
+    }
+
+    public static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the varint is longer than an int
+     */
+    public static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /**
+     * @return number of bytes {@link #encode} will write for board
+     */
+    public static int encodedSize(Board board) {
+        final int moveCount = board.getMoveCount();
+        int size = 3 + varintSize(moveCount);
+        if (board.getNumCells() <= MAX_NIBBLE_CELLS) {
+            return size + (moveCount + 1) / 2;
+        }
+        for (int ii = 0; ii < moveCount; ++ii) {
+            size += varintSize(board.getMove(ii));
+        }
+        return size;
+    }
+
+    /**
+     * Append board's game to buffer, which must have at least
+     * {@link #encodedSize} bytes remaining.
+     */
+    public static void encode(Board board, ByteBuffer buffer) {
+        final int moveCount = board.getMoveCount();
+        buffer.put((byte) (board.getGameState().ordinal() << 6 | (board.getNumRows() - 1)));
+        buffer.put((byte) (board.getNumCols() - 1));
+        buffer.put((byte) board.getWinLength());
+        putVarint(buffer, moveCount);
+        if (board.getNumCells() <= MAX_NIBBLE_CELLS) {
+            for (int ii = 0; ii < moveCount; ii += 2) {
+                final int high = ii + 1 < moveCount ? board.getMove(ii + 1) : 0;
+                buffer.put((byte) (high << 4 | board.getMove(ii)));
+            }
+        } else {
+            for (int ii = 0; ii < moveCount; ++ii) {
+                putVarint(buffer, board.getMove(ii));
+            }
+        }
+    }
+
+    /**
+     * @return a new array holding board's encoded game
+     */
+    public static byte[] toBytes(Board board) {
+        final byte[] bytes = new byte[encodedSize(board)];
+        encode(board, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * @return a new board with the game encoded in bytes played on it
+     * @throws IllegalArgumentException if bytes is not a valid record
+     */
+    public static Board fromBytes(byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            final int first = buffer.get(0) & 0xff;
+            final Board board = new Board((first & 0x3f) + 1, (buffer.get(1) & 0xff) + 1,
+                    buffer.get(2) & 0xff);
+            decode(buffer, board);
+            return board;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated game record", e);
+        }
+    }
+
+    /**
+     * Move buffer past one record without decoding its moves.
+     *
+     * @throws IllegalArgumentException if the record is truncated
+     */
+    public static void skip(ByteBuffer buffer) {
+        try {
+            final int numRows = (buffer.get() & 0x3f) + 1;
+            final int numCols = (buffer.get() & 0xff) + 1;
+            buffer.get();
+            final int moveCount = getVarint(buffer);
+            if (numRows * numCols <= MAX_NIBBLE_CELLS) {
+                buffer.position(buffer.position() + (moveCount + 1) / 2);
+            } else {
+                for (int ii = 0; ii < moveCount; ++ii) {
+                    getVarint(buffer);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // position() throws IllegalArgumentException past the limit.
+            throw new IllegalArgumentException("truncated game record", e);
+        }
+    }
+
+    /**
+     * Read one record from buffer and replay its moves on board, which is
+     * reset first and must have the record's dimensions.
+     *
+     * @return the outcome stored in the record
+     * @throws IllegalArgumentException if the record is malformed, does not
+     *                                  fit board, or its moves do not lead to
+     *                                  its outcome
+     */
+    public static GameState decode(ByteBuffer buffer, Board board) {
+        try {
+            final int first = buffer.get() & 0xff;
+            final int numRows = (first & 0x3f) + 1;
+            final int numCols = (buffer.get() & 0xff) + 1;
+            final int winLength = buffer.get() & 0xff;
+            if (numRows != board.getNumRows() || numCols != board.getNumCols()
+                    || winLength != board.getWinLength()) {
+                throw new IllegalArgumentException("record is for a " + numRows + "x" + numCols
+                        + " board with " + winLength + " in a row");
+            }
+            final GameState outcome = OUTCOMES[first >>> 6];
+            final int moveCount = getVarint(buffer);
+            if (moveCount < 0 || moveCount > board.getNumCells()) {
+                throw new IllegalArgumentException("bad move count: " + moveCount);
+            }
+            board.reset();
+            if (board.getNumCells() <= MAX_NIBBLE_CELLS) {
+                for (int ii = 0; ii < moveCount; ii += 2) {
+                    final int b = buffer.get();
+                    board.play(b & 0xf);
+                    if (ii + 1 < moveCount) {
+                        board.play(b >>> 4 & 0xf);
+                    }
+                }
+            } else {
+                for (int ii = 0; ii < moveCount; ++ii) {
+                    board.play(getVarint(buffer));
+                }
+            }
+            if (board.getGameState() != outcome) {
+                throw new IllegalArgumentException("moves end in " + board.getGameState()
+                        + ", record says " + outcome);
+            }
+            return outcome;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated game record", e);
+        } catch (IllegalStateException e) {
+            // Board.play rejects moves into occupied cells or after the end.
+            throw new IllegalArgumentException("invalid move in game record", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streams {@link GameRecord}s from a channel written by
+ * {@link GameRecordWriter}. The channel is read a buffer at a time and each
+ * game is replayed onto a board which is reused for as long as the records'
+ * dimensions stay the same, so reading a file of same-sized games allocates
+ * nothing per game. Not thread safe.
+ */
+public class GameRecordReader implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private boolean mIsEndOfStream;
+    private Board mBoard;
+    private GameState mOutcome;
+
+    public GameRecordReader(ReadableByteChannel channel) throws IOException {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize bytes to read from the channel at a time
+     * @throws IOException if the channel does not start with a record file
+     *                     header
+     */
+    public GameRecordReader(ReadableByteChannel channel, int bufferSize) throws IOException {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize, GameRecord.MAX_RECORD_SIZE));
+        mBuffer.limit(0);
+        fill();
+        if (mBuffer.remaining() < GameRecord.FILE_HEADER_SIZE
+                || mBuffer.getInt() != GameRecord.MAGIC) {
+            throw new IOException("not a game record file");
+        }
+        final int version = mBuffer.getInt();
+        if (version != GameRecord.VERSION) {
+            throw new IOException("unsupported game record version " + version);
+        }
+    }
+
+    /**
+     * Read the next game.
+     *
+     * @return a board with the game's moves played on it, or null after the
+     * last game. The same board is returned again by the next call if the
+     * next game has the same dimensions, so copy it to keep it.
+     * @throws IOException if the next record is malformed
+     */
+    public Board next() throws IOException {
+        fill();
+        if (!mBuffer.hasRemaining()) {
+            return null;
+        }
+        if (mBuffer.remaining() < 3) {
+            throw new IOException("truncated game record");
+        }
+        final int position = mBuffer.position();
+        final int numRows = (mBuffer.get(position) & 0x3f) + 1;
+        final int numCols = (mBuffer.get(position + 1) & 0xff) + 1;
+        final int winLength = mBuffer.get(position + 2) & 0xff;
+        try {
+            if (mBoard == null || mBoard.getNumRows() != numRows
+                    || mBoard.getNumCols() != numCols || mBoard.getWinLength() != winLength) {
+                mBoard = new Board(numRows, numCols, winLength);
+            }
+            mOutcome = GameRecord.decode(mBuffer, mBoard);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("malformed game record", e);
+        }
+        return mBoard;
+    }
+
+    /**
+     * @return the outcome recorded for the game last returned by next()
+     */
+    public GameState getOutcome() {
+        return mOutcome;
+    }
+
+    /**
+     * Top the buffer up until it holds at least one whole record or the
+     * channel has no more data.
+     */
+    private void fill() throws IOException {
+        if (mIsEndOfStream || mBuffer.remaining() >= GameRecord.MAX_RECORD_SIZE) {
+            return;
+        }
+        mBuffer.compact();
+        while (mBuffer.hasRemaining()) {
+            if (mChannel.read(mBuffer) < 0) {
+                mIsEndOfStream = true;
+                break;
+            }
+        }
+        mBuffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams {@link GameRecord}s to a channel. Records are encoded into a
+ * direct buffer and written out a whole buffer at a time, so writing a game
+ * costs a few byte stores and no allocation. Not thread safe; give each
+ * thread its own writer and file.
+ */
+public class GameRecordWriter implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private long mRecordCount;
+
+    public GameRecordWriter(WritableByteChannel channel) throws IOException {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Start a new file of records on channel.
+     *
+     * @param bufferSize bytes to collect before writing to the channel
+     */
+    public GameRecordWriter(WritableByteChannel channel, int bufferSize) throws IOException {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize, GameRecord.MAX_RECORD_SIZE));
+        mBuffer.putInt(GameRecord.MAGIC);
+        mBuffer.putInt(GameRecord.VERSION);
+    }
+
+    /**
+     * Append the game played so far on board.
+     */
+    public void write(Board board) throws IOException {
+        if (mBuffer.remaining() < GameRecord.encodedSize(board)) {
+            flush();
+        }
+        GameRecord.encode(board, mBuffer);
+        ++mRecordCount;
+    }
+
+    /**
+     * @return number of games written
+     */
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Write every buffered record to the channel.
+     */
+    public void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /**
+     * Flush, then close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mChannel.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Outcome of a game as seen after the most recent move.
+ */
+public enum GameState {
+    IN_PROGRESS,
+    PLAYER1_WINS,
+    PLAYER2_WINS,
+    TIE_GAME,
+}
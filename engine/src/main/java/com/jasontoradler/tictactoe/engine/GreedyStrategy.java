@@ -0,0 +1,37 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.Random;
+
+/**
+ * Looks one move ahead: completes a line if it can, otherwise blocks the
+ * opponent from completing one, and otherwise plays a random empty cell.
+ */
+public class GreedyStrategy implements Strategy {
+
+    private final Random mRandom;
+    private int[] mCells = new int[0];
+
+    public GreedyStrategy(Random random) {
+        mRandom = random;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (mCells.length < board.getNumCells()) {
+            mCells = new int[board.getNumCells()];
+        }
+        final int count = board.getEmptyCells(mCells);
+        final int player = board.getTurn();
+        int block = -1;
+        for (int ii = 0; ii < count; ++ii) {
+            final int cell = mCells[ii];
+            if (board.isWinningMove(player, cell)) {
+                return cell;
+            }
+            if (block < 0 && board.isWinningMove(1 - player, cell)) {
+                block = cell;
+            }
+        }
+        return block >= 0 ? block : mCells[mRandom.nextInt(count)];
+    }
+}
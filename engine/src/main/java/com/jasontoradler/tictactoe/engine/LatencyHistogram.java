@@ -0,0 +1,128 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in power of two buckets: bucket n counts
+ * durations of [2^n, 2^(n+1)) nanoseconds. Recording is a handful of atomic
+ * adds with no locks and no allocation, so it is safe on the UI thread and
+ * from any number of threads at once. Percentiles are reported as the upper
+ * bound of their bucket, or the maximum if that is lower, so they are
+ * accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    private static final int NUM_BUCKETS = 64;
+
+    private final String mName;
+    private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    /**
+     * @param name label used when the histogram is printed
+     */
+    public LatencyHistogram(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Count one duration.
+     */
+    public void record(long nanos) {
+        final int bucket = nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * Count the time since startNanos, a value from System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMeanNanos() {
+        final long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    /**
+     * @param fraction between 0 and 1, such as 0.99 for the 99th percentile
+     * @return the upper bound of the bucket holding that percentile, or 0 if
+     * nothing has been recorded
+     */
+    public long getPercentileNanos(double fraction) {
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long cumulative = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            cumulative += mBuckets.get(bucket);
+            if (cumulative >= target) {
+                // No bound is more useful than the largest value recorded.
+                final long bound = bucket >= 62 ? Long.MAX_VALUE : 1L << (bucket + 1);
+                return Math.min(bound, mMaxNanos.get());
+            }
+        }
+        // Recorded concurrently with this scan.
+        return mMaxNanos.get();
+    }
+
+    /**
+     * Forget everything recorded so far. Durations recorded while this runs
+     * may be partly kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            mBuckets.set(bucket, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * Print a one line summary followed by every non-empty bucket.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.printf(Locale.US, "%s%s: count %d, mean %.3f ms, p50 < %.3f ms, p99 < %.3f ms,"
+                        + " max %.3f ms%n", prefix, mName, getCount(), millis(getMeanNanos()),
+                millis(getPercentileNanos(0.5)), millis(getPercentileNanos(0.99)),
+                millis(getMaxNanos()));
+        for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            final long count = mBuckets.get(bucket);
+            if (count != 0) {
+                writer.printf(Locale.US, "%s  < %12d ns  %d%n", prefix,
+                        1L << Math.min(bucket + 1, 62), count);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,31 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for the memory mapped tables the engine reads.
+ */
+final class MappedBuffers {
+
+    // Smallest page size of the platforms the engine runs on.
+    private static final int PAGE_SIZE = 4096;
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Read a byte from every page of buffer, so that a memory mapped file is
+     * paged in now rather than during the first lookups. Unlike
+     * {@link java.nio.MappedByteBuffer#load}, this also works on slices of a
+     * mapping and does nothing harmful to buffers on the heap.
+     *
+     * @return a value computed from the bytes read, which callers can ignore
+     */
+    static int touchPages(ByteBuffer buffer) {
+        int sum = 0;
+        for (int ii = 0; ii < buffer.limit(); ii += PAGE_SIZE) {
+            sum += buffer.get(ii);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,618 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo tree search for boards too large to solve exactly. Each call to
+ * {@link #selectMove} searches until its time budget runs out and plays the
+ * most visited move.
+ * <p/>
+ * The tree lives in preallocated parallel arrays indexed by node number, so
+ * searching allocates nothing per node or per playout. All search threads
+ * share one tree (tree parallelism): visit and score counters are atomic
+ * arrays updated without locks, a node is expanded by whichever thread wins a
+ * compare-and-set on its state, and a visit is counted on the way down, before
+ * its result is known, so that concurrent threads spread out over different
+ * lines (a "virtual loss").
+ * <p/>
+ * The tree is kept between calls. When the next position continues the game
+ * searched last time, the node for that position becomes the new root and
+ * its statistics are reused. Nodes are allocated from the front of the arrays
+ * and only reclaimed when the tree is rebuilt, which happens when the game
+ * changes or the arrays are nearly full.
+ * <p/>
+ * Given a {@link NeuralNetwork}, playouts are replaced by the network's
+ * value of the leaf, and children are chosen by a bound which also weighs
+ * the network's policy (PUCT). Each thread then walks down to several
+ * leaves, marking them with virtual losses as usual, and evaluates them in
+ * one batch before crediting the paths and expanding the leaves.
+ * <p/>
+ * Call {@link #shutdown()} when the search is no longer needed to stop its
+ * helper threads. A search may only be used by one caller at a time, but it
+ * may be shut down from any thread, which also ends a search in progress.
+ */
+public class MctsSearch implements Strategy {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50;
+    public static final int DEFAULT_MAX_NODES = 1 << 18;
+
+    // Boards up to this size consider every empty cell; larger ones only
+    // consider cells near existing marks.
+    private static final int ALL_MOVES_MAX_CELLS = 25;
+    private static final int CANDIDATE_RADIUS = 2;
+    private static final double EXPLORATION = 1.4;
+    // Weight of the policy term when searching with a network.
+    private static final double PRIOR_EXPLORATION = 1.5;
+    // Value assumed for a child with no visits when searching with a network.
+    private static final double FIRST_PLAY_VALUE = 0.5;
+
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+    // Out of room for children; playouts start from here.
+    private static final int LEAF = 3;
+
+    // Scores are kept in 512ths of a point, so a network's value of a leaf
+    // fits as well as a playout's result: win 512, tie 256, loss 0.
+    private static final int WIN = 512;
+    private static final int TIE = 256;
+
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final int mMaxNodes;
+    private final long mTimeBudgetNanos;
+    // Evaluates leaves instead of playouts, or null.
+    private final NeuralNetwork mNetwork;
+    private final int mBatchSize;
+
+    // Move which leads to each node from its parent.
+    private final int[] mMove;
+    private final int[] mFirstChild;
+    private final int[] mChildCount;
+    private final AtomicIntegerArray mState;
+    private final AtomicIntegerArray mVisits;
+    // Sum of scores for the player who made the move into each node.
+    private final AtomicLongArray mScore;
+    // Policy probability of the move into each node, when searching with a
+    // network; null otherwise.
+    private final float[] mPrior;
+    private final AtomicInteger mNodeCount = new AtomicInteger();
+
+    private final Board mRootBoard;
+    private int mRoot;
+    private final Worker[] mWorkers;
+    private final ExecutorService mExecutor;
+    private volatile long mDeadline;
+    private volatile boolean mIsStopped;
+    private volatile boolean mIsShutdown;
+
+    /**
+     * Create a search using every available processor and the default
+     * budget and tree size.
+     */
+    public MctsSearch(int numRows, int numCols, int winLength) {
+        this(numRows, numCols, winLength, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_TIME_BUDGET_MILLIS, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * @param numThreads       threads to search with, including the caller's
+     * @param timeBudgetMillis how long each call to selectMove may search
+     * @param maxNodes         capacity of the tree
+     */
+    public MctsSearch(int numRows, int numCols, int winLength, int numThreads,
+                      long timeBudgetMillis, int maxNodes) {
+        this(numRows, numCols, winLength, numThreads, timeBudgetMillis, maxNodes, null, 1);
+    }
+
+    /**
+     * @param network   evaluates leaves in place of random playouts, or null
+     *                  to play out; must be for this board size
+     * @param batchSize leaves each thread evaluates at once with the network
+     */
+    public MctsSearch(int numRows, int numCols, int winLength, int numThreads,
+                      long timeBudgetMillis, int maxNodes, NeuralNetwork network,
+                      int batchSize) {
+        if (numThreads < 1 || timeBudgetMillis < 0 || maxNodes < 2 || batchSize < 1) {
+            throw new IllegalArgumentException("invalid search settings");
+        }
+        if (network != null && (network.getNumRows() != numRows
+                || network.getNumCols() != numCols || network.getWinLength() != winLength)) {
+            throw new IllegalArgumentException("network is for another board size");
+        }
+        mNetwork = network;
+        mBatchSize = batchSize;
+        mPrior = network != null ? new float[maxNodes] : null;
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mWinLength = winLength;
+        mMaxNodes = maxNodes;
+        mTimeBudgetNanos = timeBudgetMillis * 1000000L;
+        mMove = new int[maxNodes];
+        mFirstChild = new int[maxNodes];
+        mChildCount = new int[maxNodes];
+        mState = new AtomicIntegerArray(maxNodes);
+        mVisits = new AtomicIntegerArray(maxNodes);
+        mScore = new AtomicLongArray(maxNodes);
+        mRootBoard = new Board(numRows, numCols, winLength);
+
+        mWorkers = new Worker[numThreads];
+        final long seed = System.nanoTime();
+        for (int ii = 0; ii < numThreads; ++ii) {
+            mWorkers[ii] = new Worker(seed + ii);
+        }
+        mExecutor = SearchThreads.newHelperPool("MctsSearch", numThreads);
+        resetTree(mRootBoard);
+    }
+
+    /**
+     * Stop the helper threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        mIsShutdown = true;
+        mIsStopped = true;
+        SearchThreads.shutdown(mExecutor);
+    }
+
+    /**
+     * @return number of nodes currently allocated in the tree
+     */
+    public int getNodeCount() {
+        return mNodeCount.get();
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (!board.hasSameDimensions(mRootBoard)) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            throw new IllegalStateException("game is over: " + board.getGameState());
+        }
+
+        // Never leave an immediate win on the table or an immediate loss
+        // unblocked; playouts find these only by luck.
+        final int forced = mWorkers[0].findForcedMove(board);
+        if (forced >= 0) {
+            return forced;
+        }
+
+        advanceRoot(board);
+        search();
+        if (Thread.currentThread().isInterrupted()) {
+            // Whoever interrupted us no longer wants an answer.
+            return -1;
+        }
+
+        // The most visited move is the most reliable choice.
+        final int first = mFirstChild[mRoot];
+        int best = -1;
+        int bestVisits = -1;
+        if (mState.get(mRoot) == EXPANDED) {
+            for (int child = first; child < first + mChildCount[mRoot]; ++child) {
+                final int visits = mVisits.get(child);
+                if (visits > bestVisits) {
+                    bestVisits = visits;
+                    best = mMove[child];
+                }
+            }
+        }
+        return best >= 0 ? best : mWorkers[0].randomMove(board);
+    }
+
+    /**
+     * Make the node for board's position the root, keeping the statistics
+     * gathered for it by earlier searches when possible.
+     */
+    private void advanceRoot(Board board) {
+        final int rootMoves = mRootBoard.getMoveCount();
+        boolean isContinuation = board.getMoveCount() >= rootMoves
+                && mNodeCount.get() < mMaxNodes - mMaxNodes / 4;
+        for (int ii = 0; isContinuation && ii < rootMoves; ++ii) {
+            isContinuation = board.getMove(ii) == mRootBoard.getMove(ii);
+        }
+        if (!isContinuation) {
+            resetTree(board);
+            return;
+        }
+        for (int ii = rootMoves; ii < board.getMoveCount(); ++ii) {
+            final int move = board.getMove(ii);
+            int next = -1;
+            if (mState.get(mRoot) == EXPANDED) {
+                final int first = mFirstChild[mRoot];
+                for (int child = first; child < first + mChildCount[mRoot]; ++child) {
+                    if (mMove[child] == move) {
+                        next = child;
+                        break;
+                    }
+                }
+            }
+            if (next < 0) {
+                resetTree(board);
+                return;
+            }
+            mRoot = next;
+        }
+        mRootBoard.copyFrom(board);
+    }
+
+    private void resetTree(Board board) {
+        mRootBoard.copyFrom(board);
+        mRoot = 0;
+        initNode(0, -1);
+        mNodeCount.set(1);
+    }
+
+    private void initNode(int node, int move) {
+        mMove[node] = move;
+        mFirstChild[node] = -1;
+        mChildCount[node] = 0;
+        mVisits.set(node, 0);
+        mScore.set(node, 0);
+        mState.set(node, UNEXPANDED);
+    }
+
+    /**
+     * Run every worker until the deadline, the caller's thread included.
+     */
+    private void search() {
+        if (mIsShutdown) {
+            return;
+        }
+        mIsStopped = false;
+        mDeadline = System.nanoTime() + mTimeBudgetNanos;
+        final CountDownLatch done = new CountDownLatch(mWorkers.length - 1);
+        for (int ii = 1; ii < mWorkers.length; ++ii) {
+            final Worker worker = mWorkers[ii];
+            try {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            worker.run();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down from another thread; search without this helper.
+                done.countDown();
+            }
+        }
+        mWorkers[0].run();
+        // The caller's worker only returns at the deadline or when
+        // interrupted; either way the helpers should stop too.
+        mIsStopped = true;
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * State owned by one search thread.
+     */
+    private class Worker {
+        private final Board mBoard = new Board(mNumRows, mNumCols, mWinLength);
+        private final Random mRandom;
+        private final int[] mCells = new int[mNumRows * mNumCols];
+        private final int[] mPath = new int[mNumRows * mNumCols + 1];
+        // The batch of leaves waiting for the network, when there is one:
+        // each leaf's position, the path to it, and the node to expand there
+        // or -1.
+        private final NeuralEvaluator mEvaluator;
+        private final Board[] mLeafBoards;
+        private final int[][] mLeafPaths;
+        private final int[] mLeafDepths;
+        private final int[] mLeafExpansions;
+
+        Worker(long seed) {
+            mRandom = new Random(seed);
+            final int batchSize = mNetwork != null ? mBatchSize : 0;
+            mEvaluator = mNetwork != null ? new NeuralEvaluator(mNetwork, batchSize) : null;
+            mLeafBoards = new Board[batchSize];
+            mLeafPaths = new int[batchSize][mNumRows * mNumCols + 1];
+            mLeafDepths = new int[batchSize];
+            mLeafExpansions = new int[batchSize];
+            for (int ii = 0; ii < batchSize; ++ii) {
+                mLeafBoards[ii] = new Board(mNumRows, mNumCols, mWinLength);
+            }
+        }
+
+        /**
+         * @return a move which wins at once, else one which stops the
+         * opponent winning at once, else -1
+         */
+        int findForcedMove(Board board) {
+            final int count = board.getEmptyCells(mCells);
+            final int player = board.getTurn();
+            int block = -1;
+            for (int ii = 0; ii < count; ++ii) {
+                if (board.isWinningMove(player, mCells[ii])) {
+                    return mCells[ii];
+                }
+                if (block < 0 && board.isWinningMove(1 - player, mCells[ii])) {
+                    block = mCells[ii];
+                }
+            }
+            return block;
+        }
+
+        int randomMove(Board board) {
+            return mCells[mRandom.nextInt(board.getEmptyCells(mCells))];
+        }
+
+        void run() {
+            final Thread thread = Thread.currentThread();
+            while (!mIsStopped && !mIsShutdown && System.nanoTime() < mDeadline) {
+                if (thread.isInterrupted()) {
+                    mIsStopped = true;
+                    break;
+                }
+                if (mEvaluator != null) {
+                    iterateBatch();
+                } else {
+                    iterate();
+                }
+            }
+        }
+
+        /**
+         * One playout: walk down the tree, expand where it ends, play the
+         * rest of the game at random, and credit every node on the way.
+         */
+        private void iterate() {
+            final Board board = mBoard;
+            board.copyFrom(mRootBoard);
+            final int rootTurn = board.getTurn();
+            int node = mRoot;
+            int depth = 0;
+            mPath[depth++] = node;
+            mVisits.incrementAndGet(node);
+
+            while (board.getGameState() == GameState.IN_PROGRESS) {
+                final int state = mState.get(node);
+                if (state == UNEXPANDED && mState.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                    if (!expand(node, board, -1)) {
+                        break;
+                    }
+                } else if (state != EXPANDED) {
+                    // Someone else is expanding it, or there is no room.
+                    break;
+                }
+                final int child = selectChild(node);
+                board.play(mMove[child]);
+                node = child;
+                mPath[depth++] = node;
+                if (mVisits.getAndIncrement(node) == 0) {
+                    // First visit; estimate its value with a playout.
+                    break;
+                }
+            }
+
+            final GameState outcome = playout(board);
+            for (int ii = 0; ii < depth; ++ii) {
+                // The node at depth ii was reached by a move of this player.
+                final int mover = (rootTurn + ii + 1) & 1;
+                mScore.addAndGet(mPath[ii], score(outcome, mover));
+            }
+        }
+
+        /**
+         * Walk down to a batch of leaves, evaluate them all with the network,
+         * then expand each leaf using the policy and credit its path with
+         * the value. Paths ending in a finished game are credited at once.
+         */
+        private void iterateBatch() {
+            final int rootTurn = mRootBoard.getTurn();
+            int count = 0;
+            // Bounded, in case nearly every path ends in a finished game.
+            for (int attempt = 0; attempt < 2 * mBatchSize && count < mBatchSize; ++attempt) {
+                final Board board = mLeafBoards[count];
+                final int[] path = mLeafPaths[count];
+                board.copyFrom(mRootBoard);
+                int node = mRoot;
+                int depth = 0;
+                int expansion = -1;
+                path[depth++] = node;
+                mVisits.incrementAndGet(node);
+                while (board.getGameState() == GameState.IN_PROGRESS) {
+                    final int state = mState.get(node);
+                    if (state == UNEXPANDED && mState.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                        expansion = node;
+                        break;
+                    } else if (state != EXPANDED) {
+                        break;
+                    }
+                    final int child = selectChildByPrior(node);
+                    board.play(mMove[child]);
+                    node = child;
+                    path[depth++] = node;
+                    mVisits.incrementAndGet(node);
+                }
+                final GameState outcome = board.getGameState();
+                if (outcome != GameState.IN_PROGRESS) {
+                    for (int ii = 0; ii < depth; ++ii) {
+                        mScore.addAndGet(path[ii], score(outcome, (rootTurn + ii + 1) & 1));
+                    }
+                    continue;
+                }
+                mLeafDepths[count] = depth;
+                mLeafExpansions[count] = expansion;
+                ++count;
+            }
+            if (count == 0) {
+                return;
+            }
+
+            mEvaluator.evaluate(mLeafBoards, count);
+            for (int leaf = 0; leaf < count; ++leaf) {
+                final Board board = mLeafBoards[leaf];
+                if (mLeafExpansions[leaf] >= 0) {
+                    expand(mLeafExpansions[leaf], board, leaf);
+                }
+                final int turn = board.getTurn();
+                final int value = Math.round(mEvaluator.getValue(leaf) * WIN);
+                final int[] path = mLeafPaths[leaf];
+                for (int ii = 0; ii < mLeafDepths[leaf]; ++ii) {
+                    final int mover = (rootTurn + ii + 1) & 1;
+                    mScore.addAndGet(path[ii], mover == turn ? value : WIN - value);
+                }
+            }
+        }
+
+        /**
+         * Allocate children for every move worth considering from board.
+         *
+         * @param leaf index in the evaluated batch of board, whose policy
+         *             gives the children's priors, or -1 without a network
+         * @return false if the tree is full and node must stay a leaf
+         */
+        private boolean expand(int node, Board board, int leaf) {
+            int count = 0;
+            if (board.getNumCells() > ALL_MOVES_MAX_CELLS) {
+                count = board.getCandidateMoves(mCells, CANDIDATE_RADIUS);
+            }
+            if (count == 0) {
+                count = board.getEmptyCells(mCells);
+            }
+            // Reserve the children only if they fit, so that a full tree's
+            // count stays at its capacity instead of growing with every
+            // failed expansion until it wraps around.
+            int first;
+            do {
+                first = mNodeCount.get();
+                if (first + count > mMaxNodes) {
+                    mState.set(node, LEAF);
+                    return false;
+                }
+            } while (!mNodeCount.compareAndSet(first, first + count));
+            for (int ii = 0; ii < count; ++ii) {
+                initNode(first + ii, mCells[ii]);
+            }
+            if (leaf >= 0) {
+                setPriors(first, count, leaf);
+            }
+            mFirstChild[node] = first;
+            mChildCount[node] = count;
+            // Publishes the children to other threads.
+            mState.set(node, EXPANDED);
+            return true;
+        }
+
+        /**
+         * @return the child with the best upper confidence bound, trying
+         * every child once first
+         */
+        private int selectChild(int node) {
+            final int first = mFirstChild[node];
+            final int end = first + mChildCount[node];
+            final double logVisits = Math.log(Math.max(1, mVisits.get(node)));
+            int best = first;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < end; ++child) {
+                final int visits = mVisits.get(child);
+                if (visits == 0) {
+                    return child;
+                }
+                final double bound = mScore.get(child) / ((double) WIN * visits)
+                        + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Set the priors of count new children from first to the softmax of
+         * the policy logits for their moves.
+         */
+        private void setPriors(int first, int count, int leaf) {
+            float max = Float.NEGATIVE_INFINITY;
+            for (int ii = 0; ii < count; ++ii) {
+                max = Math.max(max, mEvaluator.getPolicyLogit(leaf, mCells[ii]));
+            }
+            float sum = 0f;
+            for (int ii = 0; ii < count; ++ii) {
+                final float weight = (float) Math.exp(
+                        mEvaluator.getPolicyLogit(leaf, mCells[ii]) - max);
+                mPrior[first + ii] = weight;
+                sum += weight;
+            }
+            for (int ii = 0; ii < count; ++ii) {
+                mPrior[first + ii] /= sum;
+            }
+        }
+
+        /**
+         * @return the child with the best bound combining its mean score and
+         * its prior, which favors likely moves while they have few visits
+         */
+        private int selectChildByPrior(int node) {
+            final int first = mFirstChild[node];
+            final int end = first + mChildCount[node];
+            final double sqrtVisits = Math.sqrt(Math.max(1, mVisits.get(node)));
+            int best = first;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < end; ++child) {
+                final int visits = mVisits.get(child);
+                final double mean = visits == 0
+                        ? FIRST_PLAY_VALUE : mScore.get(child) / ((double) WIN * visits);
+                final double bound = mean
+                        + PRIOR_EXPLORATION * mPrior[child] * sqrtVisits / (1 + visits);
+                if (bound > bestBound) {
+                    bestBound = bound;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Finish the game on board with uniformly random moves.
+         */
+        private GameState playout(Board board) {
+            GameState state = board.getGameState();
+            if (state != GameState.IN_PROGRESS) {
+                return state;
+            }
+            int count = board.getEmptyCells(mCells);
+            while (state == GameState.IN_PROGRESS) {
+                final int ii = mRandom.nextInt(count);
+                final int move = mCells[ii];
+                mCells[ii] = mCells[--count];
+                state = board.play(move);
+            }
+            return state;
+        }
+
+        private int score(GameState outcome, int player) {
+            switch (outcome) {
+                case PLAYER1_WINS:
+                    return player == Board.PLAYER1 ? WIN : 0;
+                case PLAYER2_WINS:
+                    return player == Board.PLAYER2 ? WIN : 0;
+                default:
+                    return TIE;
+            }
+        }
+    }
+}
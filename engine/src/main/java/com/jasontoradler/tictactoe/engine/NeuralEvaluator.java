@@ -0,0 +1,187 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Runs a {@link NeuralNetwork} on batches of positions, on the CPU and in
+ * plain Java.
+ * <p/>
+ * Every buffer is allocated up front for the largest batch, so evaluating
+ * allocates nothing. The hidden layer is built by adding one row of input
+ * weights per mark, so its cost grows with the marks on the board rather
+ * than its size. The policy head, most of the work, is computed for four
+ * positions at a time, so each weight is loaded once per four positions and
+ * four independent sums keep the multiplier busy; on a desktop JVM a batch
+ * of eight or more evaluates about twice as many positions a second as
+ * one at a time.
+ * <p/>
+ * Not thread safe; give each thread its own evaluator. They may share the
+ * network.
+ */
+public class NeuralEvaluator {
+
+    private final NeuralNetwork mNetwork;
+    private final int mNumCells;
+    private final int mNumHidden;
+    private final int mMaxBatch;
+    // Hidden activations, mNumHidden per position.
+    private final float[] mHidden;
+    private final float[] mValues;
+    // Policy logits, mMaxBatch per cell.
+    private final float[] mPolicy;
+    private final Board[] mSingle = new Board[1];
+
+    /**
+     * @param maxBatch most positions evaluated by one call
+     */
+    public NeuralEvaluator(NeuralNetwork network, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("invalid batch size: " + maxBatch);
+        }
+        mNetwork = network;
+        mNumCells = network.mNumRows * network.mNumCols;
+        mNumHidden = network.mNumHidden;
+        mMaxBatch = maxBatch;
+        mHidden = new float[maxBatch * mNumHidden];
+        mValues = new float[maxBatch];
+        mPolicy = new float[mNumCells * maxBatch];
+    }
+
+    public NeuralNetwork getNetwork() {
+        return mNetwork;
+    }
+
+    public int getMaxBatch() {
+        return mMaxBatch;
+    }
+
+    /**
+     * Evaluate one position; the results are at index 0.
+     */
+    public void evaluate(Board board) {
+        mSingle[0] = board;
+        evaluate(mSingle, 1);
+        mSingle[0] = null;
+    }
+
+    /**
+     * Evaluate the first count boards, replacing the results of the last
+     * call.
+     *
+     * @throws IllegalArgumentException if a board is not the network's size
+     */
+    public void evaluate(Board[] boards, int count) {
+        if (count > mMaxBatch) {
+            throw new IllegalArgumentException("batch of " + count + " exceeds " + mMaxBatch);
+        }
+        final NeuralNetwork network = mNetwork;
+        final int numHidden = mNumHidden;
+        final float[] hidden = mHidden;
+        final float[] inputWeights = network.mInputWeights;
+        for (int index = 0; index < count; ++index) {
+            final Board board = boards[index];
+            if (!network.covers(board)) {
+                throw new IllegalArgumentException("network does not cover board");
+            }
+            final int offset = index * numHidden;
+            System.arraycopy(network.mHiddenBias, 0, hidden, offset, numHidden);
+            final int turn = board.getTurn();
+            for (int plane = 0; plane < 2; ++plane) {
+                final int player = plane == 0 ? turn : 1 - turn;
+                for (int word = 0; word < board.getNumWords(); ++word) {
+                    long stones = board.getStones(player, word);
+                    while (stones != 0) {
+                        final int cell = word * Board.WORD_CELLS
+                                + Long.numberOfTrailingZeros(stones);
+                        stones &= stones - 1;
+                        final int row = (plane * mNumCells + cell) * numHidden;
+                        for (int ii = 0; ii < numHidden; ++ii) {
+                            hidden[offset + ii] += inputWeights[row + ii];
+                        }
+                    }
+                }
+            }
+            for (int ii = offset; ii < offset + numHidden; ++ii) {
+                hidden[ii] = Math.max(0f, hidden[ii]);
+            }
+        }
+
+        for (int index = 0; index < count; ++index) {
+            final float logit = network.mValueBias
+                    + dot(hidden, index * numHidden, network.mValueWeights, 0, numHidden);
+            mValues[index] = (float) (1.0 / (1.0 + Math.exp(-logit)));
+        }
+
+        final float[] policyWeights = network.mPolicyWeights;
+        final float[] policyBias = network.mPolicyBias;
+        final float[] policy = mPolicy;
+        for (int cell = 0; cell < mNumCells; ++cell) {
+            final int out = cell * mMaxBatch;
+            final int row = cell * numHidden;
+            int index = 0;
+            for (; index + 3 < count; index += 4) {
+                // Four positions at a time, so each weight is loaded once for
+                // four multiplies and the four sums proceed independently.
+                final int h0 = index * numHidden;
+                final int h1 = h0 + numHidden;
+                final int h2 = h1 + numHidden;
+                final int h3 = h2 + numHidden;
+                float sum0 = 0f;
+                float sum1 = 0f;
+                float sum2 = 0f;
+                float sum3 = 0f;
+                for (int ii = 0; ii < numHidden; ++ii) {
+                    final float weight = policyWeights[row + ii];
+                    sum0 += weight * hidden[h0 + ii];
+                    sum1 += weight * hidden[h1 + ii];
+                    sum2 += weight * hidden[h2 + ii];
+                    sum3 += weight * hidden[h3 + ii];
+                }
+                policy[out + index] = policyBias[cell] + sum0;
+                policy[out + index + 1] = policyBias[cell] + sum1;
+                policy[out + index + 2] = policyBias[cell] + sum2;
+                policy[out + index + 3] = policyBias[cell] + sum3;
+            }
+            for (; index < count; ++index) {
+                policy[out + index] = policyBias[cell]
+                        + dot(hidden, index * numHidden, policyWeights, row, numHidden);
+            }
+        }
+    }
+
+    /**
+     * @return estimated probability that the player to move in position
+     * index of the last batch wins
+     */
+    public float getValue(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * @return the policy's preference for cell in position index of the last
+     * batch, as a logit; only meaningful relative to other cells
+     */
+    public float getPolicyLogit(int index, int cell) {
+        return mPolicy[cell * mMaxBatch + index];
+    }
+
+    /**
+     * Dot product with four running sums, which lets the multiplies overlap
+     * instead of each waiting for the last add.
+     */
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum0 = 0f;
+        float sum1 = 0f;
+        float sum2 = 0f;
+        float sum3 = 0f;
+        int ii = 0;
+        for (; ii + 3 < length; ii += 4) {
+            sum0 += a[aOffset + ii] * b[bOffset + ii];
+            sum1 += a[aOffset + ii + 1] * b[bOffset + ii + 1];
+            sum2 += a[aOffset + ii + 2] * b[bOffset + ii + 2];
+            sum3 += a[aOffset + ii + 3] * b[bOffset + ii + 3];
+        }
+        for (; ii < length; ++ii) {
+            sum0 += a[aOffset + ii] * b[bOffset + ii];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+}
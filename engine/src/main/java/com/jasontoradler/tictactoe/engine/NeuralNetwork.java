@@ -0,0 +1,192 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+/**
+ * Weights of a small policy and value network for one board size, read by
+ * {@link NeuralEvaluator}.
+ * <p/>
+ * The input is two planes of one value per cell: the marks of the player to
+ * move, then the opponent's. One hidden layer of rectified linear units
+ * feeds a value head, the probability that the player to move wins, and a
+ * policy head, one logit per cell.
+ * <p/>
+ * The file is a 24 byte header, {@link #MAGIC}, {@link #VERSION}, rows,
+ * columns, win length, and hidden units as big-endian ints, followed by the
+ * weights as big-endian floats:
+ * <pre>
+ *   hidden bias              [hidden]
+ *   input weights            [2 * cells][hidden]
+ *   value weights            [hidden]
+ *   value bias
+ *   policy weights           [cells][hidden]
+ *   policy bias              [cells]
+ * </pre>
+ * The input weights are stored by input rather than by hidden unit, so each
+ * mark on the board adds one contiguous row to the hidden layer and empty
+ * cells cost nothing. Weights are copied out of the buffer once, so the
+ * network may be shared by any number of threads.
+ */
+public class NeuralNetwork {
+
+    public static final int MAGIC = 0x54544e4e; // "TTNN"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+
+    final int mNumRows;
+    final int mNumCols;
+    final int mWinLength;
+    final int mNumHidden;
+    final float[] mHiddenBias;
+    final float[] mInputWeights;
+    final float[] mValueWeights;
+    final float mValueBias;
+    final float[] mPolicyWeights;
+    final float[] mPolicyBias;
+
+    /**
+     * @param buffer whole network file, including its header, positioned at
+     *               the start of the header
+     */
+    public NeuralNetwork(ByteBuffer buffer) {
+        final int base = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(base) != MAGIC) {
+            throw new IllegalArgumentException("not a network");
+        }
+        if (buffer.getInt(base + 4) != VERSION) {
+            throw new IllegalArgumentException("unsupported network version: "
+                    + buffer.getInt(base + 4));
+        }
+        mNumRows = buffer.getInt(base + 8);
+        mNumCols = buffer.getInt(base + 12);
+        mWinLength = buffer.getInt(base + 16);
+        mNumHidden = buffer.getInt(base + 20);
+        final int numCells = mNumRows * mNumCols;
+        if (mNumRows < 1 || mNumRows > Board.MAX_SIZE || mNumCols < 1
+                || mNumCols > Board.MAX_SIZE || mNumHidden < 1
+                || buffer.remaining() < HEADER_SIZE + 4L * weightCount(numCells, mNumHidden)) {
+            throw new IllegalArgumentException("truncated network");
+        }
+        buffer.position(base + HEADER_SIZE);
+        final FloatBuffer weights = buffer.slice().asFloatBuffer();
+        buffer.position(base);
+        mHiddenBias = read(weights, mNumHidden);
+        mInputWeights = read(weights, 2 * numCells * mNumHidden);
+        mValueWeights = read(weights, mNumHidden);
+        mValueBias = weights.get();
+        mPolicyWeights = read(weights, numCells * mNumHidden);
+        mPolicyBias = read(weights, numCells);
+    }
+
+    private NeuralNetwork(int numRows, int numCols, int winLength, int numHidden, Random random) {
+        final int numCells = numRows * numCols;
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mWinLength = winLength;
+        mNumHidden = numHidden;
+        mHiddenBias = new float[numHidden];
+        mInputWeights = randomWeights(2 * numCells * numHidden, 2 * numCells, random);
+        mValueWeights = randomWeights(numHidden, numHidden, random);
+        mValueBias = 0f;
+        mPolicyWeights = randomWeights(numCells * numHidden, numHidden, random);
+        mPolicyBias = new float[numCells];
+    }
+
+    /**
+     * Memory map a network stored in part of a file.
+     */
+    public static NeuralNetwork map(FileChannel channel, long offset, long length)
+            throws IOException {
+        final MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return new NeuralNetwork(buffer);
+    }
+
+    /**
+     * Create an untrained network with small random weights, as the starting
+     * point for training or for measuring inference speed.
+     */
+    public static NeuralNetwork createRandom(int numRows, int numCols, int winLength,
+                                             int numHidden, Random random) {
+        return new NeuralNetwork(numRows, numCols, winLength, numHidden, random);
+    }
+
+    /**
+     * Write the network in the format the constructor reads.
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                (int) (HEADER_SIZE + 4 * weightCount(mNumRows * mNumCols, mNumHidden)));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(mNumRows);
+        buffer.putInt(mNumCols);
+        buffer.putInt(mWinLength);
+        buffer.putInt(mNumHidden);
+        final FloatBuffer weights = buffer.asFloatBuffer();
+        weights.put(mHiddenBias);
+        weights.put(mInputWeights);
+        weights.put(mValueWeights);
+        weights.put(mValueBias);
+        weights.put(mPolicyWeights);
+        weights.put(mPolicyBias);
+        buffer.position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return true if the network was trained for board's size
+     */
+    public boolean covers(Board board) {
+        return board.getNumRows() == mNumRows && board.getNumCols() == mNumCols
+                && board.getWinLength() == mWinLength;
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int getNumHidden() {
+        return mNumHidden;
+    }
+
+    /**
+     * @return floats after the header; a long, since a corrupt header's
+     * hidden unit count may be anything
+     */
+    private static long weightCount(int numCells, int numHidden) {
+        final long hidden = numHidden;
+        return hidden + 2 * numCells * hidden + hidden + 1 + numCells * hidden + numCells;
+    }
+
+    private static float[] read(FloatBuffer weights, int count) {
+        final float[] out = new float[count];
+        weights.get(out);
+        return out;
+    }
+
+    private static float[] randomWeights(int count, int fanIn, Random random) {
+        final float scale = (float) Math.sqrt(2.0 / fanIn);
+        final float[] out = new float[count];
+        for (int ii = 0; ii < count; ++ii) {
+            out[ii] = (float) random.nextGaussian() * scale;
+        }
+        return out;
+    }
+}
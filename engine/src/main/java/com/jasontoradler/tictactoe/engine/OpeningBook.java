@@ -0,0 +1,187 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Outcome counts for early positions, gathered from recorded games by the
+ * analytics tool, used to suggest opening moves.
+ * <p/>
+ * The file is a 12 byte header (magic, version, rows, columns, win length,
+ * and entry count) followed by 20 byte entries sorted by key. Each entry is
+ * a position's {@link SymmetricHash} canonical key and how many of the games
+ * through it player 1 won, player 2 won, and tied. Because keys are
+ * canonical, one entry covers every rotation and reflection of a position.
+ * <p/>
+ * Lookups binary search the buffer, which is normally memory mapped, and
+ * allocate nothing. They share one hash, so they are synchronized.
+ */
+public class OpeningBook {
+
+    public static final int MAGIC = 0x54544f42; // "TTOB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int ENTRY_SIZE = 20;
+
+    private final ByteBuffer mBuffer;
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final int mEntryCount;
+    private final SymmetricHash mHash;
+    private final int[] mCells;
+
+    /**
+     * @param buffer whole book file, including its header, positioned at the
+     *               start of the header
+     */
+    public OpeningBook(ByteBuffer buffer) {
+        final int base = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(base) != MAGIC) {
+            throw new IllegalArgumentException("not an opening book");
+        }
+        if (buffer.get(base + 4) != VERSION) {
+            throw new IllegalArgumentException("unsupported opening book version: "
+                    + buffer.get(base + 4));
+        }
+        mNumRows = buffer.get(base + 5);
+        mNumCols = buffer.get(base + 6);
+        mWinLength = buffer.get(base + 7);
+        mEntryCount = buffer.getInt(base + 8);
+        if (mNumRows < 1 || mNumCols < 1 || mEntryCount < 0
+                || buffer.remaining() < HEADER_SIZE + (long) mEntryCount * ENTRY_SIZE) {
+            throw new IllegalArgumentException("truncated opening book");
+        }
+        buffer.position(base + HEADER_SIZE);
+        mBuffer = buffer.slice();
+        buffer.position(base);
+        mHash = new SymmetricHash(mNumRows, mNumCols);
+        mCells = new int[mNumRows * mNumCols];
+    }
+
+    /**
+     * Memory map a book stored in part of a file.
+     */
+    public static OpeningBook map(FileChannel channel, long offset, long length)
+            throws IOException {
+        final MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return new OpeningBook(buffer);
+    }
+
+    /**
+     * Page in the whole book ahead of the first lookup. Meant for a
+     * background thread at startup.
+     *
+     * @return a value computed from the book, which callers can ignore
+     */
+    public int preload() {
+        return MappedBuffers.touchPages(mBuffer);
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return true if this book covers boards with the dimensions of board
+     */
+    public boolean covers(Board board) {
+        return board.getNumRows() == mNumRows && board.getNumCols() == mNumCols
+                && board.getWinLength() == mWinLength;
+    }
+
+    /**
+     * @return number of recorded games which reached board's position
+     */
+    public synchronized int getVisits(Board board) {
+        checkCovers(board);
+        mHash.setPosition(board);
+        final int entry = find(mHash.getCanonicalKey());
+        return entry < 0 ? 0 : visits(entry);
+    }
+
+    /**
+     * Find the move whose resulting position scored best for the player to
+     * move, counting a tie as half a win, among moves seen in at least
+     * minVisits games.
+     *
+     * @return the move, or -1 if no move has been seen often enough
+     */
+    public synchronized int getBookMove(Board board, int minVisits) {
+        checkCovers(board);
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            return -1;
+        }
+        mHash.setPosition(board);
+        final int player = board.getTurn();
+        final int count = board.getEmptyCells(mCells);
+        int bestMove = -1;
+        double bestScore = -1;
+        for (int ii = 0; ii < count; ++ii) {
+            final int entry = find(mHash.getCanonicalKeyAfter(player, mCells[ii]));
+            if (entry < 0) {
+                continue;
+            }
+            final int visits = visits(entry);
+            if (visits < Math.max(minVisits, 1)) {
+                continue;
+            }
+            final int offset = entry * ENTRY_SIZE + 8;
+            final int wins = mBuffer.getInt(offset + 4 * player);
+            final double score = (wins + 0.5 * mBuffer.getInt(offset + 8)) / visits;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = mCells[ii];
+            }
+        }
+        return bestMove;
+    }
+
+    private void checkCovers(Board board) {
+        if (!covers(board)) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+    }
+
+    private int visits(int entry) {
+        final int offset = entry * ENTRY_SIZE + 8;
+        final long visits = (long) mBuffer.getInt(offset) + mBuffer.getInt(offset + 4)
+                + mBuffer.getInt(offset + 8);
+        return (int) Math.min(visits, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return index of the entry with key, or -1 if there is none
+     */
+    private int find(long key) {
+        int low = 0;
+        int high = mEntryCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = mBuffer.getLong(mid * ENTRY_SIZE);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,141 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol between game clients and the match server. Every message
+ * is a frame of exactly {@link #FRAME_SIZE} bytes, so frames can be read
+ * straight out of a buffer without any length prefix or parsing:
+ * <pre>
+ *   byte  type
+ *   byte  arg0
+ *   byte  arg1
+ *   byte  arg2
+ *   int   match id
+ *   int   cell
+ *   int   tag
+ * </pre>
+ * in big-endian order. Each match has its own id, so one connection can take
+ * part in any number of matches at once.
+ * <p/>
+ * A client starts a match with {@link #CREATE}, giving the board dimensions
+ * in arg0 to arg2, a mode in cell, and a tag of its choosing. The server
+ * answers with {@link #START}, echoing the tag, once the match begins. In
+ * {@link #MODE_PAIR} it waits for another client asking for the same board
+ * and arg0 of START is the client's seat. In {@link #MODE_SERVER} the
+ * client may play either side and asks the server to move with
+ * {@link #THINK}.
+ * <p/>
+ * Moves are sent as {@link #MOVE} with the ply being played as the tag. The
+ * server checks every move and sends the result to both seats as
+ * {@link #MOVED}: the cell, the player in arg0, the game state ordinal in
+ * arg1, and the ply in the tag. A match ends when the game does or when a
+ * client sends {@link #LEAVE}. Anything the server rejects is answered with
+ * {@link #ERROR}, carrying an error code in arg0 and the offending frame's
+ * tag.
+ */
+public final class Protocol {
+
+    public static final int DEFAULT_PORT = 7364;
+    public static final int FRAME_SIZE = 16;
+
+    // Client to server.
+    public static final int CREATE = 1;
+    public static final int MOVE = 2;
+    public static final int THINK = 3;
+    public static final int LEAVE = 4;
+
+    // Server to client.
+    public static final int START = 16;
+    public static final int MOVED = 17;
+    public static final int ERROR = 18;
+
+    // Match modes, sent in the cell field of CREATE.
+    public static final int MODE_PAIR = 0;
+    public static final int MODE_SERVER = 1;
+
+    // Error codes, sent in arg0 of ERROR.
+    public static final int ERROR_BAD_FRAME = 1;
+    public static final int ERROR_NO_SUCH_MATCH = 2;
+    public static final int ERROR_NOT_YOUR_TURN = 3;
+    public static final int ERROR_ILLEGAL_MOVE = 4;
+    public static final int ERROR_OPPONENT_LEFT = 5;
+
+    private static final int TYPE_OFFSET = 0;
+    private static final int ARG0_OFFSET = 1;
+    private static final int ARG1_OFFSET = 2;
+    private static final int ARG2_OFFSET = 3;
+    private static final int MATCH_OFFSET = 4;
+    private static final int CELL_OFFSET = 8;
+    private static final int TAG_OFFSET = 12;
+
+    private Protocol() {
+    }
+
+    /**
+     * Append one frame to buffer, which must have at least
+     * {@link #FRAME_SIZE} bytes remaining.
+     */
+    public static void put(ByteBuffer buffer, int type, int arg0, int arg1, int arg2,
+                           int matchId, int cell, int tag) {
+        buffer.put((byte) type);
+        buffer.put((byte) arg0);
+        buffer.put((byte) arg1);
+        buffer.put((byte) arg2);
+        buffer.putInt(matchId);
+        buffer.putInt(cell);
+        buffer.putInt(tag);
+    }
+
+    /**
+     * The getters read the frame starting at offset in buffer without moving
+     * its position.
+     */
+    public static int getType(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + TYPE_OFFSET) & 0xff;
+    }
+
+    public static int getArg0(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + ARG0_OFFSET) & 0xff;
+    }
+
+    public static int getArg1(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + ARG1_OFFSET) & 0xff;
+    }
+
+    public static int getArg2(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + ARG2_OFFSET) & 0xff;
+    }
+
+    public static int getMatchId(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + MATCH_OFFSET);
+    }
+
+    public static int getCell(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + CELL_OFFSET);
+    }
+
+    public static int getTag(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + TAG_OFFSET);
+    }
+
+    /**
+     * @return a short description of an error code, for logs
+     */
+    public static String getErrorName(int code) {
+        switch (code) {
+            case ERROR_BAD_FRAME:
+                return "bad frame";
+            case ERROR_NO_SUCH_MATCH:
+                return "no such match";
+            case ERROR_NOT_YOUR_TURN:
+                return "not your turn";
+            case ERROR_ILLEGAL_MOVE:
+                return "illegal move";
+            case ERROR_OPPONENT_LEFT:
+                return "opponent left";
+            default:
+                return "error " + code;
+        }
+    }
+}
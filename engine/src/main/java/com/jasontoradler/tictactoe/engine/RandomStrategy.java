@@ -0,0 +1,25 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.Random;
+
+/**
+ * Plays a uniformly random empty cell.
+ */
+public class RandomStrategy implements Strategy {
+
+    private final Random mRandom;
+    private int[] mCells = new int[0];
+
+    public RandomStrategy(Random random) {
+        mRandom = random;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (mCells.length < board.getNumCells()) {
+            mCells = new int[board.getNumCells()];
+        }
+        final int count = board.getEmptyCells(mCells);
+        return mCells[mRandom.nextInt(count)];
+    }
+}
@@ -0,0 +1,188 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Has the match server choose moves, over a server mode match speaking
+ * {@link Protocol}. Moves played since the last request are sent first, so
+ * the server checks the whole game; if the game on the board is not a
+ * continuation of the server's, a new match is started and the game is
+ * replayed into it.
+ * <p/>
+ * If the server cannot be reached or rejects the game, moves come from the
+ * fallback strategy instead, and the server is not tried again for a while.
+ * Like other strategies this is not thread safe, but {@link #close} may be
+ * called from any thread to abandon a request in progress.
+ */
+public class RemoteStrategy implements Strategy, Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final long RETRY_DELAY_NANOS = 30 * 1000000000L;
+
+    private final String mHost;
+    private final int mPort;
+    private final Strategy mFallback;
+    private final byte[] mInput = new byte[Protocol.FRAME_SIZE];
+    private final ByteBuffer mInputBuffer = ByteBuffer.wrap(mInput);
+    private final ByteBuffer mOutput = ByteBuffer.allocate(
+            Protocol.FRAME_SIZE * (Board.MAX_SIZE * Board.MAX_SIZE + 2));
+    private volatile Socket mSocket;
+    private DataInputStream mIn;
+    private OutputStream mOut;
+    // The server's copy of the current match, or null if there is none.
+    private Board mServerBoard;
+    private int mMatchId;
+    private int mNextTag;
+    private long mRetryTime;
+    private boolean mIsRetryScheduled;
+
+    public RemoteStrategy(String host, int port, Strategy fallback) {
+        mHost = host;
+        mPort = port;
+        mFallback = fallback;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        if (!mIsRetryScheduled || System.nanoTime() - mRetryTime >= 0) {
+            try {
+                mIsRetryScheduled = false;
+                return selectRemoteMove(board);
+            } catch (IOException e) {
+                close();
+                mIsRetryScheduled = true;
+                mRetryTime = System.nanoTime() + RETRY_DELAY_NANOS;
+            }
+        }
+        return mFallback.selectMove(board);
+    }
+
+    private int selectRemoteMove(Board board) throws IOException {
+        if (mSocket == null) {
+            final Socket socket = new Socket();
+            mSocket = socket;
+            socket.connect(new InetSocketAddress(mHost, mPort), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            mIn = new DataInputStream(socket.getInputStream());
+            mOut = socket.getOutputStream();
+        }
+        mOutput.clear();
+        if (!isContinuation(board)) {
+            startMatch(board);
+        }
+        for (int ply = mServerBoard.getMoveCount(); ply < board.getMoveCount(); ++ply) {
+            Protocol.put(mOutput, Protocol.MOVE, 0, 0, 0, mMatchId, board.getMove(ply), ply);
+        }
+        final int ply = board.getMoveCount();
+        Protocol.put(mOutput, Protocol.THINK, 0, 0, 0, mMatchId, 0, ply);
+        send();
+
+        // The server confirms each move sent, and then plays its own.
+        while (true) {
+            readFrame();
+            if (Protocol.getMatchId(mInputBuffer, 0) != mMatchId) {
+                // Left over from an abandoned match.
+                continue;
+            }
+            switch (Protocol.getType(mInputBuffer, 0)) {
+                case Protocol.MOVED:
+                    final int cell = Protocol.getCell(mInputBuffer, 0);
+                    if (Protocol.getTag(mInputBuffer, 0) == ply) {
+                        mServerBoard.play(cell);
+                        return cell;
+                    }
+                    mServerBoard.play(cell);
+                    break;
+                case Protocol.ERROR:
+                    mServerBoard = null;
+                    throw new IOException("server rejected game: "
+                            + Protocol.getErrorName(Protocol.getArg0(mInputBuffer, 0)));
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return true if the server's match is board's game with zero or more
+     * moves still to send
+     */
+    private boolean isContinuation(Board board) {
+        final Board serverBoard = mServerBoard;
+        if (serverBoard == null || !serverBoard.hasSameDimensions(board)
+                || serverBoard.getMoveCount() > board.getMoveCount()) {
+            return false;
+        }
+        for (int ii = 0; ii < serverBoard.getMoveCount(); ++ii) {
+            if (serverBoard.getMove(ii) != board.getMove(ii)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Leave the current match, if any, and start a new one for board.
+     */
+    private void startMatch(Board board) throws IOException {
+        if (mServerBoard != null) {
+            Protocol.put(mOutput, Protocol.LEAVE, 0, 0, 0, mMatchId, 0, 0);
+            mServerBoard = null;
+        }
+        final int tag = ++mNextTag;
+        Protocol.put(mOutput, Protocol.CREATE, board.getNumRows(), board.getNumCols(),
+                board.getWinLength(), 0, Protocol.MODE_SERVER, tag);
+        send();
+        while (true) {
+            readFrame();
+            final int type = Protocol.getType(mInputBuffer, 0);
+            if (Protocol.getTag(mInputBuffer, 0) != tag) {
+                continue;
+            }
+            if (type == Protocol.START) {
+                mMatchId = Protocol.getMatchId(mInputBuffer, 0);
+                mServerBoard = new Board(board.getNumRows(), board.getNumCols(),
+                        board.getWinLength());
+                return;
+            } else if (type == Protocol.ERROR) {
+                throw new IOException("server refused match: "
+                        + Protocol.getErrorName(Protocol.getArg0(mInputBuffer, 0)));
+            }
+        }
+    }
+
+    private void send() throws IOException {
+        mOut.write(mOutput.array(), 0, mOutput.position());
+        mOut.flush();
+        mOutput.clear();
+    }
+
+    private void readFrame() throws IOException {
+        mIn.readFully(mInput);
+    }
+
+    /**
+     * Disconnect from the server. The next move request connects again.
+     */
+    @Override
+    public void close() {
+        final Socket socket = mSocket;
+        mSocket = null;
+        mServerBoard = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to do.
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper threads for the searches which split a move's work across threads.
+ * The caller's thread always searches too, so a search on n threads has
+ * n - 1 helpers.
+ */
+final class SearchThreads {
+
+    private SearchThreads() {
+    }
+
+    /**
+     * @param name prefix of the helper thread names
+     * @return a pool of numThreads - 1 helper threads, or null if numThreads
+     * is 1
+     */
+    static ExecutorService newHelperPool(final String name, int numThreads) {
+        if (numThreads == 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(numThreads - 1, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable,
+                        name + "-" + mCount.incrementAndGet());
+                // Never keep the process alive just for the search.
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Let the helper threads exit once they are idle. Helpers already queued
+     * still run, so the search sets its stop flag first; they then return at
+     * once and count down whatever latch the searching thread waits on.
+     *
+     * @param helpers pool from {@link #newHelperPool}, possibly null
+     */
+    static void shutdown(ExecutorService helpers) {
+        if (helpers != null) {
+            helpers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Perfect-play solver: negamax with alpha-beta pruning over the whole game
+ * tree. Results are cached in a transposition table keyed by the canonical
+ * form of each position, so all eight rotations and reflections of a square
+ * board share one entry. Once the table is warm, the classic 3x3 game is
+ * answered with a single probe.
+ * <p/>
+ * Scores are from the point of view of the player to move: positive is a
+ * win, zero a tie, and negative a loss. Quicker wins (and slower losses) have
+ * larger magnitudes, so the solver never drags out a won game.
+ * <p/>
+ * A solver keeps its table between calls and is not thread safe.
+ */
+public class Solver implements Strategy {
+
+    /**
+     * Largest board whose canonical key fits in one long.
+     */
+    public static final int MAX_CELLS = 32;
+
+    private static final int SMALL_BOARD_TABLE_BITS = 12;
+    private static final int LARGE_BOARD_TABLE_BITS = 20;
+
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+    private static final int VALID = 1 << 30;
+    private static final int NO_MOVE = 0xff;
+
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final int mNumCells;
+    private final Symmetry mSymmetry;
+    private final int mTableShift;
+    private final long[] mKeys;
+    private final int[] mEntries;
+    private int mCanonicalSymmetry;
+    private int mRootMoveCount;
+    private int mRootBestMove;
+
+    public Solver(int numRows, int numCols, int winLength) {
+        this(numRows, numCols, winLength, numRows * numCols <= 9
+                ? SMALL_BOARD_TABLE_BITS : LARGE_BOARD_TABLE_BITS);
+    }
+
+    /**
+     * @param tableBits log2 of the number of transposition table entries
+     */
+    public Solver(int numRows, int numCols, int winLength, int tableBits) {
+        if (numRows * numCols > MAX_CELLS) {
+            throw new IllegalArgumentException(
+                    "board too large to solve: " + numRows + "x" + numCols);
+        }
+        if (tableBits < 1 || tableBits > 30) {
+            throw new IllegalArgumentException("unsupported table size: " + tableBits);
+        }
+        mNumRows = numRows;
+        mNumCols = numCols;
+        mWinLength = winLength;
+        mNumCells = numRows * numCols;
+        mSymmetry = new Symmetry(numRows, numCols);
+        mTableShift = 64 - tableBits;
+        mKeys = new long[1 << tableBits];
+        mEntries = new int[1 << tableBits];
+    }
+
+    /**
+     * @return score of board for the player to move
+     */
+    public int solve(Board board) {
+        checkDimensions(board);
+        switch (board.getGameState()) {
+            case IN_PROGRESS:
+                mRootMoveCount = -1;
+                return negamax(board, -mNumCells - 1, mNumCells + 1);
+            case TIE_GAME:
+                return 0;
+            default:
+                // Whoever moved last won.
+                return board.getMoveCount() - mNumCells - 1;
+        }
+    }
+
+    /**
+     * @return a move which achieves the best possible score for the player to
+     * move
+     */
+    @Override
+    public int selectMove(Board board) {
+        checkDimensions(board);
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            throw new IllegalStateException("game is over: " + board.getGameState());
+        }
+        mRootMoveCount = board.getMoveCount();
+        mRootBestMove = -1;
+        negamax(board, -mNumCells - 1, mNumCells + 1);
+        return mRootBestMove;
+    }
+
+    /**
+     * Forget all cached results.
+     */
+    public void clear() {
+        for (int ii = 0; ii < mEntries.length; ++ii) {
+            mKeys[ii] = 0;
+            mEntries[ii] = 0;
+        }
+    }
+
+    private void checkDimensions(Board board) {
+        if (board.getNumRows() != mNumRows || board.getNumCols() != mNumCols
+                || board.getWinLength() != mWinLength) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+    }
+
+    /**
+     * Compute the smallest key among all symmetric images of board and
+     * remember which symmetry produced it in mCanonicalSymmetry.
+     */
+    private long canonicalKey(Board board) {
+        final long player1 = board.getStones(Board.PLAYER1);
+        final long player2 = board.getStones(Board.PLAYER2);
+        long best = (player1 << 32) | player2;
+        int bestSymmetry = 0;
+        for (int s = 1; s < mSymmetry.getCount(); ++s) {
+            final long key = (mSymmetry.transformMask(s, player1) << 32)
+                    | mSymmetry.transformMask(s, player2);
+            if (key < best) {
+                best = key;
+                bestSymmetry = s;
+            }
+        }
+        mCanonicalSymmetry = bestSymmetry;
+        return best;
+    }
+
+    private int negamax(Board board, int alpha, int beta) {
+        final int originalAlpha = alpha;
+        final boolean isRoot = board.getMoveCount() == mRootMoveCount;
+        final long key = canonicalKey(board);
+        final int symmetry = mCanonicalSymmetry;
+        final int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> mTableShift);
+
+        int hashMove = -1;
+        final int entry = mEntries[slot];
+        if ((entry & VALID) != 0 && mKeys[slot] == key) {
+            final int score = (byte) entry;
+            final int flag = (entry >>> 8) & 0x3;
+            final int move = (entry >>> 16) & 0xff;
+            if (move != NO_MOVE) {
+                hashMove = mSymmetry.inverse(symmetry, move);
+            }
+            if (!isRoot || hashMove >= 0) {
+                if (flag == EXACT) {
+                    if (isRoot) {
+                        mRootBestMove = hashMove;
+                    }
+                    return score;
+                } else if (flag == LOWER_BOUND && score > alpha) {
+                    alpha = score;
+                } else if (flag == UPPER_BOUND && score < beta) {
+                    beta = score;
+                }
+                if (alpha >= beta) {
+                    if (isRoot) {
+                        mRootBestMove = hashMove;
+                    }
+                    return score;
+                }
+            }
+        }
+
+        int bestScore = -mNumCells - 1;
+        int bestMove = -1;
+        // Try the cached best move first; it usually produces a cutoff.
+        for (int ii = -1; ii < mNumCells; ++ii) {
+            final int move = ii < 0 ? hashMove : ii;
+            if (move < 0 || (ii >= 0 && move == hashMove) || !board.isEmpty(move)) {
+                continue;
+            }
+            final int score;
+            switch (board.play(move)) {
+                case IN_PROGRESS:
+                    score = -negamax(board, -beta, -alpha);
+                    break;
+                case TIE_GAME:
+                    score = 0;
+                    break;
+                default:
+                    score = mNumCells + 1 - board.getMoveCount();
+                    break;
+            }
+            board.undo();
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        final int flag;
+        if (bestScore <= originalAlpha) {
+            flag = UPPER_BOUND;
+        } else if (bestScore >= beta) {
+            flag = LOWER_BOUND;
+        } else {
+            flag = EXACT;
+        }
+        final int storedMove = bestMove < 0 ? NO_MOVE : mSymmetry.transform(symmetry, bestMove);
+        mKeys[slot] = key;
+        mEntries[slot] = VALID | (storedMove << 16) | (flag << 8) | (bestScore & 0xff);
+        if (isRoot) {
+            mRootBestMove = bestMove;
+        }
+        return bestScore;
+    }
+}
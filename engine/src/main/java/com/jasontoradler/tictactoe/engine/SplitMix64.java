@@ -0,0 +1,33 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * The SplitMix64 random number generator. Its output is fully specified by
+ * the seed, unlike {@link java.util.Random}'s across platforms and versions,
+ * so hash keys built from it are the same in every run and can be stored in
+ * files. Not thread safe.
+ */
+final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long mState;
+
+    SplitMix64(long seed) {
+        mState = seed;
+    }
+
+    long nextLong() {
+        mState += GOLDEN_GAMMA;
+        return mix(mState);
+    }
+
+    /**
+     * Scramble the bits of z, so that inputs differing in a few bits give
+     * unrelated outputs.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
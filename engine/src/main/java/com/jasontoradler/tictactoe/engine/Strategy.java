@@ -0,0 +1,15 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Chooses moves for a computer player.
+ */
+public interface Strategy {
+    /**
+     * Pick a move for whoever's turn it is on board.
+     *
+     * @param board game in progress; implementations may play and undo moves
+     *              while searching but must leave it as they found it
+     * @return position of an empty cell to play
+     */
+    int selectMove(Board board);
+}
@@ -0,0 +1,91 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * 64-bit position keys which are the same for every rotation and reflection
+ * of a position, for boards of any size.
+ * <p/>
+ * Each symmetry keeps its own Zobrist hash: the XOR of a fixed random number
+ * for every (player, cell) pair on the board after that symmetry is applied.
+ * The canonical key is the smallest of these hashes. Placing or removing a
+ * mark updates every hash with one XOR each, so walking through a game costs
+ * a few operations per move. The random numbers come from a fixed seed, so
+ * keys stay the same from run to run and can be stored in files.
+ * <p/>
+ * Not thread safe; each thread needs its own instance.
+ */
+public class SymmetricHash {
+
+    private static final long SEED = 0x5454544b45595331L;
+
+    private final Symmetry mSymmetry;
+    // Random number for each player and cell.
+    private final long[][] mCellKeys;
+    // Hash of the current position under each symmetry.
+    private final long[] mHashes;
+
+    public SymmetricHash(int numRows, int numCols) {
+        mSymmetry = new Symmetry(numRows, numCols);
+        final int numCells = numRows * numCols;
+        mCellKeys = new long[2][numCells];
+        final SplitMix64 random = new SplitMix64(SEED);
+        for (int player = 0; player < 2; ++player) {
+            for (int cell = 0; cell < numCells; ++cell) {
+                mCellKeys[player][cell] = random.nextLong();
+            }
+        }
+        mHashes = new long[mSymmetry.getCount()];
+    }
+
+    /**
+     * Forget every mark.
+     */
+    public void reset() {
+        for (int s = 0; s < mHashes.length; ++s) {
+            mHashes[s] = 0;
+        }
+    }
+
+    /**
+     * Reset and then place every mark on board.
+     */
+    public void setPosition(Board board) {
+        reset();
+        for (int ii = 0; ii < board.getMoveCount(); ++ii) {
+            toggle(ii & 1, board.getMove(ii));
+        }
+    }
+
+    /**
+     * Place player's mark at cell, or take it back if it is already there.
+     */
+    public void toggle(int player, int cell) {
+        final long[] keys = mCellKeys[player];
+        for (int s = 0; s < mHashes.length; ++s) {
+            mHashes[s] ^= keys[mSymmetry.transform(s, cell)];
+        }
+    }
+
+    /**
+     * @return the key of the current position
+     */
+    public long getCanonicalKey() {
+        long key = mHashes[0];
+        for (int s = 1; s < mHashes.length; ++s) {
+            key = Math.min(key, mHashes[s]);
+        }
+        return key;
+    }
+
+    /**
+     * @return the key the current position would have after player marks
+     * the empty cell, without changing the current position
+     */
+    public long getCanonicalKeyAfter(int player, int cell) {
+        final long[] keys = mCellKeys[player];
+        long key = Long.MAX_VALUE;
+        for (int s = 0; s < mHashes.length; ++s) {
+            key = Math.min(key, mHashes[s] ^ keys[mSymmetry.transform(s, cell)]);
+        }
+        return key;
+    }
+}
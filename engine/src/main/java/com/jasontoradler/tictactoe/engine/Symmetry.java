@@ -0,0 +1,123 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Rotations and reflections of a board. A square board has eight symmetries
+ * and any other rectangle has four; symmetry 0 is always the identity.
+ * <p/>
+ * Masks of boards which fit in one word are transformed a byte at a time
+ * through precomputed tables, so mapping a whole position costs a handful of
+ * lookups regardless of how many marks it holds.
+ */
+public class Symmetry {
+
+    private final int mNumCells;
+    private final int mCount;
+    private final int[][] mCellMaps;
+    private final int[][] mInverseMaps;
+    private final long[][][] mByteMaps;
+
+    public Symmetry(int numRows, int numCols) {
+        mNumCells = numRows * numCols;
+        mCount = numRows == numCols ? 8 : 4;
+        mCellMaps = new int[mCount][mNumCells];
+        mInverseMaps = new int[mCount][mNumCells];
+        for (int s = 0; s < mCount; ++s) {
+            for (int y = 0; y < numRows; ++y) {
+                for (int x = 0; x < numCols; ++x) {
+                    final int cell = x + y * numCols;
+                    final int mapped = map(s, x, y, numRows, numCols);
+                    mCellMaps[s][cell] = mapped;
+                    mInverseMaps[s][mapped] = cell;
+                }
+            }
+        }
+
+        if (mNumCells > Board.WORD_CELLS) {
+            // Larger boards have no single mask to transform.
+            mByteMaps = null;
+            return;
+        }
+        final int numBytes = (mNumCells + 7) / 8;
+        mByteMaps = new long[mCount][numBytes][256];
+        for (int s = 0; s < mCount; ++s) {
+            for (int b = 0; b < numBytes; ++b) {
+                for (int value = 1; value < 256; ++value) {
+                    long mapped = 0;
+                    for (int bit = 0; bit < 8; ++bit) {
+                        final int cell = b * 8 + bit;
+                        if ((value & (1 << bit)) != 0 && cell < mNumCells) {
+                            mapped |= 1L << mCellMaps[s][cell];
+                        }
+                    }
+                    mByteMaps[s][b][value] = mapped;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transform one cell. Symmetries 1-3 mirror and rotate by 180 degrees and
+     * are valid for any rectangle; 4-7 transpose and only exist for squares.
+     */
+    private static int map(int symmetry, int x, int y, int numRows, int numCols) {
+        final int flipX = numCols - 1 - x;
+        final int flipY = numRows - 1 - y;
+        switch (symmetry) {
+            case 0:
+                return x + y * numCols;
+            case 1:
+                return flipX + y * numCols;
+            case 2:
+                return x + flipY * numCols;
+            case 3:
+                return flipX + flipY * numCols;
+            case 4:
+                return y + x * numCols;
+            case 5:
+                return flipY + x * numCols;
+            case 6:
+                return y + flipX * numCols;
+            default:
+                return flipY + flipX * numCols;
+        }
+    }
+
+    /**
+     * @return number of symmetries, including the identity
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the cell that cell moves to under symmetry
+     */
+    public int transform(int symmetry, int cell) {
+        return mCellMaps[symmetry][cell];
+    }
+
+    /**
+     * @return the cell which symmetry moves to cell
+     */
+    public int inverse(int symmetry, int cell) {
+        return mInverseMaps[symmetry][cell];
+    }
+
+    /**
+     * Move every set cell of a single word mask; only valid for boards of at
+     * most {@link Board#WORD_CELLS} cells.
+     *
+     * @return mask with every set cell moved by symmetry
+     */
+    public long transformMask(int symmetry, long mask) {
+        if (mByteMaps == null) {
+            throw new IllegalStateException("board does not fit in one word");
+        }
+        final long[][] byteMap = mByteMaps[symmetry];
+        long mapped = 0;
+        for (int b = 0; mask != 0; ++b, mask >>>= 8) {
+            mapped |= byteMap[b][(int) mask & 0xff];
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,190 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Precomputed value and best move for every position of a small board,
+ * generated offline by {@link TablebaseGenerator}.
+ * <p/>
+ * The file is an 8 byte header followed by one byte per possible position.
+ * A position's index is its base-3 encoding, where cell n contributes 3^n
+ * for a player 1 mark and 2 * 3^n for a player 2 mark. Each entry holds the
+ * best move in its low five bits and the value for the player to move in the
+ * next two (0 loss, 1 tie, 2 win); positions which cannot occur in a game are
+ * stored as {@link #UNREACHABLE}.
+ * <p/>
+ * Lookups index straight into the buffer, which is normally memory mapped, so
+ * they take constant time and allocate nothing.
+ */
+public class Tablebase implements Strategy {
+
+    public static final int MAGIC = 0x54545442; // "TTTB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+
+    /**
+     * Largest board for which a table is practical: 3^16 entries is 43 MB.
+     */
+    public static final int MAX_CELLS = 16;
+
+    static final int UNREACHABLE = 0xff;
+    static final int NO_MOVE = 0x1f;
+    static final int MOVE_MASK = 0x1f;
+    static final int VALUE_SHIFT = 5;
+
+    private final ByteBuffer mBuffer;
+    private final int mNumRows;
+    private final int mNumCols;
+    private final int mWinLength;
+    private final int[][] mByteIndex;
+
+    /**
+     * @param buffer whole table file, including its header, positioned at the
+     *               start of the header
+     */
+    public Tablebase(ByteBuffer buffer) {
+        final int base = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(base) != MAGIC) {
+            throw new IllegalArgumentException("not a tablebase");
+        }
+        if (buffer.get(base + 4) != VERSION) {
+            throw new IllegalArgumentException("unsupported tablebase version: "
+                    + buffer.get(base + 4));
+        }
+        mNumRows = buffer.get(base + 5);
+        mNumCols = buffer.get(base + 6);
+        mWinLength = buffer.get(base + 7);
+        final int numCells = mNumRows * mNumCols;
+        if (numCells < 1 || numCells > MAX_CELLS
+                || buffer.remaining() < HEADER_SIZE + tableSize(numCells)) {
+            throw new IllegalArgumentException("truncated tablebase");
+        }
+        buffer.position(base + HEADER_SIZE);
+        mBuffer = buffer.slice();
+        buffer.position(base);
+        mByteIndex = buildByteIndex(numCells);
+    }
+
+    /**
+     * Memory map a table stored in part of a file.
+     */
+    public static Tablebase map(FileChannel channel, long offset, long length)
+            throws IOException {
+        final MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return new Tablebase(buffer);
+    }
+
+    /**
+     * @return number of entries in a table for a board with numCells cells
+     */
+    static int tableSize(int numCells) {
+        int size = 1;
+        for (int ii = 0; ii < numCells; ++ii) {
+            size *= 3;
+        }
+        return size;
+    }
+
+    /**
+     * For each byte of a mask, the base-3 weight of every combination of bits
+     * in that byte.
+     */
+    private static int[][] buildByteIndex(int numCells) {
+        final int numBytes = (numCells + 7) / 8;
+        final int[][] byteIndex = new int[numBytes][256];
+        int weight = 1;
+        for (int cell = 0; cell < numCells; ++cell, weight *= 3) {
+            final int b = cell / 8;
+            final int bit = 1 << (cell % 8);
+            for (int value = 0; value < 256; ++value) {
+                if ((value & bit) != 0) {
+                    byteIndex[b][value] += weight;
+                }
+            }
+        }
+        return byteIndex;
+    }
+
+    /**
+     * Page in the whole table ahead of the first lookup. Meant for a
+     * background thread at startup.
+     *
+     * @return a value computed from the table, which callers can ignore
+     */
+    public int preload() {
+        return MappedBuffers.touchPages(mBuffer);
+    }
+
+    public int getNumRows() {
+        return mNumRows;
+    }
+
+    public int getNumCols() {
+        return mNumCols;
+    }
+
+    public int getWinLength() {
+        return mWinLength;
+    }
+
+    /**
+     * @return true if this table covers boards with the dimensions of board
+     */
+    public boolean covers(Board board) {
+        return board.getNumRows() == mNumRows && board.getNumCols() == mNumCols
+                && board.getWinLength() == mWinLength;
+    }
+
+    /**
+     * @return 1 if the player to move wins with perfect play, 0 for a tie, or
+     * -1 for a loss
+     */
+    public int getValue(Board board) {
+        return (entry(board) >>> VALUE_SHIFT) - 1;
+    }
+
+    @Override
+    public int selectMove(Board board) {
+        final int move = entry(board) & MOVE_MASK;
+        if (move == NO_MOVE) {
+            throw new IllegalStateException("game is over: " + board.getGameState());
+        }
+        return move;
+    }
+
+    private int entry(Board board) {
+        if (!covers(board)) {
+            throw new IllegalArgumentException("board dimensions differ");
+        }
+        final int entry = mBuffer.get(index(board.getStones(Board.PLAYER1))
+                + 2 * index(board.getStones(Board.PLAYER2))) & 0xff;
+        if (entry == UNREACHABLE) {
+            throw new IllegalStateException("position cannot occur in a game");
+        }
+        return entry;
+    }
+
+    private int index(long mask) {
+        int index = 0;
+        for (int b = 0; mask != 0; ++b, mask >>>= 8) {
+            index += mByteIndex[b][(int) mask & 0xff];
+        }
+        return index;
+    }
+
+    /**
+     * @return base-3 index of the position on board
+     */
+    static int index(Board board) {
+        int index = 0;
+        int weight = 1;
+        for (int cell = 0; cell < board.getNumCells(); ++cell, weight *= 3) {
+            index += (board.getCell(cell) + 1) * weight;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,108 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Builds a {@link Tablebase} file by solving every position reachable from
+ * the empty board.
+ * <p/>
+ * Usage: TablebaseGenerator numRows numCols winLength outputFile
+ */
+public class TablebaseGenerator {
+
+    private final Board mBoard;
+    private final Solver mSolver;
+    private final byte[] mTable;
+
+    public TablebaseGenerator(int numRows, int numCols, int winLength) {
+        if (numRows * numCols > Tablebase.MAX_CELLS) {
+            throw new IllegalArgumentException(
+                    "board too large for a tablebase: " + numRows + "x" + numCols);
+        }
+        mBoard = new Board(numRows, numCols, winLength);
+        mSolver = new Solver(numRows, numCols, winLength, 22);
+        mTable = new byte[Tablebase.tableSize(mBoard.getNumCells())];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("usage: TablebaseGenerator numRows numCols winLength outputFile");
+            System.exit(1);
+        }
+        final TablebaseGenerator generator = new TablebaseGenerator(
+                Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        final long start = System.currentTimeMillis();
+        final int positions = generator.generate();
+        final File output = new File(args[3]);
+        generator.write(output);
+        System.out.println("Wrote " + positions + " positions to " + output + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Solve every reachable position.
+     *
+     * @return number of positions in the table
+     */
+    public int generate() {
+        Arrays.fill(mTable, (byte) Tablebase.UNREACHABLE);
+        mBoard.reset();
+        return visit();
+    }
+
+    private int visit() {
+        final int index = Tablebase.index(mBoard);
+        if (mTable[index] != (byte) Tablebase.UNREACHABLE) {
+            return 0;
+        }
+
+        int move = Tablebase.NO_MOVE;
+        int value = Integer.signum(mSolver.solve(mBoard));
+        if (mBoard.getGameState() == GameState.IN_PROGRESS) {
+            move = mSolver.selectMove(mBoard);
+        }
+        mTable[index] = (byte) (((value + 1) << Tablebase.VALUE_SHIFT) | move);
+
+        int positions = 1;
+        if (mBoard.getGameState() == GameState.IN_PROGRESS) {
+            for (int cell = 0; cell < mBoard.getNumCells(); ++cell) {
+                if (mBoard.isEmpty(cell)) {
+                    mBoard.play(cell);
+                    positions += visit();
+                    mBoard.undo();
+                }
+            }
+        }
+        return positions;
+    }
+
+    public void write(File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        final ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_SIZE);
+        header.putInt(Tablebase.MAGIC)
+                .put((byte) Tablebase.VERSION)
+                .put((byte) mBoard.getNumRows())
+                .put((byte) mBoard.getNumCols())
+                .put((byte) mBoard.getWinLength())
+                .flip();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            channel.write(header);
+            final ByteBuffer table = ByteBuffer.wrap(mTable);
+            while (table.hasRemaining()) {
+                channel.write(table);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
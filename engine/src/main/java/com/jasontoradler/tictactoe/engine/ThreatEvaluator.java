@@ -0,0 +1,204 @@
+package com.jasontoradler.tictactoe.engine;
+
+import java.util.Arrays;
+
+/**
+ * Static evaluation for k-in-a-row boards, kept up to date one move at a
+ * time. The board is covered by every window of winLength cells in a row,
+ * column, or diagonal. A window holding marks of only one player is worth
+ * more to that player the fuller it is; a window holding marks of both
+ * players can never be completed and is worth nothing.
+ * <p/>
+ * Placing or removing a mark only touches the windows through that cell, at
+ * most 4 * winLength of them, so the search can keep the evaluation in step
+ * with the board instead of rescanning it at every leaf. The evaluator also
+ * counts threats: windows one mark short of a win with no opposing mark,
+ * which the player can complete on their next move.
+ */
+public class ThreatEvaluator {
+
+    // Row, column, diagonal, and anti-diagonal steps.
+    private static final int[] DIRECTION_X = {1, 0, 1, -1};
+    private static final int[] DIRECTION_Y = {0, 1, 1, 1};
+
+    private final int mWinLength;
+    // Windows through cell n are mCellWindows[mCellWindowStart[n]] up to
+    // mCellWindows[mCellWindowStart[n + 1]].
+    private final int[] mCellWindowStart;
+    private final int[] mCellWindows;
+    // Marks each player has in each window.
+    private final int[][] mCounts;
+    // Value of a window holding n marks of one player and none of the other.
+    private final int[] mWeights;
+    private final int[] mThreats = new int[2];
+    // Sum of window values, positive when player 1 is ahead.
+    private int mScore;
+
+    public ThreatEvaluator(int numRows, int numCols, int winLength) {
+        mWinLength = winLength;
+        final int numCells = numRows * numCols;
+
+        // First pass counts windows per cell, second pass fills them in.
+        final int[] cellCounts = new int[numCells];
+        final int numWindows = forEachWindow(numRows, numCols, winLength, cellCounts, null, null);
+        mCellWindowStart = new int[numCells + 1];
+        for (int cell = 0; cell < numCells; ++cell) {
+            mCellWindowStart[cell + 1] = mCellWindowStart[cell] + cellCounts[cell];
+        }
+        mCellWindows = new int[mCellWindowStart[numCells]];
+        Arrays.fill(cellCounts, 0);
+        forEachWindow(numRows, numCols, winLength, cellCounts, mCellWindowStart, mCellWindows);
+
+        mCounts = new int[2][numWindows];
+        mWeights = new int[winLength + 1];
+        for (int count = 1; count < winLength; ++count) {
+            // Each extra mark is worth eight times the last, capped well
+            // below overflow for long win lengths.
+            mWeights[count] = 1 << Math.min(3 * (count - 1), 20);
+        }
+    }
+
+    /**
+     * Enumerate every window. When windows is null, only count the windows
+     * through each cell into cellCounts.
+     *
+     * @return number of windows
+     */
+    private static int forEachWindow(int numRows, int numCols, int winLength,
+                                     int[] cellCounts, int[] cellStart, int[] windows) {
+        int window = 0;
+        for (int d = 0; d < DIRECTION_X.length; ++d) {
+            final int dx = DIRECTION_X[d];
+            final int dy = DIRECTION_Y[d];
+            for (int y = 0; y < numRows; ++y) {
+                for (int x = 0; x < numCols; ++x) {
+                    final int endX = x + dx * (winLength - 1);
+                    final int endY = y + dy * (winLength - 1);
+                    if (endX < 0 || endX >= numCols || endY >= numRows) {
+                        continue;
+                    }
+                    for (int ii = 0; ii < winLength; ++ii) {
+                        final int cell = (x + dx * ii) + (y + dy * ii) * numCols;
+                        if (windows != null) {
+                            windows[cellStart[cell] + cellCounts[cell]] = window;
+                        }
+                        ++cellCounts[cell];
+                    }
+                    ++window;
+                }
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Forget every mark.
+     */
+    public void reset() {
+        Arrays.fill(mCounts[0], 0);
+        Arrays.fill(mCounts[1], 0);
+        mThreats[0] = 0;
+        mThreats[1] = 0;
+        mScore = 0;
+    }
+
+    /**
+     * Reset and then place every mark on board.
+     */
+    public void setPosition(Board board) {
+        reset();
+        for (int ii = 0; ii < board.getMoveCount(); ++ii) {
+            place(ii & 1, board.getMove(ii));
+        }
+    }
+
+    /**
+     * Account for player marking cell.
+     */
+    public void place(int player, int cell) {
+        final int[] own = mCounts[player];
+        final int[] other = mCounts[1 - player];
+        for (int ii = mCellWindowStart[cell]; ii < mCellWindowStart[cell + 1]; ++ii) {
+            final int window = mCellWindows[ii];
+            remove(window, own[window], other[window], player);
+            ++own[window];
+            add(window, own[window], other[window], player);
+        }
+    }
+
+    /**
+     * Account for player's mark at cell being taken back.
+     */
+    public void remove(int player, int cell) {
+        final int[] own = mCounts[player];
+        final int[] other = mCounts[1 - player];
+        for (int ii = mCellWindowStart[cell]; ii < mCellWindowStart[cell + 1]; ++ii) {
+            final int window = mCellWindows[ii];
+            remove(window, own[window], other[window], player);
+            --own[window];
+            add(window, own[window], other[window], player);
+        }
+    }
+
+    private void add(int window, int own, int other, int player) {
+        if (other == 0) {
+            mScore += player == Board.PLAYER1 ? mWeights[own] : -mWeights[own];
+            if (own == mWinLength - 1) {
+                ++mThreats[player];
+            }
+        } else if (own == 0) {
+            mScore += player == Board.PLAYER1 ? -mWeights[other] : mWeights[other];
+            if (other == mWinLength - 1) {
+                ++mThreats[1 - player];
+            }
+        }
+    }
+
+    private void remove(int window, int own, int other, int player) {
+        if (other == 0) {
+            mScore -= player == Board.PLAYER1 ? mWeights[own] : -mWeights[own];
+            if (own == mWinLength - 1) {
+                --mThreats[player];
+            }
+        } else if (own == 0) {
+            mScore -= player == Board.PLAYER1 ? -mWeights[other] : mWeights[other];
+            if (other == mWinLength - 1) {
+                --mThreats[1 - player];
+            }
+        }
+    }
+
+    /**
+     * @return the position's value to player; positive when player is ahead
+     */
+    public int getScore(int player) {
+        return player == Board.PLAYER1 ? mScore : -mScore;
+    }
+
+    /**
+     * @return number of windows player could complete with one more mark
+     */
+    public int getThreatCount(int player) {
+        return mThreats[player];
+    }
+
+    /**
+     * Estimate how much marking the empty cell would help player, both by
+     * building player's windows and by spoiling the opponent's. Used to try
+     * promising moves first.
+     */
+    public int getMoveGain(int player, int cell) {
+        final int[] own = mCounts[player];
+        final int[] other = mCounts[1 - player];
+        int gain = 0;
+        for (int ii = mCellWindowStart[cell]; ii < mCellWindowStart[cell + 1]; ++ii) {
+            final int window = mCellWindows[ii];
+            if (other[window] == 0) {
+                gain += mWeights[Math.min(own[window] + 1, mWinLength - 1)] - mWeights[own[window]];
+            } else if (own[window] == 0) {
+                gain += mWeights[other[window]];
+            }
+        }
+        return gain;
+    }
+}
@@ -0,0 +1,149 @@
+package com.jasontoradler.tictactoe.engine;
+
+/**
+ * Fixed-size hash table of search results, shared by any number of search
+ * threads without locks.
+ * <p/>
+ * An entry is two longs: the data word, which packs the best move, score,
+ * depth, bound, and search generation, and the position's key XORed with
+ * the data word. Writes from two threads can interleave and leave the words
+ * of an entry from different stores, but then the XOR no longer gives the
+ * key and a probe treats the entry as missing, so a torn entry costs a
+ * little search effort and never a wrong result.
+ * <p/>
+ * Entries come in buckets of two. The first slot keeps the deepest result
+ * seen, unless it is left over from an earlier search, since deep results
+ * save the most work. The second slot always takes the newest result that
+ * the first one turned away.
+ */
+public class TranspositionTable {
+
+    /**
+     * Score bounds: exact, at least the stored score, or at most it.
+     */
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    /**
+     * Returned by {@link #probe} when the position is not in the table.
+     */
+    public static final long MISSING = 0;
+
+    private static final int MOVE_SHIFT = 32;
+    private static final int MOVE_BITS = 11;
+    private static final int DEPTH_SHIFT = MOVE_SHIFT + MOVE_BITS;
+    private static final int DEPTH_BITS = 8;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + 2;
+    private static final int GENERATION_BITS = 8;
+    // Set in every stored data word, so a stored entry is never MISSING.
+    private static final long VALID = 1L << 63;
+
+    // Four longs per bucket: key ^ data and data for each slot.
+    private final long[] mTable;
+    private final int mBucketMask;
+    private volatile int mGeneration;
+
+    /**
+     * @param bucketBits log2 of the number of buckets; each bucket takes 32
+     *                   bytes
+     */
+    public TranspositionTable(int bucketBits) {
+        if (bucketBits < 0 || bucketBits > 26) {
+            throw new IllegalArgumentException("unsupported table size: " + bucketBits);
+        }
+        mTable = new long[4 << bucketBits];
+        mBucketMask = (1 << bucketBits) - 1;
+    }
+
+    /**
+     * Mark everything stored so far as old, so new results replace it first.
+     * Call once before each search.
+     */
+    public void newSearch() {
+        mGeneration = (mGeneration + 1) & ((1 << GENERATION_BITS) - 1);
+    }
+
+    /**
+     * Forget everything.
+     */
+    public void clear() {
+        for (int ii = 0; ii < mTable.length; ++ii) {
+            mTable[ii] = 0;
+        }
+    }
+
+    /**
+     * @return the data word stored for key, or {@link #MISSING}
+     */
+    public long probe(long key) {
+        final int index = bucketIndex(key);
+        final long[] table = mTable;
+        for (int slot = index; slot < index + 4; slot += 2) {
+            final long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != MISSING) {
+                return data;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Store a search result for key.
+     *
+     * @param move  best move found, or -1 for none
+     * @param score score found, adjusted as the caller needs
+     * @param depth depth searched, from 0 to 255
+     * @param bound {@link #EXACT}, {@link #LOWER}, or {@link #UPPER}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        final int generation = mGeneration;
+        final long data = VALID
+                | (long) generation << GENERATION_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) Math.min(depth, (1 << DEPTH_BITS) - 1) << DEPTH_SHIFT
+                | (long) (move + 1) << MOVE_SHIFT
+                | (score & 0xffffffffL);
+        final int index = bucketIndex(key);
+        final long[] table = mTable;
+        final long deepData = table[index + 1];
+        final boolean isSameKey = (table[index] ^ deepData) == key;
+        if (deepData == MISSING || isSameKey || getGeneration(deepData) != generation
+                || getDepth(deepData) <= depth) {
+            table[index + 1] = data;
+            table[index] = key ^ data;
+        } else {
+            table[index + 3] = data;
+            table[index + 2] = key ^ data;
+        }
+    }
+
+    private int bucketIndex(long key) {
+        // The low bits of a Zobrist key are as random as any.
+        return ((int) key & mBucketMask) << 2;
+    }
+
+    public static int getScore(long data) {
+        return (int) data;
+    }
+
+    /**
+     * @return the stored best move, or -1 if none was stored
+     */
+    public static int getMove(long data) {
+        return (int) (data >>> MOVE_SHIFT & ((1 << MOVE_BITS) - 1)) - 1;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT & ((1 << DEPTH_BITS) - 1));
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT & 3);
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> GENERATION_SHIFT & ((1 << GENERATION_BITS) - 1));
+    }
+}
@@ -0,0 +1,231 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlphaBetaSearchTest {
+
+    // Long enough to finish any search these small positions need.
+    private static final long SOLVE_BUDGET_MILLIS = 5000;
+
+    @Test
+    public void takesAnImmediateWin() {
+        for (int threads = 1; threads <= 2; ++threads) {
+            // Player 1 has four in a row on row 7 with both ends open;
+            // player 2 has a four of their own which player 1 need not block.
+            final Board board = position(15, 15, 5,
+                    at(7, 3), at(2, 2), at(7, 4), at(2, 3), at(7, 5), at(2, 4), at(7, 6), at(2, 5));
+            final AlphaBetaSearch search = new AlphaBetaSearch(15, 15, 5, 1000, threads, 12);
+            try {
+                final int move = search.selectMove(board);
+                assertTrue("cell " + move, move == at(7, 2) || move == at(7, 7));
+                assertEquals(GameState.PLAYER1_WINS, board.play(move));
+            } finally {
+                search.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void blocksAFourOneMoveFromWinning() {
+        // Player 2 has four in a column, its top end blocked by player 1, so
+        // player 1 must take the bottom end.
+        final Board board = position(15, 15, 5, at(3, 7), at(4, 7), at(10, 10), at(5, 7),
+                at(10, 12), at(6, 7), at(0, 14), at(7, 7));
+        for (int threads = 1; threads <= 2; ++threads) {
+            final AlphaBetaSearch search = new AlphaBetaSearch(15, 15, 5, 1000, threads, 12);
+            try {
+                assertEquals(at(8, 7), search.selectMove(board));
+            } finally {
+                search.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void agreesWithTheSolverOnSmallBoards() {
+        // Every position of 3x3, and random ones from boards too large for
+        // that.
+        final AlphaBetaSearch search3 = new AlphaBetaSearch(3, 3, 3, SOLVE_BUDGET_MILLIS);
+        final Solver solver3 = new Solver(3, 3, 3);
+        assertEquals(4520, checkAll(new Board(3, 3, 3), search3, solver3, new HashSet<String>()));
+
+        final Random random = new Random(11);
+        final int[][] sizes = {{4, 4, 3}, {3, 4, 3}, {4, 4, 4}};
+        for (int[] size : sizes) {
+            final AlphaBetaSearch search = new AlphaBetaSearch(size[0], size[1], size[2],
+                    SOLVE_BUDGET_MILLIS);
+            final Solver solver = new Solver(size[0], size[1], size[2]);
+            for (int trial = 0; trial < 40; ++trial) {
+                final Board board = new Board(size[0], size[1], size[2]);
+                final int[] cells = new int[board.getNumCells()];
+                final int moves = 2 + random.nextInt(board.getNumCells() - 4);
+                while (board.getMoveCount() < moves
+                        && board.getGameState() == GameState.IN_PROGRESS) {
+                    board.play(cells[random.nextInt(board.getEmptyCells(cells))]);
+                }
+                if (board.getGameState() == GameState.IN_PROGRESS) {
+                    checkMove(board, search, solver);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stopsWithinItsTimeBudget() {
+        final Board board = position(19, 19, 5, at(9, 9, 19), at(9, 10, 19), at(10, 9, 19),
+                at(8, 8, 19), at(10, 10, 19), at(11, 11, 19), at(8, 10, 19));
+        for (int threads = 1; threads <= 3; ++threads) {
+            final AlphaBetaSearch search = new AlphaBetaSearch(19, 19, 5, 50, threads, 14);
+            try {
+                for (int ii = 0; ii < 3; ++ii) {
+                    final long start = System.nanoTime();
+                    final int move = search.selectMove(board);
+                    final long millis = (System.nanoTime() - start) / 1000000;
+                    assertTrue(threads + " threads took " + millis + " ms", millis < 50 + 200);
+                    assertTrue(board.isEmpty(move));
+                    assertTrue(search.getCompletedDepth() >= 1);
+                }
+            } finally {
+                search.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void evaluatorKeptUpToDateMatchesOneBuiltFromScratch() {
+        final Random random = new Random(12);
+        final int[][] sizes = {{3, 3, 3}, {9, 9, 4}, {15, 15, 5}, {7, 12, 5}};
+        for (int[] size : sizes) {
+            final ThreatEvaluator incremental = new ThreatEvaluator(size[0], size[1], size[2]);
+            final ThreatEvaluator fresh = new ThreatEvaluator(size[0], size[1], size[2]);
+            final Board board = new Board(size[0], size[1], size[2]);
+            final int[] cells = new int[board.getNumCells()];
+            for (int game = 0; game < 20; ++game) {
+                board.reset();
+                incremental.reset();
+                while (board.getGameState() == GameState.IN_PROGRESS) {
+                    final int player = board.getTurn();
+                    final int cell = cells[random.nextInt(board.getEmptyCells(cells))];
+                    board.play(cell);
+                    incremental.place(player, cell);
+                    fresh.setPosition(board);
+                    assertSameEvaluation(fresh, incremental);
+                    // Taking a move back and replaying it changes nothing.
+                    if (random.nextInt(4) == 0) {
+                        incremental.remove(player, cell);
+                        board.undo();
+                        fresh.setPosition(board);
+                        assertSameEvaluation(fresh, incremental);
+                        board.play(cell);
+                        incremental.place(player, cell);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void evaluatorCountsWindowsOneMarkShort() {
+        final ThreatEvaluator evaluator = new ThreatEvaluator(9, 9, 4);
+        // Three in a row for player 1 in the middle of row 4: completed by
+        // the cell on either side.
+        final Board board = position(9, 9, 4, at(4, 3, 9), at(0, 0, 9), at(4, 4, 9), at(0, 8, 9),
+                at(4, 5, 9));
+        evaluator.setPosition(board);
+        assertEquals(2, evaluator.getThreatCount(Board.PLAYER1));
+        assertEquals(0, evaluator.getThreatCount(Board.PLAYER2));
+        assertTrue(evaluator.getScore(Board.PLAYER1) > 0);
+        assertEquals(-evaluator.getScore(Board.PLAYER1), evaluator.getScore(Board.PLAYER2));
+        // One end blocked leaves one threat.
+        board.play(at(4, 6, 9));
+        evaluator.setPosition(board);
+        assertEquals(1, evaluator.getThreatCount(Board.PLAYER1));
+        // Blocking is worth more to player 2 than a cell far away.
+        assertTrue(evaluator.getMoveGain(Board.PLAYER2, at(4, 2, 9))
+                > evaluator.getMoveGain(Board.PLAYER2, at(8, 8, 9)));
+    }
+
+    private static int at(int row, int col) {
+        return at(row, col, 15);
+    }
+
+    private static int at(int row, int col, int numCols) {
+        return row * numCols + col;
+    }
+
+    private static Board position(int numRows, int numCols, int winLength, int... moves) {
+        final Board board = new Board(numRows, numCols, winLength);
+        for (int move : moves) {
+            assertEquals(GameState.IN_PROGRESS, board.play(move));
+        }
+        return board;
+    }
+
+    /**
+     * Check the search's move in board and every position after it.
+     *
+     * @return number of positions checked, counting transpositions once each
+     */
+    private static int checkAll(Board board, AlphaBetaSearch search, Solver solver,
+                                Set<String> visited) {
+        if (board.getGameState() != GameState.IN_PROGRESS
+                || !visited.add(getKey(board))) {
+            return 0;
+        }
+        checkMove(board, search, solver);
+        int positions = 1;
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            if (board.isEmpty(cell)) {
+                board.play(cell);
+                positions += checkAll(board, search, solver, visited);
+                board.undo();
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Check that the search's move keeps the position's result: wins stay
+     * wins and ties stay ties.
+     */
+    private static void checkMove(Board board, AlphaBetaSearch search, Solver solver) {
+        final int expected = Integer.signum(solver.solve(board));
+        final int move = search.selectMove(board);
+        assertTrue(board.isEmpty(move));
+        final int actual;
+        switch (board.play(move)) {
+            case IN_PROGRESS:
+                actual = -Integer.signum(solver.solve(board));
+                break;
+            case TIE_GAME:
+                actual = 0;
+                break;
+            default:
+                actual = 1;
+                break;
+        }
+        board.undo();
+        assertEquals("move " + move + " after " + getKey(board), expected, actual);
+    }
+
+    private static String getKey(Board board) {
+        final StringBuilder key = new StringBuilder();
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            key.append((char) ('1' + board.getCell(cell)));
+        }
+        return key.toString();
+    }
+
+    private static void assertSameEvaluation(ThreatEvaluator expected, ThreatEvaluator actual) {
+        assertEquals(expected.getScore(Board.PLAYER1), actual.getScore(Board.PLAYER1));
+        assertEquals(expected.getThreatCount(Board.PLAYER1), actual.getThreatCount(Board.PLAYER1));
+        assertEquals(expected.getThreatCount(Board.PLAYER2), actual.getThreatCount(Board.PLAYER2));
+    }
+}
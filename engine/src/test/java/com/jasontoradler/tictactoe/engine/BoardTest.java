@@ -0,0 +1,363 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoardTest {
+
+    // Rows, columns, and win length of boards which fit in one word and
+    // boards which need several, square and not.
+    private static final int[][] SIZES = {
+            {3, 3, 3}, {4, 4, 3}, {5, 7, 4}, {8, 8, 5}, {1, 5, 3},
+            {9, 9, 4}, {7, 12, 5}, {15, 15, 5}, {19, 19, 5}, {32, 32, 6},
+    };
+
+    // Row, column, diagonal, and anti-diagonal steps.
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {-1, 1}};
+
+    @Test
+    public void winsAlongEveryLineInEveryDirection() {
+        for (int[] size : SIZES) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            for (int[] direction : DIRECTIONS) {
+                for (int y = 0; y < board.getNumRows(); ++y) {
+                    for (int x = 0; x < board.getNumCols(); ++x) {
+                        final int[] line = getLine(board, x, y, direction[0], direction[1]);
+                        if (line != null) {
+                            checkLineWins(board, line);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lineOneShortOfWinLengthDoesNotWin() {
+        for (int[] size : SIZES) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            if (board.getNumRows() == 1 || board.getWinLength() > board.getNumCols()) {
+                continue;
+            }
+            // Player 1 fills the top row up to one short of a win, and player
+            // 2 answers on the bottom row.
+            final int bottom = (board.getNumRows() - 1) * board.getNumCols();
+            for (int ii = 0; ii < board.getWinLength() - 1; ++ii) {
+                assertEquals(GameState.IN_PROGRESS, board.play(ii));
+                assertEquals(GameState.IN_PROGRESS, board.play(bottom + ii));
+            }
+            assertTrue(board.isWinningMove(Board.PLAYER1, board.getWinLength() - 1));
+            assertEquals(GameState.PLAYER1_WINS, board.play(board.getWinLength() - 1));
+        }
+    }
+
+    @Test
+    public void longerWinLengthThanOneSideWinsOnlyAlongTheOther() {
+        // Four in a row fits across but not down a 3x5 board.
+        final Board board = new Board(3, 5, 4);
+        assertEquals(GameState.IN_PROGRESS, board.play(0));
+        assertEquals(GameState.IN_PROGRESS, board.play(1));
+        assertEquals(GameState.IN_PROGRESS, board.play(5));
+        assertEquals(GameState.IN_PROGRESS, board.play(2));
+        assertEquals(GameState.IN_PROGRESS, board.play(10));
+        assertEquals(GameState.IN_PROGRESS, board.play(3));
+        assertEquals(GameState.IN_PROGRESS, board.play(11));
+        assertEquals(GameState.PLAYER2_WINS, board.play(4));
+    }
+
+    @Test
+    public void matchesFullBoardScanInRandomGames() {
+        final Random random = new Random(1);
+        for (int[] size : SIZES) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            final int[] cells = new int[board.getNumCells()];
+            for (int game = 0; game < 50; ++game) {
+                board.reset();
+                GameState state = GameState.IN_PROGRESS;
+                while (state == GameState.IN_PROGRESS) {
+                    final int count = board.getEmptyCells(cells);
+                    final int player = board.getTurn();
+                    final int move = cells[random.nextInt(count)];
+                    final boolean wins = hasLine(board, player, move);
+                    assertEquals(wins, board.isWinningMove(player, move));
+                    state = board.play(move);
+                    if (wins) {
+                        assertEquals(player == Board.PLAYER1
+                                ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS, state);
+                    } else {
+                        assertEquals(board.isFull()
+                                ? GameState.TIE_GAME : GameState.IN_PROGRESS, state);
+                    }
+                }
+                assertEquals(scan(board), state);
+            }
+        }
+    }
+
+    @Test
+    public void undoRestoresEveryEarlierPosition() {
+        final Random random = new Random(2);
+        for (int[] size : SIZES) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            final int[] cells = new int[board.getNumCells()];
+            final long[][] stones = new long[board.getNumCells() + 1][];
+            final long[] hashes = new long[board.getNumCells() + 1];
+            for (int game = 0; game < 20; ++game) {
+                board.reset();
+                int moves = 0;
+                stones[0] = getStones(board);
+                hashes[0] = board.getHash();
+                assertEquals(0, hashes[0]);
+                while (board.getGameState() == GameState.IN_PROGRESS) {
+                    final int count = board.getEmptyCells(cells);
+                    board.play(cells[random.nextInt(count)]);
+                    ++moves;
+                    stones[moves] = getStones(board);
+                    hashes[moves] = board.getHash();
+                }
+                while (moves > 0) {
+                    final int move = board.getLastMove();
+                    board.undo();
+                    --moves;
+                    assertEquals(moves, board.getMoveCount());
+                    assertEquals(GameState.IN_PROGRESS, board.getGameState());
+                    assertEquals(Board.EMPTY, board.getCell(move));
+                    assertArrayEquals(stones[moves], getStones(board));
+                    assertEquals(hashes[moves], board.getHash());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hashDependsOnPositionNotMoveOrder() {
+        final Board first = new Board(15, 15, 5);
+        first.play(10);
+        first.play(20);
+        first.play(100);
+        first.play(200);
+        final Board second = new Board(15, 15, 5);
+        second.play(100);
+        second.play(200);
+        second.play(10);
+        second.play(20);
+        assertEquals(first.getHash(), second.getHash());
+        second.undo();
+        second.play(21);
+        assertFalse(first.getHash() == second.getHash());
+    }
+
+    @Test
+    public void emptyCellsSkipPastTheLastCellOfAPartialWord() {
+        for (int[] size : SIZES) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            final int[] cells = new int[board.getNumCells()];
+            assertEquals(board.getNumCells(), board.getEmptyCells(cells));
+            for (int ii = 0; ii < cells.length; ++ii) {
+                assertEquals(ii, cells[ii]);
+            }
+            board.play(board.getNumCells() - 1);
+            assertEquals(board.getNumCells() - 1, board.getEmptyCells(cells));
+            assertEquals(board.getNumCells() - 2, cells[board.getNumCells() - 2]);
+        }
+    }
+
+    @Test
+    public void cellsInLaterWordsBelongToTheRightPlayer() {
+        final Board board = new Board(19, 19, 5);
+        board.play(300);
+        board.play(64);
+        assertEquals(Board.PLAYER1, board.getCell(300));
+        assertEquals(Board.PLAYER2, board.getCell(64));
+        assertEquals(Board.EMPTY, board.getCell(0));
+        assertEquals(1L << (300 % 64), board.getStones(Board.PLAYER1, 300 / 64));
+        assertEquals(1L, board.getStones(Board.PLAYER2, 1));
+        assertEquals(0, board.getStones(Board.PLAYER2, 0));
+    }
+
+    @Test
+    public void winningLineRunsBetweenItsEnds() {
+        final Board board = new Board(15, 15, 5);
+        // Player 1 finishes an anti-diagonal in the middle of the line.
+        final int[] line = {4 + 15 * 5, 3 + 15 * 6, 2 + 15 * 7, 1 + 15 * 8, 0 + 15 * 9};
+        final int[] moves = {line[0], 200, line[1], 201, line[3], 203, line[4], 205, line[2]};
+        for (int move : moves) {
+            board.play(move);
+        }
+        assertEquals(GameState.PLAYER1_WINS, board.getGameState());
+        final int[] ends = new int[2];
+        assertTrue(board.getWinningLine(ends));
+        assertArrayEquals(new int[]{line[0], line[4]}, ends);
+    }
+
+    @Test
+    public void copyHasSamePositionAndIsIndependent() {
+        final Board board = new Board(9, 9, 4);
+        board.play(40);
+        board.play(70);
+        final Board copy = new Board(board);
+        assertEquals(board.getHash(), copy.getHash());
+        assertEquals(2, copy.getMoveCount());
+        assertEquals(70, copy.getLastMove());
+        copy.play(41);
+        assertEquals(2, board.getMoveCount());
+        assertTrue(board.isEmpty(41));
+        board.copyFrom(copy);
+        assertEquals(Board.PLAYER1, board.getCell(41));
+    }
+
+    @Test
+    public void rejectsIllegalMoves() {
+        final Board board = new Board();
+        try {
+            board.undo();
+            fail("undo on an empty board");
+        } catch (IllegalStateException expected) {
+        }
+        board.play(4);
+        try {
+            board.play(4);
+            fail("played an occupied cell");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            board.play(9);
+            fail("played off the board");
+        } catch (IllegalArgumentException expected) {
+        }
+        for (int move : new int[]{0, 1, 3, 7}) {
+            board.play(move);
+        }
+        assertEquals(GameState.PLAYER1_WINS, board.getGameState());
+        try {
+            board.play(8);
+            fail("played after the game was over");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void fullBoardWithoutLineIsTie() {
+        final Board board = new Board();
+        for (int move : new int[]{0, 1, 2, 4, 3, 5, 7, 6, 8}) {
+            board.play(move);
+        }
+        assertEquals(GameState.TIE_GAME, board.getGameState());
+        assertTrue(board.isFull());
+    }
+
+    /**
+     * @return cells of the winLength line starting at (x, y) in direction
+     * (dx, dy), or null if it runs off the board
+     */
+    private static int[] getLine(Board board, int x, int y, int dx, int dy) {
+        final int length = board.getWinLength();
+        final int endX = x + dx * (length - 1);
+        final int endY = y + dy * (length - 1);
+        if (x < 0 || x >= board.getNumCols() || y < 0 || endX < 0
+                || endX >= board.getNumCols() || endY >= board.getNumRows()) {
+            return null;
+        }
+        final int[] line = new int[length];
+        for (int ii = 0; ii < length; ++ii) {
+            line[ii] = x + dx * ii + (y + dy * ii) * board.getNumCols();
+        }
+        return line;
+    }
+
+    /**
+     * Play line for player 1 in order, with player 2 answering on the first
+     * cells off the line, and check that only the last mark wins.
+     */
+    private static void checkLineWins(Board board, int[] line) {
+        board.reset();
+        int filler = 0;
+        for (int ii = 0; ii < line.length; ++ii) {
+            final GameState state = board.play(line[ii]);
+            if (ii < line.length - 1) {
+                assertEquals(GameState.IN_PROGRESS, state);
+                filler = nextFiller(board, line, filler);
+                if (filler == board.getNumCells()) {
+                    // A 1xN board with no room to answer.
+                    return;
+                }
+                assertEquals(GameState.IN_PROGRESS, board.play(filler));
+            } else {
+                assertEquals(GameState.PLAYER1_WINS, state);
+            }
+        }
+    }
+
+    private static int nextFiller(Board board, int[] line, int from) {
+        for (int cell = from; cell < board.getNumCells(); ++cell) {
+            if (board.isEmpty(cell) && !contains(line, cell)) {
+                return cell;
+            }
+        }
+        return board.getNumCells();
+    }
+
+    private static boolean contains(int[] cells, int cell) {
+        for (int each : cells) {
+            if (each == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if player would own a winning line through position after
+     * marking it, found by checking each line through it cell by cell
+     */
+    private static boolean hasLine(Board board, int player, int position) {
+        final int x = position % board.getNumCols();
+        final int y = position / board.getNumCols();
+        for (int[] direction : DIRECTIONS) {
+            for (int back = 0; back < board.getWinLength(); ++back) {
+                final int[] line = getLine(board, x - direction[0] * back,
+                        y - direction[1] * back, direction[0], direction[1]);
+                if (line == null) {
+                    continue;
+                }
+                boolean owned = true;
+                for (int cell : line) {
+                    owned &= cell == position || board.getCell(cell) == player;
+                }
+                if (owned) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static GameState scan(Board board) {
+        for (int player = Board.PLAYER1; player <= Board.PLAYER2; ++player) {
+            for (int cell = 0; cell < board.getNumCells(); ++cell) {
+                if (board.getCell(cell) == player && hasLine(board, player, cell)) {
+                    return player == Board.PLAYER1
+                            ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS;
+                }
+            }
+        }
+        return board.isFull() ? GameState.TIE_GAME : GameState.IN_PROGRESS;
+    }
+
+    private static long[] getStones(Board board) {
+        final long[] stones = new long[2 * board.getNumWords()];
+        for (int player = 0; player < 2; ++player) {
+            for (int word = 0; word < board.getNumWords(); ++word) {
+                stones[player * board.getNumWords() + word] = board.getStones(player, word);
+            }
+        }
+        return stones;
+    }
+}
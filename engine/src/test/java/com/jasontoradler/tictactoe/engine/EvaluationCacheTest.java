@@ -0,0 +1,191 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+
+public class EvaluationCacheTest {
+
+    // One eight entry set, so every key competes for the same entries.
+    private static final int ONE_SET = EvaluationCache.ENTRY_SIZE * EvaluationCache.WAYS;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void capacityRoundsDownToAPowerOfTwoNumberOfSets() {
+        assertEquals(65536, new EvaluationCache(1024 * 1024).getCapacity());
+        assertEquals(EvaluationCache.WAYS, new EvaluationCache(2 * ONE_SET - 1).getCapacity());
+        assertEquals(EvaluationCache.WAYS, new EvaluationCache(0).getCapacity());
+    }
+
+    @Test
+    public void entriesSurviveAFlushAndReload() throws IOException {
+        final File file = new File(mFolder.getRoot(), "cache.bin");
+        final EvaluationCache cache = new EvaluationCache(64 * 1024);
+        // Entries made before the file is loaded are saved too.
+        putRange(cache, 0, 100);
+        cache.load(file);
+        putRange(cache, 100, 200);
+        cache.flush();
+        putRange(cache, 200, 300);
+        cache.close();
+
+        final EvaluationCache reloaded = new EvaluationCache(64 * 1024);
+        reloaded.load(file);
+        assertEquals(300, reloaded.size());
+        assertRange(reloaded, 0, 300);
+        reloaded.close();
+    }
+
+    @Test
+    public void overflowingTheQueueRewritesTheFileOnFlush() throws IOException {
+        final File file = new File(mFolder.getRoot(), "cache.bin");
+        final EvaluationCache cache = new EvaluationCache(1024 * 1024);
+        cache.load(file);
+        // More records than the queue holds between flushes.
+        putRange(cache, 0, 10000);
+        cache.close();
+        assertEquals(EvaluationCache.HEADER_SIZE + cache.size() * EvaluationCache.RECORD_SIZE,
+                file.length());
+
+        final EvaluationCache reloaded = new EvaluationCache(1024 * 1024);
+        reloaded.load(file);
+        assertEquals(cache.size(), reloaded.size());
+        assertRange(reloaded, 0, 10000);
+    }
+
+    @Test
+    public void truncatedLastRecordLosesOnlyThatEntry() throws IOException {
+        final File file = new File(mFolder.getRoot(), "cache.bin");
+        final EvaluationCache cache = new EvaluationCache(64 * 1024);
+        cache.load(file);
+        putRange(cache, 0, 50);
+        cache.close();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(file.length() - 3);
+        } finally {
+            raf.close();
+        }
+
+        final EvaluationCache reloaded = new EvaluationCache(64 * 1024);
+        reloaded.load(file);
+        assertEquals(49, reloaded.size());
+        assertRange(reloaded, 0, 49);
+        assertEquals(EvaluationCache.MISSING, reloaded.get(getKey(49)));
+        // The partial record is gone from the file as well.
+        assertEquals(EvaluationCache.HEADER_SIZE + 49 * EvaluationCache.RECORD_SIZE,
+                file.length());
+    }
+
+    @Test
+    public void fileWithBadMagicOrVersionIsStartedOver() throws IOException {
+        final int[][] headers = {
+                {EvaluationCache.MAGIC + 1, EvaluationCache.VERSION},
+                {EvaluationCache.MAGIC, EvaluationCache.VERSION + 1},
+        };
+        for (int[] header : headers) {
+            final File file = new File(mFolder.getRoot(), "cache.bin");
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(0);
+                raf.writeInt(header[0]);
+                raf.writeInt(header[1]);
+                raf.writeLong(getKey(0));
+                raf.writeShort(getMove(0));
+            } finally {
+                raf.close();
+            }
+
+            final EvaluationCache cache = new EvaluationCache(64 * 1024);
+            cache.load(file);
+            assertEquals(0, cache.size());
+            assertEquals(EvaluationCache.MISSING, cache.get(getKey(0)));
+            cache.close();
+            assertEquals(EvaluationCache.HEADER_SIZE, file.length());
+
+            final EvaluationCache reloaded = new EvaluationCache(64 * 1024);
+            reloaded.load(file);
+            assertEquals(0, reloaded.size());
+            reloaded.close();
+        }
+    }
+
+    @Test
+    public void fileIsCompactedOnceItOutgrowsTheCache() throws IOException {
+        final File file = new File(mFolder.getRoot(), "cache.bin");
+        final EvaluationCache cache = new EvaluationCache(ONE_SET);
+        final int limit = EvaluationCache.COMPACT_RATIO * cache.getCapacity();
+        cache.load(file);
+        // Replaced and evicted entries stay in the file up to the limit...
+        putRange(cache, 0, limit);
+        cache.flush();
+        assertEquals(EvaluationCache.HEADER_SIZE + limit * EvaluationCache.RECORD_SIZE,
+                file.length());
+        // ...and past it the file keeps only the live entries.
+        putRange(cache, limit, limit + 1);
+        cache.flush();
+        assertEquals(EvaluationCache.HEADER_SIZE
+                + cache.getCapacity() * EvaluationCache.RECORD_SIZE, file.length());
+        cache.close();
+
+        final EvaluationCache reloaded = new EvaluationCache(ONE_SET);
+        reloaded.load(file);
+        assertEquals(cache.getCapacity(), reloaded.size());
+        assertRange(reloaded, limit + 1 - cache.getCapacity(), limit + 1);
+    }
+
+    @Test
+    public void clockEvictsTheFirstEntryNotUsedSinceTheHandPassed() {
+        final EvaluationCache cache = new EvaluationCache(ONE_SET);
+        putRange(cache, 0, EvaluationCache.WAYS);
+        assertRange(cache, 0, EvaluationCache.WAYS);
+        // Every entry has been used, so the hand clears them all and comes
+        // back to the first.
+        putRange(cache, 8, 9);
+        assertEquals(EvaluationCache.MISSING, cache.get(getKey(0)));
+        // The hand is now past entry 1; using it again spares it.
+        cache.get(getKey(1));
+        putRange(cache, 9, 10);
+        assertEquals(getMove(1), cache.get(getKey(1)));
+        assertEquals(EvaluationCache.MISSING, cache.get(getKey(2)));
+        assertRange(cache, 3, 10);
+        assertEquals(EvaluationCache.WAYS, cache.size());
+    }
+
+    @Test
+    public void putReplacesTheMoveOfAKnownKey() {
+        final EvaluationCache cache = new EvaluationCache(ONE_SET);
+        cache.put(getKey(0), 5);
+        cache.put(getKey(0), 6);
+        assertEquals(6, cache.get(getKey(0)));
+        assertEquals(1, cache.size());
+    }
+
+    private static long getKey(int index) {
+        return index * 0x9e3779b97f4a7c15L;
+    }
+
+    private static int getMove(int index) {
+        return index % 1000;
+    }
+
+    private static void putRange(EvaluationCache cache, int from, int to) {
+        for (int ii = from; ii < to; ++ii) {
+            cache.put(getKey(ii), getMove(ii));
+        }
+    }
+
+    private static void assertRange(EvaluationCache cache, int from, int to) {
+        for (int ii = from; ii < to; ++ii) {
+            assertEquals("entry " + ii, getMove(ii), cache.get(getKey(ii)));
+        }
+    }
+}
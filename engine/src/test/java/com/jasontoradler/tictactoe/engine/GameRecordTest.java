@@ -0,0 +1,301 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameRecordTest {
+
+    // Boards whose moves are packed as nibbles and boards which use varints.
+    private static final int[][] SIZES = {
+            {1, 1, 1}, {3, 3, 3}, {4, 4, 3}, {2, 8, 3}, {5, 5, 4}, {9, 9, 4}, {19, 19, 5},
+            {32, 32, 6},
+    };
+
+    @Test
+    public void varintsRoundTripAtEveryLengthBoundary() {
+        final int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, 268435455,
+                268435456, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        final ByteBuffer buffer = ByteBuffer.allocate(5);
+        for (int value : values) {
+            buffer.clear();
+            GameRecord.putVarint(buffer, value);
+            assertEquals(GameRecord.varintSize(value), buffer.position());
+            buffer.flip();
+            assertEquals(value, GameRecord.getVarint(buffer));
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void recordsRoundTripOnNibbleAndVarintBoards() {
+        final Random random = new Random(5);
+        for (int[] size : SIZES) {
+            for (int game = 0; game < 50; ++game) {
+                final Board board = playRandomGame(random, size, game % 3 == 0);
+                final byte[] bytes = GameRecord.toBytes(board);
+                assertEquals(GameRecord.encodedSize(board), bytes.length);
+                assertTrue(bytes.length <= GameRecord.MAX_RECORD_SIZE);
+                if (board.getNumCells() <= GameRecord.MAX_NIBBLE_CELLS) {
+                    assertEquals(4 + (board.getMoveCount() + 1) / 2, bytes.length);
+                }
+                assertSameGame(board, GameRecord.fromBytes(bytes));
+
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                GameRecord.skip(buffer);
+                assertEquals(bytes.length, buffer.position());
+            }
+        }
+    }
+
+    @Test
+    public void largestRecordFitsInMaxRecordSize() {
+        final Board board = new Board(Board.MAX_SIZE, Board.MAX_SIZE, Board.MAX_SIZE);
+        // Fill the board in a pattern with no run longer than two in any
+        // direction, each player taking their cells from the far end.
+        final List<Integer> player1 = new ArrayList<>();
+        final List<Integer> player2 = new ArrayList<>();
+        for (int cell = board.getNumCells() - 1; cell >= 0; --cell) {
+            final int x = cell % board.getNumCols();
+            final int y = cell / board.getNumCols();
+            ((x + y / 2) % 2 == 0 ? player1 : player2).add(cell);
+        }
+        for (int ii = 0; ii < player1.size(); ++ii) {
+            board.play(player1.get(ii));
+            board.play(player2.get(ii));
+        }
+        assertEquals(GameState.TIE_GAME, board.getGameState());
+        assertTrue(GameRecord.encodedSize(board) <= GameRecord.MAX_RECORD_SIZE);
+        assertSameGame(board, GameRecord.fromBytes(GameRecord.toBytes(board)));
+    }
+
+    @Test
+    public void readerReturnsEveryGameWrittenAcrossBufferRefills() throws IOException {
+        final Random random = new Random(6);
+        final List<Board> games = new ArrayList<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final GameRecordWriter writer = new GameRecordWriter(Channels.newChannel(bytes), 100);
+        for (int game = 0; game < 500; ++game) {
+            // Mixed sizes, so the reader also switches boards.
+            final Board board = playRandomGame(random, SIZES[game % SIZES.length], false);
+            games.add(board);
+            writer.write(board);
+        }
+        writer.close();
+        assertEquals(games.size(), writer.getRecordCount());
+        // Several times the reader's buffer, so records straddle its end.
+        assertTrue(bytes.size() > 4 * GameRecord.MAX_RECORD_SIZE);
+
+        for (int chunk : new int[]{1, 7, 4096}) {
+            final GameRecordReader reader = new GameRecordReader(
+                    new TrickleChannel(bytes.toByteArray(), chunk), 1);
+            for (Board expected : games) {
+                final Board actual = reader.next();
+                assertSameGame(expected, actual);
+                assertEquals(expected.getGameState(), reader.getOutcome());
+            }
+            assertNull(reader.next());
+            reader.close();
+        }
+    }
+
+    @Test
+    public void readerRejectsBadHeaders() {
+        final byte[][] headers = {
+                {},
+                {0x54, 0x54, 0x54},
+                {0x54, 0x54, 0x54, 0x53, 0, 0, 0, 1},
+                {0x54, 0x54, 0x54, 0x52, 0, 0, 0, 2},
+        };
+        for (byte[] header : headers) {
+            try {
+                new GameRecordReader(Channels.newChannel(new ByteArrayInputStream(header)));
+                fail("accepted header " + Arrays.toString(header));
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void truncatedRecordsAreRejected() throws IOException {
+        final Random random = new Random(7);
+        for (int[] size : SIZES) {
+            final Board board = playRandomGame(random, size, false);
+            final byte[] record = GameRecord.toBytes(board);
+            for (int length = 0; length < record.length; ++length) {
+                final byte[] truncated = Arrays.copyOf(record, length);
+                try {
+                    GameRecord.fromBytes(truncated);
+                    fail("decoded " + length + " of " + record.length + " bytes");
+                } catch (IllegalArgumentException expected) {
+                }
+                try {
+                    GameRecord.skip(ByteBuffer.wrap(truncated));
+                    fail("skipped " + length + " of " + record.length + " bytes");
+                } catch (IllegalArgumentException expected) {
+                }
+                final GameRecordReader reader = new GameRecordReader(
+                        Channels.newChannel(new ByteArrayInputStream(toFile(truncated))));
+                try {
+                    if (length == 0) {
+                        assertNull(reader.next());
+                    } else {
+                        reader.next();
+                        fail("read " + length + " of " + record.length + " bytes");
+                    }
+                } catch (IOException expected) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void malformedRecordsOnlyThrowDocumentedExceptions() throws IOException {
+        final Random random = new Random(8);
+        final byte[] overlong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80};
+        try {
+            GameRecord.getVarint(ByteBuffer.wrap(overlong));
+            fail("accepted a six byte varint");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        for (int trial = 0; trial < 20000; ++trial) {
+            final Board board = playRandomGame(random, SIZES[trial % SIZES.length], false);
+            final byte[] record = GameRecord.toBytes(board);
+            // Corrupt one to three bytes, sometimes with a plausible value.
+            for (int ii = random.nextInt(3); ii >= 0; --ii) {
+                final int index = random.nextInt(record.length);
+                record[index] = (byte) (random.nextBoolean()
+                        ? random.nextInt(256) : record[index] ^ (1 << random.nextInt(8)));
+            }
+            try {
+                GameRecord.fromBytes(record);
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                GameRecord.skip(ByteBuffer.wrap(record));
+            } catch (IllegalArgumentException expected) {
+            }
+            final GameRecordReader reader = new GameRecordReader(
+                    Channels.newChannel(new ByteArrayInputStream(toFile(record))));
+            try {
+                while (reader.next() != null) {
+                    reader.getOutcome();
+                }
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void recordForOtherDimensionsIsRejected() {
+        final Board board = new Board(4, 4, 3);
+        board.play(5);
+        try {
+            GameRecord.decode(ByteBuffer.wrap(GameRecord.toBytes(board)), new Board(4, 4, 4));
+            fail("decoded a 4x4x3 record onto a 4x4x4 board");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void recordWhoseMovesContradictItsOutcomeIsRejected() {
+        final Board board = new Board();
+        board.play(0);
+        final byte[] record = GameRecord.toBytes(board);
+        record[0] = (byte) (GameState.TIE_GAME.ordinal() << 6 | (record[0] & 0x3f));
+        try {
+            GameRecord.fromBytes(record);
+            fail("accepted a one move tie");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * @param unfinished stop at a random point instead of at the end
+     */
+    private static Board playRandomGame(Random random, int[] size, boolean unfinished) {
+        final Board board = new Board(size[0], size[1], size[2]);
+        final int[] cells = new int[board.getNumCells()];
+        final int stop = unfinished ? random.nextInt(board.getNumCells()) : board.getNumCells();
+        while (board.getGameState() == GameState.IN_PROGRESS && board.getMoveCount() < stop) {
+            board.play(cells[random.nextInt(board.getEmptyCells(cells))]);
+        }
+        return board;
+    }
+
+    private static void assertSameGame(Board expected, Board actual) {
+        assertTrue(expected.hasSameDimensions(actual));
+        assertEquals(expected.getGameState(), actual.getGameState());
+        final int[] expectedMoves = new int[expected.getMoveCount()];
+        final int[] actualMoves = new int[actual.getMoveCount()];
+        for (int ii = 0; ii < expectedMoves.length; ++ii) {
+            expectedMoves[ii] = expected.getMove(ii);
+        }
+        for (int ii = 0; ii < actualMoves.length; ++ii) {
+            actualMoves[ii] = actual.getMove(ii);
+        }
+        assertArrayEquals(expectedMoves, actualMoves);
+    }
+
+    /**
+     * @return a record file holding record after the file header
+     */
+    private static byte[] toFile(byte[] record) {
+        final ByteBuffer file = ByteBuffer.allocate(GameRecord.FILE_HEADER_SIZE + record.length);
+        file.putInt(GameRecord.MAGIC).putInt(GameRecord.VERSION).put(record);
+        return file.array();
+    }
+
+    /**
+     * Hands out at most a few bytes per read, like a slow socket.
+     */
+    private static class TrickleChannel implements ReadableByteChannel {
+        private final ByteBuffer mData;
+        private final int mChunk;
+        private boolean mIsOpen = true;
+
+        TrickleChannel(byte[] data, int chunk) {
+            mData = ByteBuffer.wrap(data);
+            mChunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!mData.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(mChunk, Math.min(dst.remaining(), mData.remaining()));
+            final ByteBuffer slice = mData.slice();
+            slice.limit(count);
+            dst.put(slice);
+            mData.position(mData.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return mIsOpen;
+        }
+
+        @Override
+        public void close() {
+            mIsOpen = false;
+        }
+    }
+}
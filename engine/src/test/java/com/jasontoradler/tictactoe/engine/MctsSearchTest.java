@@ -0,0 +1,117 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MctsSearchTest {
+
+    private static final int THREADS = 4;
+
+    @Test
+    public void takesAWinInOne() {
+        // Player 1 has three of four in row 3 of a 7x7 board, with the
+        // fourth cell at either end free; player 2 has three in row 5.
+        final Board board = position(7, 7, 4, 21 + 2, 35, 21 + 3, 36, 21 + 4, 37);
+        final MctsSearch search = new MctsSearch(7, 7, 4, THREADS, 50, 1 << 16);
+        try {
+            final int move = search.selectMove(board);
+            assertEquals(GameState.PLAYER1_WINS, board.play(move));
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void blocksALossInOne() {
+        // Player 2 has three in column 3 with only the bottom end free.
+        final Board board = position(7, 7, 4, 3, 10, 0, 17, 48, 24, 46);
+        final MctsSearch search = new MctsSearch(7, 7, 4, THREADS, 50, 1 << 16);
+        try {
+            assertEquals(31, search.selectMove(board));
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void neverReturnsAnOccupiedCell() {
+        final Random random = new Random(13);
+        final int[][] sizes = {{3, 3, 3}, {5, 5, 4}, {7, 7, 4}, {9, 9, 5}};
+        for (int[] size : sizes) {
+            // A small tree, so that games also run it out of nodes and
+            // rebuild it.
+            final MctsSearch search = new MctsSearch(size[0], size[1], size[2], THREADS, 5,
+                    1 << 10);
+            try {
+                for (int game = 0; game < 4; ++game) {
+                    final Board board = new Board(size[0], size[1], size[2]);
+                    final int[] cells = new int[board.getNumCells()];
+                    while (board.getGameState() == GameState.IN_PROGRESS) {
+                        // Mix searched and random moves, so that the tree is
+                        // sometimes reused and sometimes thrown away.
+                        final int move = random.nextInt(3) == 0
+                                ? cells[random.nextInt(board.getEmptyCells(cells))]
+                                : search.selectMove(board);
+                        assertTrue("move " + move, move >= 0 && move < board.getNumCells());
+                        assertTrue("occupied " + move, board.isEmpty(move));
+                        board.play(move);
+                        assertTrue(search.getNodeCount() <= 1 << 10);
+                    }
+                }
+            } finally {
+                search.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void shutdownEndsASearchInProgress() throws InterruptedException {
+        final MctsSearch search = new MctsSearch(9, 9, 5, THREADS, 60000, 1 << 16);
+        final Board board = position(9, 9, 5, 40);
+        final int[] move = {-1};
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                move[0] = search.selectMove(board);
+            }
+        });
+        final long start = System.nanoTime();
+        thread.start();
+        Thread.sleep(100);
+        search.shutdown();
+        thread.join(5000);
+        assertTrue(!thread.isAlive());
+        assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+        assertTrue(board.isEmpty(move[0]));
+    }
+
+    @Test
+    public void rejectsOtherBoardsAndFinishedGames() {
+        final MctsSearch search = new MctsSearch(3, 3, 3, 1, 5, 1024);
+        try {
+            search.selectMove(new Board(4, 4, 3));
+            fail("searched a board of another size");
+        } catch (IllegalArgumentException expected) {
+        }
+        final Board won = position(3, 3, 3, 0, 3, 1, 4);
+        won.play(2);
+        try {
+            search.selectMove(won);
+            fail("searched a finished game");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static Board position(int numRows, int numCols, int winLength, int... moves) {
+        final Board board = new Board(numRows, numCols, winLength);
+        for (int move : moves) {
+            assertEquals(GameState.IN_PROGRESS, board.play(move));
+        }
+        return board;
+    }
+}
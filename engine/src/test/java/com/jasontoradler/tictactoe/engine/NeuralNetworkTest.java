@@ -0,0 +1,228 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NeuralNetworkTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void writtenNetworkReadsBackUnchanged() throws IOException {
+        final NeuralNetwork network = NeuralNetwork.createRandom(5, 6, 4, 12, new Random(1));
+        final byte[] bytes = toBytes(network);
+        assertEquals(NeuralNetwork.HEADER_SIZE
+                + 4 * (12 + 2 * 30 * 12 + 12 + 1 + 30 * 12 + 30), bytes.length);
+
+        // Read from part way into a larger buffer, as from a mapped asset.
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 10);
+        buffer.position(3);
+        buffer.put(bytes);
+        buffer.position(3);
+        final NeuralNetwork copy = new NeuralNetwork(buffer);
+        assertEquals(3, buffer.position());
+        assertEquals(5, copy.getNumRows());
+        assertEquals(6, copy.getNumCols());
+        assertEquals(4, copy.getWinLength());
+        assertEquals(12, copy.getNumHidden());
+        assertArrayEquals(network.mHiddenBias, copy.mHiddenBias, 0f);
+        assertArrayEquals(network.mInputWeights, copy.mInputWeights, 0f);
+        assertArrayEquals(network.mValueWeights, copy.mValueWeights, 0f);
+        assertEquals(network.mValueBias, copy.mValueBias, 0f);
+        assertArrayEquals(network.mPolicyWeights, copy.mPolicyWeights, 0f);
+        assertArrayEquals(network.mPolicyBias, copy.mPolicyBias, 0f);
+        assertTrue(copy.covers(new Board(5, 6, 4)));
+        assertTrue(!copy.covers(new Board(5, 6, 5)));
+    }
+
+    @Test
+    public void badHeadersAreRejected() throws IOException {
+        final byte[] bytes = toBytes(NeuralNetwork.createRandom(3, 3, 3, 4, new Random(2)));
+        // Offset into the header and the value to put there.
+        final int[][] corruptions = {
+                {0, NeuralNetwork.MAGIC + 1},
+                {4, NeuralNetwork.VERSION + 1},
+                {8, 0},
+                {12, Board.MAX_SIZE + 1},
+                {20, 0},
+                {20, -1},
+                // Hidden unit counts whose weight count overflows an int.
+                {20, 1 << 28},
+                {20, Integer.MAX_VALUE},
+                {20, 0x4000_0000},
+        };
+        for (int[] corruption : corruptions) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.clone());
+            buffer.putInt(corruption[0], corruption[1]);
+            try {
+                new NeuralNetwork(buffer);
+                fail("accepted " + corruption[1] + " at " + corruption[0]);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        for (int length = 0; length < bytes.length; length += 7) {
+            try {
+                new NeuralNetwork(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+                fail("accepted " + length + " of " + bytes.length + " bytes");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void singleEvaluationMatchesTheNetworksDefinition() {
+        final NeuralNetwork network = NeuralNetwork.createRandom(4, 5, 4, 10, new Random(3));
+        final NeuralEvaluator evaluator = new NeuralEvaluator(network, 1);
+        final Random random = new Random(4);
+        for (int trial = 0; trial < 50; ++trial) {
+            final Board board = randomPosition(random, 4, 5, 4);
+            evaluator.evaluate(board);
+            final double[] hidden = referenceHidden(network, board);
+            double valueLogit = network.mValueBias;
+            for (int ii = 0; ii < hidden.length; ++ii) {
+                valueLogit += network.mValueWeights[ii] * hidden[ii];
+            }
+            assertEquals(1.0 / (1.0 + Math.exp(-valueLogit)), evaluator.getValue(0), DELTA);
+            for (int cell = 0; cell < board.getNumCells(); ++cell) {
+                double logit = network.mPolicyBias[cell];
+                for (int ii = 0; ii < hidden.length; ++ii) {
+                    logit += network.mPolicyWeights[cell * hidden.length + ii] * hidden[ii];
+                }
+                assertEquals(logit, evaluator.getPolicyLogit(0, cell), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void batchesMatchEvaluatingEachPositionAlone() {
+        // Counts below, at and past the four positions the policy head
+        // evaluates at a time.
+        final int[] counts = {1, 4, 5, 8};
+        final NeuralNetwork network = NeuralNetwork.createRandom(9, 9, 5, 24, new Random(5));
+        final NeuralEvaluator batch = new NeuralEvaluator(network, 8);
+        final NeuralEvaluator single = new NeuralEvaluator(network, 1);
+        final Random random = new Random(6);
+        for (int count : counts) {
+            final Board[] boards = new Board[8];
+            for (int ii = 0; ii < boards.length; ++ii) {
+                boards[ii] = randomPosition(random, 9, 9, 5);
+            }
+            batch.evaluate(boards, count);
+            for (int index = 0; index < count; ++index) {
+                single.evaluate(boards[index]);
+                assertEquals(single.getValue(0), batch.getValue(index), DELTA);
+                for (int cell = 0; cell < 81; ++cell) {
+                    assertEquals("position " + index + " of " + count + ", cell " + cell,
+                            single.getPolicyLogit(0, cell), batch.getPolicyLogit(index, cell),
+                            DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void evaluatorRejectsOversizedBatchesAndOtherBoards() {
+        final NeuralNetwork network = NeuralNetwork.createRandom(3, 3, 3, 4, new Random(7));
+        final NeuralEvaluator evaluator = new NeuralEvaluator(network, 2);
+        try {
+            evaluator.evaluate(new Board[]{new Board(), new Board(), new Board()}, 3);
+            fail("evaluated a batch of 3 with room for 2");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            evaluator.evaluate(new Board(4, 4, 3));
+            fail("evaluated a 4x4 board with a 3x3 network");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void treeSearchWithARandomNetworkPlaysLegalMoves() {
+        final NeuralNetwork network = NeuralNetwork.createRandom(7, 7, 4, 16, new Random(8));
+        final MctsSearch search = new MctsSearch(7, 7, 4, 2, 20, 1 << 14, network, 4);
+        try {
+            final Random random = new Random(9);
+            for (int game = 0; game < 3; ++game) {
+                final Board board = new Board(7, 7, 4);
+                // Random openings of different lengths, then the search
+                // plays both sides to the end.
+                final int[] cells = new int[board.getNumCells()];
+                for (int ii = random.nextInt(6); ii > 0; --ii) {
+                    board.play(cells[random.nextInt(board.getEmptyCells(cells))]);
+                }
+                while (board.getGameState() == GameState.IN_PROGRESS) {
+                    final int move = search.selectMove(board);
+                    assertTrue("move " + move, move >= 0 && move < board.getNumCells());
+                    assertTrue("occupied " + move, board.isEmpty(move));
+                    board.play(move);
+                }
+            }
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void treeSearchRejectsANetworkForAnotherBoard() {
+        final NeuralNetwork network = NeuralNetwork.createRandom(7, 7, 4, 4, new Random(10));
+        try {
+            new MctsSearch(7, 7, 5, 1, 10, 1024, network, 1);
+            fail("accepted a 7x7x4 network for a 7x7x5 search");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static byte[] toBytes(NeuralNetwork network) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        network.write(Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static Board randomPosition(Random random, int numRows, int numCols,
+                                        int winLength) {
+        final Board board = new Board(numRows, numCols, winLength);
+        final int[] cells = new int[board.getNumCells()];
+        final int moves = random.nextInt(board.getNumCells() / 2);
+        while (board.getMoveCount() < moves && board.getGameState() == GameState.IN_PROGRESS) {
+            board.play(cells[random.nextInt(board.getEmptyCells(cells))]);
+        }
+        return board;
+    }
+
+    /**
+     * @return hidden activations computed straight from the file layout:
+     * the mover's marks, then the opponent's, through one ReLU layer
+     */
+    private static double[] referenceHidden(NeuralNetwork network, Board board) {
+        final int numHidden = network.getNumHidden();
+        final int numCells = board.getNumCells();
+        final double[] hidden = new double[numHidden];
+        for (int ii = 0; ii < numHidden; ++ii) {
+            hidden[ii] = network.mHiddenBias[ii];
+        }
+        for (int cell = 0; cell < numCells; ++cell) {
+            if (board.isEmpty(cell)) {
+                continue;
+            }
+            final int plane = board.getCell(cell) == board.getTurn() ? 0 : 1;
+            for (int ii = 0; ii < numHidden; ++ii) {
+                hidden[ii] += network.mInputWeights[(plane * numCells + cell) * numHidden + ii];
+            }
+        }
+        for (int ii = 0; ii < numHidden; ++ii) {
+            hidden[ii] = Math.max(0, hidden[ii]);
+        }
+        return hidden;
+    }
+}
@@ -0,0 +1,201 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverTest {
+
+    private static final File TABLEBASE = new File("../app/src/main/assets/tablebase_3x3.bin");
+
+    @Test
+    public void scoresKnownPositions() {
+        final Solver solver = new Solver(3, 3, 3);
+        // Perfect play from the empty board is a tie.
+        assertEquals(0, solver.solve(position()));
+        // A corner opening is only held by the center; any other answer,
+        // even the far corner, loses. A center opening is held by a corner
+        // and beaten by an edge.
+        assertEquals(0, solver.solve(position(0, 4)));
+        assertTrue(solver.solve(position(0, 8)) > 0);
+        assertTrue(solver.solve(position(0, 1)) > 0);
+        assertEquals(0, solver.solve(position(4, 0)));
+        assertTrue(solver.solve(position(4, 1)) > 0);
+        // Player 1 completes the top row with the fifth mark.
+        assertEquals(10 - 5, solver.solve(position(0, 3, 1, 4)));
+        // Player 2 must block at 8, then player 1 forks with 6 and wins with
+        // the seventh mark.
+        assertEquals(-(10 - 7), solver.solve(position(0, 1, 4)));
+        // Games which are over score from the mover's point of view.
+        assertEquals(-(10 - 5), solver.solve(position(0, 3, 1, 4, 2)));
+        assertEquals(0, solver.solve(position(0, 1, 2, 4, 3, 5, 7, 6, 8)));
+    }
+
+    @Test
+    public void selectsTheOnlySavingMove() {
+        final Solver solver = new Solver(3, 3, 3);
+        assertEquals(8, solver.selectMove(position(0, 1, 4)));
+        assertEquals(2, solver.selectMove(position(0, 3, 1, 4)));
+    }
+
+    @Test
+    public void matchesExhaustiveMinimaxOnEveryPosition() {
+        final int[][] sizes = {{3, 3, 3}, {2, 4, 3}, {4, 2, 2}, {2, 5, 2}, {3, 3, 2}};
+        for (int[] size : sizes) {
+            final Board board = new Board(size[0], size[1], size[2]);
+            final Map<String, Integer> scores = new HashMap<>();
+            minimax(board, scores);
+            final Solver solver = new Solver(size[0], size[1], size[2]);
+            checkPositions(board, solver, scores);
+        }
+    }
+
+    @Test
+    public void matchesShippedTablebaseMoveForMove() throws IOException {
+        final FileInputStream in = new FileInputStream(TABLEBASE);
+        try {
+            final Tablebase tablebase =
+                    Tablebase.map(in.getChannel(), 0, in.getChannel().size());
+            final Board board = new Board(3, 3, 3);
+            assertTrue(tablebase.covers(board));
+            final Solver solver = new Solver(3, 3, 3);
+            assertEquals(5478, checkTablebase(board, solver, tablebase, new HashSet<String>()));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Board position(int... moves) {
+        final Board board = new Board(3, 3, 3);
+        for (int move : moves) {
+            board.play(move);
+        }
+        return board;
+    }
+
+    /**
+     * Score every position reachable from board by plain minimax, with no
+     * pruning and no symmetry, in the solver's units.
+     */
+    private static int minimax(Board board, Map<String, Integer> scores) {
+        final String key = getKey(board);
+        final Integer known = scores.get(key);
+        if (known != null) {
+            return known;
+        }
+        int best = -board.getNumCells() - 1;
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            if (!board.isEmpty(cell)) {
+                continue;
+            }
+            final int score;
+            switch (board.play(cell)) {
+                case IN_PROGRESS:
+                    score = -minimax(board, scores);
+                    break;
+                case TIE_GAME:
+                    score = 0;
+                    break;
+                default:
+                    score = board.getNumCells() + 1 - board.getMoveCount();
+                    break;
+            }
+            board.undo();
+            best = Math.max(best, score);
+        }
+        scores.put(key, best);
+        return best;
+    }
+
+    private static void checkPositions(Board board, Solver solver, Map<String, Integer> scores) {
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            return;
+        }
+        final int expected = scores.get(getKey(board));
+        assertEquals(expected, solver.solve(board));
+        assertEquals(expected, scoreAfter(board, solver.selectMove(board), scores));
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            if (board.isEmpty(cell)) {
+                board.play(cell);
+                checkPositions(board, solver, scores);
+                board.undo();
+            }
+        }
+    }
+
+    /**
+     * @return score for the player to move of playing move on board
+     */
+    private static int scoreAfter(Board board, int move, Map<String, Integer> scores) {
+        final int score;
+        switch (board.play(move)) {
+            case IN_PROGRESS:
+                score = -scores.get(getKey(board));
+                break;
+            case TIE_GAME:
+                score = 0;
+                break;
+            default:
+                score = board.getNumCells() + 1 - board.getMoveCount();
+                break;
+        }
+        board.undo();
+        return score;
+    }
+
+    /**
+     * Check the table's value and move for board and every position after
+     * it against the solver.
+     *
+     * @return number of positions checked, counting transpositions once each
+     */
+    private static int checkTablebase(Board board, Solver solver, Tablebase tablebase,
+                                      Set<String> visited) {
+        if (!visited.add(getKey(board))) {
+            return 0;
+        }
+        final int score = solver.solve(board);
+        assertEquals(Integer.signum(score), tablebase.getValue(board));
+        if (board.getGameState() != GameState.IN_PROGRESS) {
+            return 1;
+        }
+        // The table's move and the solver's own must both keep the score.
+        final int move = tablebase.selectMove(board);
+        assertTrue(board.isEmpty(move));
+        assertEquals(score, scoreAfter(board, move, solver));
+        assertEquals(score, scoreAfter(board, solver.selectMove(board), solver));
+        int positions = 1;
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            if (board.isEmpty(cell)) {
+                board.play(cell);
+                positions += checkTablebase(board, solver, tablebase, visited);
+                board.undo();
+            }
+        }
+        return positions;
+    }
+
+    private static int scoreAfter(Board board, int move, Solver solver) {
+        board.play(move);
+        final int score = -solver.solve(board);
+        board.undo();
+        return score;
+    }
+
+    private static String getKey(Board board) {
+        final StringBuilder key = new StringBuilder();
+        for (int cell = 0; cell < board.getNumCells(); ++cell) {
+            key.append((char) ('1' + board.getCell(cell)));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SymmetryTest {
+
+    // Rows and columns of square and other rectangular boards, up to ones
+    // too large for single word masks.
+    private static final int[][] SIZES = {{3, 3}, {4, 4}, {3, 5}, {2, 7}, {8, 8}, {9, 9}, {7, 12}};
+
+    @Test
+    public void squaresHaveEightSymmetriesAndRectanglesFour() {
+        for (int[] size : SIZES) {
+            final Symmetry symmetry = new Symmetry(size[0], size[1]);
+            assertEquals(size[0] == size[1] ? 8 : 4, symmetry.getCount());
+        }
+    }
+
+    @Test
+    public void everyTransformIsAPermutationUndoneByItsInverse() {
+        for (int[] size : SIZES) {
+            final Symmetry symmetry = new Symmetry(size[0], size[1]);
+            final int numCells = size[0] * size[1];
+            for (int s = 0; s < symmetry.getCount(); ++s) {
+                final boolean[] hit = new boolean[numCells];
+                for (int cell = 0; cell < numCells; ++cell) {
+                    final int mapped = symmetry.transform(s, cell);
+                    assertTrue(mapped >= 0 && mapped < numCells);
+                    assertFalse("cell " + mapped + " hit twice by symmetry " + s, hit[mapped]);
+                    hit[mapped] = true;
+                    assertEquals(cell, symmetry.inverse(s, mapped));
+                    assertEquals(cell, symmetry.transform(s, symmetry.inverse(s, cell)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void identityComesFirstAndTheRestAreDistinct() {
+        for (int[] size : SIZES) {
+            final Symmetry symmetry = new Symmetry(size[0], size[1]);
+            final int numCells = size[0] * size[1];
+            final Set<String> seen = new HashSet<>();
+            for (int s = 0; s < symmetry.getCount(); ++s) {
+                final StringBuilder image = new StringBuilder();
+                for (int cell = 0; cell < numCells; ++cell) {
+                    if (s == 0) {
+                        assertEquals(cell, symmetry.transform(s, cell));
+                    }
+                    image.append(symmetry.transform(s, cell)).append(',');
+                }
+                assertTrue("symmetry " + s + " repeats another", seen.add(image.toString()));
+            }
+        }
+    }
+
+    @Test
+    public void transformMaskMovesEachCellLikeTransform() {
+        final Random random = new Random(3);
+        for (int[] size : SIZES) {
+            final int numCells = size[0] * size[1];
+            if (numCells > Board.WORD_CELLS) {
+                continue;
+            }
+            final Symmetry symmetry = new Symmetry(size[0], size[1]);
+            final long used = numCells == 64 ? -1L : (1L << numCells) - 1;
+            for (int trial = 0; trial < 200; ++trial) {
+                final long mask = random.nextLong() & used;
+                for (int s = 0; s < symmetry.getCount(); ++s) {
+                    long expected = 0;
+                    for (int cell = 0; cell < numCells; ++cell) {
+                        if ((mask & (1L << cell)) != 0) {
+                            expected |= 1L << symmetry.transform(s, cell);
+                        }
+                    }
+                    assertEquals(expected, symmetry.transformMask(s, mask));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void transformedGamesEndTheSameWay() {
+        final Random random = new Random(4);
+        final int[][] boards = {{3, 3, 3}, {4, 4, 3}, {3, 5, 3}, {9, 9, 4}};
+        for (int[] size : boards) {
+            final Symmetry symmetry = new Symmetry(size[0], size[1]);
+            final Board board = new Board(size[0], size[1], size[2]);
+            final Board image = new Board(size[0], size[1], size[2]);
+            final int[] cells = new int[board.getNumCells()];
+            for (int game = 0; game < 50; ++game) {
+                for (int s = 0; s < symmetry.getCount(); ++s) {
+                    board.reset();
+                    image.reset();
+                    while (board.getGameState() == GameState.IN_PROGRESS) {
+                        final int move = cells[random.nextInt(board.getEmptyCells(cells))];
+                        assertEquals(board.play(move), image.play(symmetry.transform(s, move)));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.jasontoradler.tictactoe.engine;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionTableTest {
+
+    // With no bucket bits every key shares the one bucket.
+    private static final long KEY_A = 0x1234567890abcdefL;
+    private static final long KEY_B = 0x2345678901bcdef0L;
+    private static final long KEY_C = 0x3456789012cdef01L;
+    private static final long KEY_D = 0x4567890123def012L;
+
+    @Test
+    public void fieldsRoundTripAtTheirLimits() {
+        final TranspositionTable table = new TranspositionTable(4);
+        final int[] moves = {-1, 0, 1, Board.MAX_SIZE * Board.MAX_SIZE - 1, 2046};
+        final int[] scores = {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 100000, -100000};
+        final int[] depths = {0, 1, 254, 255};
+        final int[] bounds = {TranspositionTable.EXACT, TranspositionTable.LOWER,
+                TranspositionTable.UPPER};
+        long key = 1;
+        for (int move : moves) {
+            for (int score : scores) {
+                for (int depth : depths) {
+                    for (int bound : bounds) {
+                        table.clear();
+                        table.store(key, move, score, depth, bound);
+                        final long data = table.probe(key);
+                        assertTrue(data != TranspositionTable.MISSING);
+                        assertEquals(move, TranspositionTable.getMove(data));
+                        assertEquals(score, TranspositionTable.getScore(data));
+                        assertEquals(depth, TranspositionTable.getDepth(data));
+                        assertEquals(bound, TranspositionTable.getBound(data));
+                        key = key * 0x9e3779b97f4a7c15L + 1;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void depthBeyondEightBitsIsClamped() {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 5, 7, 1000, TranspositionTable.LOWER);
+        final long data = table.probe(KEY_A);
+        assertEquals(255, TranspositionTable.getDepth(data));
+        assertEquals(5, TranspositionTable.getMove(data));
+        assertEquals(7, TranspositionTable.getScore(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.getBound(data));
+    }
+
+    @Test
+    public void emptyTableMissesEveryKeyIncludingZero() {
+        final TranspositionTable table = new TranspositionTable(3);
+        assertEquals(TranspositionTable.MISSING, table.probe(0));
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_A));
+        table.store(0, 3, -2, 1, TranspositionTable.EXACT);
+        assertEquals(3, TranspositionTable.getMove(table.probe(0)));
+        table.clear();
+        assertEquals(TranspositionTable.MISSING, table.probe(0));
+    }
+
+    @Test
+    public void deepSlotKeepsTheDeepestResultOfTheCurrentSearch() {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.newSearch();
+        table.store(KEY_A, 1, 0, 5, TranspositionTable.EXACT);
+        // Shallower results go to the second slot, newest first.
+        table.store(KEY_B, 2, 0, 3, TranspositionTable.EXACT);
+        assertEquals(1, TranspositionTable.getMove(table.probe(KEY_A)));
+        assertEquals(2, TranspositionTable.getMove(table.probe(KEY_B)));
+        table.store(KEY_C, 3, 0, 4, TranspositionTable.EXACT);
+        assertEquals(1, TranspositionTable.getMove(table.probe(KEY_A)));
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_B));
+        assertEquals(3, TranspositionTable.getMove(table.probe(KEY_C)));
+        // An equally deep result takes over the first slot.
+        table.store(KEY_D, 4, 0, 5, TranspositionTable.EXACT);
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_A));
+        assertEquals(3, TranspositionTable.getMove(table.probe(KEY_C)));
+        assertEquals(4, TranspositionTable.getMove(table.probe(KEY_D)));
+    }
+
+    @Test
+    public void sameKeyReplacesItsOwnDeepEntryEvenWhenShallower() {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 1, 10, 8, TranspositionTable.LOWER);
+        table.store(KEY_A, 2, 20, 2, TranspositionTable.EXACT);
+        final long data = table.probe(KEY_A);
+        assertEquals(2, TranspositionTable.getMove(data));
+        assertEquals(2, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.EXACT, TranspositionTable.getBound(data));
+    }
+
+    @Test
+    public void resultsFromAnEarlierSearchAreReplacedFirst() {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 1, 0, 20, TranspositionTable.EXACT);
+        table.store(KEY_B, 2, 0, 1, TranspositionTable.EXACT);
+        table.newSearch();
+        // Old and deep loses to new and shallow.
+        table.store(KEY_C, 3, 0, 1, TranspositionTable.EXACT);
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_A));
+        assertEquals(2, TranspositionTable.getMove(table.probe(KEY_B)));
+        assertEquals(3, TranspositionTable.getMove(table.probe(KEY_C)));
+    }
+
+    @Test
+    public void generationWrapsAroundAfterEightBits() {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 1, 0, 20, TranspositionTable.EXACT);
+        for (int ii = 0; ii < 256; ++ii) {
+            table.newSearch();
+        }
+        // Back in generation 0, so the deep entry counts as current again.
+        table.store(KEY_B, 2, 0, 1, TranspositionTable.EXACT);
+        assertEquals(1, TranspositionTable.getMove(table.probe(KEY_A)));
+        assertEquals(2, TranspositionTable.getMove(table.probe(KEY_B)));
+    }
+
+    @Test
+    public void tornEntryIsRejected() throws Exception {
+        final TranspositionTable table = new TranspositionTable(0);
+        table.store(KEY_A, 1, 100, 5, TranspositionTable.EXACT);
+        final long[] words = getWords(table);
+        final long checkA = words[0];
+        final long dataA = words[1];
+        table.store(KEY_B, 2, -100, 9, TranspositionTable.EXACT);
+        final long checkB = words[0];
+        final long dataB = words[1];
+
+        // One thread's key word with the other thread's data word.
+        words[0] = checkA;
+        words[1] = dataB;
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_A));
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_B));
+        words[0] = checkB;
+        words[1] = dataA;
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_A));
+        assertEquals(TranspositionTable.MISSING, table.probe(KEY_B));
+
+        words[0] = checkA;
+        assertEquals(dataA, table.probe(KEY_A));
+    }
+
+    @Test
+    public void concurrentWritersNeverProduceAMismatchedHit() throws InterruptedException {
+        // A tiny table so that every thread keeps overwriting the same slots.
+        final TranspositionTable table = new TranspositionTable(1);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicInteger hits = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Random random = new Random(seed);
+                    for (int ii = 0; ii < 200000 && failure.get() == null; ++ii) {
+                        final long key = random.nextInt(64) * 0x9e3779b97f4a7c15L;
+                        // Every field is derived from the key, so a hit whose
+                        // fields belong to another key is a torn read.
+                        if (random.nextBoolean()) {
+                            table.store(key, getMove(key), (int) (key >>> 32), getDepth(key),
+                                    TranspositionTable.EXACT);
+                        } else {
+                            final long data = table.probe(key);
+                            if (data == TranspositionTable.MISSING) {
+                                continue;
+                            }
+                            hits.incrementAndGet();
+                            if (TranspositionTable.getMove(data) != getMove(key)
+                                    || TranspositionTable.getScore(data) != (int) (key >>> 32)
+                                    || TranspositionTable.getDepth(data) != getDepth(key)) {
+                                failure.compareAndSet(null, "mismatched entry for " + key);
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(hits.get() > 0);
+    }
+
+    private static int getMove(long key) {
+        return (int) (key >>> 8 & 0x3ff);
+    }
+
+    private static int getDepth(long key) {
+        return (int) (key >>> 20 & 0xff);
+    }
+
+    /**
+     * @return the table's backing array, to tear entries by hand
+     */
+    private static long[] getWords(TranspositionTable table) throws Exception {
+        final Field field = TranspositionTable.class.getDeclaredField("mTable");
+        field.setAccessible(true);
+        return (long[]) field.get(table);
+    }
+}
@@ -0,0 +1,133 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.Protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One client socket, owned by a single {@link SelectorLoop} which does all of
+ * its reading and writing. Frames for the client may be queued from any
+ * thread, since a move in one client's match is pushed to its opponent's
+ * connection; they are written out by the owning loop in batches.
+ */
+class Connection {
+
+    // Every connection keeps its input buffer, busy or idle. Frames are
+    // handled as soon as they are read, so a small one only means a busy
+    // client's frames take a few more reads.
+    private static final int INPUT_SIZE = 64 * Protocol.FRAME_SIZE;
+    private static final int INITIAL_OUTPUT_SIZE = 4096;
+    // A client this far behind on reading is dropped rather than buffered
+    // without limit.
+    private static final int MAX_OUTPUT_SIZE = 4 << 20;
+
+    final SocketChannel mChannel;
+    final SelectorLoop mLoop;
+    // Only used by the owning loop.
+    final ByteBuffer mInput = ByteBuffer.allocate(INPUT_SIZE);
+    SelectionKey mKey;
+
+    // Guarded by this.
+    private ByteBuffer mOutput = ByteBuffer.allocate(INITIAL_OUTPUT_SIZE);
+    private boolean mIsFlushRequested;
+    private final Set<Integer> mMatchIds = new HashSet<>();
+    private volatile boolean mIsClosed;
+
+    Connection(SocketChannel channel, SelectorLoop loop) {
+        mChannel = channel;
+        mLoop = loop;
+    }
+
+    /**
+     * Queue a frame for the client and have the owning loop write it out.
+     * Frames for a closed connection are dropped.
+     */
+    void send(int type, int arg0, int arg1, int arg2, int matchId, int cell, int tag) {
+        final boolean needsFlush;
+        synchronized (this) {
+            if (mIsClosed) {
+                return;
+            }
+            if (mOutput.remaining() < Protocol.FRAME_SIZE) {
+                if (mOutput.capacity() >= MAX_OUTPUT_SIZE) {
+                    // Let the owning loop close it; nothing more is queued.
+                    mIsClosed = true;
+                } else {
+                    final ByteBuffer larger = ByteBuffer.allocate(mOutput.capacity() * 2);
+                    mOutput.flip();
+                    larger.put(mOutput);
+                    mOutput = larger;
+                }
+            }
+            if (!mIsClosed) {
+                Protocol.put(mOutput, type, arg0, arg1, arg2, matchId, cell, tag);
+            }
+            needsFlush = !mIsFlushRequested;
+            mIsFlushRequested = true;
+        }
+        if (needsFlush) {
+            mLoop.requestFlush(this);
+        }
+    }
+
+    /**
+     * Write as much queued output as the socket takes, and watch for the
+     * socket becoming writable if some is left. Called by the owning loop.
+     */
+    void flush() throws IOException {
+        synchronized (this) {
+            mIsFlushRequested = false;
+            if (mIsClosed) {
+                throw new IOException("client is not reading");
+            }
+            mOutput.flip();
+            try {
+                mChannel.write(mOutput);
+            } finally {
+                mOutput.compact();
+            }
+            final boolean hasMore = mOutput.position() > 0;
+            if (mKey.isValid()) {
+                mKey.interestOps(hasMore
+                        ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    void addMatch(int id) {
+        synchronized (this) {
+            mMatchIds.add(id);
+        }
+    }
+
+    void removeMatch(int id) {
+        synchronized (this) {
+            mMatchIds.remove(id);
+        }
+    }
+
+    /**
+     * Stop taking frames and return the ids of every match still joined.
+     */
+    int[] close() {
+        synchronized (this) {
+            mIsClosed = true;
+            final int[] ids = new int[mMatchIds.size()];
+            int count = 0;
+            for (int id : mMatchIds) {
+                ids[count++] = id;
+            }
+            mMatchIds.clear();
+            return ids;
+        }
+    }
+
+    boolean isClosed() {
+        return mIsClosed;
+    }
+}
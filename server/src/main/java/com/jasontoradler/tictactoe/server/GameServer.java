@@ -0,0 +1,370 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.Protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Match server speaking {@link Protocol}. An acceptor thread hands new
+ * clients out in turn to a fixed set of {@link SelectorLoop}s, each of which
+ * serves its share of the sockets without blocking. Matches live in a
+ * {@link MatchTable} and every move is checked against the rules engine
+ * before it is applied and pushed to both players.
+ * <p/>
+ * Usage: GameServer [--port N] [--loops N] [--shards N]
+ */
+public class GameServer implements Closeable, Runnable {
+
+    private static final int DEFAULT_SHARDS = 256;
+
+    private final ServerSocketChannel mServerChannel;
+    private final SelectorLoop[] mLoops;
+    private final MatchTable mMatches;
+    // Pair mode clients waiting for an opponent, by board dimensions.
+    // Guarded by itself.
+    private final Map<Integer, ArrayDeque<Waiting>> mLobby = new HashMap<>();
+    private Thread mAcceptor;
+
+    private static class Waiting {
+        final Connection mConnection;
+        final int mTag;
+
+        Waiting(Connection connection, int tag) {
+            mConnection = connection;
+            mTag = tag;
+        }
+    }
+
+    /**
+     * @param port     port to listen on, or 0 for any free port
+     * @param numLoops number of selector threads
+     * @param numShards number of match table locks
+     */
+    public GameServer(int port, int numLoops, int numShards) throws IOException {
+        mServerChannel = ServerSocketChannel.open();
+        mServerChannel.socket().setReuseAddress(true);
+        mServerChannel.socket().bind(new InetSocketAddress(port), 1024);
+        mMatches = new MatchTable(numShards);
+        mLoops = new SelectorLoop[numLoops];
+        for (int ii = 0; ii < numLoops; ++ii) {
+            mLoops[ii] = new SelectorLoop(this);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.DEFAULT_PORT;
+        int loops = Runtime.getRuntime().availableProcessors();
+        int shards = DEFAULT_SHARDS;
+        try {
+            for (int ii = 0; ii < args.length; ii += 2) {
+                if (ii + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value for " + args[ii]);
+                }
+                final int value = Integer.parseInt(args[ii + 1]);
+                switch (args[ii]) {
+                    case "--port":
+                        port = value;
+                        break;
+                    case "--loops":
+                        loops = value;
+                        break;
+                    case "--shards":
+                        shards = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[ii]);
+                }
+            }
+            if (loops < 1 || shards < 1) {
+                throw new IllegalArgumentException("loops and shards must be positive");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: GameServer [--port N] [--loops N] [--shards N]");
+            System.exit(1);
+        }
+        final GameServer server = new GameServer(port, loops, shards);
+        server.start();
+        System.out.println("listening on port " + server.getPort() + " with " + loops
+                + " selector loops");
+    }
+
+    /**
+     * Start accepting clients.
+     */
+    public void start() {
+        for (int ii = 0; ii < mLoops.length; ++ii) {
+            mLoops[ii].start("SelectorLoop-" + ii);
+        }
+        mAcceptor = new Thread(this, "Acceptor");
+        mAcceptor.start();
+    }
+
+    public int getPort() {
+        return mServerChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of matches in progress
+     */
+    public int getMatchCount() {
+        return mMatches.size();
+    }
+
+    /**
+     * Accept clients until closed.
+     */
+    @Override
+    public void run() {
+        int next = 0;
+        try {
+            while (true) {
+                final SocketChannel channel = mServerChannel.accept();
+                mLoops[next].addConnection(channel);
+                next = (next + 1) % mLoops.length;
+            }
+        } catch (ClosedChannelException e) {
+            // Shut down by close().
+        } catch (IOException e) {
+            System.err.println("accept failed: " + e);
+        }
+    }
+
+    /**
+     * Stop accepting, close every connection, and wait for the threads.
+     */
+    @Override
+    public void close() throws IOException {
+        mServerChannel.close();
+        try {
+            if (mAcceptor != null) {
+                mAcceptor.join();
+            }
+            for (SelectorLoop loop : mLoops) {
+                loop.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Act on one frame from a client. Called by the connection's loop.
+     */
+    void handleFrame(SelectorLoop loop, Connection connection, ByteBuffer buffer, int offset) {
+        final int type = Protocol.getType(buffer, offset);
+        final int matchId = Protocol.getMatchId(buffer, offset);
+        final int tag = Protocol.getTag(buffer, offset);
+        switch (type) {
+            case Protocol.CREATE:
+                create(connection, Protocol.getArg0(buffer, offset),
+                        Protocol.getArg1(buffer, offset), Protocol.getArg2(buffer, offset),
+                        Protocol.getCell(buffer, offset), tag);
+                break;
+            case Protocol.MOVE:
+                move(connection, matchId, Protocol.getCell(buffer, offset), tag);
+                break;
+            case Protocol.THINK:
+                think(loop, connection, matchId, tag);
+                break;
+            case Protocol.LEAVE:
+                leave(connection, matchId);
+                break;
+            default:
+                sendError(connection, Protocol.ERROR_BAD_FRAME, matchId, tag);
+                break;
+        }
+    }
+
+    private static void sendError(Connection connection, int code, int matchId, int tag) {
+        connection.send(Protocol.ERROR, code, 0, 0, matchId, 0, tag);
+    }
+
+    private void create(Connection connection, int numRows, int numCols, int winLength,
+                        int mode, int tag) {
+        final Board board;
+        try {
+            board = new Board(numRows, numCols, winLength);
+        } catch (IllegalArgumentException e) {
+            sendError(connection, Protocol.ERROR_BAD_FRAME, 0, tag);
+            return;
+        }
+        if (mode == Protocol.MODE_SERVER) {
+            final Match match = new Match(mMatches.nextId(), mode, board);
+            match.mSeats[0] = connection;
+            match.mSeats[1] = connection;
+            startMatch(match, tag, tag);
+            return;
+        } else if (mode != Protocol.MODE_PAIR) {
+            sendError(connection, Protocol.ERROR_BAD_FRAME, 0, tag);
+            return;
+        }
+
+        // Pair with the longest waiting client for the same board, if any
+        // is still connected. A client which asks twice waits for two other
+        // clients rather than being paired with itself.
+        final int key = (numRows << 16) | (numCols << 8) | winLength;
+        Waiting opponent = null;
+        synchronized (mLobby) {
+            ArrayDeque<Waiting> queue = mLobby.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                mLobby.put(key, queue);
+            }
+            final Iterator<Waiting> waiting = queue.iterator();
+            while (opponent == null && waiting.hasNext()) {
+                final Waiting candidate = waiting.next();
+                if (candidate.mConnection.isClosed()) {
+                    waiting.remove();
+                } else if (candidate.mConnection != connection) {
+                    waiting.remove();
+                    opponent = candidate;
+                }
+            }
+            if (opponent == null) {
+                queue.add(new Waiting(connection, tag));
+                return;
+            }
+        }
+        final Match match = new Match(mMatches.nextId(), mode, board);
+        match.mSeats[0] = opponent.mConnection;
+        match.mSeats[1] = connection;
+        startMatch(match, opponent.mTag, tag);
+    }
+
+    private void startMatch(Match match, int tag0, int tag1) {
+        synchronized (mMatches.getLock(match.mId)) {
+            mMatches.put(match);
+            for (int seat = 0; seat < 2; ++seat) {
+                final Connection player = match.mSeats[seat];
+                player.addMatch(match.mId);
+                if (match.mMode == Protocol.MODE_SERVER && seat == 1) {
+                    // One client plays both sides and is told once.
+                    break;
+                }
+                player.send(Protocol.START, seat, 0, 0, match.mId, 0,
+                        seat == 0 ? tag0 : tag1);
+            }
+        }
+    }
+
+    private void move(Connection connection, int matchId, int cell, int ply) {
+        synchronized (mMatches.getLock(matchId)) {
+            final Match match = mMatches.get(matchId);
+            if (match == null || !match.hasPlayer(connection)) {
+                sendError(connection, Protocol.ERROR_NO_SUCH_MATCH, matchId, ply);
+                return;
+            }
+            final Board board = match.mBoard;
+            if (match.mSeats[board.getTurn()] != connection) {
+                sendError(connection, Protocol.ERROR_NOT_YOUR_TURN, matchId, ply);
+                return;
+            }
+            if (ply != board.getMoveCount() || cell < 0 || cell >= board.getNumCells()
+                    || !board.isEmpty(cell)) {
+                sendError(connection, Protocol.ERROR_ILLEGAL_MOVE, matchId, ply);
+                return;
+            }
+            play(match, cell);
+        }
+    }
+
+    private void think(SelectorLoop loop, Connection connection, int matchId, int ply) {
+        final Board position;
+        synchronized (mMatches.getLock(matchId)) {
+            final Match match = mMatches.get(matchId);
+            if (match == null || !match.hasPlayer(connection)) {
+                sendError(connection, Protocol.ERROR_NO_SUCH_MATCH, matchId, ply);
+                return;
+            }
+            if (match.mMode != Protocol.MODE_SERVER) {
+                sendError(connection, Protocol.ERROR_NOT_YOUR_TURN, matchId, ply);
+                return;
+            }
+            if (ply != match.mBoard.getMoveCount()) {
+                sendError(connection, Protocol.ERROR_ILLEGAL_MOVE, matchId, ply);
+                return;
+            }
+            position = loop.copyPosition(match.mBoard);
+        }
+
+        // Search without the lock, so the other matches in the shard are not
+        // held up, then check that the match is still where it was.
+        final int cell = loop.getStrategy(position).selectMove(position);
+        synchronized (mMatches.getLock(matchId)) {
+            final Match match = mMatches.get(matchId);
+            if (match == null || !match.hasPlayer(connection)) {
+                sendError(connection, Protocol.ERROR_NO_SUCH_MATCH, matchId, ply);
+                return;
+            }
+            if (ply != match.mBoard.getMoveCount()) {
+                sendError(connection, Protocol.ERROR_ILLEGAL_MOVE, matchId, ply);
+                return;
+            }
+            play(match, cell);
+        }
+    }
+
+    /**
+     * Play cell, tell both players, and end the match if the game is over.
+     * Caller holds the match's lock and has checked the move.
+     */
+    private void play(Match match, int cell) {
+        final Board board = match.mBoard;
+        final int player = board.getTurn();
+        final int ply = board.getMoveCount();
+        final GameState state = board.play(cell);
+        final Connection first = match.mSeats[0];
+        final Connection second = match.mSeats[1];
+        first.send(Protocol.MOVED, player, state.ordinal(), 0, match.mId, cell, ply);
+        if (second != first) {
+            second.send(Protocol.MOVED, player, state.ordinal(), 0, match.mId, cell, ply);
+        }
+        if (state != GameState.IN_PROGRESS) {
+            endMatch(match);
+        }
+    }
+
+    private void endMatch(Match match) {
+        mMatches.remove(match.mId);
+        match.mSeats[0].removeMatch(match.mId);
+        match.mSeats[1].removeMatch(match.mId);
+    }
+
+    private void leave(Connection connection, int matchId) {
+        synchronized (mMatches.getLock(matchId)) {
+            final Match match = mMatches.get(matchId);
+            if (match == null || !match.hasPlayer(connection)) {
+                // Most likely ended by the last move already.
+                return;
+            }
+            endMatch(match);
+            final Connection other = match.mSeats[0] == connection
+                    ? match.mSeats[1] : match.mSeats[0];
+            if (other != connection) {
+                sendError(other, Protocol.ERROR_OPPONENT_LEFT, matchId, 0);
+            }
+        }
+    }
+
+    /**
+     * Forfeit every match of a closed connection. Called by its loop.
+     */
+    void onDisconnect(Connection connection) {
+        for (int matchId : connection.close()) {
+            leave(connection, matchId);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.LatencyHistogram;
+import com.jasontoradler.tictactoe.engine.Protocol;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a fixed number of pair mode matches going against a server and
+ * reports how many games and moves it gets through and how long each move
+ * takes to be confirmed. Each of its connections plays many matches at once,
+ * so tens of thousands of concurrent games need only a few sockets. Unless
+ * a host is given, it starts a {@link GameServer} in the same process and
+ * connects over loopback, so the numbers involve no real network.
+ * <p/>
+ * Usage: LoadGenerator [--host HOST] [--port N] [--games N] [--connections N]
+ * [--seconds N] [--rows N] [--cols N] [--win N] [--loops N]
+ */
+public class LoadGenerator {
+
+    private String mHost;
+    private int mPort = Protocol.DEFAULT_PORT;
+    private int mGames = 10000;
+    private int mConnections = 16;
+    private int mSeconds = 10;
+    private int mNumRows = Board.DEFAULT_SIZE;
+    private int mNumCols = Board.DEFAULT_SIZE;
+    private int mWinLength = Board.DEFAULT_SIZE;
+    private int mLoops = Runtime.getRuntime().availableProcessors();
+
+    private final LatencyHistogram mMoveLatency = new LatencyHistogram("move");
+    private final AtomicLong mGamesPlayed = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private volatile boolean mIsStopped;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: LoadGenerator [--host HOST] [--port N] [--games N]"
+                    + " [--connections N] [--seconds N] [--rows N] [--cols N] [--win N]"
+                    + " [--loops N]");
+            System.exit(1);
+        }
+        generator.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int ii = 0; ii < args.length; ii += 2) {
+            final String option = args[ii];
+            if (ii + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            final String value = args[ii + 1];
+            switch (option) {
+                case "--host":
+                    mHost = value;
+                    break;
+                case "--port":
+                    mPort = Integer.parseInt(value);
+                    break;
+                case "--games":
+                    mGames = Integer.parseInt(value);
+                    break;
+                case "--connections":
+                    mConnections = Integer.parseInt(value);
+                    break;
+                case "--seconds":
+                    mSeconds = Integer.parseInt(value);
+                    break;
+                case "--rows":
+                    mNumRows = Integer.parseInt(value);
+                    break;
+                case "--cols":
+                    mNumCols = Integer.parseInt(value);
+                    break;
+                case "--win":
+                    mWinLength = Integer.parseInt(value);
+                    break;
+                case "--loops":
+                    mLoops = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (mGames < 1 || mConnections < 1 || mSeconds < 1 || mLoops < 1) {
+            throw new IllegalArgumentException("counts must be positive");
+        }
+        if (mConnections < 2) {
+            // The server never pairs a connection with itself, so a lone
+            // connection's seats would wait for an opponent forever.
+            throw new IllegalArgumentException("need at least two connections");
+        }
+        // Check the dimensions before any thread uses them.
+        new Board(mNumRows, mNumCols, mWinLength);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        GameServer server = null;
+        String host = mHost;
+        int port = mPort;
+        if (host == null) {
+            server = new GameServer(0, mLoops, 256);
+            server.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+
+        // Both seats of every game belong to the generator, dealt out across
+        // the connections.
+        final List<Client> clients = new ArrayList<>(mConnections);
+        final List<Thread> threads = new ArrayList<>(mConnections);
+        final int seats = 2 * mGames;
+        for (int ii = 0; ii < mConnections; ++ii) {
+            final int count = seats / mConnections + (ii < seats % mConnections ? 1 : 0);
+            final Client client = new Client(new InetSocketAddress(host, port), count, ii);
+            clients.add(client);
+            final Thread thread = new Thread(client, "Client-" + ii);
+            threads.add(thread);
+        }
+        final long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        final PrintWriter out = new PrintWriter(System.out, true);
+        long lastGames = 0;
+        long lastMoves = 0;
+        for (int second = 1; second <= mSeconds; ++second) {
+            Thread.sleep(1000);
+            final long games = mGamesPlayed.get();
+            final long moves = mMoveLatency.getCount();
+            out.printf(Locale.US, "%3d s  %8d games/s  %9d moves/s  p99 %7.3f ms%s%n",
+                    second, games - lastGames, moves - lastMoves,
+                    mMoveLatency.getPercentileNanos(0.99) / 1e6,
+                    server != null ? "  " + server.getMatchCount() + " matches" : "");
+            lastGames = games;
+            lastMoves = moves;
+        }
+        mIsStopped = true;
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        for (Client client : clients) {
+            client.close();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (server != null) {
+            server.close();
+        }
+
+        out.printf(Locale.US, "%d concurrent games over %d connections: %d games, %d moves"
+                        + " in %.1f s (%.0f games/s, %.0f moves/s), %d errors%n",
+                mGames, mConnections, mGamesPlayed.get(), mMoveLatency.getCount(), seconds,
+                mGamesPlayed.get() / seconds, mMoveLatency.getCount() / seconds, mErrors.get());
+        out.printf(Locale.US, "move latency: mean %.3f ms, p50 %.3f ms, p99 %.3f ms,"
+                        + " max %.3f ms%n",
+                mMoveLatency.getMeanNanos() / 1e6, mMoveLatency.getPercentileNanos(0.5) / 1e6,
+                mMoveLatency.getPercentileNanos(0.99) / 1e6, mMoveLatency.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * One connection and the seats it plays. Its frames are read and
+     * answered on its own thread; replies to everything in one read go out
+     * in a single write.
+     */
+    private class Client implements Runnable {
+
+        private final InetSocketAddress mAddress;
+        private final int mNumSeats;
+        private final Random mRandom;
+        private final ByteBuffer mInput = ByteBuffer.allocate(64 * 1024);
+        private ByteBuffer mOutput = ByteBuffer.allocate(64 * 1024);
+        // Games this connection has a seat in, by match id.
+        private final Map<Integer, Game> mGames = new HashMap<>();
+        private final int[] mCells;
+        private volatile SocketChannel mChannel;
+
+        Client(InetSocketAddress address, int numSeats, long seed) {
+            mAddress = address;
+            mNumSeats = numSeats;
+            mRandom = new Random(seed);
+            mCells = new int[mNumRows * mNumCols];
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel channel = SocketChannel.open(mAddress)) {
+                mChannel = channel;
+                channel.socket().setTcpNoDelay(true);
+                for (int seat = 0; seat < mNumSeats; ++seat) {
+                    create();
+                }
+                flush(channel);
+                while (!mIsStopped) {
+                    if (channel.read(mInput) < 0) {
+                        break;
+                    }
+                    mInput.flip();
+                    while (mInput.remaining() >= Protocol.FRAME_SIZE) {
+                        handleFrame(mInput.position());
+                        mInput.position(mInput.position() + Protocol.FRAME_SIZE);
+                    }
+                    mInput.compact();
+                    flush(channel);
+                }
+            } catch (IOException e) {
+                if (!mIsStopped) {
+                    System.err.println(Thread.currentThread().getName() + ": " + e);
+                }
+            }
+        }
+
+        void close() {
+            final SocketChannel channel = mChannel;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Stopping anyway.
+                }
+            }
+        }
+
+        private void flush(SocketChannel channel) throws IOException {
+            mOutput.flip();
+            while (mOutput.hasRemaining()) {
+                channel.write(mOutput);
+            }
+            mOutput.clear();
+        }
+
+        private void send(int type, int arg0, int arg1, int arg2, int matchId, int cell,
+                          int tag) {
+            if (mOutput.remaining() < Protocol.FRAME_SIZE) {
+                final ByteBuffer larger = ByteBuffer.allocate(mOutput.capacity() * 2);
+                mOutput.flip();
+                larger.put(mOutput);
+                mOutput = larger;
+            }
+            Protocol.put(mOutput, type, arg0, arg1, arg2, matchId, cell, tag);
+        }
+
+        private void create() {
+            send(Protocol.CREATE, mNumRows, mNumCols, mWinLength, 0, Protocol.MODE_PAIR, 0);
+        }
+
+        private void handleFrame(int offset) {
+            final int matchId = Protocol.getMatchId(mInput, offset);
+            switch (Protocol.getType(mInput, offset)) {
+                case Protocol.START: {
+                    Game game = mGames.get(matchId);
+                    if (game == null) {
+                        game = new Game(new Board(mNumRows, mNumCols, mWinLength));
+                        mGames.put(matchId, game);
+                    }
+                    game.mSeats[Protocol.getArg0(mInput, offset)] = true;
+                    moveIfOurTurn(matchId, game);
+                    break;
+                }
+                case Protocol.MOVED: {
+                    final Game game = mGames.get(matchId);
+                    if (game == null) {
+                        mErrors.incrementAndGet();
+                        break;
+                    }
+                    final int player = Protocol.getArg0(mInput, offset);
+                    if (game.mSeats[player]) {
+                        mMoveLatency.recordSince(game.mMoveSentNanos);
+                        game.mIsMovePending = false;
+                    }
+                    final GameState state = game.mBoard.play(Protocol.getCell(mInput, offset));
+                    if (state == GameState.IN_PROGRESS) {
+                        moveIfOurTurn(matchId, game);
+                    } else {
+                        // Count each game once, by player 1's connection, and
+                        // start new ones in place of every seat played here.
+                        mGames.remove(matchId);
+                        if (game.mSeats[0]) {
+                            mGamesPlayed.incrementAndGet();
+                            create();
+                        }
+                        if (game.mSeats[1]) {
+                            create();
+                        }
+                    }
+                    break;
+                }
+                default:
+                    // Errors, or frames this client never asked for.
+                    mErrors.incrementAndGet();
+                    break;
+            }
+        }
+
+        private void moveIfOurTurn(int matchId, Game game) {
+            final Board board = game.mBoard;
+            if (!game.mSeats[board.getTurn()] || game.mIsMovePending) {
+                return;
+            }
+            final int count = board.getEmptyCells(mCells);
+            game.mIsMovePending = true;
+            game.mMoveSentNanos = System.nanoTime();
+            send(Protocol.MOVE, 0, 0, 0, matchId, mCells[mRandom.nextInt(count)],
+                    board.getMoveCount());
+        }
+    }
+
+    /**
+     * A client's view of one match: the position and which seats it plays.
+     */
+    private static class Game {
+        final Board mBoard;
+        final boolean[] mSeats = new boolean[2];
+        long mMoveSentNanos;
+        // True from sending a move until the server confirms it.
+        boolean mIsMovePending;
+
+        Game(Board board) {
+            mBoard = board;
+        }
+    }
+}
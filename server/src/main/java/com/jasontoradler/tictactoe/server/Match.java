@@ -0,0 +1,29 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.Board;
+
+/**
+ * One game hosted by the server. A match is only read or changed while
+ * holding its {@link MatchTable} lock.
+ */
+class Match {
+
+    final int mId;
+    final int mMode;
+    final Board mBoard;
+    // Connection playing each side. In server mode both are the one client.
+    final Connection[] mSeats = new Connection[2];
+
+    Match(int id, int mode, Board board) {
+        mId = id;
+        mMode = mode;
+        mBoard = board;
+    }
+
+    /**
+     * @return true if connection plays either side
+     */
+    boolean hasPlayer(Connection connection) {
+        return mSeats[0] == connection || mSeats[1] == connection;
+    }
+}
@@ -0,0 +1,86 @@
+package com.jasontoradler.tictactoe.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every match in progress, split into shards which are each guarded by their
+ * own lock. Ids are handed out in sequence and a match's shard is its id
+ * modulo the number of shards, so matches spread evenly and players in
+ * different matches rarely wait for each other.
+ * <p/>
+ * Callers hold {@link #getLock} for a match while they look it up and play
+ * on it, so a move is checked and applied in one step.
+ */
+class MatchTable {
+
+    private final Object[] mLocks;
+    private final List<HashMap<Integer, Match>> mShards;
+    private final int mMask;
+    private final AtomicInteger mNextId = new AtomicInteger(1);
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    /**
+     * @param numShards number of locks; rounded up to a power of two
+     */
+    MatchTable(int numShards) {
+        final int count = numShards <= 1 ? 1 : Integer.highestOneBit(numShards - 1) << 1;
+        mMask = count - 1;
+        mLocks = new Object[count];
+        mShards = new ArrayList<>(count);
+        for (int ii = 0; ii < count; ++ii) {
+            mLocks[ii] = new Object();
+            mShards.add(new HashMap<Integer, Match>());
+        }
+    }
+
+    /**
+     * @return a new id, not yet used by any match
+     */
+    int nextId() {
+        return mNextId.getAndIncrement();
+    }
+
+    /**
+     * @return the lock guarding the match with id
+     */
+    Object getLock(int id) {
+        return mLocks[id & mMask];
+    }
+
+    /**
+     * Caller must hold {@link #getLock} for the match.
+     *
+     * @return the match with id, or null if it has ended
+     */
+    Match get(int id) {
+        return mShards.get(id & mMask).get(id);
+    }
+
+    /**
+     * Caller must hold {@link #getLock} for the match.
+     */
+    void put(Match match) {
+        if (mShards.get(match.mId & mMask).put(match.mId, match) == null) {
+            mSize.incrementAndGet();
+        }
+    }
+
+    /**
+     * Caller must hold {@link #getLock} for the match.
+     */
+    void remove(int id) {
+        if (mShards.get(id & mMask).remove(id) != null) {
+            mSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of matches in progress
+     */
+    int size() {
+        return mSize.get();
+    }
+}
@@ -0,0 +1,228 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GreedyStrategy;
+import com.jasontoradler.tictactoe.engine.Protocol;
+import com.jasontoradler.tictactoe.engine.Solver;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread which multiplexes a share of the server's connections over one NIO
+ * selector. It reads whole frames from each readable socket, hands them to
+ * the {@link GameServer}, and then writes every connection with queued
+ * output once per pass, so the replies to a burst of frames go out in a
+ * single write.
+ * <p/>
+ * Each loop also keeps its own computer players for server mode matches;
+ * strategies are not thread safe and moves are chosen on the loop which
+ * received the request, on the loop's own copy of the position.
+ */
+class SelectorLoop implements Runnable {
+
+    // Largest board the server plays perfectly; larger boards get the greedy
+    // player, which keeps thinking cheap enough for thousands of matches.
+    private static final int MAX_SOLVER_CELLS = 9;
+
+    private final GameServer mServer;
+    private final Selector mSelector;
+    private final Queue<Connection> mNewConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> mFlushQueue = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Strategy> mStrategies = new HashMap<>();
+    private final Map<Integer, Board> mBoards = new HashMap<>();
+    private final Random mRandom = new Random();
+    private Thread mThread;
+    private volatile boolean mIsStopped;
+
+    SelectorLoop(GameServer server) throws IOException {
+        mServer = server;
+        mSelector = Selector.open();
+    }
+
+    /**
+     * Start a thread running this loop.
+     */
+    void start(String name) {
+        mThread = new Thread(this, name);
+        mThread.start();
+    }
+
+    /**
+     * Take over a newly accepted client. May be called from any thread.
+     */
+    void addConnection(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        mNewConnections.add(new Connection(channel, this));
+        mSelector.wakeup();
+    }
+
+    /**
+     * Have connection's queued output written on the next pass. May be called
+     * from any thread.
+     */
+    void requestFlush(Connection connection) {
+        mFlushQueue.add(connection);
+        if (Thread.currentThread() != mThread) {
+            mSelector.wakeup();
+        }
+    }
+
+    /**
+     * Stop the loop and close every connection it owns.
+     */
+    void close() throws InterruptedException {
+        mIsStopped = true;
+        mSelector.wakeup();
+        if (mThread != null) {
+            mThread.join();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!mIsStopped) {
+                mSelector.select();
+                registerNewConnections();
+                final Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final Connection connection = (Connection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+                Connection connection;
+                while ((connection = mFlushQueue.poll()) != null) {
+                    if (connection.mKey != null && connection.mKey.isValid()) {
+                        flush(connection);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("selector failed: " + e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void registerNewConnections() throws IOException {
+        Connection connection;
+        while ((connection = mNewConnections.poll()) != null) {
+            connection.mKey = connection.mChannel.register(mSelector, SelectionKey.OP_READ,
+                    connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        final ByteBuffer input = connection.mInput;
+        try {
+            if (connection.mChannel.read(input) < 0) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+        input.flip();
+        int offset = 0;
+        while (input.limit() - offset >= Protocol.FRAME_SIZE) {
+            mServer.handleFrame(this, connection, input, offset);
+            offset += Protocol.FRAME_SIZE;
+        }
+        input.position(offset);
+        input.compact();
+    }
+
+    private void flush(Connection connection) {
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connection.mKey.cancel();
+        try {
+            connection.mChannel.close();
+        } catch (IOException e) {
+            // Already gone.
+        }
+        mServer.onDisconnect(connection);
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : mSelector.keys()) {
+            final Connection connection = (Connection) key.attachment();
+            if (connection != null) {
+                disconnect(connection);
+            }
+        }
+        Connection connection;
+        while ((connection = mNewConnections.poll()) != null) {
+            try {
+                connection.mChannel.close();
+            } catch (IOException e) {
+                // Already gone.
+            }
+        }
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+    }
+
+    /**
+     * @return this loop's scratch board for board's dimensions, set to
+     * board's position
+     */
+    Board copyPosition(Board board) {
+        final int key = getDimensionsKey(board);
+        Board copy = mBoards.get(key);
+        if (copy == null) {
+            copy = new Board(board);
+            mBoards.put(key, copy);
+        } else {
+            copy.copyFrom(board);
+        }
+        return copy;
+    }
+
+    /**
+     * @return this loop's computer player for board's dimensions
+     */
+    Strategy getStrategy(Board board) {
+        final int key = getDimensionsKey(board);
+        Strategy strategy = mStrategies.get(key);
+        if (strategy == null) {
+            strategy = board.getNumCells() <= MAX_SOLVER_CELLS
+                    ? new Solver(board.getNumRows(), board.getNumCols(), board.getWinLength())
+                    : new GreedyStrategy(mRandom);
+            mStrategies.put(key, strategy);
+        }
+        return strategy;
+    }
+
+    private static int getDimensionsKey(Board board) {
+        return (board.getNumRows() << 16) | (board.getNumCols() << 8) | board.getWinLength();
+    }
+}
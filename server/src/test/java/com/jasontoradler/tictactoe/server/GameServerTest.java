@@ -0,0 +1,310 @@
+package com.jasontoradler.tictactoe.server;
+
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.Protocol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Plays against a real server over loopback, one blocking socket per
+ * client.
+ */
+public class GameServerTest {
+
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private GameServer mServer;
+    private final List<Client> mClients = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new GameServer(0, 2, 4);
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Client client : mClients) {
+            client.close();
+        }
+        mServer.close();
+    }
+
+    @Test
+    public void pairedClientsAreSeatedInOrder() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+        assertNotEquals(0, matchId);
+        assertEquals(1, mServer.getMatchCount());
+    }
+
+    @Test
+    public void movesAreCheckedAgainstTheRules() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+
+        // Player 2 may not open.
+        second.send(Protocol.MOVE, 0, 0, 0, matchId, 4, 0);
+        second.expectError(Protocol.ERROR_NOT_YOUR_TURN, 0);
+        // Wrong ply, and cells off the board.
+        first.send(Protocol.MOVE, 0, 0, 0, matchId, 4, 1);
+        first.expectError(Protocol.ERROR_ILLEGAL_MOVE, 1);
+        first.send(Protocol.MOVE, 0, 0, 0, matchId, -1, 0);
+        first.expectError(Protocol.ERROR_ILLEGAL_MOVE, 0);
+        first.send(Protocol.MOVE, 0, 0, 0, matchId, 9, 0);
+        first.expectError(Protocol.ERROR_ILLEGAL_MOVE, 0);
+        // An unknown match.
+        first.send(Protocol.MOVE, 0, 0, 0, matchId + 1000, 4, 0);
+        first.expectError(Protocol.ERROR_NO_SUCH_MATCH, 0);
+
+        move(first, second, matchId, 4, 0, GameState.IN_PROGRESS);
+        // Player 1 may not move twice, and player 2 may not take the cell.
+        first.send(Protocol.MOVE, 0, 0, 0, matchId, 0, 1);
+        first.expectError(Protocol.ERROR_NOT_YOUR_TURN, 1);
+        second.send(Protocol.MOVE, 0, 0, 0, matchId, 4, 1);
+        second.expectError(Protocol.ERROR_ILLEGAL_MOVE, 1);
+        // A replayed ply.
+        second.send(Protocol.MOVE, 0, 0, 0, matchId, 0, 0);
+        second.expectError(Protocol.ERROR_ILLEGAL_MOVE, 0);
+    }
+
+    @Test
+    public void outsidersCannotMoveInAMatch() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final Client outsider = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+        outsider.send(Protocol.MOVE, 0, 0, 0, matchId, 4, 0);
+        outsider.expectError(Protocol.ERROR_NO_SUCH_MATCH, 0);
+        outsider.send(Protocol.LEAVE, 0, 0, 0, matchId, 0, 0);
+        move(first, second, matchId, 4, 0, GameState.IN_PROGRESS);
+    }
+
+    @Test
+    public void winningMoveEndsTheMatch() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+        final int[] moves = {0, 3, 1, 4};
+        for (int ply = 0; ply < moves.length; ++ply) {
+            move(ply % 2 == 0 ? first : second, ply % 2 == 0 ? second : first, matchId,
+                    moves[ply], ply, GameState.IN_PROGRESS);
+        }
+        move(first, second, matchId, 2, 4, GameState.PLAYER1_WINS);
+        second.send(Protocol.MOVE, 0, 0, 0, matchId, 5, 5);
+        second.expectError(Protocol.ERROR_NO_SUCH_MATCH, 5);
+        assertEquals(0, mServer.getMatchCount());
+    }
+
+    @Test
+    public void leavingForfeitsTheMatch() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+        move(first, second, matchId, 4, 0, GameState.IN_PROGRESS);
+        second.send(Protocol.LEAVE, 0, 0, 0, matchId, 0, 0);
+        first.expectError(Protocol.ERROR_OPPONENT_LEFT, 0);
+        first.send(Protocol.MOVE, 0, 0, 0, matchId, 0, 2);
+        first.expectError(Protocol.ERROR_NO_SUCH_MATCH, 2);
+        assertEquals(0, mServer.getMatchCount());
+    }
+
+    @Test
+    public void disconnectingForfeitsEveryMatch() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final Client third = connect();
+        final int firstMatch = pair(first, second, 3, 3, 3);
+        final int secondMatch = pair(third, second, 4, 4, 3);
+        second.close();
+        first.expectError(Protocol.ERROR_OPPONENT_LEFT, 0, firstMatch);
+        third.expectError(Protocol.ERROR_OPPONENT_LEFT, 0, secondMatch);
+        assertEquals(0, mServer.getMatchCount());
+    }
+
+    @Test
+    public void clientAskingTwiceIsNotPairedWithItself() throws IOException {
+        final Client first = connect();
+        first.send(Protocol.CREATE, 3, 3, 3, 0, Protocol.MODE_PAIR, 1);
+        first.send(Protocol.CREATE, 3, 3, 3, 0, Protocol.MODE_PAIR, 2);
+        // Frames are handled in order, so once this is answered both
+        // requests are waiting and nothing else was sent.
+        first.send(Protocol.MOVE, 0, 0, 0, -1, 0, 99);
+        first.expectError(Protocol.ERROR_NO_SUCH_MATCH, 99);
+        assertEquals(0, mServer.getMatchCount());
+
+        final Client second = connect();
+        second.send(Protocol.CREATE, 3, 3, 3, 0, Protocol.MODE_PAIR, 3);
+        first.expect(Protocol.START, 0, 1);
+        second.expect(Protocol.START, 1, 3);
+        final Client third = connect();
+        third.send(Protocol.CREATE, 3, 3, 3, 0, Protocol.MODE_PAIR, 4);
+        first.expect(Protocol.START, 0, 2);
+        third.expect(Protocol.START, 1, 4);
+        assertEquals(2, mServer.getMatchCount());
+    }
+
+    @Test
+    public void serverModeThinksForEitherSide() throws IOException {
+        final Client client = connect();
+        client.send(Protocol.CREATE, 3, 3, 3, 0, Protocol.MODE_SERVER, 7);
+        final ByteBuffer start = client.expect(Protocol.START, 0, 7);
+        final int matchId = Protocol.getMatchId(start, 0);
+
+        client.send(Protocol.THINK, 0, 0, 0, matchId, 0, 1);
+        client.expectError(Protocol.ERROR_ILLEGAL_MOVE, 1);
+        for (int ply = 0; ply < 9; ++ply) {
+            client.send(Protocol.THINK, 0, 0, 0, matchId, 0, ply);
+            final ByteBuffer moved = client.expect(Protocol.MOVED, ply % 2, ply);
+            if (Protocol.getArg1(moved, 0) != GameState.IN_PROGRESS.ordinal()) {
+                // Perfect play on both sides is a tie.
+                assertEquals(GameState.TIE_GAME.ordinal(), Protocol.getArg1(moved, 0));
+                assertEquals(8, ply);
+                break;
+            }
+        }
+        client.send(Protocol.THINK, 0, 0, 0, matchId, 0, 9);
+        client.expectError(Protocol.ERROR_NO_SUCH_MATCH, 9);
+        assertEquals(0, mServer.getMatchCount());
+    }
+
+    @Test
+    public void thinkIsRefusedInPairMode() throws IOException {
+        final Client first = connect();
+        final Client second = connect();
+        final int matchId = pair(first, second, 3, 3, 3);
+        first.send(Protocol.THINK, 0, 0, 0, matchId, 0, 0);
+        first.expectError(Protocol.ERROR_NOT_YOUR_TURN, 0);
+    }
+
+    @Test
+    public void badFramesAreRejected() throws IOException {
+        final Client client = connect();
+        client.send(99, 0, 0, 0, 0, 0, 5);
+        client.expectError(Protocol.ERROR_BAD_FRAME, 5);
+        client.send(Protocol.CREATE, 0, 3, 3, 0, Protocol.MODE_PAIR, 6);
+        client.expectError(Protocol.ERROR_BAD_FRAME, 6);
+        client.send(Protocol.CREATE, 3, 3, 3, 0, 7, 7);
+        client.expectError(Protocol.ERROR_BAD_FRAME, 7);
+    }
+
+    private Client connect() throws IOException {
+        final Client client = new Client(mServer.getPort());
+        mClients.add(client);
+        return client;
+    }
+
+    /**
+     * Start a pair mode match, first in seat 0.
+     *
+     * @return the match id
+     */
+    private static int pair(Client first, Client second, int numRows, int numCols,
+                            int winLength) throws IOException {
+        first.send(Protocol.CREATE, numRows, numCols, winLength, 0, Protocol.MODE_PAIR, 10);
+        // Make sure the first request is waiting before the second arrives.
+        first.send(Protocol.MOVE, 0, 0, 0, -1, 0, 11);
+        first.expectError(Protocol.ERROR_NO_SUCH_MATCH, 11);
+        second.send(Protocol.CREATE, numRows, numCols, winLength, 0, Protocol.MODE_PAIR, 20);
+        final int matchId = Protocol.getMatchId(first.expect(Protocol.START, 0, 10), 0);
+        assertEquals(matchId, Protocol.getMatchId(second.expect(Protocol.START, 1, 20), 0));
+        return matchId;
+    }
+
+    /**
+     * Play a legal move and check that both players hear of it.
+     */
+    private static void move(Client mover, Client other, int matchId, int cell, int ply,
+                             GameState expected) throws IOException {
+        mover.send(Protocol.MOVE, 0, 0, 0, matchId, cell, ply);
+        for (Client client : new Client[]{mover, other}) {
+            final ByteBuffer moved = client.expect(Protocol.MOVED, ply % 2, ply);
+            assertEquals(matchId, Protocol.getMatchId(moved, 0));
+            assertEquals(cell, Protocol.getCell(moved, 0));
+            assertEquals(expected.ordinal(), Protocol.getArg1(moved, 0));
+        }
+    }
+
+    private static class Client {
+        private final SocketChannel mChannel;
+        private final ReadableByteChannel mInput;
+
+        Client(int port) throws IOException {
+            mChannel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+            mChannel.socket().setSoTimeout(TIMEOUT_MILLIS);
+            // Reads through the socket's stream honor the timeout.
+            mInput = Channels.newChannel(mChannel.socket().getInputStream());
+        }
+
+        void send(int type, int arg0, int arg1, int arg2, int matchId, int cell, int tag)
+                throws IOException {
+            final ByteBuffer frame = ByteBuffer.allocate(Protocol.FRAME_SIZE);
+            Protocol.put(frame, type, arg0, arg1, arg2, matchId, cell, tag);
+            frame.flip();
+            while (frame.hasRemaining()) {
+                mChannel.write(frame);
+            }
+        }
+
+        ByteBuffer receive() throws IOException {
+            final ByteBuffer frame = ByteBuffer.allocate(Protocol.FRAME_SIZE);
+            try {
+                while (frame.hasRemaining()) {
+                    if (mInput.read(frame) < 0) {
+                        fail("server closed the connection");
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                fail("no frame from the server");
+            }
+            return frame;
+        }
+
+        ByteBuffer expect(int type, int arg0, int tag) throws IOException {
+            final ByteBuffer frame = receive();
+            assertEquals("frame type", type, Protocol.getType(frame, 0));
+            assertEquals("arg0", arg0, Protocol.getArg0(frame, 0));
+            assertEquals("tag", tag, Protocol.getTag(frame, 0));
+            return frame;
+        }
+
+        void expectError(int code, int tag) throws IOException {
+            final ByteBuffer frame = receive();
+            assertEquals("frame type", Protocol.ERROR, Protocol.getType(frame, 0));
+            assertEquals(Protocol.getErrorName(code),
+                    Protocol.getErrorName(Protocol.getArg0(frame, 0)));
+            assertEquals("tag", tag, Protocol.getTag(frame, 0));
+        }
+
+        void expectError(int code, int tag, int matchId) throws IOException {
+            final ByteBuffer frame = receive();
+            assertEquals("frame type", Protocol.ERROR, Protocol.getType(frame, 0));
+            assertEquals(Protocol.getErrorName(code),
+                    Protocol.getErrorName(Protocol.getArg0(frame, 0)));
+            assertEquals("tag", tag, Protocol.getTag(frame, 0));
+            assertEquals("match id", matchId, Protocol.getMatchId(frame, 0));
+        }
+
+        void close() throws IOException {
+            mChannel.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * One player in a tournament: a strategy type and its settings. Entrants
+ * are named on the command line as TYPE or TYPE@MILLIS, for example mcts@20
+ * for tree search with 20 ms a move.
+ */
+public class Entrant {
+
+    private final String mName;
+    private final StrategyType mType;
+    private final long mTimeBudgetMillis;
+
+    public Entrant(StrategyType type, long timeBudgetMillis) {
+        mType = type;
+        mTimeBudgetMillis = timeBudgetMillis;
+        final String typeName = type.name().toLowerCase(Locale.US);
+        mName = timeBudgetMillis == StrategyType.DEFAULT_TIME_BUDGET
+                ? typeName : typeName + "@" + timeBudgetMillis;
+    }
+
+    /**
+     * @throws IllegalArgumentException if spec is not TYPE or TYPE@MILLIS
+     */
+    public static Entrant parse(String spec) {
+        final int at = spec.indexOf('@');
+        if (at < 0) {
+            return new Entrant(StrategyType.parse(spec), StrategyType.DEFAULT_TIME_BUDGET);
+        }
+        final long timeBudgetMillis = Long.parseLong(spec.substring(at + 1));
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("negative time budget in " + spec);
+        }
+        return new Entrant(StrategyType.parse(spec.substring(0, at)), timeBudgetMillis);
+    }
+
+    public Strategy create(Board board, Random random) {
+        return mType.create(board, random, mTimeBudgetMillis);
+    }
+
+    public boolean supports(Board board) {
+        return mType.supports(board);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,69 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Games between two entrants on one board size. The task splits itself in
+ * half until each piece is a pair of games with the entrants taking each
+ * side once, so idle workers can steal the pieces of a long match.
+ */
+public class MatchTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Entrant> mEntrants;
+    private final Ratings mRatings;
+    private final int mFirst;
+    private final int mSecond;
+    private final int mBoardIndex;
+    private final int mGames;
+
+    /**
+     * @param ratings    ratings for the board size, which every game updates
+     * @param first      entrant who moves first in the first game
+     * @param second     entrant who moves first in the second game
+     * @param boardIndex which of the workers' boards to play on
+     */
+    public MatchTask(List<Entrant> entrants, Ratings ratings, int first, int second,
+                     int boardIndex, int games) {
+        mEntrants = entrants;
+        mRatings = ratings;
+        mFirst = first;
+        mSecond = second;
+        mBoardIndex = boardIndex;
+        mGames = games;
+    }
+
+    @Override
+    protected void compute() {
+        if (mGames > 2) {
+            // Keep pairs together so both halves stay balanced by color.
+            final int half = Math.max(2, mGames / 4 * 2);
+            invokeAll(new MatchTask(mEntrants, mRatings, mFirst, mSecond, mBoardIndex, half),
+                    new MatchTask(mEntrants, mRatings, mFirst, mSecond, mBoardIndex,
+                            mGames - half));
+            return;
+        }
+        final TournamentWorker worker = TournamentWorker.current();
+        final Board board = worker.getBoard(mBoardIndex);
+        for (int game = 0; game < mGames; ++game) {
+            final int player1 = game == 0 ? mFirst : mSecond;
+            final int player2 = game == 0 ? mSecond : mFirst;
+            final Strategy[] strategies = {
+                    worker.getStrategy(mEntrants.get(player1), player1, mBoardIndex),
+                    worker.getStrategy(mEntrants.get(player2), player2, mBoardIndex),
+            };
+            board.reset();
+            GameState state = GameState.IN_PROGRESS;
+            while (state == GameState.IN_PROGRESS) {
+                state = board.play(strategies[board.getTurn()].selectMove(board));
+            }
+            mRatings.record(player1, player2, state);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Running ratings of a tournament's entrants on one board size, updated
+ * after every game as results come in from any thread.
+ * <p/>
+ * Two ratings are kept. Elo moves each rating a fixed fraction of the way
+ * toward each result; its interval comes from the spread of the entrant's
+ * results. Glicko also tracks each rating's deviation, which shrinks as games
+ * are played, and weighs results against entrants whose own ratings are
+ * uncertain less; each game is treated as a rating period of its own, and
+ * the interval is the rating plus or minus 1.96 deviations.
+ */
+public class Ratings {
+
+    public static final double INITIAL_RATING = 1500;
+    public static final double INITIAL_DEVIATION = 350;
+
+    private static final double ELO_K = 16;
+    private static final double Q = Math.log(10) / 400;
+    private static final double Z_95 = 1.96;
+
+    private final double[] mElo;
+    private final double[] mRating;
+    private final double[] mDeviation;
+    private final long[] mWins;
+    private final long[] mDraws;
+    private final long[] mLosses;
+
+    public Ratings(int numEntrants) {
+        mElo = new double[numEntrants];
+        mRating = new double[numEntrants];
+        mDeviation = new double[numEntrants];
+        mWins = new long[numEntrants];
+        mDraws = new long[numEntrants];
+        mLosses = new long[numEntrants];
+        Arrays.fill(mElo, INITIAL_RATING);
+        Arrays.fill(mRating, INITIAL_RATING);
+        Arrays.fill(mDeviation, INITIAL_DEVIATION);
+    }
+
+    /**
+     * Record a finished game.
+     *
+     * @param player1 entrant who moved first
+     * @param player2 entrant who moved second
+     */
+    public synchronized void record(int player1, int player2, GameState outcome) {
+        final double score;
+        switch (outcome) {
+            case PLAYER1_WINS:
+                score = 1;
+                ++mWins[player1];
+                ++mLosses[player2];
+                break;
+            case PLAYER2_WINS:
+                score = 0;
+                ++mLosses[player1];
+                ++mWins[player2];
+                break;
+            case TIE_GAME:
+                score = 0.5;
+                ++mDraws[player1];
+                ++mDraws[player2];
+                break;
+            default:
+                throw new IllegalArgumentException("game is not over: " + outcome);
+        }
+
+        final double expected = 1 / (1 + Math.pow(10, (mElo[player2] - mElo[player1]) / 400));
+        mElo[player1] += ELO_K * (score - expected);
+        mElo[player2] -= ELO_K * (score - expected);
+
+        // Both updates use the ratings from before the game.
+        final double rating1 = mRating[player1];
+        final double deviation1 = mDeviation[player1];
+        updateGlicko(player1, mRating[player2], mDeviation[player2], score);
+        updateGlicko(player2, rating1, deviation1, 1 - score);
+    }
+
+    private void updateGlicko(int player, double opponentRating, double opponentDeviation,
+                              double score) {
+        final double g = 1 / Math.sqrt(
+                1 + 3 * Q * Q * opponentDeviation * opponentDeviation / (Math.PI * Math.PI));
+        final double expected = 1 / (1 + Math.pow(10,
+                -g * (mRating[player] - opponentRating) / 400));
+        final double inverseVariance = Q * Q * g * g * expected * (1 - expected);
+        final double precision = 1 / (mDeviation[player] * mDeviation[player]) + inverseVariance;
+        mRating[player] += Q / precision * g * (score - expected);
+        mDeviation[player] = Math.sqrt(1 / precision);
+    }
+
+    /**
+     * Start an entrant from a Glicko rating other than the initial one.
+     */
+    synchronized void setGlicko(int entrant, double rating, double deviation) {
+        mRating[entrant] = rating;
+        mDeviation[entrant] = deviation;
+    }
+
+    public synchronized double getElo(int entrant) {
+        return mElo[entrant];
+    }
+
+    public synchronized double getRating(int entrant) {
+        return mRating[entrant];
+    }
+
+    public synchronized double getDeviation(int entrant) {
+        return mDeviation[entrant];
+    }
+
+    public synchronized long getGames(int entrant) {
+        return mWins[entrant] + mDraws[entrant] + mLosses[entrant];
+    }
+
+    /**
+     * @return entrant indices from the highest Glicko rating to the lowest
+     */
+    public synchronized Integer[] getStandings() {
+        final Integer[] order = new Integer[mRating.length];
+        for (int ii = 0; ii < order.length; ++ii) {
+            order[ii] = ii;
+        }
+        final double[] ratings = mRating.clone();
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(ratings[b], ratings[a]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * Print a table of every entrant which has played, best first.
+     */
+    public synchronized void print(PrintStream out, List<Entrant> entrants) {
+        out.printf(Locale.US, "%4s  %-20s %8s %7s %7s %7s  %6s  %-12s %-12s%n", "rank", "entrant",
+                "games", "wins", "draws", "losses", "score", "elo (95%)", "glicko (95%)");
+        int rank = 0;
+        for (int entrant : getStandings()) {
+            final long games = getGames(entrant);
+            if (games == 0) {
+                continue;
+            }
+            final double score = (mWins[entrant] + 0.5 * mDraws[entrant]) / games;
+            out.printf(Locale.US, "%4d  %-20s %8d %7d %7d %7d  %5.1f%%  %4.0f +- %-4.0f %4.0f +- %-4.0f%n",
+                    ++rank, entrants.get(entrant).getName(), games, mWins[entrant],
+                    mDraws[entrant], mLosses[entrant], 100 * score, mElo[entrant],
+                    getEloMargin(entrant, score, games), mRating[entrant],
+                    Z_95 * mDeviation[entrant]);
+        }
+    }
+
+    /**
+     * @return half the width of the 95% interval of the rating difference
+     * implied by the entrant's mean score, from the standard error of that
+     * mean
+     */
+    private double getEloMargin(int entrant, double score, long games) {
+        final double variance = (mWins[entrant] * (1 - score) * (1 - score)
+                + mDraws[entrant] * (0.5 - score) * (0.5 - score)
+                + mLosses[entrant] * score * score) / games;
+        final double standardError = Math.sqrt(variance / games);
+        // Slope of the logistic curve at the score; bounded so a perfect
+        // record does not give an infinite interval.
+        final double clamped = Math.min(0.99, Math.max(0.01, score));
+        return Z_95 * standardError / (Q * clamped * (1 - clamped));
+    }
+}
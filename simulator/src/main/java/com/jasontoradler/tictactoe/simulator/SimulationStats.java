@@ -0,0 +1,124 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Results of a batch of games: outcome counts and, for each player, a
+ * histogram of how long its strategy took to choose a move. Each worker fills
+ * in its own instance without synchronization; instances are merged once
+ * all workers are done.
+ */
+public class SimulationStats {
+
+    // Bucket n counts moves which took [2^n, 2^(n+1)) nanoseconds.
+    private static final int NUM_BUCKETS = 64;
+
+    private long mGames;
+    private long mPlayer1Wins;
+    private long mPlayer2Wins;
+    private long mTies;
+    private long mMoves;
+    private final long[][] mMoveTimes = new long[2][NUM_BUCKETS];
+    private final long[] mTotalMoveNanos = new long[2];
+
+    public void recordGame(GameState outcome, int moves) {
+        ++mGames;
+        mMoves += moves;
+        switch (outcome) {
+            case PLAYER1_WINS:
+                ++mPlayer1Wins;
+                break;
+            case PLAYER2_WINS:
+                ++mPlayer2Wins;
+                break;
+            case TIE_GAME:
+                ++mTies;
+                break;
+            default:
+                throw new IllegalArgumentException("game is not over: " + outcome);
+        }
+    }
+
+    /**
+     * @param player {@link Board#PLAYER1} or {@link Board#PLAYER2}
+     * @param nanos  time the player's strategy took to choose a move
+     */
+    public void recordMoveTime(int player, long nanos) {
+        final int bucket = nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        ++mMoveTimes[player][bucket];
+        mTotalMoveNanos[player] += nanos;
+    }
+
+    /**
+     * Add the counts from other into this.
+     */
+    public void merge(SimulationStats other) {
+        mGames += other.mGames;
+        mPlayer1Wins += other.mPlayer1Wins;
+        mPlayer2Wins += other.mPlayer2Wins;
+        mTies += other.mTies;
+        mMoves += other.mMoves;
+        for (int player = 0; player < 2; ++player) {
+            for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+                mMoveTimes[player][bucket] += other.mMoveTimes[player][bucket];
+            }
+            mTotalMoveNanos[player] += other.mTotalMoveNanos[player];
+        }
+    }
+
+    public long getGames() {
+        return mGames;
+    }
+
+    public long getPlayer1Wins() {
+        return mPlayer1Wins;
+    }
+
+    public long getPlayer2Wins() {
+        return mPlayer2Wins;
+    }
+
+    public long getTies() {
+        return mTies;
+    }
+
+    public void print(PrintStream out, long elapsedNanos) {
+        final double seconds = elapsedNanos / 1e9;
+        out.printf(Locale.US, "games:        %d in %.3f s (%.0f games/s, %.0f moves/s)%n",
+                mGames, seconds, mGames / seconds, mMoves / seconds);
+        out.printf(Locale.US, "player 1 wins: %.4f%%%n", percent(mPlayer1Wins));
+        out.printf(Locale.US, "player 2 wins: %.4f%%%n", percent(mPlayer2Wins));
+        out.printf(Locale.US, "ties:          %.4f%%%n", percent(mTies));
+        for (int player = 0; player < 2; ++player) {
+            printMoveTimes(out, player);
+        }
+    }
+
+    private double percent(long count) {
+        return mGames == 0 ? 0 : 100.0 * count / mGames;
+    }
+
+    private void printMoveTimes(PrintStream out, int player) {
+        final long[] buckets = mMoveTimes[player];
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        out.printf(Locale.US, "player %d move time: %d moves, mean %.0f ns%n",
+                player + 1, total, total == 0 ? 0.0 : (double) mTotalMoveNanos[player] / total);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+            if (buckets[bucket] == 0) {
+                continue;
+            }
+            cumulative += buckets[bucket];
+            out.printf(Locale.US, "  < %12d ns  %12d  %7.3f%%  cumulative %7.3f%%%n",
+                    1L << Math.min(bucket + 1, 62), buckets[bucket],
+                    100.0 * buckets[bucket] / total, 100.0 * cumulative / total);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameRecordWriter;
+import com.jasontoradler.tictactoe.engine.GameState;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Plays a fixed number of games on one thread. The worker owns its board,
+ * strategies, random number source, statistics, and record file, so workers
+ * share nothing while they run.
+ */
+public class SimulationWorker implements Callable<SimulationStats> {
+
+    private final long mGames;
+    private final Board mBoard;
+    private final StrategyType mPlayer1;
+    private final StrategyType mPlayer2;
+    private final long mSeed;
+    private final Path mRecordPath;
+
+    /**
+     * @param games      number of games to play
+     * @param template   board whose dimensions every game uses
+     * @param seed       seed for this worker's random number source
+     * @param recordPath file to write every game to, or null
+     */
+    public SimulationWorker(long games, Board template, StrategyType player1,
+                            StrategyType player2, long seed, Path recordPath) {
+        mGames = games;
+        mBoard = new Board(template.getNumRows(), template.getNumCols(),
+                template.getWinLength());
+        mPlayer1 = player1;
+        mPlayer2 = player2;
+        mSeed = seed;
+        mRecordPath = recordPath;
+    }
+
+    @Override
+    public SimulationStats call() throws IOException {
+        final Random random = new Random(mSeed);
+        final Strategy[] strategies = {
+                mPlayer1.create(mBoard, random),
+                mPlayer2.create(mBoard, random),
+        };
+        final SimulationStats stats = new SimulationStats();
+        final GameRecordWriter records = mRecordPath == null ? null
+                : new GameRecordWriter(FileChannel.open(mRecordPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+
+        try {
+            playGames(strategies, stats, records);
+        } finally {
+            if (records != null) {
+                records.close();
+            }
+        }
+        return stats;
+    }
+
+    private void playGames(Strategy[] strategies, SimulationStats stats,
+                           GameRecordWriter records) throws IOException {
+        final Board board = mBoard;
+        for (long game = 0; game < mGames; ++game) {
+            board.reset();
+            GameState state = GameState.IN_PROGRESS;
+            while (state == GameState.IN_PROGRESS) {
+                final int player = board.getTurn();
+                final long start = System.nanoTime();
+                final int move = strategies[player].selectMove(board);
+                stats.recordMoveTime(player, System.nanoTime() - start);
+                state = board.play(move);
+            }
+            stats.recordGame(state, board.getMoveCount());
+            if (records != null) {
+                records.write(board);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Command line self-play runner. Splits the requested games evenly across
+ * one worker per thread on a ForkJoinPool, then merges the workers'
+ * statistics and prints games per second, outcome rates, and move time
+ * histograms.
+ * <p/>
+ * Usage: Simulator [--games N] [--threads N] [--player1 PLAYER] [--player2 PLAYER]
+ * [--rows N] [--cols N] [--win N] [--seed N] [--record PREFIX], where PLAYER is
+ * one of random, greedy, solver, mcts, or alphabeta. With --record, worker n
+ * writes every game it plays to PREFIX-n.tttr as game records.
+ */
+public class Simulator {
+
+    private long mGames = 1000000;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private StrategyType mPlayer1 = StrategyType.RANDOM;
+    private StrategyType mPlayer2 = StrategyType.RANDOM;
+    private int mNumRows = Board.DEFAULT_SIZE;
+    private int mNumCols = Board.DEFAULT_SIZE;
+    private int mWinLength = Board.DEFAULT_SIZE;
+    private long mSeed = System.nanoTime();
+    private String mRecordPrefix;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        final Simulator simulator = new Simulator();
+        try {
+            simulator.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Simulator [--games N] [--threads N]"
+                    + " [--player1 PLAYER] [--player2 PLAYER]"
+                    + " [--rows N] [--cols N] [--win N] [--seed N] [--record PREFIX]");
+            System.err.println("players: random, greedy, solver, mcts, alphabeta");
+            System.exit(1);
+        }
+        simulator.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int ii = 0; ii < args.length; ++ii) {
+            final String option = args[ii];
+            if (ii + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            final String value = args[++ii];
+            switch (option) {
+                case "--games":
+                    mGames = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    mThreads = Integer.parseInt(value);
+                    break;
+                case "--player1":
+                    mPlayer1 = StrategyType.parse(value);
+                    break;
+                case "--player2":
+                    mPlayer2 = StrategyType.parse(value);
+                    break;
+                case "--rows":
+                    mNumRows = Integer.parseInt(value);
+                    break;
+                case "--cols":
+                    mNumCols = Integer.parseInt(value);
+                    break;
+                case "--win":
+                    mWinLength = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    mSeed = Long.parseLong(value);
+                    break;
+                case "--record":
+                    mRecordPrefix = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (mGames < 0 || mThreads < 1) {
+            throw new IllegalArgumentException("games and threads must be positive");
+        }
+    }
+
+    public void run() throws InterruptedException, ExecutionException {
+        final Board template = new Board(mNumRows, mNumCols, mWinLength);
+        System.out.printf("%s (player 1) vs %s (player 2) on %dx%d, %d in a row,"
+                        + " %d games on %d threads, seed %d%n",
+                mPlayer1, mPlayer2, mNumRows, mNumCols, mWinLength, mGames, mThreads, mSeed);
+
+        final List<SimulationWorker> workers = new ArrayList<>(mThreads);
+        for (int ii = 0; ii < mThreads; ++ii) {
+            // Spread the remainder over the first few workers.
+            final long games = mGames / mThreads + (ii < mGames % mThreads ? 1 : 0);
+            final Path recordPath = mRecordPrefix == null ? null
+                    : Paths.get(mRecordPrefix + "-" + ii + ".tttr");
+            workers.add(new SimulationWorker(games, template, mPlayer1, mPlayer2, mSeed + ii,
+                    recordPath));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(mThreads);
+        final SimulationStats total = new SimulationStats();
+        final long start = System.nanoTime();
+        try {
+            for (Future<SimulationStats> result : pool.invokeAll(workers)) {
+                total.merge(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        total.print(System.out, System.nanoTime() - start);
+    }
+}
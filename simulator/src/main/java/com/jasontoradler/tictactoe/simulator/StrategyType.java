@@ -0,0 +1,95 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.AlphaBetaSearch;
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GreedyStrategy;
+import com.jasontoradler.tictactoe.engine.MctsSearch;
+import com.jasontoradler.tictactoe.engine.RandomStrategy;
+import com.jasontoradler.tictactoe.engine.Solver;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Strategies which can be named on the command line. Strategies keep search
+ * state, so every worker creates its own instances.
+ */
+public enum StrategyType {
+    RANDOM {
+        @Override
+        public Strategy create(Board board, Random random, long timeBudgetMillis) {
+            return new RandomStrategy(random);
+        }
+    },
+    GREEDY {
+        @Override
+        public Strategy create(Board board, Random random, long timeBudgetMillis) {
+            return new GreedyStrategy(random);
+        }
+    },
+    SOLVER {
+        @Override
+        public Strategy create(Board board, Random random, long timeBudgetMillis) {
+            return new Solver(board.getNumRows(), board.getNumCols(), board.getWinLength());
+        }
+
+        @Override
+        public boolean supports(Board board) {
+            // Searching to the end is only practical on the smallest boards.
+            return board.getNumCells() <= MAX_SOLVER_CELLS;
+        }
+    },
+    MCTS {
+        @Override
+        public Strategy create(Board board, Random random, long timeBudgetMillis) {
+            // The simulator already runs one worker per thread.
+            return new MctsSearch(board.getNumRows(), board.getNumCols(), board.getWinLength(),
+                    1, timeBudgetMillis == DEFAULT_TIME_BUDGET
+                    ? MctsSearch.DEFAULT_TIME_BUDGET_MILLIS : timeBudgetMillis,
+                    MctsSearch.DEFAULT_MAX_NODES);
+        }
+    },
+    ALPHABETA {
+        @Override
+        public Strategy create(Board board, Random random, long timeBudgetMillis) {
+            return new AlphaBetaSearch(board.getNumRows(), board.getNumCols(),
+                    board.getWinLength(), timeBudgetMillis == DEFAULT_TIME_BUDGET
+                    ? AlphaBetaSearch.DEFAULT_TIME_BUDGET_MILLIS : timeBudgetMillis);
+        }
+    };
+
+    /**
+     * Time budget which leaves each search at its own default.
+     */
+    public static final long DEFAULT_TIME_BUDGET = -1;
+
+    private static final int MAX_SOLVER_CELLS = 9;
+
+    /**
+     * @param board            board the strategy will play on
+     * @param random           random number source owned by the calling worker
+     * @param timeBudgetMillis time per move for strategies which search for
+     *                         a fixed time, or {@link #DEFAULT_TIME_BUDGET}
+     */
+    public abstract Strategy create(Board board, Random random, long timeBudgetMillis);
+
+    /**
+     * Create a strategy with the default time budget.
+     */
+    public Strategy create(Board board, Random random) {
+        return create(board, random, DEFAULT_TIME_BUDGET);
+    }
+
+    /**
+     * @return false if the strategy cannot play in reasonable time on board's
+     * size
+     */
+    public boolean supports(Board board) {
+        return true;
+    }
+
+    public static StrategyType parse(String name) {
+        return valueOf(name.toUpperCase(Locale.US));
+    }
+}
@@ -0,0 +1,331 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line tournament between strategies, rated separately on every
+ * board size.
+ * <p/>
+ * In a round robin every pair of entrants plays a match on every board size
+ * both can play. In a Swiss tournament each round pairs entrants with
+ * similar ratings on each board size, avoiding rematches where possible, so
+ * a large field is ranked in far fewer games. Matches run on a work-stealing
+ * ForkJoinPool whose workers each own a random number source and strategy
+ * instances, and every game updates the running {@link Ratings} as soon as
+ * it ends.
+ * <p/>
+ * Usage: Tournament [--entrants LIST] [--boards LIST] [--format FORMAT]
+ * [--rounds N] [--games N] [--threads N] [--seed N], where entrants are
+ * TYPE or TYPE@MILLIS as for {@link Entrant}, boards are ROWSxCOLSxWIN, and
+ * FORMAT is roundrobin or swiss. Each match is --games games, rounded up to
+ * an even number so both entrants move first equally often.
+ */
+public class Tournament {
+
+    // Pairings the rematch free Swiss search tries before settling for
+    // rematches, which bounds its time once every opponent has been played.
+    private static final int MAX_PAIRING_STEPS = 100_000;
+
+    private List<Entrant> mEntrants = parseEntrants("random,greedy,mcts@10,alphabeta@10");
+    private List<Board> mBoards = parseBoards("3x3x3,9x9x4");
+    private boolean mIsSwiss;
+    private int mRounds = 5;
+    private int mGames = 10;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private long mSeed = System.nanoTime();
+    // Pairs of entrants which have met on each board, and how many rounds
+    // each entrant has sat out on each board, for Swiss pairing.
+    private final Set<String> mPlayed = new HashSet<>();
+    private final Map<String, Integer> mByes = new HashMap<>();
+
+    public static void main(String[] args) {
+        final Tournament tournament = new Tournament();
+        try {
+            tournament.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Tournament [--entrants LIST] [--boards LIST]"
+                    + " [--format roundrobin|swiss] [--rounds N] [--games N] [--threads N]"
+                    + " [--seed N]");
+            System.err.println("entrants: comma separated TYPE or TYPE@MILLIS, where TYPE is"
+                    + " random, greedy, solver, mcts, or alphabeta");
+            System.err.println("boards: comma separated ROWSxCOLSxWIN, such as 3x3x3,15x15x5");
+            System.exit(1);
+        }
+        tournament.run();
+    }
+
+    void parseArgs(String[] args) {
+        for (int ii = 0; ii < args.length; ++ii) {
+            final String option = args[ii];
+            if (ii + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            final String value = args[++ii];
+            switch (option) {
+                case "--entrants":
+                    mEntrants = parseEntrants(value);
+                    break;
+                case "--boards":
+                    mBoards = parseBoards(value);
+                    break;
+                case "--format":
+                    if (value.equals("swiss")) {
+                        mIsSwiss = true;
+                    } else if (value.equals("roundrobin")) {
+                        mIsSwiss = false;
+                    } else {
+                        throw new IllegalArgumentException("unknown format " + value);
+                    }
+                    break;
+                case "--rounds":
+                    mRounds = Integer.parseInt(value);
+                    break;
+                case "--games":
+                    mGames = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    mThreads = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    mSeed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (mEntrants.size() < 2) {
+            throw new IllegalArgumentException("need at least two entrants");
+        }
+        if (mGames < 1 || mThreads < 1 || mRounds < 1) {
+            throw new IllegalArgumentException("games, threads, and rounds must be positive");
+        }
+        // Both entrants move first equally often.
+        mGames += mGames & 1;
+    }
+
+    private static List<Entrant> parseEntrants(String list) {
+        final List<Entrant> entrants = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        for (String spec : list.split(",")) {
+            final Entrant entrant = Entrant.parse(spec.trim());
+            if (!names.add(entrant.getName())) {
+                throw new IllegalArgumentException("duplicate entrant " + entrant);
+            }
+            entrants.add(entrant);
+        }
+        return entrants;
+    }
+
+    private static List<Board> parseBoards(String list) {
+        final List<Board> boards = new ArrayList<>();
+        for (String spec : list.split(",")) {
+            final String[] parts = spec.trim().split("x");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("board must be ROWSxCOLSxWIN: " + spec);
+            }
+            boards.add(new Board(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2])));
+        }
+        return boards;
+    }
+
+    public void run() {
+        System.out.printf(Locale.US, "%d entrants, %s, %d games a match on %d threads, seed %d%n",
+                mEntrants.size(), mIsSwiss ? mRounds + " Swiss rounds" : "round robin", mGames,
+                mThreads, mSeed);
+
+        final Board[] boards = mBoards.toArray(new Board[mBoards.size()]);
+        final Ratings[] ratings = new Ratings[boards.length];
+        for (int ii = 0; ii < boards.length; ++ii) {
+            ratings[ii] = new Ratings(mEntrants.size());
+        }
+        final AtomicLong workerCount = new AtomicLong();
+        final ForkJoinPool pool = new ForkJoinPool(mThreads,
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        return new TournamentWorker(pool,
+                                mSeed + workerCount.getAndIncrement(), boards);
+                    }
+                }, null, false);
+
+        final long start = System.nanoTime();
+        long games = 0;
+        try {
+            final int rounds = mIsSwiss ? mRounds : 1;
+            for (int round = 0; round < rounds; ++round) {
+                final List<MatchTask> matches = new ArrayList<>();
+                for (int board = 0; board < boards.length; ++board) {
+                    final List<int[]> pairings = mIsSwiss
+                            ? pairSwiss(ratings[board], boards[board])
+                            : pairAll(boards[board]);
+                    for (int[] pairing : pairings) {
+                        matches.add(new MatchTask(mEntrants, ratings[board], pairing[0],
+                                pairing[1], board, mGames));
+                    }
+                }
+                pool.invoke(new AllTask(matches));
+                games += (long) matches.size() * mGames;
+                if (mIsSwiss) {
+                    System.out.printf(Locale.US, "round %d of %d done, %d games%n",
+                            round + 1, rounds, games);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        for (int board = 0; board < boards.length; ++board) {
+            System.out.printf(Locale.US, "%n%dx%d, %d in a row%n", boards[board].getNumRows(),
+                    boards[board].getNumCols(), boards[board].getWinLength());
+            ratings[board].print(System.out, mEntrants);
+        }
+        System.out.printf(Locale.US, "%n%d games in %.1f s (%.1f games/s)%n",
+                games, seconds, games / seconds);
+    }
+
+    /**
+     * @return every pair of entrants which can both play on board
+     */
+    private List<int[]> pairAll(Board board) {
+        final List<int[]> pairings = new ArrayList<>();
+        for (int first = 0; first < mEntrants.size(); ++first) {
+            for (int second = first + 1; second < mEntrants.size(); ++second) {
+                if (mEntrants.get(first).supports(board)
+                        && mEntrants.get(second).supports(board)) {
+                    pairings.add(new int[]{first, second});
+                }
+            }
+        }
+        return pairings;
+    }
+
+    /**
+     * Pair entrants with similar ratings which have not played each other
+     * yet: each, from the highest rated down, takes the next highest rated
+     * opponent which still leaves a way to pair everyone below without a
+     * rematch. If there is no such pairing each simply takes the next highest
+     * rated opponent it has not played, or failing that the next. With an odd
+     * number of entrants the lowest rated one which has sat out the fewest
+     * rounds sits this one out, so no one sits out twice before everyone has
+     * once.
+     */
+    List<int[]> pairSwiss(Ratings ratings, Board board) {
+        final List<Integer> unpaired = new ArrayList<>();
+        for (int entrant : ratings.getStandings()) {
+            if (mEntrants.get(entrant).supports(board)) {
+                unpaired.add(entrant);
+            }
+        }
+        if ((unpaired.size() & 1) != 0) {
+            int bye = unpaired.size() - 1;
+            for (int ii = bye - 1; ii >= 0; --ii) {
+                if (getByes(board, unpaired.get(ii)) < getByes(board, unpaired.get(bye))) {
+                    bye = ii;
+                }
+            }
+            final int entrant = unpaired.remove(bye);
+            mByes.put(getEntrantKey(board, entrant), getByes(board, entrant) + 1);
+        }
+        final List<int[]> pairings = new ArrayList<>();
+        if (!pairUnplayed(board, unpaired, pairings, new int[]{MAX_PAIRING_STEPS})) {
+            while (unpaired.size() >= 2) {
+                final int first = unpaired.remove(0);
+                int opponent = 0;
+                for (int ii = 0; ii < unpaired.size(); ++ii) {
+                    if (!mPlayed.contains(getPairKey(board, first, unpaired.get(ii)))) {
+                        opponent = ii;
+                        break;
+                    }
+                }
+                pairings.add(new int[]{first, unpaired.remove(opponent)});
+            }
+        }
+        for (int[] pairing : pairings) {
+            mPlayed.add(getPairKey(board, pairing[0], pairing[1]));
+        }
+        return pairings;
+    }
+
+    /**
+     * Search, in rating order, for pairings of all of unpaired without a
+     * rematch, and move them from unpaired to pairings if there are any.
+     *
+     * @param steps one element array holding how many more pairings may be
+     *              tried before giving up, shared by the whole search
+     * @return false if there are none or the search ran out of steps, leaving
+     * unpaired and pairings as they were
+     */
+    private boolean pairUnplayed(Board board, List<Integer> unpaired, List<int[]> pairings,
+                                 int[] steps) {
+        if (unpaired.isEmpty()) {
+            return true;
+        }
+        final int first = unpaired.remove(0);
+        for (int ii = 0; ii < unpaired.size() && --steps[0] >= 0; ++ii) {
+            final int second = unpaired.get(ii);
+            if (mPlayed.contains(getPairKey(board, first, second))) {
+                continue;
+            }
+            unpaired.remove(ii);
+            pairings.add(new int[]{first, second});
+            if (pairUnplayed(board, unpaired, pairings, steps)) {
+                return true;
+            }
+            pairings.remove(pairings.size() - 1);
+            unpaired.add(ii, second);
+        }
+        unpaired.add(0, first);
+        return false;
+    }
+
+    private int getByes(Board board, int entrant) {
+        final Integer byes = mByes.get(getEntrantKey(board, entrant));
+        return byes == null ? 0 : byes;
+    }
+
+    private static String getBoardKey(Board board) {
+        return board.getNumRows() + "x" + board.getNumCols() + "x" + board.getWinLength();
+    }
+
+    private static String getEntrantKey(Board board, int entrant) {
+        return getBoardKey(board) + ":" + entrant;
+    }
+
+    private static String getPairKey(Board board, int first, int second) {
+        return getBoardKey(board) + ":" + Math.min(first, second) + "-" + Math.max(first, second);
+    }
+
+    /**
+     * Runs a list of matches in parallel and waits for all of them.
+     */
+    private static class AllTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<MatchTask> mMatches;
+
+        AllTask(List<MatchTask> matches) {
+            mMatches = matches;
+        }
+
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(mMatches);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.Strategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Pool thread which plays a tournament's games. Each worker has its own
+ * random number source and its own strategy instances, so games on
+ * different workers share nothing but the ratings.
+ * <p/>
+ * Searches hold megabytes of tables, so only the most recently used
+ * strategies are kept; with hundreds of entrants, a worker recreates a
+ * strategy whenever it comes back to an entrant it has not played lately.
+ */
+public class TournamentWorker extends ForkJoinWorkerThread {
+
+    private static final int MAX_CACHED_STRATEGIES = 8;
+
+    private final Random mRandom;
+    private final Board[] mBoards;
+    private final Map<Integer, Strategy> mStrategies =
+            new LinkedHashMap<Integer, Strategy>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Strategy> eldest) {
+                    return size() > MAX_CACHED_STRATEGIES;
+                }
+            };
+
+    /**
+     * @param boards one board of every size played, as templates
+     */
+    protected TournamentWorker(ForkJoinPool pool, long seed, Board[] boards) {
+        super(pool);
+        mRandom = new Random(seed);
+        mBoards = new Board[boards.length];
+        for (int ii = 0; ii < boards.length; ++ii) {
+            mBoards[ii] = new Board(boards[ii]);
+        }
+    }
+
+    /**
+     * @return the worker running the current task
+     */
+    public static TournamentWorker current() {
+        return (TournamentWorker) Thread.currentThread();
+    }
+
+    public Random getRandom() {
+        return mRandom;
+    }
+
+    /**
+     * @return this worker's board for size boardIndex, to be reset before use
+     */
+    public Board getBoard(int boardIndex) {
+        return mBoards[boardIndex];
+    }
+
+    /**
+     * @return this worker's strategy for entrant on size boardIndex
+     */
+    public Strategy getStrategy(Entrant entrant, int entrantIndex, int boardIndex) {
+        final Integer key = entrantIndex * mBoards.length + boardIndex;
+        Strategy strategy = mStrategies.get(key);
+        if (strategy == null) {
+            strategy = entrant.create(mBoards[boardIndex], mRandom);
+            mStrategies.put(key, strategy);
+        }
+        return strategy;
+    }
+}
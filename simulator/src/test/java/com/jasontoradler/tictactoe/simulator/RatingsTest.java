@@ -0,0 +1,82 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RatingsTest {
+
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void eloMovesBothRatingsByTheSameAmount() {
+        final Ratings ratings = new Ratings(2);
+        // Evenly matched, so the winner is expected to score a half and
+        // gains K / 2.
+        ratings.record(0, 1, GameState.PLAYER1_WINS);
+        assertEquals(1508, ratings.getElo(0), DELTA);
+        assertEquals(1492, ratings.getElo(1), DELTA);
+        // Now 0 is expected to score 1 / (1 + 10^(-16 / 400)) = 0.52301, so
+        // losing costs it 16 * 0.52301.
+        ratings.record(1, 0, GameState.PLAYER1_WINS);
+        assertEquals(1499.631847, ratings.getElo(0), DELTA);
+        assertEquals(1500.368153, ratings.getElo(1), DELTA);
+        // A draw moves the higher rated one, now 1, down; the total is kept.
+        ratings.record(0, 1, GameState.TIE_GAME);
+        assertEquals(1499.648801, ratings.getElo(0), DELTA);
+        assertEquals(3000, ratings.getElo(0) + ratings.getElo(1), DELTA);
+    }
+
+    @Test
+    public void glickoFirstGameBetweenNewEntrants() {
+        final Ratings ratings = new Ratings(2);
+        ratings.record(0, 1, GameState.PLAYER2_WINS);
+        // g(350) = 0.66907 and E = 0.5, so d^2 = 1 / (q^2 g^2 / 4) and
+        // 1 / RD'^2 = 1 / 350^2 + 1 / d^2.
+        assertEquals(1337.787997, ratings.getRating(0), DELTA);
+        assertEquals(1662.212003, ratings.getRating(1), DELTA);
+        assertEquals(290.230506, ratings.getDeviation(0), DELTA);
+        assertEquals(290.230506, ratings.getDeviation(1), DELTA);
+        assertArrayEquals(new Integer[]{1, 0}, ratings.getStandings());
+        assertEquals(1, ratings.getGames(0));
+    }
+
+    @Test
+    public void glickoMatchesGlickmansWorkedExample() {
+        // Glickman's example: a player rated 1500 with RD 200 beats 1400
+        // (RD 30), then loses to 1550 (RD 100) and 1700 (RD 300), and ends
+        // the rating period at 1464 with RD 151.4. Here each game is a
+        // period of its own, which lands within a rating point of that.
+        final Ratings ratings = new Ratings(4);
+        ratings.setGlicko(0, 1500, 200);
+        ratings.setGlicko(1, 1400, 30);
+        ratings.setGlicko(2, 1550, 100);
+        ratings.setGlicko(3, 1700, 300);
+        ratings.record(0, 1, GameState.PLAYER1_WINS);
+        ratings.record(0, 2, GameState.PLAYER2_WINS);
+        ratings.record(0, 3, GameState.PLAYER2_WINS);
+        assertEquals(1464, ratings.getRating(0), 1);
+        assertEquals(151.4, ratings.getDeviation(0), 1);
+        // Exactly, played one game at a time:
+        assertEquals(1464.219039, ratings.getRating(0), DELTA);
+        assertEquals(151.253743, ratings.getDeviation(0), DELTA);
+        // A loss to a well known rating costs the opponent little.
+        assertEquals(1398.342512, ratings.getRating(1), DELTA);
+        assertEquals(29.925091, ratings.getDeviation(1), DELTA);
+    }
+
+    @Test
+    public void unfinishedGameIsRejected() {
+        final Ratings ratings = new Ratings(2);
+        try {
+            ratings.record(0, 1, GameState.IN_PROGRESS);
+            fail("recorded a game in progress");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, ratings.getGames(0));
+    }
+}
@@ -0,0 +1,93 @@
+package com.jasontoradler.tictactoe.simulator;
+
+import com.jasontoradler.tictactoe.engine.Board;
+import com.jasontoradler.tictactoe.engine.GameState;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TournamentTest {
+
+    private static final String FIVE_ENTRANTS = "random,greedy,solver,mcts,alphabeta";
+
+    @Test
+    public void swissPairingAvoidsRematchesWithAnOddField() {
+        final Tournament tournament = swiss(FIVE_ENTRANTS);
+        final Board board = new Board(3, 3, 3);
+        final Ratings ratings = new Ratings(5);
+        final Set<String> played = new HashSet<>();
+        final int[] byes = new int[5];
+        // Five rounds of two matches are enough for every pair to meet once,
+        // with each entrant sitting out one round.
+        for (int round = 0; round < 5; ++round) {
+            final List<int[]> pairings = tournament.pairSwiss(ratings, board);
+            assertEquals(2, pairings.size());
+            final Set<Integer> seated = new HashSet<>();
+            for (int[] pairing : pairings) {
+                assertTrue(seated.add(pairing[0]));
+                assertTrue(seated.add(pairing[1]));
+                assertTrue("rematch of " + pairing[0] + " and " + pairing[1] + " in round "
+                        + round, played.add(getPairKey(pairing)));
+                // The entrant listed first always wins, so ratings spread out.
+                ratings.record(pairing[0], pairing[1], pairing[0] < pairing[1]
+                        ? GameState.PLAYER1_WINS : GameState.PLAYER2_WINS);
+            }
+            for (int entrant = 0; entrant < 5; ++entrant) {
+                if (!seated.contains(entrant)) {
+                    ++byes[entrant];
+                }
+            }
+        }
+        assertEquals(10, played.size());
+        for (int entrant = 0; entrant < 5; ++entrant) {
+            assertEquals("rounds entrant " + entrant + " sat out", 1, byes[entrant]);
+        }
+
+        // Once every pair has met, everyone is still paired.
+        final List<int[]> pairings = tournament.pairSwiss(ratings, board);
+        assertEquals(2, pairings.size());
+        assertTrue(pairings.get(0)[0] != pairings.get(1)[0]
+                && pairings.get(0)[0] != pairings.get(1)[1]);
+    }
+
+    @Test
+    public void swissPairingSkipsEntrantsWhichCannotPlayTheBoard() {
+        // The solver only plays 3x3, leaving four entrants on 9x9.
+        final Tournament tournament = swiss(FIVE_ENTRANTS);
+        final Board board = new Board(9, 9, 4);
+        final Ratings ratings = new Ratings(5);
+        for (int round = 0; round < 3; ++round) {
+            final List<int[]> pairings = tournament.pairSwiss(ratings, board);
+            assertEquals(2, pairings.size());
+            for (int[] pairing : pairings) {
+                assertTrue(pairing[0] != 2 && pairing[1] != 2);
+            }
+        }
+    }
+
+    @Test
+    public void swissPairingIsKeptSeparatelyForEachBoard() {
+        final Tournament tournament = swiss("random,greedy");
+        final Ratings ratings = new Ratings(2);
+        assertEquals(1, tournament.pairSwiss(ratings, new Board(3, 3, 3)).size());
+        assertEquals(1, tournament.pairSwiss(ratings, new Board(4, 4, 3)).size());
+        // A rematch is the only pairing left.
+        assertEquals(1, tournament.pairSwiss(ratings, new Board(3, 3, 3)).size());
+    }
+
+    private static Tournament swiss(String entrants) {
+        final Tournament tournament = new Tournament();
+        tournament.parseArgs(new String[]{"--entrants", entrants, "--format", "swiss"});
+        return tournament;
+    }
+
+    private static String getPairKey(int[] pairing) {
+        return Math.min(pairing[0], pairing[1]) + "-" + Math.max(pairing[0], pairing[1]);
+    }
+}